@@ -160,4 +160,22 @@ public class BugAspects implements Iterable<BugAspects.SortableValue> {
     public Iterator<SortableValue> iterator() {
         return lst.iterator();
     }
+
+    /**
+     * Two BugAspects are equal if they select the same branch of the tree;
+     * the count is not considered, so that expanded paths can be found again
+     * after the tree is refreshed.
+     */
+    @Override
+    public int hashCode() {
+        return lst.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (!(that instanceof BugAspects)) {
+            return false;
+        }
+        return lst.equals(((BugAspects) that).lst);
+    }
 }
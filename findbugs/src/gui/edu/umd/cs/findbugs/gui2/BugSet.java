@@ -25,7 +25,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -66,6 +65,17 @@ public class BugSet implements Iterable<BugLeafNode> {
 
     private HashMap<Sortables, String[]> sortablesToStrings;
 
+    /**
+     * For each Sortables queried so far, the bugs of mainList grouped by their
+     * value of that Sortables, in mainList order. Built lazily, one pass over
+     * mainList per Sortables, so only the aspects actually shown in the tree
+     * get indexed, and only for the branches the user has expanded.
+     */
+    private HashMap<Sortables, HashMap<String, ArrayList<BugLeafNode>>> aspectIndexes;
+
+    /** Position of each bug in mainList, built lazily by indexOfUnfiltered */
+    private HashMap<BugLeafNode, Integer> positions;
+
     private static BugSet mainBugSet = null;
 
     /**
@@ -126,6 +136,16 @@ public class BugSet implements Iterable<BugLeafNode> {
         bs.cacheSortables();
     }
 
+    /**
+     * Sets the BugSet passed in, which has been sorted already, to be the
+     * mainBugSet
+     *
+     * @param bs
+     */
+    static void setAsRoot(BugSet bs) {
+        mainBugSet = bs;
+    }
+
     static boolean suppress(BugLeafNode p) {
         return !MainFrame.getInstance().shouldDisplayIssue(p.getBug());
     }
@@ -157,18 +177,7 @@ public class BugSet implements Iterable<BugLeafNode> {
             return EMPTY_STRING_ARRAY;
         }
 
-        Collection<String> list = new HashSet<String>();
-
-        for (BugLeafNode p : mainList) {
-            if (suppress(p)) {
-                continue;
-            }
-            BugInstance bug = p.getBug();
-
-            String value = key.getFrom(bug);
-            list.add(value);
-
-        }
+        Collection<String> list = filteredBugsCached().getAspectIndex(key).keySet();
         String result[] = list.toArray(new String[list.size()]);
         Collections.sort(Arrays.asList(result), new SortableStringComparator(key));
         return result;
@@ -219,12 +228,9 @@ public class BugSet implements Iterable<BugLeafNode> {
         if (doneMap.containsKey(keyValuePair)) {
             return doneMap.get(keyValuePair);
         }
-        ArrayList<BugLeafNode> bugs = new ArrayList<BugLeafNode>();
-
-        for (BugLeafNode b : mainList) {
-            if (b.matches(keyValuePair)) {
-                bugs.add(b);
-            }
+        List<BugLeafNode> bugs = getAspectIndex(keyValuePair.key).get(keyValuePair.value);
+        if (bugs == null) {
+            bugs = Collections.emptyList();
         }
 
         BugSet temp = new BugSet(bugs);
@@ -232,6 +238,31 @@ public class BugSet implements Iterable<BugLeafNode> {
         return temp;
     }
 
+    /**
+     * Get the bugs of this set grouped by their value of the given Sortables.
+     * Each group keeps the order of the set.
+     */
+    private HashMap<String, ArrayList<BugLeafNode>> getAspectIndex(Sortables key) {
+        if (aspectIndexes == null) {
+            aspectIndexes = new HashMap<Sortables, HashMap<String, ArrayList<BugLeafNode>>>();
+        }
+        HashMap<String, ArrayList<BugLeafNode>> index = aspectIndexes.get(key);
+        if (index == null) {
+            index = new HashMap<String, ArrayList<BugLeafNode>>();
+            for (BugLeafNode b : mainList) {
+                String value = key.getFrom(b.getBug());
+                ArrayList<BugLeafNode> bugs = index.get(value);
+                if (bugs == null) {
+                    bugs = new ArrayList<BugLeafNode>();
+                    index.put(value, bugs);
+                }
+                bugs.add(b);
+            }
+            aspectIndexes.put(key, index);
+        }
+        return index;
+    }
+
     /*
      * Sort the contents of the list by the Sortables in the order after the
      * divider, if any.
@@ -294,6 +325,8 @@ public class BugSet implements Iterable<BugLeafNode> {
         ArrayList<BugLeafNode> copy = new ArrayList<BugLeafNode>(mainList);
         Collections.sort(copy, comparator);
         mainList = copy;
+        aspectIndexes = null;
+        positions = null;
 
         if (SystemProperties.ASSERTIONS_ENABLED) {
             for(int i = 0; i < mainList.size(); i++) {
@@ -325,14 +358,9 @@ public class BugSet implements Iterable<BugLeafNode> {
             return doneContainsMap.get(keyValuePair);
         }
 
-        for (BugLeafNode p : filteredBugsCached().mainList) {
-            if (p.matches(keyValuePair)) {
-                doneContainsMap.put(keyValuePair, true);
-                return true;
-            }
-        }
-        doneContainsMap.put(keyValuePair, false);
-        return false;
+        boolean result = filteredBugsCached().getAspectIndex(keyValuePair.key).containsKey(keyValuePair.value);
+        doneContainsMap.put(keyValuePair, result);
+        return result;
     }
 
     /**
@@ -352,7 +380,14 @@ public class BugSet implements Iterable<BugLeafNode> {
     }
 
     public int indexOfUnfiltered(BugLeafNode p) {
-        return mainList.indexOf(p);
+        if (positions == null) {
+            positions = new HashMap<BugLeafNode, Integer>();
+            for (int i = 0; i < mainList.size(); i++) {
+                positions.put(mainList.get(i), i);
+            }
+        }
+        Integer position = positions.get(p);
+        return position == null ? -1 : position;
     }
 
     public BugLeafNode getUnfiltered(int index) {
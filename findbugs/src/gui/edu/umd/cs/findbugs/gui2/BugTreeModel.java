@@ -21,6 +21,7 @@ package edu.umd.cs.findbugs.gui2;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -78,6 +79,9 @@ import edu.umd.cs.findbugs.gui2.BugAspects.SortableValue;
  * changeSet calls rebuild(), which does a very tricky thing, where it makes a new model, and a new JTree, and swaps them in in place of this one, as well as
  * turning off user input in hopefully every place it needs to be turned off
  *
+ * Filter and sort changes call refresh() instead, which keeps this model and JTree: a background thread builds and sorts the new BugSet
+ * and groups it by the branches that are expanded, and then the event dispatch thread swaps it in and tells the tree its structure changed.
+ *
  */
 
 /**
@@ -100,6 +104,13 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
 
     private volatile Thread rebuildingThread;
 
+    /**
+     * Incremented for every refresh and when the model is taken off the tree,
+     * so that only the latest refresh of a live model is published. Only used
+     * on the event dispatch thread.
+     */
+    private int refreshGeneration;
+
     private boolean sortOrderChanged;
 
     private boolean sortsAddedOrRemoved;
@@ -155,6 +166,7 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
     }
 
     public void getOffListenerList() {
+        refreshGeneration++;
         FilterActivity.removeFilterListener(bugTreeFilterListener);
         st.removeColumnModelListener(this);
         tree.removeTreeExpansionListener(this);
@@ -396,6 +408,132 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
 
     }
 
+    /**
+     * Updates the tree in place after the filters or the sort order changed.
+     * The new BugSet is built, sorted and grouped by the branches which are
+     * expanded on a background thread, so that the tree's queries for those
+     * branches are answered from its caches. The event dispatch thread then
+     * swaps it in, fires a structure change and opens the branches which were
+     * expanded and the bugs which were selected again. Unlike rebuild(), no
+     * new model or JTree is created.
+     *
+     * @param setAsRoot
+     *            true if the new BugSet becomes the main bug set, i.e., the
+     *            filters changed
+     */
+    void refresh(final boolean setAsRoot) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(setAsRoot);
+                }
+            });
+            return;
+        }
+        if (TRACE) {
+            System.out.println("refreshing bug tree model");
+        }
+        if (rebuildingThread != null) {
+            // the new model will pick up the current data
+            return;
+        }
+
+        final int generation = ++refreshGeneration;
+        final BugSet oldSet = bugSet;
+        final List<Sortables> order = new ArrayList<Sortables>(st.getOrderBeforeDivider());
+        final List<TreePath> expanded = getExpandedPaths();
+        final BugAspects rootAspects = root;
+        edu.umd.cs.findbugs.util.Util.runInDameonThread(new Runnable() {
+            @Override
+            public void run() {
+                final BugSet newSet = new BugSet(oldSet);
+                newSet.sortList();
+                group(newSet, order, rootAspects);
+                for (TreePath path : expanded) {
+                    group(newSet, order, (BugAspects) path.getLastPathComponent());
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == refreshGeneration && rebuildingThread == null) {
+                            publish(newSet, setAsRoot);
+                        }
+                    }
+                });
+            }
+        }, "Refreshing thread");
+    }
+
+    /**
+     * Compute the children of a branch of the tree and their counts, as
+     * getChild() and getChildCount() would, so that the queries are cached
+     * by the BugSet.
+     */
+    private static void group(BugSet set, List<Sortables> order, BugAspects a) {
+        BugSet bugs = set.query(a);
+        if (a.size() >= order.size()) {
+            bugs.size();
+            return;
+        }
+        Sortables key = order.get(a.size());
+        for (String value : key.getAll(bugs)) {
+            set.query(a.addToNew(new SortableValue(key, value))).size();
+        }
+    }
+
+    private List<TreePath> getExpandedPaths() {
+        ArrayList<TreePath> expanded = new ArrayList<TreePath>();
+        Enumeration<TreePath> e = tree.getExpandedDescendants(new TreePath(root));
+        if (e != null) {
+            while (e.hasMoreElements()) {
+                TreePath path = e.nextElement();
+                if (path.getLastPathComponent() instanceof BugAspects) {
+                    expanded.add(path);
+                }
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Swap in a BugSet built by refresh(). Must be called on the event
+     * dispatch thread.
+     */
+    private void publish(BugSet newSet, boolean setAsRoot) {
+        NewFilterFromBug.closeAll();
+        setOldSelectedBugs();
+        List<TreePath> expanded = getExpandedPaths();
+
+        bugSet = newSet;
+        if (setAsRoot) {
+            BugSet.setAsRoot(newSet);
+        }
+        root.setCount(bugSet.size());
+
+        TreeModelEvent event = new TreeModelEvent(this, new TreePath(root));
+        for (TreeModelListener l : listeners) {
+            l.treeStructureChanged(event);
+        }
+
+        for (TreePath path : expanded) {
+            if (isStillPresent(path)) {
+                tree.expandPath(path);
+            }
+        }
+        openPreviouslySelected(selectedBugLeafNodes);
+    }
+
+    private boolean isStillPresent(TreePath path) {
+        Object[] nodes = path.getPath();
+        for (int i = 1; i < nodes.length; i++) {
+            if (getIndexOfChild(nodes[i - 1], nodes[i]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void crawl(final ArrayList<BugAspects> path, final int depth) {
         for (int i = 0; i < getChildCount(path.get(path.size() - 1)); i++) {
             if (depth > 0) {
@@ -477,14 +615,7 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
             if (TRACE) {
                 System.out.println("clearing cache in bug tree model");
             }
-            resetData();
-            BugSet.setAsRootAndCache(bugSet);// FIXME: Should this be in
-            // resetData? Does this allow our
-            // main list to not be the same as
-            // the data in our tree?
-            root.setCount(bugSet.size());
-
-            rebuild();
+            refresh(true);
         }
 
     }
@@ -619,7 +750,7 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
         if (sortOrderChanged == true || sortsAddedOrRemoved == true) {
             sortOrderChanged = false;
             sortsAddedOrRemoved = false;
-            rebuild();
+            refresh(false);
         }
     }
 
@@ -0,0 +1,336 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+
+/**
+ * A BugReporter which hands the reported bugs and errors to a reporting
+ * thread through a bounded queue, so that the work of the reporters it
+ * delegates to (filter matching, instance hashes, bug ranks, adding to the
+ * bug collection) is done concurrently with the analysis.
+ * <p>
+ * The events reach the delegate in the order they were reported. When the
+ * queue is full, the reporting methods wait for room. Methods which read or
+ * configure the delegate ({@link #getBugCollection()},
+ * {@link #reportQueuedErrors()}, {@link #finish()}, ...) first wait until
+ * every queued event has been handled. {@link #finish()} stops the reporting
+ * thread.
+ * <p>
+ * The reporting thread uses a worker analysis cache (see
+ * {@link AnalysisCache#createWorkerCache(BugReporter)}), so the delegates
+ * only share the XClass results and the databases with the analysis, and the
+ * DescriptorFactory of the thread which first reported an event. Errors
+ * logged through the analysis cache and the AnalysisContext must also reach
+ * the delegate through this reporter (see
+ * {@link AnalysisCache#setErrorLogger(BugReporter)}), since the delegates
+ * are not thread-safe.
+ */
+public class AsyncBugReporter extends DelegatingBugReporter {
+
+    /** Queued event which ends the reporting thread */
+    private static final Object STOP = new Object();
+
+    /** Queued event of a method other than reportBug */
+    private abstract static class Event {
+        abstract void deliver(BugReporter delegate);
+    }
+
+    private final BlockingQueue<Object> queue;
+
+    private final Object lock = new Object();
+
+    /** number of events reported but not yet handled, guarded by lock */
+    private int pending;
+
+    /** guarded by lock */
+    private @CheckForNull
+    Thread reportingThread;
+
+    /** guarded by lock */
+    private boolean finished;
+
+    /** error which ended the reporting thread */
+    private volatile Error failure;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            the reporter to deliver the events to, on the reporting
+     *            thread
+     * @param queueSize
+     *            number of events which can be queued before the reporting
+     *            methods wait
+     */
+    public AsyncBugReporter(BugReporter delegate, int queueSize) {
+        super(delegate);
+        queue = new ArrayBlockingQueue<Object>(Math.max(queueSize, 1));
+    }
+
+    private void enqueue(Object event) {
+        Thread t;
+        synchronized (lock) {
+            t = reportingThread;
+            if (t == null && !finished) {
+                t = reportingThread = startReportingThread();
+            }
+            if (t == Thread.currentThread()) {
+                // Reported by a delegate while handling an event; waiting
+                // for room in the queue could deadlock
+                t = null;
+            }
+            if (t != null) {
+                pending++;
+            }
+        }
+        if (t == null) {
+            deliver(event);
+            return;
+        }
+        checkFailure();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(event);
+                break;
+            } catch (InterruptedException e) {
+                // Don't lose the event, and don't deliver it on this thread
+                // while the reporting thread may be handling others
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Thread startReportingThread() {
+        final IAnalysisCache analysisCache = Global.getAnalysisCache();
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        Thread t = new Thread("FindBugs bug reporter") {
+            @Override
+            public void run() {
+                DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                if (analysisCache instanceof AnalysisCache) {
+                    Global.setAnalysisCacheForCurrentThread(((AnalysisCache) analysisCache).createWorkerCache(getDelegate()));
+                }
+                try {
+                    while (true) {
+                        Object event = queue.take();
+                        if (event == STOP) {
+                            return;
+                        }
+                        try {
+                            deliver(event);
+                        } catch (RuntimeException e) {
+                            getDelegate().logError("Error reporting " + event, e);
+                        } catch (Error e) {
+                            failure = e;
+                        } finally {
+                            synchronized (lock) {
+                                if (--pending == 0) {
+                                    lock.notifyAll();
+                                }
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    Global.removeAnalysisCacheForCurrentThread();
+                    DescriptorFactory.clearInstance();
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void deliver(Object event) {
+        BugReporter delegate = getDelegate();
+        if (event instanceof BugInstance) {
+            delegate.reportBug((BugInstance) event);
+        } else if (event instanceof ClassDescriptor) {
+            delegate.observeClass((ClassDescriptor) event);
+        } else {
+            ((Event) event).deliver(delegate);
+        }
+    }
+
+    private void checkFailure() {
+        Error e = failure;
+        if (e != null) {
+            failure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Wait until all queued events have been handled.
+     */
+    public void drain() {
+        boolean interrupted = false;
+        synchronized (lock) {
+            if (reportingThread == Thread.currentThread()) {
+                return;
+            }
+            while (pending > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void reportBug(@Nonnull BugInstance bugInstance) {
+        enqueue(bugInstance);
+    }
+
+    @Override
+    public void observeClass(ClassDescriptor classDescriptor) {
+        enqueue(classDescriptor);
+    }
+
+    @Override
+    public void logError(final String message) {
+        enqueue(new Event() {
+            @Override
+            void deliver(BugReporter delegate) {
+                delegate.logError(message);
+            }
+        });
+    }
+
+    @Override
+    public void logError(final String message, final Throwable e) {
+        enqueue(new Event() {
+            @Override
+            void deliver(BugReporter delegate) {
+                delegate.logError(message, e);
+            }
+        });
+    }
+
+    @Override
+    public void reportMissingClass(final ClassNotFoundException ex) {
+        enqueue(new Event() {
+            @Override
+            void deliver(BugReporter delegate) {
+                delegate.reportMissingClass(ex);
+            }
+        });
+    }
+
+    @Override
+    public void reportMissingClass(final ClassDescriptor classDescriptor) {
+        enqueue(new Event() {
+            @Override
+            void deliver(BugReporter delegate) {
+                delegate.reportMissingClass(classDescriptor);
+            }
+        });
+    }
+
+    @Override
+    public void reportSkippedAnalysis(final MethodDescriptor method) {
+        enqueue(new Event() {
+            @Override
+            void deliver(BugReporter delegate) {
+                delegate.reportSkippedAnalysis(method);
+            }
+        });
+    }
+
+    @Override
+    public void setErrorVerbosity(int level) {
+        drain();
+        super.setErrorVerbosity(level);
+    }
+
+    @Override
+    public void setPriorityThreshold(int threshold) {
+        drain();
+        super.setPriorityThreshold(threshold);
+    }
+
+    @Override
+    public void addObserver(BugReporterObserver observer) {
+        drain();
+        super.addObserver(observer);
+    }
+
+    @Override
+    public void reportQueuedErrors() {
+        drain();
+        super.reportQueuedErrors();
+    }
+
+    @Override
+    public @CheckForNull
+    BugCollection getBugCollection() {
+        drain();
+        return super.getBugCollection();
+    }
+
+    /**
+     * Handle all queued events, stop the reporting thread, and finish the
+     * delegate. Events reported afterwards are delivered directly.
+     */
+    @Override
+    public void finish() {
+        drain();
+        Thread t;
+        synchronized (lock) {
+            t = reportingThread;
+            reportingThread = null;
+            finished = true;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                queue.put(STOP);
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.finish();
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * A compact index of the instance hashes of a baseline bug collection, used by
+ * {@link ExcludingHashesBugReporter} instead of reading the baseline XML. The
+ * index is written once (see
+ * {@link edu.umd.cs.findbugs.workflow.CreateBaselineHashIndex}) and memory
+ * mapped when it is used.
+ * <p>
+ * The file holds a header (magic number, version, number of hashes, number of
+ * bucket bits), a bucket table, and the 128 bit MD5 instance hashes, sorted as
+ * unsigned numbers. The bucket table gives, for each value of the top bits of
+ * a hash, the position of the first hash with these top bits, so a lookup
+ * only searches the few hashes of one bucket.
+ */
+public class BaselineHashIndex {
+    /** "FBHI" */
+    private static final int MAGIC = 0x46424849;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int HASH_SIZE = 16;
+
+    private static final int MAX_BUCKET_BITS = 20;
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    private final int bucketBits;
+
+    /** position of the first hash in the buffer */
+    private final int hashesStart;
+
+    private BaselineHashIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a baseline hash index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported baseline hash index version " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        bucketBits = buffer.getInt(12);
+        if (size < 0 || bucketBits < 0 || bucketBits > MAX_BUCKET_BITS) {
+            throw new IOException("Corrupt baseline hash index");
+        }
+        hashesStart = HEADER_SIZE + 4 * ((1 << bucketBits) + 1);
+        if (buffer.limit() != hashesStart + (long) size * HASH_SIZE) {
+            throw new IOException("Truncated baseline hash index");
+        }
+    }
+
+    /**
+     * @return true if the file starts like a baseline hash index
+     */
+    public static boolean isIndexFile(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Memory map an index file.
+     */
+    public static BaselineHashIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new BaselineHashIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write an index of the instance hashes of the bugs of a bug collection.
+     */
+    public static void write(BugCollection bugCollection, File file) throws IOException {
+        String[] hashes = new String[bugCollection.getCollection().size()];
+        int i = 0;
+        for (BugInstance bug : bugCollection.getCollection()) {
+            hashes[i++] = bug.getInstanceHash();
+        }
+        write(Arrays.asList(hashes), file);
+    }
+
+    /**
+     * Write an index of the given instance hashes.
+     *
+     * @throws IllegalArgumentException
+     *             if one of the strings is not an instance hash as computed by
+     *             {@link BugInstance#getInstanceHash()}
+     */
+    public static void write(Collection<String> instanceHashes, File file) throws IOException {
+        long[] hi = new long[instanceHashes.size()];
+        long[] lo = new long[instanceHashes.size()];
+        Integer[] order = new Integer[hi.length];
+        int n = 0;
+        for (String hash : instanceHashes) {
+            if (!isInstanceHash(hash)) {
+                throw new IllegalArgumentException("Not an instance hash: " + hash);
+            }
+            hi[n] = parseHigh(hash);
+            lo[n] = parseLow(hash);
+            order[n] = n;
+            n++;
+        }
+        final long[] h = hi;
+        final long[] l = lo;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareHashes(h[a], l[a], h[b], l[b]);
+            }
+        });
+        // Drop duplicates
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int k = order[i];
+            if (m > 0 && compareHashes(h[order[m - 1]], l[order[m - 1]], h[k], l[k]) == 0) {
+                continue;
+            }
+            order[m++] = k;
+        }
+
+        int bucketBits = bucketBits(m);
+        int[] offsets = new int[(1 << bucketBits) + 1];
+        for (int i = 0, bucket = 0; bucket < offsets.length; bucket++) {
+            while (i < m && bucketOf(h[order[i]], bucketBits) < bucket) {
+                i++;
+            }
+            offsets[bucket] = i;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(m);
+            out.writeInt(bucketBits);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < m; i++) {
+                out.writeLong(h[order[i]]);
+                out.writeLong(l[order[i]]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of bits of a hash used to select its bucket, so
+     *         that there are about four hashes per bucket
+     */
+    private static int bucketBits(int size) {
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(size, 1)) - 2;
+        return Math.max(0, Math.min(MAX_BUCKET_BITS, bits));
+    }
+
+    private static int bucketOf(long hi, int bucketBits) {
+        return bucketBits == 0 ? 0 : (int) (hi >>> (64 - bucketBits));
+    }
+
+    private static int compareHashes(long hi1, long lo1, long hi2, long lo2) {
+        int cmp = Long.compareUnsigned(hi1, hi2);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Long.compareUnsigned(lo1, lo2);
+    }
+
+    /**
+     * @return true if the string is a hash as computed by
+     *         {@link BugInstance#getInstanceHash()}: the lowercase hex digits
+     *         of a 128 bit number, without leading zeros
+     */
+    static boolean isInstanceHash(String hash) {
+        int length = hash.length();
+        if (length == 0 || length > 32 || (hash.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = hash.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHigh(String hash) {
+        return parseHex(hash, 0, Math.max(0, hash.length() - 16));
+    }
+
+    private static long parseLow(String hash) {
+        return parseHex(hash, Math.max(0, hash.length() - 16), hash.length());
+    }
+
+    private static long parseHex(String s, int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = (result << 4) | Character.digit(s.charAt(i), 16);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of hashes in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the instance hash in the index?
+     */
+    public boolean contains(String instanceHash) {
+        if (!isInstanceHash(instanceHash)) {
+            return false;
+        }
+        long hi = parseHigh(instanceHash);
+        long lo = parseLow(instanceHash);
+        int bucket = bucketOf(hi, bucketBits);
+        int low = buffer.getInt(HEADER_SIZE + 4 * bucket);
+        int high = buffer.getInt(HEADER_SIZE + 4 * (bucket + 1)) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = hashesStart + mid * HASH_SIZE;
+            int cmp = compareHashes(buffer.getLong(pos), buffer.getLong(pos + 8), hi, lo);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the instance hash at a position of the index.
+     *
+     * @param i
+     *            the position, from 0 to size() - 1
+     */
+    public String get(int i) {
+        int pos = hashesStart + i * HASH_SIZE;
+        byte[] bytes = new byte[HASH_SIZE];
+        for (int j = 0; j < HASH_SIZE; j++) {
+            bytes[j] = buffer.get(pos + j);
+        }
+        return new BigInteger(1, bytes).toString(16);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Table of the strings (class names, method names, signatures, source files,
+ * roles) used by the compactly stored annotations of the bugs of a
+ * collection. Each distinct string is stored once and referenced by its id.
+ *
+ * @see BugInstance#compact(BugAnnotationTable)
+ * @see CompactBugAnnotationList
+ */
+public class BugAnnotationTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+    private final ArrayList<String> strings = new ArrayList<String>();
+
+    /**
+     * @return the id of the string, or -1 for null
+     */
+    synchronized int getId(@CheckForNull String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    synchronized @CheckForNull
+    String getString(int id) {
+        return id < 0 ? null : strings.get(id);
+    }
+
+    /**
+     * @return the number of distinct strings in the table
+     */
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    /**
+     * Encode a list of annotations.
+     */
+    public CompactBugAnnotationList compact(List<? extends BugAnnotation> annotations) {
+        return CompactBugAnnotationList.encode(this, annotations);
+    }
+}
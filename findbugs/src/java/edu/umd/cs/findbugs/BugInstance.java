@@ -23,9 +23,6 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,6 +38,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.CheckForNull;
@@ -123,7 +121,12 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     private int priority;
 
-    private final ArrayList<BugAnnotation> annotationList;
+    /**
+     * The annotations: an ArrayList, or a CompactBugAnnotationList if they are
+     * stored compactly. A single field, so that readers on other threads see
+     * one or the other while the annotations are inflated.
+     */
+    private volatile List<BugAnnotation> annotationList;
 
     private int cachedHashCode;
 
@@ -234,9 +237,12 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
             dup = (BugInstance) super.clone();
 
             // Do deep copying of mutable objects
-            for (int i = 0; i < dup.annotationList.size(); ++i) {
-                dup.annotationList.set(i, (BugAnnotation) dup.annotationList.get(i).clone());
+            List<BugAnnotation> annotations = annotations();
+            ArrayList<BugAnnotation> copy = new ArrayList<BugAnnotation>(annotations.size());
+            for (BugAnnotation annotation : annotations) {
+                copy.add((BugAnnotation) annotation.clone());
             }
+            dup.annotationList = copy;
             dup.propertyListHead = dup.propertyListTail = null;
             for (Iterator<BugProperty> i = propertyIterator(); i.hasNext();) {
                 dup.addProperty((BugProperty) i.next().clone());
@@ -440,6 +446,8 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     /**
      * Get the primary class annotation, which indicates where the bug occurs.
+     * For a compact bug, this is a copy which the bug doesn't keep (see
+     * {@link #compact(BugAnnotationTable)}).
      */
     public ClassAnnotation getPrimaryClass() {
         return findPrimaryAnnotationOfType(ClassAnnotation.class);
@@ -447,6 +455,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     /**
      * Get the primary type annotation, which indicates where the bug occurs.
+     * For a compact bug, this is a copy which the bug doesn't keep.
      */
     @CheckForNull
     public TypeAnnotation getPrimaryType() {
@@ -455,6 +464,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     /**
      * Get the primary method annotation, which indicates where the bug occurs.
+     * For a compact bug, this is a copy which the bug doesn't keep.
      */
     @CheckForNull
     public MethodAnnotation getPrimaryMethod() {
@@ -463,6 +473,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     /**
      * Get the primary field annotation, which indicates where the bug occurs.
+     * For a compact bug, this is a copy which the bug doesn't keep.
      */
     @CheckForNull
     public FieldAnnotation getPrimaryField() {
@@ -493,9 +504,13 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
      */
     @CheckForNull
     private <T extends BugAnnotation> T findPrimaryAnnotationOfType(Class<T> cls) {
+        return findPrimaryAnnotationOfType(annotations(), cls);
+    }
+
+    @CheckForNull
+    private static <T extends BugAnnotation> T findPrimaryAnnotationOfType(List<BugAnnotation> annotations, Class<T> cls) {
         T firstMatch = null;
-        for (Iterator<BugAnnotation> i = annotationIterator(); i.hasNext();) {
-            BugAnnotation annotation = i.next();
+        for (BugAnnotation annotation : annotations) {
             if (cls.isAssignableFrom(annotation.getClass())) {
                 if (annotation.getDescription().endsWith("DEFAULT")) {
                     return cls.cast(annotation);
@@ -507,8 +522,12 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         return firstMatch;
     }
 
+    /**
+     * Get the first local variable annotation. For a compact bug, this is a
+     * copy which the bug doesn't keep.
+     */
     public LocalVariableAnnotation getPrimaryLocalVariableAnnotation() {
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations()) {
             if (annotation instanceof LocalVariableAnnotation) {
                 return (LocalVariableAnnotation) annotation;
             }
@@ -518,14 +537,20 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     /**
      * Get the primary source line annotation. There is guaranteed to be one
-     * (unless some Detector constructed an invalid BugInstance).
+     * (unless some Detector constructed an invalid BugInstance). It may be the
+     * source lines of the primary method, field or class. For a compact bug,
+     * this is a copy which the bug doesn't keep.
      *
      * @return the source line annotation
      */
     @Nonnull
     public SourceLineAnnotation getPrimarySourceLineAnnotation() {
+        return getPrimarySourceLineAnnotation(annotations());
+    }
+
+    private SourceLineAnnotation getPrimarySourceLineAnnotation(List<BugAnnotation> annotations) {
         // Highest priority: return the first top level source line annotation
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations) {
             if (annotation instanceof SourceLineAnnotation
                     && SourceLineAnnotation.DEFAULT_ROLE.equals(annotation.getDescription())
                     && !((SourceLineAnnotation) annotation).isUnknown()) {
@@ -533,20 +558,20 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
             }
         }
 
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations) {
             if (annotation instanceof SourceLineAnnotation && !((SourceLineAnnotation) annotation).isUnknown()) {
                 return (SourceLineAnnotation) annotation;
             }
         }
         // Next: Try primary method, primary field, primary class
         SourceLineAnnotation srcLine;
-        if ((srcLine = inspectPackageMemberSourceLines(getPrimaryMethod())) != null) {
+        if ((srcLine = inspectPackageMemberSourceLines(findPrimaryAnnotationOfType(annotations, MethodAnnotation.class))) != null) {
             return srcLine;
         }
-        if ((srcLine = inspectPackageMemberSourceLines(getPrimaryField())) != null) {
+        if ((srcLine = inspectPackageMemberSourceLines(findPrimaryAnnotationOfType(annotations, FieldAnnotation.class))) != null) {
             return srcLine;
         }
-        if ((srcLine = inspectPackageMemberSourceLines(getPrimaryClass())) != null) {
+        if ((srcLine = inspectPackageMemberSourceLines(findPrimaryAnnotationOfType(annotations, ClassAnnotation.class))) != null) {
             return srcLine;
         }
 
@@ -558,7 +583,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
     public Collection<? extends SourceLineAnnotation> getAnotherInstanceSourceLineAnnotations() {
         // Highest priority: return the first top level source line annotation
         Collection<SourceLineAnnotation> result = new ArrayList<SourceLineAnnotation>();
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations()) {
             if (annotation instanceof SourceLineAnnotation
                     && SourceLineAnnotation.ROLE_ANOTHER_INSTANCE.equals(annotation.getDescription())
                     && !((SourceLineAnnotation) annotation).isUnknown()) {
@@ -577,7 +602,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
     private String getInstanceKeyNew() {
         StringBuilder buf = new StringBuilder(type);
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations()) {
             if (annotation.isSignificant() || annotation instanceof IntAnnotation
                     || annotation instanceof LocalVariableAnnotation) {
                 buf.append(":");
@@ -602,24 +627,89 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
     }
 
     /**
-     * Get an Iterator over all bug annotations.
+     * Get an Iterator over all bug annotations. A compact bug stops being
+     * compact; see {@link #getAnnotationsForReading()}.
      */
     public Iterator<BugAnnotation> annotationIterator() {
-        return annotationList.iterator();
+        return inflatedAnnotations().iterator();
     }
 
     /**
-     * Get an Iterator over all bug annotations.
+     * Get all bug annotations. A compact bug stops being compact; see
+     * {@link #getAnnotationsForReading()}.
      */
     public List<? extends BugAnnotation> getAnnotations() {
+        return inflatedAnnotations();
+    }
+
+    /**
+     * Get all bug annotations, without inflating the annotations of a
+     * compact bug. The list can't be modified, and the annotations of a
+     * compact bug are decoded copies.
+     */
+    public List<BugAnnotation> getAnnotationsForReading() {
+        return Collections.unmodifiableList(annotations());
+    }
+
+    /**
+     * Store the annotations of this bug compactly, with their strings in the
+     * given table. They are decoded again when they are modified or returned
+     * by {@link #getAnnotations()} or {@link #annotationIterator()}; other
+     * methods, like {@link #getPrimaryClass()} or
+     * {@link #getAnnotationsForReading()}, return newly decoded copies which
+     * the bug doesn't keep, so changing them doesn't change the bug.
+     * <p>
+     * So the annotations returned by those methods are the bug's own ones
+     * only while it is not compact. Code which changes an annotation of a bug
+     * that may be compact, as a loaded collection's bugs may be, must get it
+     * from {@link #getAnnotations()}; code which only needs a changed
+     * annotation for itself must change a clone, so that the bug stays the
+     * same either way.
+     *
+     * @param table
+     *            table of strings shared by the bugs of a collection
+     */
+    public void compact(BugAnnotationTable table) {
+        List<BugAnnotation> list = annotationList;
+        if (!(list instanceof CompactBugAnnotationList)) {
+            annotationList = table.compact(list);
+        }
+    }
+
+    /**
+     * @return true if the annotations are stored compactly
+     */
+    public boolean isCompact() {
+        return annotationList instanceof CompactBugAnnotationList;
+    }
+
+    /**
+     * Get the annotations for reading: the annotations of a compact bug are
+     * decoded on access, and not kept.
+     */
+    private List<BugAnnotation> annotations() {
         return annotationList;
     }
 
-    /** Get the first bug annotation with the specified class and role; return null if no
-     * such annotation exists;
+    /**
+     * Get the annotations, decoding them if they are stored compactly.
+     */
+    private List<BugAnnotation> inflatedAnnotations() {
+        List<BugAnnotation> list = annotationList;
+        if (list instanceof CompactBugAnnotationList) {
+            list = ((CompactBugAnnotationList) list).inflate();
+            annotationList = list;
+        }
+        return list;
+    }
+
+    /**
+     * Get the first bug annotation with the specified class and role; return
+     * null if no such annotation exists. For a compact bug, this is a copy
+     * which the bug doesn't keep.
      */
     public @CheckForNull <A extends BugAnnotation> A getAnnotationWithRole(Class<A> c, String role) {
-        for(BugAnnotation a : annotationList) {
+        for(BugAnnotation a : annotations()) {
             if (c.isInstance(a) && Util.nullSafeEquals(role, a.getDescription())) {
                 return c.cast(a);
             }
@@ -1094,7 +1184,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
     }
 
     public void foundInSyntheticMethod() {
-        if (annotationList.size() != 2) {
+        if (annotations().size() != 2) {
             return;
         }
         priority+=2;
@@ -2092,6 +2182,73 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
      * ----------------------------------------------------------------------
      */
 
+    /**
+     * The message patterns of a bug type, shared by its BugInstances.
+     */
+    private static class MessagePatterns {
+        final BugPattern bugPattern;
+
+        final String longDescription;
+
+        final FindBugsMessageFormat message;
+
+        final FindBugsMessageFormat messageWithoutPrefix;
+
+        final FindBugsMessageFormat abridgedMessage;
+
+        MessagePatterns(BugPattern bugPattern, String type) {
+            this.bugPattern = bugPattern;
+            longDescription = bugPattern.getLongDescription().replaceAll("BUG_PATTERN", type);
+            message = FindBugsMessageFormat.forPattern(bugPattern.getAbbrev() + ": " + longDescription);
+            messageWithoutPrefix = FindBugsMessageFormat.forPattern(longDescription);
+            abridgedMessage = FindBugsMessageFormat.forPattern(longDescription.replaceAll(" in \\{1\\}", ""));
+        }
+    }
+
+    /** message patterns by bug type */
+    private static final ConcurrentHashMap<String, MessagePatterns> messagePatterns = new ConcurrentHashMap<String, MessagePatterns>();
+
+    private static final int MESSAGE = 0;
+
+    private static final int MESSAGE_WITHOUT_PREFIX = 1;
+
+    private static final int ABRIDGED_MESSAGE = 2;
+
+    private MessagePatterns getMessagePatterns(BugPattern bugPattern) {
+        MessagePatterns result = messagePatterns.get(type);
+        // The bug pattern changes if the plugins are reloaded
+        if (result == null || result.bugPattern != bugPattern) {
+            result = new MessagePatterns(bugPattern, type);
+            messagePatterns.put(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Format one of the messages of this bug instance.
+     *
+     * @return the message, or null if it could not be formatted
+     */
+    private @CheckForNull
+    String formatMessage(BugPattern bugPattern, int kind) {
+        MessagePatterns patterns = getMessagePatterns(bugPattern);
+        try {
+            BugAnnotation[] args = annotations().toArray(new BugAnnotation[0]);
+            ClassAnnotation primaryClass = getPrimaryClass();
+            switch (kind) {
+            case MESSAGE:
+                return patterns.message.format(args, primaryClass);
+            case MESSAGE_WITHOUT_PREFIX:
+                return patterns.messageWithoutPrefix.format(args, primaryClass);
+            default:
+                return patterns.abridgedMessage.format(args, primaryClass, true);
+            }
+        } catch (RuntimeException e) {
+            AnalysisContext.logError("Error generating bug msg ", e);
+            return null;
+        }
+    }
+
     /**
      * Format a string describing this bug instance.
      *
@@ -2100,36 +2257,24 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
     @Nonnull
     public String getMessageWithoutPrefix() {
         BugPattern bugPattern = getBugPattern();
-        String pattern, shortPattern;
-
-        pattern = getLongDescription();
-        shortPattern = bugPattern.getShortDescription();
-        try {
-            FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
-            return format.format(annotationList.toArray(new BugAnnotation[annotationList.size()]), getPrimaryClass());
-        } catch (RuntimeException e) {
-            AnalysisContext.logError("Error generating bug msg ", e);
-            return shortPattern + " [Error generating customized description]";
+        String result = formatMessage(bugPattern, MESSAGE_WITHOUT_PREFIX);
+        if (result == null) {
+            return bugPattern.getShortDescription() + " [Error generating customized description]";
         }
+        return result;
     }
 
     String getLongDescription() {
-        return getBugPattern().getLongDescription().replaceAll("BUG_PATTERN", type);
+        return getMessagePatterns(getBugPattern()).longDescription;
     }
 
     public String getAbridgedMessage() {
         BugPattern bugPattern = getBugPattern();
-
-        String pattern = getLongDescription().replaceAll(" in \\{1\\}", "");
-        String shortPattern = bugPattern.getShortDescription();
-
-        try {
-            FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
-            return format.format(annotationList.toArray(new BugAnnotation[annotationList.size()]), getPrimaryClass(), true);
-        } catch (RuntimeException e) {
-            AnalysisContext.logError("Error generating bug msg ", e);
-            return shortPattern + " [Error3 generating customized description]";
+        String result = formatMessage(bugPattern, ABRIDGED_MESSAGE);
+        if (result == null) {
+            return bugPattern.getShortDescription() + " [Error3 generating customized description]";
         }
+        return result;
     }
 
     /**
@@ -2139,14 +2284,11 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
      */
     public String getMessage() {
         BugPattern bugPattern = getBugPattern();
-        String pattern = bugPattern.getAbbrev() + ": " + getLongDescription();
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
-        try {
-            return format.format(annotationList.toArray(new BugAnnotation[annotationList.size()]), getPrimaryClass());
-        } catch (RuntimeException e) {
-            AnalysisContext.logError("Error generating bug msg ", e);
+        String result = formatMessage(bugPattern, MESSAGE);
+        if (result == null) {
             return bugPattern.getShortDescription() + " [Error generating customized description]";
         }
+        return result;
     }
 
     /**
@@ -2171,7 +2313,8 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
      */
     @Nonnull
     public BugInstance describe(String description) {
-        annotationList.get(annotationList.size() - 1).setDescription(description);
+        List<BugAnnotation> list = inflatedAnnotations();
+        list.get(list.size() - 1).setDescription(description);
         return this;
     }
 
@@ -2336,27 +2479,36 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
             xmlOutput.closeTag("LongMessage");
         }
 
+        // The annotations of a compact bug are decoded anew on every access;
+        // decode them once, so that the primary ones are found by identity
+        List<BugAnnotation> annotations = annotations();
+        if (annotations instanceof CompactBugAnnotationList) {
+            annotations = new ArrayList<BugAnnotation>(annotations);
+        }
+
         Map<BugAnnotation, Void> primaryAnnotations;
 
         if (addMessages) {
             primaryAnnotations = new IdentityHashMap<BugAnnotation, Void>();
-            primaryAnnotations.put(getPrimarySourceLineAnnotation(), null);
-            primaryAnnotations.put(getPrimaryClass(), null);
-            primaryAnnotations.put(getPrimaryField(), null);
-            primaryAnnotations.put(getPrimaryMethod(), null);
+            primaryAnnotations.put(getPrimarySourceLineAnnotation(annotations), null);
+            primaryAnnotations.put(findPrimaryAnnotationOfType(annotations, ClassAnnotation.class), null);
+            primaryAnnotations.put(findPrimaryAnnotationOfType(annotations, FieldAnnotation.class), null);
+            primaryAnnotations.put(findPrimaryAnnotationOfType(annotations, MethodAnnotation.class), null);
         } else {
             primaryAnnotations = Collections.<BugAnnotation, Void> emptyMap();
         }
 
         boolean foundSourceAnnotation = false;
-        for (BugAnnotation annotation : annotationList) {
+        for (BugAnnotation annotation : annotations) {
             if (annotation instanceof SourceLineAnnotation) {
                 foundSourceAnnotation = true;
             }
             annotation.writeXML(xmlOutput, addMessages, primaryAnnotations.containsKey(annotation));
         }
         if (!foundSourceAnnotation && addMessages) {
-            SourceLineAnnotation synth = getPrimarySourceLineAnnotation();
+            // A clone, since these may be the source lines of the primary
+            // method, which would stay marked as synthetic
+            SourceLineAnnotation synth = (SourceLineAnnotation) getPrimarySourceLineAnnotation(annotations).clone();
             synth.setSynthetic(true);
             synth.writeXML(xmlOutput, addMessages, false);
         }
@@ -2413,7 +2565,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         requireNonNull(annotation, "Missing BugAnnotation!");
 
         // Add to list
-        annotationList.add(annotation);
+        inflatedAnnotations().add(annotation);
 
         // This object is being modified, so the cached hashcode
         // must be invalidated
@@ -2601,9 +2753,8 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
     public int hashCode() {
         if (cachedHashCode == INVALID_HASH_CODE) {
             int hashcode = type.hashCode() + priority;
-            Iterator<BugAnnotation> i = annotationIterator();
-            while (i.hasNext()) {
-                hashcode += i.next().hashCode();
+            for (BugAnnotation annotation : annotations()) {
+                hashcode += annotation.hashCode();
             }
             if (hashcode == INVALID_HASH_CODE) {
                 hashcode = INVALID_HASH_CODE + 1;
@@ -2626,13 +2777,15 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         if (!type.equals(other.type) || priority != other.priority) {
             return false;
         }
-        if (annotationList.size() != other.annotationList.size()) {
+        List<BugAnnotation> annotations = annotations();
+        List<BugAnnotation> otherAnnotations = other.annotations();
+        if (annotations.size() != otherAnnotations.size()) {
             return false;
         }
-        int numAnnotations = annotationList.size();
+        int numAnnotations = annotations.size();
         for (int i = 0; i < numAnnotations; ++i) {
-            BugAnnotation lhs = annotationList.get(i);
-            BugAnnotation rhs = other.annotationList.get(i);
+            BugAnnotation lhs = annotations.get(i);
+            BugAnnotation rhs = otherAnnotations.get(i);
             if (!lhs.equals(rhs)) {
                 return false;
             }
@@ -2654,10 +2807,12 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         }
 
         // Compare BugAnnotations lexicographically
-        int pfxLen = Math.min(annotationList.size(), other.annotationList.size());
+        List<BugAnnotation> annotations = annotations();
+        List<BugAnnotation> otherAnnotations = other.annotations();
+        int pfxLen = Math.min(annotations.size(), otherAnnotations.size());
         for (int i = 0; i < pfxLen; ++i) {
-            BugAnnotation lhs = annotationList.get(i);
-            BugAnnotation rhs = other.annotationList.get(i);
+            BugAnnotation lhs = annotations.get(i);
+            BugAnnotation rhs = otherAnnotations.get(i);
             cmp = lhs.compareTo(rhs);
             if (cmp != 0) {
                 return cmp;
@@ -2666,7 +2821,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
 
         // All elements in prefix were the same,
         // so use number of elements to decide
-        return annotationList.size() - other.annotationList.size();
+        return annotations.size() - otherAnnotations.size();
     }
 
     public void setFirstVersion(long firstVersion) {
@@ -2745,21 +2900,17 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         this.oldInstanceHash = oldInstanceHash;
     }
 
+    /**
+     * Get the MD5 digest, in hex, of the {@link #getInstanceKey() instance
+     * key} of this bug. It is computed once, without building the key.
+     */
     public String getInstanceHash() {
         String hash = instanceHash;
         if (hash != null) {
             return hash;
         }
 
-        MessageDigest digest = Util.getMD5Digest();
-        String key = getInstanceKey();
-        byte[] data;
-        try {
-            data = digest.digest(key.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
-        }
-        hash = new BigInteger(1, data).toString(16);
+        hash = InstanceHash.compute(type, annotations());
         instanceHash = hash;
         return hash;
     }
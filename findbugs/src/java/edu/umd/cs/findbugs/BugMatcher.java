@@ -0,0 +1,192 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Finds the bugs of one version which match bugs of another version, using a
+ * comparator. If the comparator is a {@link MatchKeyComparator}, the bugs are
+ * indexed by their match keys, and only bugs with the same key are compared,
+ * so matching two collections takes near linear time.
+ *
+ * Any other comparator gives no key to index by: all bugs then share a single
+ * bucket, and each lookup compares the bug with every bug added, as a linear
+ * scan of the other version would. The matches are the same either way; only
+ * matching two collections takes quadratic time.
+ *
+ * Bugs with the same key are kept in the order they were added, and matches
+ * are returned in that order.
+ */
+public class BugMatcher {
+
+    private final Comparator<BugInstance> comparator;
+
+    private final @CheckForNull MatchKeyComparator keyComparator;
+
+    private final HashMap<Object, LinkedList<BugInstance>> buckets = new HashMap<Object, LinkedList<BugInstance>>();
+
+    private int size;
+
+    public BugMatcher(Comparator<BugInstance> comparator) {
+        this.comparator = comparator;
+        this.keyComparator = comparator instanceof MatchKeyComparator ? (MatchKeyComparator) comparator : null;
+    }
+
+    private Object getMatchKey(BugInstance bug) {
+        if (keyComparator == null) {
+            // The single bucket of a comparator without match keys
+            return "";
+        }
+        return keyComparator.getMatchKey(bug);
+    }
+
+    /**
+     * Add a bug which later bugs may be matched to.
+     */
+    public void add(BugInstance bug) {
+        Object key = getMatchKey(bug);
+        LinkedList<BugInstance> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new LinkedList<BugInstance>();
+            buckets.put(key, bucket);
+        }
+        bucket.add(bug);
+        size++;
+    }
+
+    /**
+     * Add a bug unless it matches a bug already added.
+     *
+     * @return true if the bug was added, false if it matched
+     */
+    public boolean addIfUnmatched(BugInstance bug) {
+        Object key = getMatchKey(bug);
+        LinkedList<BugInstance> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new LinkedList<BugInstance>();
+            buckets.put(key, bucket);
+        } else if (findMatch(bug, bucket) != null) {
+            return false;
+        }
+        bucket.add(bug);
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the first added bug matching the given one, or null if there is
+     *         none
+     */
+    public @CheckForNull BugInstance findMatch(BugInstance bug) {
+        LinkedList<BugInstance> bucket = buckets.get(getMatchKey(bug));
+        if (bucket == null) {
+            return null;
+        }
+        return findMatch(bug, bucket);
+    }
+
+    private @CheckForNull BugInstance findMatch(BugInstance bug, LinkedList<BugInstance> bucket) {
+        for (BugInstance candidate : bucket) {
+            if (comparator.compare(candidate, bug) == 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the added bugs matching the given one, in the order they were
+     *         added
+     */
+    public List<BugInstance> getMatches(BugInstance bug) {
+        LinkedList<BugInstance> bucket = buckets.get(getMatchKey(bug));
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        List<BugInstance> result = new ArrayList<BugInstance>();
+        for (BugInstance candidate : bucket) {
+            if (comparator.compare(candidate, bug) == 0) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove an added bug, so that it is no longer matched.
+     *
+     * @return true if the bug had been added
+     */
+    public boolean remove(BugInstance bug) {
+        Object key = getMatchKey(bug);
+        LinkedList<BugInstance> bucket = buckets.get(key);
+        if (bucket == null) {
+            return false;
+        }
+        for (Iterator<BugInstance> i = bucket.iterator(); i.hasNext();) {
+            if (i.next() == bug) {
+                i.remove();
+                size--;
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Build the match key of a bug from its parts; a helper for
+     * implementations of {@link MatchKeyComparator}.
+     */
+    public static class KeyBuilder {
+        private final StringBuilder buf = new StringBuilder();
+
+        public KeyBuilder add(@CheckForNull Object part) {
+            if (buf.length() > 0) {
+                buf.append('\u0000');
+            }
+            buf.append(part);
+            return this;
+        }
+
+        public String getKey() {
+            return buf.toString();
+        }
+    }
+}
@@ -38,6 +38,15 @@ public class BytecodeScanningDetector extends DismantleBytecode implements Detec
         classContext.getJavaClass().accept(this);
     }
 
+    /**
+     * Set the ClassContext of the class being visited, for detectors which
+     * are driven by a FusedBytecodeScanner instead of visiting the class
+     * themselves.
+     */
+    void setClassContext(ClassContext classContext) {
+        this.classContext = classContext;
+    }
+
     /**
      * Get the ClassContext of the class currently being visited.
      *
@@ -0,0 +1,262 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * An immutable list of bug annotations stored as an int array. Class, method,
+ * field and source line annotations (the bulk of the annotations of a bug)
+ * are encoded field by field, with their strings replaced by ids in a shared
+ * {@link BugAnnotationTable}; other annotations are kept as objects.
+ *
+ * <p>
+ * {@link #get(int)} decodes a new annotation object on each call, so changes
+ * to the returned annotations are not reflected in the list; use
+ * {@link #inflate()} to get a modifiable list of annotations.
+ * </p>
+ */
+public class CompactBugAnnotationList extends AbstractList<BugAnnotation> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CLASS = 0;
+
+    private static final int METHOD = 1;
+
+    private static final int FIELD = 2;
+
+    private static final int SOURCE_LINE = 3;
+
+    private static final int OTHER = 4;
+
+    private final BugAnnotationTable table;
+
+    /**
+     * data[i], for i less than the number of annotations, is the offset of
+     * the encoding of annotation i
+     */
+    private final int[] data;
+
+    private final @CheckForNull
+    BugAnnotation[] others;
+
+    private CompactBugAnnotationList(BugAnnotationTable table, int[] data, @CheckForNull BugAnnotation[] others) {
+        this.table = table;
+        this.data = data;
+        this.others = others;
+    }
+
+    static CompactBugAnnotationList encode(BugAnnotationTable table, List<? extends BugAnnotation> annotations) {
+        int n = annotations.size();
+        Encoder encoder = new Encoder(table, n);
+        for (int i = 0; i < n; i++) {
+            encoder.data[i] = encoder.size;
+            encoder.add(annotations.get(i));
+        }
+        int[] data = new int[encoder.size];
+        System.arraycopy(encoder.data, 0, data, 0, encoder.size);
+        BugAnnotation[] others = encoder.others.isEmpty() ? null : encoder.others.toArray(new BugAnnotation[encoder.others
+                .size()]);
+        return new CompactBugAnnotationList(table, data, others);
+    }
+
+    @Override
+    public int size() {
+        return data.length == 0 ? 0 : data[0];
+    }
+
+    @Override
+    public BugAnnotation get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return decode(data[index]);
+    }
+
+    /**
+     * @return a modifiable list of newly decoded annotations
+     */
+    public ArrayList<BugAnnotation> inflate() {
+        int n = size();
+        ArrayList<BugAnnotation> result = new ArrayList<BugAnnotation>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(decode(data[i]));
+        }
+        return result;
+    }
+
+    private BugAnnotation decode(int pos) {
+        switch (data[pos]) {
+        case CLASS: {
+            ClassAnnotation a = new ClassAnnotation(string(pos + 1), string(pos + 3));
+            a.description = string(pos + 2);
+            a.sourceLines = decodeOptionalSourceLines(pos + 4);
+            return a;
+        }
+        case METHOD: {
+            MethodAnnotation a = new MethodAnnotation(string(pos + 1), string(pos + 2), string(pos + 3), data[pos + 4] != 0);
+            a.description = string(pos + 5);
+            a.sourceFileName = string(pos + 6);
+            a.sourceLines = decodeOptionalSourceLines(pos + 7);
+            return a;
+        }
+        case FIELD: {
+            FieldAnnotation a = new FieldAnnotation(string(pos + 1), string(pos + 2), string(pos + 3), string(pos + 4),
+                    data[pos + 5] != 0);
+            a.description = string(pos + 6);
+            a.sourceFileName = string(pos + 7);
+            a.sourceLines = decodeOptionalSourceLines(pos + 8);
+            return a;
+        }
+        case SOURCE_LINE:
+            return decodeSourceLines(pos + 1);
+        case OTHER:
+            return others[data[pos + 1]];
+        default:
+            throw new IllegalStateException("Bad annotation encoding " + data[pos]);
+        }
+    }
+
+    private @CheckForNull
+    SourceLineAnnotation decodeOptionalSourceLines(int pos) {
+        return data[pos] == 0 ? null : decodeSourceLines(pos + 1);
+    }
+
+    private SourceLineAnnotation decodeSourceLines(int pos) {
+        SourceLineAnnotation a = new SourceLineAnnotation(string(pos), string(pos + 1), data[pos + 2], data[pos + 3],
+                data[pos + 4], data[pos + 5]);
+        String description = string(pos + 6);
+        if (description != null) {
+            a.setDescription(description);
+        }
+        a.setSynthetic(data[pos + 7] != 0);
+        return a;
+    }
+
+    private String string(int pos) {
+        return table.getString(data[pos]);
+    }
+
+    private static class Encoder {
+        final BugAnnotationTable table;
+
+        int[] data;
+
+        int size;
+
+        final List<BugAnnotation> others = new ArrayList<BugAnnotation>();
+
+        Encoder(BugAnnotationTable table, int numAnnotations) {
+            this.table = table;
+            this.data = new int[numAnnotations + 8 * numAnnotations];
+            this.size = numAnnotations;
+            if (numAnnotations > 0) {
+                // The offset of the first annotation is the number of
+                // annotations
+                data[0] = numAnnotations;
+            }
+        }
+
+        void add(BugAnnotation annotation) {
+            // Only the exact classes are encoded; subclasses may have
+            // additional state
+            Class<?> c = annotation.getClass();
+            if (c == ClassAnnotation.class && isEncodable(((ClassAnnotation) annotation).sourceLines)) {
+                ClassAnnotation a = (ClassAnnotation) annotation;
+                append(CLASS);
+                append(a.getClassName());
+                append(a.getDescription());
+                append(a.getSourceFileName());
+                appendOptional(a.sourceLines);
+            } else if (c == MethodAnnotation.class && isEncodable(((MethodAnnotation) annotation).sourceLines)) {
+                MethodAnnotation a = (MethodAnnotation) annotation;
+                append(METHOD);
+                append(a.getClassName());
+                append(a.getMethodName());
+                append(a.getMethodSignature());
+                append(a.isStatic() ? 1 : 0);
+                append(a.getDescription());
+                append(a.getSourceFileName());
+                appendOptional(a.sourceLines);
+            } else if (c == FieldAnnotation.class && isEncodable(((FieldAnnotation) annotation).sourceLines)) {
+                FieldAnnotation a = (FieldAnnotation) annotation;
+                append(FIELD);
+                append(a.getClassName());
+                append(a.getFieldName());
+                append(a.getFieldSignature());
+                append(a.getFieldSourceSignature());
+                append(a.isStatic() ? 1 : 0);
+                append(a.getDescription());
+                append(a.getSourceFileName());
+                appendOptional(a.sourceLines);
+            } else if (c == SourceLineAnnotation.class) {
+                append(SOURCE_LINE);
+                appendSourceLines((SourceLineAnnotation) annotation);
+            } else {
+                append(OTHER);
+                append(others.size());
+                others.add(annotation);
+            }
+        }
+
+        private static boolean isEncodable(@CheckForNull SourceLineAnnotation sourceLines) {
+            return sourceLines == null || sourceLines.getClass() == SourceLineAnnotation.class;
+        }
+
+        private void appendOptional(@CheckForNull SourceLineAnnotation sourceLines) {
+            if (sourceLines == null) {
+                append(0);
+            } else {
+                append(1);
+                appendSourceLines(sourceLines);
+            }
+        }
+
+        private void appendSourceLines(SourceLineAnnotation a) {
+            append(a.getClassName());
+            append(a.getSourceFile());
+            append(a.getStartLine());
+            append(a.getEndLine());
+            append(a.getStartBytecode());
+            append(a.getEndBytecode());
+            append(a.getDescription());
+            append(a.isSynthetic() ? 1 : 0);
+        }
+
+        private void append(@CheckForNull String s) {
+            append(table.getId(s));
+        }
+
+        private void append(int value) {
+            if (size == data.length) {
+                int[] newData = new int[data.length * 2 + 16];
+                System.arraycopy(data, 0, newData, 0, size);
+                data = newData;
+            }
+            data[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+/**
+ * A NonReportingDetector which may be applied to the classes of the first
+ * pass concurrently, when the findbugs.firstPass.threads property is greater
+ * than one.
+ *
+ * A detector can implement this interface if:
+ * <ul>
+ * <li>the state it keeps between classes can be split into one instance per
+ * worker thread (each worker creates its own instance and finishPass() is
+ * called on each of them on the analysis thread),
+ * <li>all databases it updates are safe for concurrent use, and
+ * <li>it is not the earlier detector of a WithinPass ordering constraint,
+ * since concurrent detectors are applied to all classes after the other
+ * detectors of the pass.
+ * </ul>
+ *
+ * @see FindBugs2
+ */
+public interface ConcurrentFirstPassDetector extends NonReportingDetector {
+
+}
@@ -0,0 +1,230 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.apache.bcel.classfile.ClassFormatException;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.MissingClassException;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+
+/**
+ * Applies the {@link ConcurrentFirstPassDetector}s of the first analysis pass
+ * to a collection of classes using several worker threads.
+ *
+ * Each worker installs its own analysis cache (see
+ * {@link AnalysisCache#createWorkerCache(BugReporter)}), shares the
+ * DescriptorFactory of the analysis thread and creates its own instances of
+ * the detectors. The per-worker detector instances are returned by
+ * {@link #run(Collection)} so that the caller can call finishPass() on each of
+ * them on the analysis thread. As in the sequential loop of FindBugs2, only
+ * {@link FirstPassDetector}s are applied to classes that are too big to
+ * analyze.
+ */
+class ConcurrentFirstPassRunner {
+    private final List<DetectorFactory> factoryList;
+
+    private final AnalysisCache analysisCache;
+
+    private final BugReporter bugReporter;
+
+    private final int numThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param factoryList
+     *            factories of the detectors to apply, in pass order
+     * @param analysisCache
+     *            the analysis cache of the analysis thread
+     * @param bugReporter
+     *            the BugReporter of the analysis
+     * @param numThreads
+     *            number of worker threads to use
+     */
+    ConcurrentFirstPassRunner(List<DetectorFactory> factoryList, AnalysisCache analysisCache, BugReporter bugReporter,
+            int numThreads) {
+        this.factoryList = factoryList;
+        this.analysisCache = analysisCache;
+        this.bugReporter = new SynchronizedBugReporter(bugReporter);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Apply the detectors to all given classes.
+     *
+     * @param classCollection
+     *            the classes to analyze
+     * @return the detector instances created by the workers
+     * @throws InterruptedException
+     *             if the analysis thread is interrupted
+     */
+    List<Detector2> run(Collection<ClassDescriptor> classCollection) throws InterruptedException {
+        final ClassDescriptor[] classes = classCollection.toArray(new ClassDescriptor[classCollection.size()]);
+        final AtomicInteger next = new AtomicInteger();
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        final List<Detector2> allDetectors = new ArrayList<Detector2>();
+
+        List<Thread> workers = new ArrayList<Thread>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            Thread worker = new Thread("FindBugs first pass worker " + i) {
+                @Override
+                public void run() {
+                    DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                    Global.setAnalysisCacheForCurrentThread(analysisCache.createWorkerCache(bugReporter));
+                    try {
+                        Detector2[] detectorList = createDetectors();
+                        synchronized (allDetectors) {
+                            for (Detector2 detector : detectorList) {
+                                allDetectors.add(detector);
+                            }
+                        }
+                        int index;
+                        while ((index = next.getAndIncrement()) < classes.length) {
+                            if (isInterrupted()) {
+                                return;
+                            }
+                            analyzeClass(classes[index], detectorList);
+                        }
+                    } finally {
+                        Global.removeAnalysisCacheForCurrentThread();
+                        DescriptorFactory.clearInstance();
+                    }
+                }
+            };
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            throw e;
+        }
+        return allDetectors;
+    }
+
+    private Detector2[] createDetectors() {
+        Detector2[] detectorList = new Detector2[factoryList.size()];
+        int count = 0;
+        for (DetectorFactory factory : factoryList) {
+            detectorList[count++] = factory.createDetector2(bugReporter);
+        }
+        return detectorList;
+    }
+
+    private void analyzeClass(ClassDescriptor classDescriptor, Detector2[] detectorList) {
+        // Like the sequential loop, only apply FirstPassDetectors to huge
+        // classes
+        boolean isHuge = AnalysisContext.currentAnalysisContext().isTooBig(classDescriptor);
+        for (Detector2 detector : detectorList) {
+            if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+                continue;
+            }
+            try {
+                detector.visitClass(classDescriptor);
+            } catch (ClassFormatException e) {
+                logRecoverableException(classDescriptor, detector, e);
+            } catch (MissingClassException e) {
+                bugReporter.reportMissingClass(e.getClassDescriptor());
+            } catch (CheckedAnalysisException e) {
+                logRecoverableException(classDescriptor, detector, e);
+            } catch (RuntimeException e) {
+                logRecoverableException(classDescriptor, detector, e);
+            }
+        }
+    }
+
+    private void logRecoverableException(ClassDescriptor classDescriptor, Detector2 detector, Throwable e) {
+        bugReporter.logError(
+                "Exception analyzing " + classDescriptor.toDottedClassName() + " using detector "
+                        + detector.getDetectorClassName(), e);
+    }
+
+    /**
+     * BugReporter which serializes all calls reaching the reporter of the
+     * analysis thread.
+     */
+    static class SynchronizedBugReporter extends DelegatingBugReporter {
+        SynchronizedBugReporter(BugReporter delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void reportBug(@Nonnull BugInstance bugInstance) {
+            synchronized (getDelegate()) {
+                super.reportBug(bugInstance);
+            }
+        }
+
+        @Override
+        public void logError(String message) {
+            synchronized (getDelegate()) {
+                super.logError(message);
+            }
+        }
+
+        @Override
+        public void logError(String message, Throwable e) {
+            synchronized (getDelegate()) {
+                super.logError(message, e);
+            }
+        }
+
+        @Override
+        public void reportMissingClass(ClassNotFoundException ex) {
+            synchronized (getDelegate()) {
+                super.reportMissingClass(ex);
+            }
+        }
+
+        @Override
+        public void reportMissingClass(ClassDescriptor classDescriptor) {
+            synchronized (getDelegate()) {
+                super.reportMissingClass(classDescriptor);
+            }
+        }
+
+        @Override
+        public void reportSkippedAnalysis(MethodDescriptor method) {
+            synchronized (getDelegate()) {
+                super.reportSkippedAnalysis(method);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Set;
 import org.objectweb.asm.ClassReader;
 
 import edu.umd.cs.findbugs.ba.ClassNotFoundExceptionParser;
+import edu.umd.cs.findbugs.ba.SourceFileIndex;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.IClassFactory;
@@ -238,15 +239,14 @@ public class DiscoverSourceDirectories {
 
         // Find all directories underneath the root source directory
         progress.startRecursiveDirectorySearch();
-        RecursiveFileSearch rfs = new RecursiveFileSearch(rootSourceDirectory, new FileFilter() {
-            @Override
-            public boolean accept(File pathname) {
-                return pathname.isDirectory();
-            }
-        });
-        rfs.search();
+        SourceFileIndex index = null;
+        List<String> candidateSourceDirList = null;
+        if (SourceFileIndex.ENABLED) {
+            index = SourceFileIndex.forDirectory(dir);
+        } else {
+            candidateSourceDirList = findCandidateSourceDirs();
+        }
         progress.doneRecursiveDirectorySearch();
-        List<String> candidateSourceDirList = rfs.getDirectoriesScanned();
 
         // Build the classpath
         IClassPath classPath = null;
@@ -265,7 +265,11 @@ public class DiscoverSourceDirectories {
             if (DEBUG) {
                 System.out.println("looking for " + fullyQualifiedSourceFileNameList.size() + " files");
             }
-            findSourceDirectoriesForAllSourceFiles(fullyQualifiedSourceFileNameList, candidateSourceDirList);
+            if (index != null) {
+                findSourceDirectoriesForAllSourceFiles(fullyQualifiedSourceFileNameList, index);
+            } else {
+                findSourceDirectoriesForAllSourceFiles(fullyQualifiedSourceFileNameList, candidateSourceDirList);
+            }
         } finally {
             if (classPath != null) {
                 classPath.close();
@@ -273,6 +277,17 @@ public class DiscoverSourceDirectories {
         }
     }
 
+    private List<String> findCandidateSourceDirs() throws InterruptedException {
+        RecursiveFileSearch rfs = new RecursiveFileSearch(rootSourceDirectory, new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isDirectory();
+            }
+        });
+        rfs.search();
+        return rfs.getDirectoriesScanned();
+    }
+
     private IClassPath buildClassPath(IClassPathBuilder builder, IClassFactory factory) throws InterruptedException, IOException,
     CheckedAnalysisException {
 
@@ -389,6 +404,49 @@ public class DiscoverSourceDirectories {
         }
     }
 
+    /**
+     * Find the source directories with the index of the root source
+     * directory. Where a source file is found in several directories, the one
+     * nearest to the root is used, as the recursive directory search would
+     * find it first.
+     */
+    private void findSourceDirectoriesForAllSourceFiles(List<String> fullyQualifiedSourceFileNameList, SourceFileIndex index) {
+
+        Set<String> sourceDirsFound = new HashSet<String>();
+
+        for (String fullyQualifiedSourceFileName : fullyQualifiedSourceFileNameList) {
+            String best = null;
+            for (String dir : index.findDirectoriesContaining(fullyQualifiedSourceFileName)) {
+                if (best == null || depth(dir) < depth(best) || depth(dir) == depth(best) && dir.compareTo(best) < 0) {
+                    best = dir;
+                }
+            }
+            if (DEBUG) {
+                System.out.println("Looking up " + fullyQualifiedSourceFileName + "..." + (best != null ? "FOUND" : "not found"));
+            }
+            if (best != null && sourceDirsFound.add(best)) {
+                String path = index.getRootPath();
+                if (best.length() > 0) {
+                    path += File.separatorChar + best.replace('/', File.separatorChar);
+                }
+                discoveredSourceDirectoryList.add(path);
+            }
+        }
+    }
+
+    private static int depth(String relativePath) {
+        if (relativePath.length() == 0) {
+            return 0;
+        }
+        int depth = 1;
+        for (int i = 0; i < relativePath.length(); i++) {
+            if (relativePath.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
     /**
      * Just for testing.
      */
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
@@ -34,23 +35,45 @@ public class ExcludingHashesBugReporter extends DelegatingBugReporter {
 
     Set<String> excludedHashes = new HashSet<String>();
 
+    /** the baseline, if it is a {@link BaselineHashIndex} file */
+    private final BaselineHashIndex excludedHashIndex;
+
     /**
      * @param delegate
+     * @param baseline
+     *            a bug collection, or a {@link BaselineHashIndex} written
+     *            from one
      * @throws DocumentException
      * @throws IOException
      */
     public ExcludingHashesBugReporter(BugReporter delegate, String baseline) throws IOException, DocumentException {
         super(delegate);
-        addToExcludedInstanceHashes(excludedHashes, baseline);
+        File baselineFile = new File(baseline);
+        if (BaselineHashIndex.isIndexFile(baselineFile)) {
+            excludedHashIndex = BaselineHashIndex.open(baselineFile);
+        } else {
+            excludedHashIndex = null;
+            addToExcludedInstanceHashes(excludedHashes, baseline);
+        }
     }
 
     /**
      * @param baseline
+     *            a bug collection, or a {@link BaselineHashIndex} written
+     *            from one
      * @throws IOException
      * @throws DocumentException
      */
     public static void addToExcludedInstanceHashes(Set<String> instanceHashesToExclude, String baseline) throws IOException,
     DocumentException {
+        File baselineFile = new File(baseline);
+        if (BaselineHashIndex.isIndexFile(baselineFile)) {
+            BaselineHashIndex index = BaselineHashIndex.open(baselineFile);
+            for (int i = 0; i < index.size(); i++) {
+                instanceHashesToExclude.add(index.get(i));
+            }
+            return;
+        }
         Project project = new Project();
         BugCollection origCollection;
         origCollection = new SortedBugCollection(project);
@@ -63,7 +86,9 @@ public class ExcludingHashesBugReporter extends DelegatingBugReporter {
     @Override
     public void reportBug(@Nonnull BugInstance bugInstance) {
         String instanceHash = bugInstance.getInstanceHash();
-        if (!excludedHashes.contains(instanceHash)) {
+        boolean excluded = excludedHashIndex != null ? excludedHashIndex.contains(instanceHash) : excludedHashes
+                .contains(instanceHash);
+        if (!excluded) {
             getDelegate().reportBug(bugInstance);
         }
     }
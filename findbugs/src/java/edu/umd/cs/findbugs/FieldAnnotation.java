@@ -21,6 +21,8 @@ package edu.umd.cs.findbugs;
 
 import java.io.IOException;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
@@ -212,6 +214,14 @@ public class FieldAnnotation extends PackageMemberAnnotation {
         return fieldSig;
     }
 
+    /**
+     * Get the generic source signature of the field, if known.
+     */
+    @CheckForNull
+    String getFieldSourceSignature() {
+        return fieldSourceSig;
+    }
+
     /**
      * Return whether or not the field is static.
      */
@@ -36,6 +36,7 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.AnalysisFeatures;
 import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 import edu.umd.cs.findbugs.config.CommandLine.HelpRequestedException;
+import edu.umd.cs.findbugs.filter.CompiledFilter;
 import edu.umd.cs.findbugs.filter.Filter;
 import edu.umd.cs.findbugs.filter.FilterException;
 import edu.umd.cs.findbugs.internalAnnotations.StaticConstant;
@@ -134,6 +135,9 @@ public abstract class FindBugs {
      */
     public static final boolean DEBUG = Boolean.getBoolean("findbugs.debug");
 
+    /** Match include and exclude filters with a CompiledFilter */
+    public static final boolean COMPILED_FILTERS = SystemProperties.getBoolean("findbugs.filter.compiled", true);
+
     /**
      * FindBugs home directory.
      */
@@ -513,7 +517,24 @@ public abstract class FindBugs {
      */
     public static BugReporter configureFilter(BugReporter bugReporter, String filterFileName, boolean include)
             throws IOException, FilterException {
-        Filter filter = new Filter(filterFileName);
+        return configureFilter(bugReporter, new Filter(filterFileName), include);
+    }
+
+    /**
+     * Configure the (bug instance) Filter for the given DelegatingBugReporter.
+     *
+     * @param bugReporter
+     *            a DelegatingBugReporter
+     * @param filter
+     *            the filter
+     * @param include
+     *            true if the filter is an include filter, false if it's an
+     *            exclude filter
+     */
+    public static BugReporter configureFilter(BugReporter bugReporter, Filter filter, boolean include) {
+        if (COMPILED_FILTERS) {
+            return new FilterBugReporter(bugReporter, new CompiledFilter(filter), include);
+        }
         return new FilterBugReporter(bugReporter, filter, include);
 
     }
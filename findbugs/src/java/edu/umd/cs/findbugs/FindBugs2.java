@@ -62,15 +62,20 @@ import edu.umd.cs.findbugs.classfile.IClassPath;
 import edu.umd.cs.findbugs.classfile.IClassPathBuilder;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
 import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.classfile.MissingClassException;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
 import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
 import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 import edu.umd.cs.findbugs.config.UserPreferences;
 import edu.umd.cs.findbugs.detect.NoteSuppressedWarnings;
+import edu.umd.cs.findbugs.filter.Filter;
 import edu.umd.cs.findbugs.filter.FilterException;
+import edu.umd.cs.findbugs.filter.FilterExclusions;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.log.YourKitController;
 import edu.umd.cs.findbugs.plan.AnalysisPass;
+import edu.umd.cs.findbugs.plan.ClassSchedule;
 import edu.umd.cs.findbugs.plan.ExecutionPlan;
 import edu.umd.cs.findbugs.plan.OrderingConstraintException;
 import edu.umd.cs.findbugs.util.ClassName;
@@ -93,6 +98,40 @@ public class FindBugs2 implements IFindBugsEngine {
 
     private static final boolean SCREEN_FIRST_PASS_CLASSES = SystemProperties.getBoolean("findbugs.screenFirstPass");
 
+    /**
+     * Number of threads used to apply {@link ConcurrentFirstPassDetector}s in
+     * the non-reporting first pass.
+     */
+    private static final int FIRST_PASS_THREADS = SystemProperties.getInt("findbugs.firstPass.threads", 1);
+
+    /**
+     * Order the classes of reporting passes by the strongly connected
+     * components of the class call graph (see {@link ClassSchedule}) instead
+     * of the plain topological sort.
+     */
+    private static final boolean CALL_GRAPH_SCHEDULE = SystemProperties.getBoolean("findbugs.callGraphSchedule");
+
+    /**
+     * Apply the {@link FusableBytecodeDetector}s of each pass through a single
+     * {@link FusedBytecodeScanner}, which decodes each method once for all of
+     * them.
+     */
+    private static final boolean FUSED_SCAN = SystemProperties.getBoolean("findbugs.fusedScan");
+
+    /**
+     * Skip the classes and detectors for which the exclude filters exclude
+     * every warning (see {@link FilterExclusions}).
+     */
+    private static final boolean SCREEN_FILTER_EXCLUSIONS = SystemProperties.getBoolean("findbugs.filter.prescreen");
+
+    /**
+     * Deliver the reported bugs to the bug reporters on a reporting thread
+     * (see {@link AsyncBugReporter}).
+     */
+    private static final boolean ASYNC_REPORTING = SystemProperties.getBoolean("findbugs.reporting.async");
+
+    private static final int ASYNC_REPORTING_QUEUE_SIZE = SystemProperties.getInt("findbugs.reporting.queueSize", 1000);
+
     public static final String PROP_FINDBUGS_HOST_APP = "findbugs.hostApp";
     public static final String PROP_FINDBUGS_HOST_APP_VERSION = "findbugs.hostAppVersion";
 
@@ -126,6 +165,8 @@ public class FindBugs2 implements IFindBugsEngine {
 
     private IClassScreener classScreener;
 
+    private final FilterExclusions filterExclusions = new FilterExclusions();
+
     private final AnalysisOptions analysisOptions = new AnalysisOptions(true);
 
     /**
@@ -249,6 +290,25 @@ public class FindBugs2 implements IFindBugsEngine {
                         }
                     }
                 }
+                if (SCREEN_FILTER_EXCLUSIONS && filterExclusions.excludesClasses()) {
+                    final IClassScreener screener = classScreener;
+                    classScreener = new IClassScreener() {
+                        @Override
+                        public boolean matches(String fileName) {
+                            if (!screener.matches(fileName)) {
+                                return false;
+                            }
+                            String className = fileName.endsWith(".class") ? fileName.substring(0, fileName.length() - 6)
+                                    : fileName;
+                            return !filterExclusions.excludesClass(ClassName.toDottedClassName(className));
+                        }
+
+                        @Override
+                        public boolean vacuous() {
+                            return false;
+                        }
+                    };
+                }
                 if (!classScreener.vacuous()) {
                     bugReporter = new DelegatingBugReporter(bugReporter) {
 
@@ -268,6 +328,17 @@ public class FindBugs2 implements IFindBugsEngine {
                     bugReporter = new FilterBugReporter(bugReporter, m, false);
                 }
 
+                if (ASYNC_REPORTING) {
+                    bugReporter = new AsyncBugReporter(bugReporter, ASYNC_REPORTING_QUEUE_SIZE);
+                    // The reporters behind it are not thread-safe, so errors
+                    // logged through the analysis cache and AnalysisContext
+                    // must be queued too
+                    IAnalysisCache analysisCache = Global.getAnalysisCache();
+                    if (analysisCache instanceof AnalysisCache) {
+                        ((AnalysisCache) analysisCache).setErrorLogger(bugReporter);
+                    }
+                }
+
                 if (appClassList.size() == 0) {
                     Map<String, ICodeBaseEntry> codebase = classPath.getApplicationCodebaseEntries();
                     if (analysisOptions.noClassOk) {
@@ -371,7 +442,11 @@ public class FindBugs2 implements IFindBugsEngine {
 
     @Override
     public void addFilter(String filterFileName, boolean include) throws IOException, FilterException {
-        bugReporter = FindBugs.configureFilter(bugReporter, filterFileName, include);
+        Filter filter = new Filter(filterFileName);
+        if (!include) {
+            filterExclusions.addExcludeFilter(filter);
+        }
+        bugReporter = FindBugs.configureFilter(bugReporter, filter, include);
     }
 
     @Override
@@ -903,7 +978,9 @@ public class FindBugs2 implements IFindBugsEngine {
 
             @Override
             public boolean choose(DetectorFactory factory) {
-                boolean result = FindBugs.isDetectorEnabled(FindBugs2.this, factory, rankThreshold) || forcedEnabled.contains(factory);
+                boolean result = FindBugs.isDetectorEnabled(FindBugs2.this, factory, rankThreshold)
+                        && !(SCREEN_FILTER_EXCLUSIONS && filterExclusions.excludesDetector(factory))
+                        || forcedEnabled.contains(factory);
                 if (ExecutionPlan.DEBUG) {
                     System.out.printf("  %6s %s %n", result, factory.getShortName());
                 }
@@ -992,6 +1069,34 @@ public class FindBugs2 implements IFindBugsEngine {
                 // Instantiate the detectors
                 Detector2[] detectorList = pass.instantiateDetector2sInPass(bugReporter);
 
+                // Detectors of the first pass that can run concurrently are
+                // applied by worker threads after the other detectors, unless
+                // another detector of the pass must see each class after them
+                List<DetectorFactory> concurrentFactoryList = Collections.emptyList();
+                if (isNonReportingFirstPass && FIRST_PASS_THREADS > 1 && Global.getAnalysisCache() instanceof AnalysisCache) {
+                    concurrentFactoryList = new ArrayList<DetectorFactory>();
+                    List<Detector2> sequentialDetectorList = new ArrayList<Detector2>();
+                    int i = 0;
+                    for (Iterator<DetectorFactory> j = pass.iterator(); j.hasNext(); i++) {
+                        DetectorFactory detectorFactory = j.next();
+                        if (detectorFactory.isDetectorClassSubtypeOf(ConcurrentFirstPassDetector.class)
+                                && !executionPlan.isEarlierWithinPass(detectorFactory)) {
+                            concurrentFactoryList.add(detectorFactory);
+                        } else {
+                            sequentialDetectorList.add(detectorList[i]);
+                        }
+                    }
+                    detectorList = sequentialDetectorList.toArray(new Detector2[sequentialDetectorList.size()]);
+                }
+                if (FUSED_SCAN) {
+                    int numDetectors = detectorList.length;
+                    detectorList = FusedBytecodeScanner.fuse(detectorList, bugReporter);
+                    if (PROGRESS && detectorList.length < numDetectors) {
+                        System.out.printf("Pass %d: %d detectors share one bytecode scan%n", passCount,
+                                numDetectors - detectorList.length + 1);
+                    }
+                }
+
                 // If there are multiple passes, then on the first pass,
                 // we apply detectors to all classes referenced by the
                 // application classes.
@@ -1021,7 +1126,15 @@ public class FindBugs2 implements IFindBugsEngine {
                         }
                     };
 
-                    classCollection = sortByCallGraph(classCollection, outEdges);
+                    if (CALL_GRAPH_SCHEDULE) {
+                        ClassSchedule schedule = new ClassSchedule(classCollection, outEdges);
+                        if (PROGRESS) {
+                            System.out.println("Using " + schedule);
+                        }
+                        classCollection = schedule.getEvaluationOrder();
+                    } else {
+                        classCollection = sortByCallGraph(classCollection, outEdges);
+                    }
                 }
                 if (LIST_ORDER) {
                     System.out.println("Analysis order:");
@@ -1033,6 +1146,12 @@ public class FindBugs2 implements IFindBugsEngine {
                 currentAnalysisContext.updateDatabases(passCount);
 
                 progress.startAnalysis(classCollection.size());
+                if (PROGRESS && Global.getAnalysisCache() instanceof AnalysisCache) {
+                    ((AnalysisCache) Global.getAnalysisCache()).resetClassAnalysisStatistics();
+                }
+                if (PROGRESS) {
+                    OpcodeStack.JumpInfoFactory.resetStatistics();
+                }
                 int count = 0;
                 Global.getAnalysisCache().purgeAllMethodAnalysis();
                 Global.getAnalysisCache().purgeClassAnalysis(FBClassReader.class);
@@ -1119,6 +1238,21 @@ public class FindBugs2 implements IFindBugsEngine {
                     }
                 }
 
+                if (!concurrentFactoryList.isEmpty()) {
+                    analyzeConcurrently(classCollection, concurrentFactoryList);
+                }
+                if (PROGRESS && Global.getAnalysisCache() instanceof AnalysisCache) {
+                    AnalysisCache analysisCache = (AnalysisCache) Global.getAnalysisCache();
+                    long hits = analysisCache.getClassAnalysisHits();
+                    long total = hits + analysisCache.getClassAnalysisMisses();
+                    System.out.printf("Pass %d: class analysis cache hit ratio %.1f%% (%d/%d)%n", passCount,
+                            total == 0 ? 0.0 : 100.0 * hits / total, hits, total);
+                }
+                if (PROGRESS) {
+                    System.out.printf("Pass %d: jump info iterated for %d methods (%d extra passes)%n", passCount,
+                            OpcodeStack.JumpInfoFactory.getMethodsIterated(), OpcodeStack.JumpInfoFactory.getExtraIterations());
+                }
+
                 if (!passIterator.hasNext()) {
                     yourkitController.captureMemorySnapshot();
                 }
@@ -1134,7 +1268,7 @@ public class FindBugs2 implements IFindBugsEngine {
 
 
         } finally {
-
+            reportDegradedMethods();
             bugReporter.finish();
             bugReporter.reportQueuedErrors();
             profiler.end(this.getClass());
@@ -1145,6 +1279,57 @@ public class FindBugs2 implements IFindBugsEngine {
 
     }
 
+    /**
+     * Record the methods which exceeded their analysis budget in the project
+     * stats.
+     */
+    private void reportDegradedMethods() {
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        if (analysisContext == null) {
+            return;
+        }
+        ProjectStats projectStats = bugReporter.getProjectStats();
+        for (MethodDescriptor method : analysisContext.getAnalysisBudget().getDegradedMethods()) {
+            projectStats.addDegradedMethod(method.getClassDescriptor().getDottedClassName() + "." + method.getName()
+                    + method.getSignature());
+        }
+        if (PROGRESS && !projectStats.getDegradedMethods().isEmpty()) {
+            System.out.println(projectStats.getDegradedMethods().size() + " methods exceeded their analysis budget");
+        }
+    }
+
+    /**
+     * Apply the detectors created by the given factories to the classes of
+     * the first pass, using {@link #FIRST_PASS_THREADS} worker threads, and
+     * call finishPass() on all detector instances created by the workers.
+     *
+     * @param classCollection
+     *            the classes of the first pass
+     * @param factoryList
+     *            factories of {@link ConcurrentFirstPassDetector}s
+     */
+    private void analyzeConcurrently(Collection<ClassDescriptor> classCollection, List<DetectorFactory> factoryList)
+            throws InterruptedException {
+        Collection<ClassDescriptor> classesToAnalyze = classCollection;
+        if (SCREEN_FIRST_PASS_CLASSES) {
+            classesToAnalyze = new ArrayList<ClassDescriptor>();
+            for (ClassDescriptor classDescriptor : classCollection) {
+                if (classScreener.matches(classDescriptor.toResourceName())) {
+                    classesToAnalyze.add(classDescriptor);
+                }
+            }
+        }
+        if (PROGRESS) {
+            System.out.printf("Applying %d detectors to %d classes using %d threads%n", factoryList.size(),
+                    classesToAnalyze.size(), FIRST_PASS_THREADS);
+        }
+        ConcurrentFirstPassRunner runner = new ConcurrentFirstPassRunner(factoryList,
+                (AnalysisCache) Global.getAnalysisCache(), bugReporter, FIRST_PASS_THREADS);
+        for (Detector2 detector : runner.run(classesToAnalyze)) {
+            detector.finishPass();
+        }
+    }
+
     /**
      * Notify all IClassObservers that we are visiting given class.
      *
@@ -19,6 +19,9 @@
 
 package edu.umd.cs.findbugs;
 
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Format the message for a BugInstance. This class works in much the same way
  * as <code>java.text.MessageFormat</code>; however, each placeholder may have
@@ -36,13 +39,44 @@ package edu.umd.cs.findbugs;
  * empty (default) key. The field annotation at position 2 is formatted using
  * the "fullField" key, which uses the long format for the field rather than the
  * usual "class.fieldname" format.
+ * <p>
+ * The pattern is parsed the first time it is used. Use
+ * {@link #forPattern(String)} to share the parsed pattern of the message
+ * patterns of bug patterns and annotation roles.
  *
  * @author David Hovemeyer
  * @see BugInstance
  */
 public class FindBugsMessageFormat {
+    /** maximum number of patterns kept by {@link #forPattern(String)} */
+    private static final int MAX_SHARED_FORMATS = 10000;
+
+    private static final ConcurrentHashMap<String, FindBugsMessageFormat> sharedFormats = new ConcurrentHashMap<String, FindBugsMessageFormat>();
+
     private final String pattern;
 
+    /**
+     * The literal text (String) and placeholders (Placeholder) of the pattern,
+     * or null if not parsed yet
+     */
+    private volatile Object[] segments;
+
+    private static class Placeholder {
+        /** text of the placeholder before the dot */
+        final String fieldText;
+
+        final int fieldNum;
+
+        /** key given in the pattern, or null if none */
+        final String key;
+
+        Placeholder(String fieldText, int fieldNum, String key) {
+            this.fieldText = fieldText;
+            this.fieldNum = fieldNum;
+            this.key = key;
+        }
+    }
+
     /**
      * Constructor.
      *
@@ -53,32 +87,51 @@ public class FindBugsMessageFormat {
         this.pattern = pattern;
     }
 
-    public String format(BugAnnotation[] args, ClassAnnotation primaryClass) {
-        return format(args, primaryClass, false);
-    }
-
     /**
-     * Format the message using the given array of BugAnnotations as arguments
-     * to bind to the placeholders in the pattern string.
+     * Get a FindBugsMessageFormat for a pattern, sharing the parsed pattern
+     * with the other users of the same pattern. Meant for the patterns of the
+     * message bundles, of which there is a bounded number.
      *
-     * @param args
-     *            the BugAnnotations used as arguments
-     * @param primaryClass
-     *            TODO
-     * @return the formatted message
+     * @param pattern
+     *            the pattern for the message
+     * @return the FindBugsMessageFormat
      */
-    public String format(BugAnnotation[] args, ClassAnnotation primaryClass, boolean abridgedMessages) {
+    public static FindBugsMessageFormat forPattern(String pattern) {
+        FindBugsMessageFormat format = sharedFormats.get(pattern);
+        if (format == null) {
+            format = new FindBugsMessageFormat(pattern);
+            if (sharedFormats.size() < MAX_SHARED_FORMATS) {
+                FindBugsMessageFormat existing = sharedFormats.putIfAbsent(pattern, format);
+                if (existing != null) {
+                    format = existing;
+                }
+            }
+        }
+        return format;
+    }
+
+    private Object[] getSegments() {
+        Object[] result = segments;
+        if (result == null) {
+            result = segments = parse();
+        }
+        return result;
+    }
+
+    private Object[] parse() {
+        ArrayList<Object> result = new ArrayList<Object>();
         String pat = pattern;
-        StringBuilder result = new StringBuilder();
 
         while (pat.length() > 0) {
             int subst = pat.indexOf('{');
             if (subst < 0) {
-                result.append(pat);
+                result.add(pat);
                 break;
             }
 
-            result.append(pat.substring(0, subst));
+            if (subst > 0) {
+                result.add(pat.substring(0, subst));
+            }
             pat = pat.substring(subst + 1);
 
             int end = pat.indexOf('}');
@@ -89,12 +142,10 @@ public class FindBugsMessageFormat {
             String substPat = pat.substring(0, end);
 
             int dot = substPat.indexOf('.');
-            String key = "";
+            String key = null;
             if (dot >= 0) {
                 key = substPat.substring(dot + 1);
                 substPat = substPat.substring(0, dot);
-            } else if (abridgedMessages && primaryClass != null) {
-                key = "givenClass";
             }
 
             int fieldNum;
@@ -103,6 +154,42 @@ public class FindBugsMessageFormat {
             } catch (NumberFormatException e) {
                 throw new IllegalArgumentException("Bad integer value " + substPat + " in " + pattern);
             }
+            result.add(new Placeholder(substPat, fieldNum, key));
+
+            pat = pat.substring(end + 1);
+        }
+
+        return result.toArray();
+    }
+
+    public String format(BugAnnotation[] args, ClassAnnotation primaryClass) {
+        return format(args, primaryClass, false);
+    }
+
+    /**
+     * Format the message using the given array of BugAnnotations as arguments
+     * to bind to the placeholders in the pattern string.
+     *
+     * @param args
+     *            the BugAnnotations used as arguments
+     * @param primaryClass
+     *            TODO
+     * @return the formatted message
+     */
+    public String format(BugAnnotation[] args, ClassAnnotation primaryClass, boolean abridgedMessages) {
+        StringBuilder result = new StringBuilder();
+
+        for (Object segment : getSegments()) {
+            if (segment instanceof String) {
+                result.append((String) segment);
+                continue;
+            }
+            Placeholder placeholder = (Placeholder) segment;
+            String key = placeholder.key;
+            if (key == null) {
+                key = abridgedMessages && primaryClass != null ? "givenClass" : "";
+            }
+            int fieldNum = placeholder.fieldNum;
 
             // System.out.println("fn: " + fieldNum);
             if (fieldNum < 0) {
@@ -117,8 +204,8 @@ public class FindBugsMessageFormat {
                 } catch (IllegalArgumentException iae) {
                     if (SystemProperties.ASSERTIONS_ENABLED) {
 
-                        throw new IllegalArgumentException("Problem processing " + pattern + " format " + substPat + " for "
-                                + field.getClass().getSimpleName(), iae);
+                        throw new IllegalArgumentException("Problem processing " + pattern + " format " + placeholder.fieldText
+                                + " for " + field.getClass().getSimpleName(), iae);
                     }
                     // unknown key -- not unprecedented when reading xml
                     // generated by older versions of findbugs
@@ -132,11 +219,8 @@ public class FindBugsMessageFormat {
                 }
                 result.append(formatted);
             }
-
-            pat = pat.substring(end + 1);
         }
 
         return result.toString();
     }
 }
-
@@ -0,0 +1,46 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+/**
+ * A {@link BytecodeScanningDetector} (or
+ * {@link edu.umd.cs.findbugs.bcel.OpcodeStackDetector}) which may be fed its
+ * instructions by a {@link FusedBytecodeScanner}, together with the other
+ * such detectors of the same pass, instead of decoding every method of the
+ * class itself.
+ *
+ * A detector can implement this interface if:
+ * <ul>
+ * <li>it doesn't override visitClassContext, visitJavaClass, doVisitMethod,
+ * getMethodVisitOrder, visitCode or visit(Code), and doesn't visit methods in
+ * call order,
+ * <li>if it is an OpcodeStackDetector, it only reads the stack (the stack is
+ * shared with the other detectors), doesn't override afterOpcode and doesn't
+ * use custom user values or custom jump info, and
+ * <li>it is not the later detector of a WithinPass ordering constraint, since
+ * all fused detectors are applied at the position of the first of them.
+ * </ul>
+ * Detectors which implement this interface but override one of the methods
+ * above are applied on their own, see
+ * {@link FusedBytecodeScanner#isFusable(Detector)}.
+ */
+public interface FusableBytecodeDetector extends Detector {
+
+}
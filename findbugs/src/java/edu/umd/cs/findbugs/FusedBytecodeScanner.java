@@ -0,0 +1,500 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
+import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
+
+/**
+ * Applies several {@link FusableBytecodeDetector}s to a class in a single
+ * scan: each method is decoded once, one OpcodeStack is maintained for all of
+ * them, and every callback (visit, sawOpcode, sawBranchTo, visitAfter, ...)
+ * is forwarded to each detector in turn, in the order the detector would
+ * have seen it when visiting the class by itself.
+ *
+ * An exception thrown by one of the detectors is logged and stops that
+ * detector, but not the others, for the rest of the class.
+ */
+public class FusedBytecodeScanner extends OpcodeStackDetector {
+
+    private static class Participant {
+        final BytecodeScanningDetector detector;
+
+        final @CheckForNull
+        OpcodeStackDetector stackDetector;
+
+        boolean failed;
+
+        Participant(BytecodeScanningDetector detector) {
+            this.detector = detector;
+            this.stackDetector = detector instanceof OpcodeStackDetector ? (OpcodeStackDetector) detector : null;
+        }
+    }
+
+    private final BugReporter bugReporter;
+
+    private final Participant[] participants;
+
+    private final ArrayList<Participant> classParticipants = new ArrayList<Participant>();
+
+    private final ArrayList<Participant> methodParticipants = new ArrayList<Participant>();
+
+    private final ArrayList<Participant> codeParticipants = new ArrayList<Participant>();
+
+    /**
+     * Constructor.
+     *
+     * @param bugReporter
+     *            the BugReporter, used to log exceptions of the detectors
+     * @param detectors
+     *            the detectors to apply, all of which must be fusable
+     */
+    public FusedBytecodeScanner(BugReporter bugReporter, List<BytecodeScanningDetector> detectors) {
+        this.bugReporter = bugReporter;
+        this.participants = new Participant[detectors.size()];
+        for (int i = 0; i < participants.length; i++) {
+            BytecodeScanningDetector detector = detectors.get(i);
+            if (!isFusable(detector)) {
+                throw new IllegalArgumentException(detector.getClass().getName() + " can't be fused");
+            }
+            participants[i] = new Participant(detector);
+        }
+    }
+
+    /**
+     * Replace the fusable detectors of a pass by a single FusedBytecodeScanner,
+     * placed at the position of the first of them.
+     *
+     * @param detectorList
+     *            the detectors of the pass
+     * @param bugReporter
+     *            the BugReporter
+     * @return the detectors to apply instead; detectorList itself if less than
+     *         two detectors are fusable
+     */
+    public static Detector2[] fuse(Detector2[] detectorList, BugReporter bugReporter) {
+        List<BytecodeScanningDetector> fusable = new ArrayList<BytecodeScanningDetector>();
+        boolean[] fused = new boolean[detectorList.length];
+        int first = -1;
+        for (int i = 0; i < detectorList.length; i++) {
+            if (detectorList[i] instanceof DetectorToDetector2Adapter) {
+                Detector detector = ((DetectorToDetector2Adapter) detectorList[i]).getDetector();
+                if (isFusable(detector)) {
+                    fusable.add((BytecodeScanningDetector) detector);
+                    fused[i] = true;
+                    if (first < 0) {
+                        first = i;
+                    }
+                }
+            }
+        }
+        if (fusable.size() < 2) {
+            return detectorList;
+        }
+
+        List<Detector2> result = new ArrayList<Detector2>();
+        for (int i = 0; i < detectorList.length; i++) {
+            if (i == first) {
+                result.add(new DetectorToDetector2Adapter(new FusedBytecodeScanner(bugReporter, fusable)));
+            } else if (!fused[i]) {
+                result.add(detectorList[i]);
+            }
+        }
+        return result.toArray(new Detector2[result.size()]);
+    }
+
+    /**
+     * Check whether a detector may be applied by a FusedBytecodeScanner, i.e.,
+     * whether it implements {@link FusableBytecodeDetector} and doesn't
+     * override any of the visitor methods the scanner calls in its place.
+     * In particular, detectors which override visitCode(Code) or visit(Code)
+     * are never fused: the scanner only forwards the start and end of each
+     * Code attribute and its instructions, so the override would not be
+     * called.
+     *
+     * @param detector
+     *            a detector
+     * @return true if the detector can be fused, false if not
+     */
+    public static boolean isFusable(Detector detector) {
+        if (!(detector instanceof FusableBytecodeDetector) || !(detector instanceof BytecodeScanningDetector)) {
+            return false;
+        }
+        Class<?> c = detector.getClass();
+        if (!isDeclaredBy(c, BytecodeScanningDetector.class, "visitClassContext", ClassContext.class)
+                || !isDeclaredBy(c, PreorderVisitor.class, "visitJavaClass", JavaClass.class)
+                || !isDeclaredBy(c, PreorderVisitor.class, "getMethodVisitOrder", JavaClass.class)
+                || !isDeclaredBy(c, PreorderVisitor.class, "doVisitMethod", Method.class)
+                || !isDeclaredBy(c, DismantleBytecode.class, "visit", Code.class)) {
+            return false;
+        }
+        if (detector instanceof OpcodeStackDetector) {
+            OpcodeStackDetector stackDetector = (OpcodeStackDetector) detector;
+            return !(stackDetector instanceof OpcodeStackDetector.WithCustomJumpInfo) && !stackDetector.isUsingCustomUserValue()
+                    && isDeclaredBy(c, OpcodeStackDetector.class, "visitCode", Code.class)
+                    && isDeclaredBy(c, OpcodeStackDetector.class, "afterOpcode", int.class);
+        }
+        return isDeclaredBy(c, PreorderVisitor.class, "visitCode", Code.class);
+    }
+
+    /**
+     * @return true if the most specific declaration of the given method in
+     *         class c (or its superclasses) is in declaringClass
+     */
+    private static boolean isDeclaredBy(Class<?> c, Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+        for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+            try {
+                k.getDeclaredMethod(name, parameterTypes);
+                return k == declaringClass;
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+        }
+        return false;
+    }
+
+    private void fail(Participant p, RuntimeException e) {
+        p.failed = true;
+        bugReporter.logError("Exception analyzing " + getDottedClassName() + " using detector "
+                + p.detector.getClass().getName(), e);
+    }
+
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        for (Participant p : participants) {
+            p.failed = false;
+            p.detector.setClassContext(classContext);
+        }
+        super.visitClassContext(classContext);
+    }
+
+    @Override
+    public void visitJavaClass(JavaClass obj) {
+        setupVisitorForClass(obj);
+        classParticipants.clear();
+        for (Participant p : participants) {
+            try {
+                if (p.detector.startVisitingClass(obj)) {
+                    classParticipants.add(p);
+                }
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+        if (classParticipants.isEmpty()) {
+            return;
+        }
+        for (Method m : obj.getMethods()) {
+            doVisitMethod(m);
+        }
+        for (Participant p : classParticipants) {
+            if (p.failed) {
+                continue;
+            }
+            try {
+                p.detector.finishVisitingClass(obj);
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+    }
+
+    @Override
+    public void doVisitMethod(Method method) {
+        methodParticipants.clear();
+        for (Participant p : classParticipants) {
+            if (p.failed) {
+                continue;
+            }
+            try {
+                p.detector.startVisitingMethod(method);
+                methodParticipants.add(p);
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+        if (methodParticipants.isEmpty()) {
+            return;
+        }
+        try {
+            super.doVisitMethod(method);
+        } finally {
+            for (Participant p : methodParticipants) {
+                if (p.failed) {
+                    p.detector.abortVisitingMethod();
+                    continue;
+                }
+                try {
+                    p.detector.finishVisitingMethod(method);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        codeParticipants.clear();
+        for (Participant p : methodParticipants) {
+            if (p.failed) {
+                continue;
+            }
+            try {
+                if (p.stackDetector == null || p.stackDetector.shouldVisitCode(obj)) {
+                    codeParticipants.add(p);
+                }
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+        return !codeParticipants.isEmpty();
+    }
+
+    @Override
+    public void visit(Code obj) {
+        for (Participant p : codeParticipants) {
+            if (p.stackDetector != null) {
+                p.stackDetector.setSharedStack(stack);
+            }
+            try {
+                p.detector.startVisitingCode(obj);
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+        try {
+            super.visit(obj);
+        } finally {
+            for (Participant p : codeParticipants) {
+                if (!p.failed) {
+                    try {
+                        p.detector.finishVisitingCode(obj);
+                    } catch (RuntimeException e) {
+                        fail(p, e);
+                    }
+                }
+                if (p.stackDetector != null) {
+                    p.stackDetector.setSharedStack(null);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean beforeOpcode(int seen) {
+        super.beforeOpcode(seen);
+        // each detector decides for itself whether to see opcodes
+        // when the stack is TOP
+        return true;
+    }
+
+    @Override
+    public void sawOpcode(int seen) {
+        for (Participant p : codeParticipants) {
+            if (p.failed) {
+                continue;
+            }
+            BytecodeScanningDetector detector = p.detector;
+            try {
+                detector.copyInstructionFrom(this);
+                if (detector.beforeOpcode(seen)) {
+                    detector.sawOpcode(seen);
+                }
+                detector.afterOpcode(seen);
+            } catch (RuntimeException e) {
+                fail(p, e);
+            }
+        }
+    }
+
+    @Override
+    public void sawBranchTo(int targetPC) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawBranchTo(targetPC);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawRegister(int r) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawRegister(r);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawInt(int seen) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawInt(seen);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawLong(long seen) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawLong(seen);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawFloat(float seen) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawFloat(seen);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawDouble(double seen) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawDouble(seen);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawString(String seen) {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawString(seen);
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawField() {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawField();
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawMethod() {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawMethod();
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawIMethod() {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawIMethod();
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawClass() {
+        for (Participant p : codeParticipants) {
+            if (!p.failed) {
+                try {
+                    p.detector.sawClass();
+                } catch (RuntimeException e) {
+                    fail(p, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void report() {
+        for (Participant p : participants) {
+            p.detector.report();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("FusedBytecodeScanner[");
+        for (int i = 0; i < participants.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(participants[i].detector.getClass().getSimpleName());
+        }
+        return buf.append("]").toString();
+    }
+}
@@ -42,7 +42,7 @@ import edu.umd.cs.findbugs.model.ClassNameRewriter;
  * @see edu.umd.cs.findbugs.VersionInsensitiveBugComparator
  * @author David Hovemeyer
  */
-public class FuzzyBugComparator implements WarningComparator {
+public class FuzzyBugComparator implements WarningComparator, MatchKeyComparator {
     private static final boolean DEBUG = false;
 
     // Don't use hashes for now. Still ironing out issues there.
@@ -158,8 +158,8 @@ public class FuzzyBugComparator implements WarningComparator {
 
         // Scan through bug annotations, comparing fuzzily if possible
 
-        Iterator<BugAnnotation> lhsIter = new FilteringBugAnnotationIterator(lhs.annotationIterator());
-        Iterator<BugAnnotation> rhsIter = new FilteringBugAnnotationIterator(rhs.annotationIterator());
+        Iterator<BugAnnotation> lhsIter = new FilteringBugAnnotationIterator(lhs.getAnnotationsForReading().iterator());
+        Iterator<BugAnnotation> rhsIter = new FilteringBugAnnotationIterator(rhs.getAnnotationsForReading().iterator());
 
         while (lhsIter.hasNext() && rhsIter.hasNext()) {
             BugAnnotation lhsAnnotation = lhsIter.next();
@@ -209,6 +209,30 @@ public class FuzzyBugComparator implements WarningComparator {
         }
     }
 
+    /**
+     * The match key is made of the bug abbreviation and the class of each
+     * significant annotation, with the class names of class, method and
+     * source line annotations; other annotations are compared directly, and
+     * are left to the comparator.
+     */
+    @Override
+    public Object getMatchKey(BugInstance bug) {
+        BugMatcher.KeyBuilder key = new BugMatcher.KeyBuilder().add(bug.getBugPattern().getAbbrev());
+        for (Iterator<BugAnnotation> i = new FilteringBugAnnotationIterator(bug.getAnnotationsForReading().iterator()); i.hasNext();) {
+            BugAnnotation annotation = i.next();
+            key.add(annotation.getClass().getName());
+            if (annotation.getClass() == ClassAnnotation.class) {
+                key.add(rewriteClassName(((ClassAnnotation) annotation).getClassName()));
+            } else if (annotation.getClass() == MethodAnnotation.class) {
+                MethodAnnotation method = (MethodAnnotation) annotation;
+                key.add(method.getClassName()).add(method.getMethodName()).add(method.getMethodSignature());
+            } else if (annotation.getClass() == SourceLineAnnotation.class) {
+                key.add(rewriteClassName(((SourceLineAnnotation) annotation).getClassName()));
+            }
+        }
+        return key.getKey();
+    }
+
     /*
      * @param type
      * @return the code of the Bug
@@ -0,0 +1,271 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.umd.cs.findbugs.ba.SignatureConverter;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * Computes the instance hash of a bug: the MD5 digest, in hex, of the UTF-8
+ * bytes of {@link BugInstance#getInstanceKey()}. The parts of the key are
+ * encoded straight into a digest kept by each thread, rather than
+ * concatenated into the key first; for the common annotation classes, the
+ * hash formats of the annotations are not built either.
+ */
+class InstanceHash {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<InstanceHash> hashers = new ThreadLocal<InstanceHash>() {
+        @Override
+        protected InstanceHash initialValue() {
+            return new InstanceHash();
+        }
+    };
+
+    /** number of bugs hashed by a task of {@link #computeAll} */
+    private static final int BATCH_SIZE = 1024;
+
+    private final MessageDigest digest = Util.getMD5Digest();
+
+    private final byte[] buf = new byte[1024];
+
+    private final char[] decimal = new char[11];
+
+    private int length;
+
+    private InstanceHash() {
+    }
+
+    /**
+     * Compute the instance hash of a bug with the given type and annotations.
+     */
+    static String compute(String type, List<? extends BugAnnotation> annotations) {
+        InstanceHash hasher = hashers.get();
+        // Drop whatever an earlier computation left when it threw
+        hasher.length = 0;
+        hasher.digest.reset();
+        hasher.update(type);
+        for (BugAnnotation annotation : annotations) {
+            if (annotation.isSignificant() || annotation instanceof IntAnnotation
+                    || annotation instanceof LocalVariableAnnotation) {
+                hasher.update(':');
+                hasher.updateHashFormat(annotation);
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Compute the instance hashes of the given bugs which don't have one yet,
+     * using the given number of threads.
+     */
+    static void computeAll(Collection<BugInstance> bugs, int threads) {
+        final BugInstance[] array = bugs.toArray(new BugInstance[bugs.size()]);
+        if (threads <= 1 || array.length <= BATCH_SIZE) {
+            for (BugInstance bug : array) {
+                bug.getInstanceHash();
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Instance hash computation");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int start = 0; start < array.length; start += BATCH_SIZE) {
+                final int from = start;
+                final int to = Math.min(start + BATCH_SIZE, array.length);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = from; i < to; i++) {
+                            array[i].getInstanceHash();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing instance hashes", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Feed annotation.format("hash", null) to the digest.
+     */
+    private void updateHashFormat(BugAnnotation annotation) {
+        Class<? extends BugAnnotation> c = annotation.getClass();
+        if (c == ClassAnnotation.class) {
+            update(((ClassAnnotation) annotation).getClassName());
+        } else if (c == MethodAnnotation.class) {
+            MethodAnnotation m = (MethodAnnotation) annotation;
+            update(m.getClassName());
+            update('.');
+            update(m.getMethodName());
+            update('(');
+            SignatureConverter converter = new SignatureConverter(m.getMethodSignature());
+            if (converter.getFirst() != '(') {
+                throw new IllegalStateException("bad method signature " + m.getMethodSignature());
+            }
+            converter.skip();
+            boolean needsComma = false;
+            while (converter.getFirst() != ')') {
+                if (needsComma) {
+                    update(',');
+                }
+                update(converter.parseNext());
+                needsComma = true;
+            }
+            update(')');
+        } else if (c == FieldAnnotation.class) {
+            FieldAnnotation f = (FieldAnnotation) annotation;
+            update(f.getClassName());
+            update('.');
+            update(f.getFieldName());
+        } else if (c == IntAnnotation.class) {
+            if (annotation.isSignificant()) {
+                updateDecimal(((IntAnnotation) annotation).getValue());
+            }
+        } else if (c == LocalVariableAnnotation.class) {
+            LocalVariableAnnotation lv = (LocalVariableAnnotation) annotation;
+            update(lv.getRegister() < 0 ? "??" : lv.getName());
+        } else {
+            update(annotation.format("hash", null));
+        }
+    }
+
+    private void updateDecimal(int value) {
+        if (value == Integer.MIN_VALUE) {
+            update(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int i = decimal.length;
+        do {
+            decimal[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (; i < decimal.length; i++) {
+            put((byte) decimal[i]);
+        }
+    }
+
+    /**
+     * Feed the UTF-8 encoding of a string to the digest, as
+     * String.getBytes("UTF-8") encodes it.
+     */
+    private void update(String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                put((byte) ch);
+            } else if (ch < 0x800) {
+                put((byte) (0xc0 | (ch >> 6)));
+                put((byte) (0x80 | (ch & 0x3f)));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(ch, s.charAt(++i));
+                put((byte) (0xf0 | (cp >> 18)));
+                put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                put((byte) (0x80 | (cp & 0x3f)));
+            } else if (Character.isSurrogate(ch)) {
+                // Unpaired surrogates are replaced, as the String encoder does
+                put((byte) '?');
+            } else {
+                put((byte) (0xe0 | (ch >> 12)));
+                put((byte) (0x80 | ((ch >> 6) & 0x3f)));
+                put((byte) (0x80 | (ch & 0x3f)));
+            }
+        }
+    }
+
+    private void update(char ch) {
+        put((byte) ch);
+    }
+
+    private void put(byte b) {
+        if (length == buf.length) {
+            digest.update(buf, 0, length);
+            length = 0;
+        }
+        buf[length++] = b;
+    }
+
+    /**
+     * @return the digest in hex, without leading zeros, as
+     *         BigInteger.toString(16) formats it
+     */
+    private String finish() {
+        digest.update(buf, 0, length);
+        length = 0;
+        byte[] data = digest.digest();
+        char[] chars = new char[data.length * 2];
+        int n = 0;
+        for (byte b : data) {
+            int hi = (b >> 4) & 0xf;
+            int lo = b & 0xf;
+            if (n > 0 || hi != 0) {
+                chars[n++] = HEX_DIGITS[hi];
+            }
+            if (n > 0 || lo != 0) {
+                chars[n++] = HEX_DIGITS[lo];
+            }
+        }
+        if (n == 0) {
+            return "0";
+        }
+        return new String(chars, 0, n);
+    }
+}
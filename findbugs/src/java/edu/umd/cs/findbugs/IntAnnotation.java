@@ -137,7 +137,7 @@ public class IntAnnotation implements BugAnnotation {
 
     @Override
     public void setDescription(String description) {
-        this.description = description;
+        this.description = description.intern();
     }
 
     @Override
@@ -170,7 +170,7 @@ public class IntAnnotation implements BugAnnotation {
     @Override
     public String toString() {
         String pattern = I18N.instance().getAnnotationDescription(description);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, null);
     }
 
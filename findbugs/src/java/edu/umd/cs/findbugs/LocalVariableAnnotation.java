@@ -266,7 +266,7 @@ public class LocalVariableAnnotation implements BugAnnotation {
     @Override
     public String toString() {
         String pattern = I18N.instance().getAnnotationDescription(description);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, null);
     }
 
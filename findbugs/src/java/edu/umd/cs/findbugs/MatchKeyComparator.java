@@ -0,0 +1,44 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.Comparator;
+
+/**
+ * A comparator of BugInstances which can also compute a match key for a
+ * BugInstance, so that bugs can be matched with hash lookups instead of
+ * ordered comparisons (see {@link BugMatcher}).
+ *
+ * Two bugs which the comparator considers equal must have equal match keys.
+ * Bugs with equal match keys need not be equal, so the key may leave out
+ * whatever the comparator compares approximately.
+ */
+public interface MatchKeyComparator extends Comparator<BugInstance> {
+
+    /**
+     * Get the match key of a bug.
+     *
+     * @param bug
+     *            a BugInstance
+     * @return the match key, which must implement equals and hashCode
+     */
+    public Object getMatchKey(BugInstance bug);
+
+}
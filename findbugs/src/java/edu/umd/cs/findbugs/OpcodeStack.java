@@ -26,11 +26,12 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -66,6 +67,7 @@ import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.bcel.BCELUtil;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
@@ -76,6 +78,7 @@ import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.StaticConstant;
 import edu.umd.cs.findbugs.util.ClassName;
+import edu.umd.cs.findbugs.util.IntHashMap;
 import edu.umd.cs.findbugs.util.Util;
 import edu.umd.cs.findbugs.visitclass.Constants2;
 import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
@@ -131,7 +134,13 @@ public class OpcodeStack implements Constants2 {
 
     private List<Item> lvValues;
 
-    private final List<Integer> lastUpdate;
+    /**
+     * pc of the last store to each register, indexed by register; only the
+     * first numLastUpdates entries are valid
+     */
+    private int[] lastUpdate = new int[16];
+
+    private int numLastUpdates;
 
     private boolean top;
 
@@ -161,9 +170,9 @@ public class OpcodeStack implements Constants2 {
 
     private boolean jumpInfoChangedByNewTarget;
 
-    private Map<Integer, List<Item>> jumpEntries = new HashMap<Integer, List<Item>>();
+    private IntHashMap<List<Item>> jumpEntries = new IntHashMap<List<Item>>();
 
-    private Map<Integer, List<Item>> jumpStackEntries = new HashMap<Integer, List<Item>>();
+    private IntHashMap<List<Item>> jumpStackEntries = new IntHashMap<List<Item>>();
 
     private BitSet jumpEntryLocations = new BitSet();
 
@@ -1081,7 +1090,6 @@ public class OpcodeStack implements Constants2 {
     public OpcodeStack() {
         stack = new ArrayList<Item>();
         lvValues = new ArrayList<Item>();
-        lastUpdate = new ArrayList<Integer>();
     }
 
     public boolean hasIncomingBranches(int pc) {
@@ -1138,12 +1146,12 @@ public class OpcodeStack implements Constants2 {
 
         List<Item> jumpEntry = null;
         if (jumpEntryLocations.get(dbc.getPC())) {
-            jumpEntry = jumpEntries.get(Integer.valueOf(dbc.getPC()));
+            jumpEntry = jumpEntries.get(dbc.getPC());
         }
         boolean wasReachOnlyByBranch = isReachOnlyByBranch();
         if (jumpEntry != null) {
             setReachOnlyByBranch(false);
-            List<Item> jumpStackEntry = jumpStackEntries.get(Integer.valueOf(dbc.getPC()));
+            List<Item> jumpStackEntry = jumpStackEntries.get(dbc.getPC());
 
             if (DEBUG2) {
                 if (wasReachOnlyByBranch) {
@@ -1163,9 +1171,9 @@ public class OpcodeStack implements Constants2 {
 
             }
             if (isTop()) {
-                lvValues = new ArrayList<Item>(jumpEntry);
+                copyInto(lvValues, jumpEntry);
                 if (jumpStackEntry != null) {
-                    stack = new ArrayList<Item>(jumpStackEntry);
+                    copyInto(stack, jumpStackEntry);
                 } else {
                     stack.clear();
                 }
@@ -1174,10 +1182,10 @@ public class OpcodeStack implements Constants2 {
             }
             if (isReachOnlyByBranch()) {
                 setTop(false);
-                lvValues = new ArrayList<Item>(jumpEntry);
+                copyInto(lvValues, jumpEntry);
                 if (!stackUpdated) {
                     if (jumpStackEntry != null) {
-                        stack = new ArrayList<Item>(jumpStackEntry);
+                        copyInto(stack, jumpStackEntry);
                     } else {
                         stack.clear();
                     }
@@ -1224,22 +1232,36 @@ public class OpcodeStack implements Constants2 {
 
     }
 
+    /**
+     * Replace the contents of a stack or local variable list with the values
+     * recorded at a jump target, reusing the list rather than allocating a
+     * new one. The recorded list stays owned by the jump entry tables.
+     */
+    private static void copyInto(List<Item> dest, List<Item> src) {
+        dest.clear();
+        dest.addAll(src);
+    }
+
     private void setLastUpdate(int reg, int pc) {
-        while (lastUpdate.size() <= reg) {
-            lastUpdate.add(Integer.valueOf(0));
+        if (reg >= numLastUpdates) {
+            if (reg >= lastUpdate.length) {
+                lastUpdate = Arrays.copyOf(lastUpdate, Math.max(reg + 1, 2 * lastUpdate.length));
+            }
+            Arrays.fill(lastUpdate, numLastUpdates, reg, 0);
+            numLastUpdates = reg + 1;
         }
-        lastUpdate.set(reg, Integer.valueOf(pc));
+        lastUpdate[reg] = pc;
     }
 
     public int getLastUpdate(int reg) {
-        if (lastUpdate.size() <= reg) {
+        if (numLastUpdates <= reg) {
             return 0;
         }
-        return lastUpdate.get(reg).intValue();
+        return lastUpdate[reg];
     }
 
     public int getNumLastUpdates() {
-        return lastUpdate.size();
+        return numLastUpdates;
     }
 
     public void sawOpcode(DismantleBytecode dbc, int seen) {
@@ -2769,13 +2791,13 @@ public class OpcodeStack implements Constants2 {
     }
 
     public static class JumpInfo {
-        final Map<Integer, List<Item>> jumpEntries;
+        final IntHashMap<List<Item>> jumpEntries;
 
-        final Map<Integer, List<Item>> jumpStackEntries;
+        final IntHashMap<List<Item>> jumpStackEntries;
 
         final BitSet jumpEntryLocations;
 
-        JumpInfo(Map<Integer, List<Item>> jumpEntries, Map<Integer, List<Item>> jumpStackEntries, BitSet jumpEntryLocations) {
+        JumpInfo(IntHashMap<List<Item>> jumpEntries, IntHashMap<List<Item>> jumpStackEntries, BitSet jumpEntryLocations) {
             this.jumpEntries = jumpEntries;
             this.jumpStackEntries = jumpStackEntries;
             this.jumpEntryLocations = jumpEntryLocations;
@@ -2789,6 +2811,35 @@ public class OpcodeStack implements Constants2 {
 
     public static class JumpInfoFactory extends edu.umd.cs.findbugs.classfile.engine.bcel.AnalysisFactory<JumpInfo> {
 
+        private static final AtomicInteger methodsIterated = new AtomicInteger();
+
+        private static final AtomicInteger extraIterations = new AtomicInteger();
+
+        /**
+         * @return number of methods whose jump info needed more than one pass
+         *         over the bytecode, since the last call to
+         *         {@link #resetStatistics()}
+         */
+        public static int getMethodsIterated() {
+            return methodsIterated.get();
+        }
+
+        /**
+         * @return total number of passes beyond the first, over all methods,
+         *         since the last call to {@link #resetStatistics()}
+         */
+        public static int getExtraIterations() {
+            return extraIterations.get();
+        }
+
+        /**
+         * Reset the method and pass counts.
+         */
+        public static void resetStatistics() {
+            methodsIterated.set(0);
+            extraIterations.set(0);
+        }
+
         public JumpInfoFactory() {
             super("Jump info for opcode stack", JumpInfo.class);
         }
@@ -2861,6 +2912,7 @@ public class OpcodeStack implements Constants2 {
             MethodInfo xMethod = (MethodInfo) createXMethod;
 
             int iteration = 1;
+            int passes = 0;
             OpcodeStack myStack = branchAnalysis.stack;
             /*
             if (false) {
@@ -2875,6 +2927,7 @@ public class OpcodeStack implements Constants2 {
                 }
                 // myStack.resetForMethodEntry0(ClassName.toSlashedClassName(jclass.getClassName()), method);
                 branchAnalysis.doVisitMethod(method);
+                passes++;
                 if (xMethod.hasBackBranch() != myStack.backwardsBranch && !myStack.encountedTop) {
                     AnalysisContext.logError(
                             String.format("For %s, mismatch on existence of backedge: %s for precomputation, %s for bytecode analysis",
@@ -2896,6 +2949,10 @@ public class OpcodeStack implements Constants2 {
                 AnalysisContext.logError("Iterative jump info converged after " + iteration + " iterations in " + xMethod + ", size " + method.getCode().getLength());
 
             }
+            if (passes > 1) {
+                methodsIterated.incrementAndGet();
+                extraIterations.addAndGet(passes - 1);
+            }
             return new JumpInfo(myStack.jumpEntries, myStack.jumpStackEntries, myStack.jumpEntryLocations);
         }
     }
@@ -2912,20 +2969,20 @@ public class OpcodeStack implements Constants2 {
         if (from >= target) {
             backwardsBranch = true;
         }
-        List<Item> atTarget = jumpEntries.get(Integer.valueOf(target));
+        List<Item> atTarget = jumpEntries.get(target);
         if (atTarget == null) {
             setJumpInfoChangedByBackwardBranch("new target", from, target);
             setJumpInfoChangedByNewTarget();
-            jumpEntries.put(Integer.valueOf(target), new ArrayList<Item>(lvValues));
+            jumpEntries.put(target, new ArrayList<Item>(lvValues));
             jumpEntryLocations.set(target);
             if (stack.size() > 0) {
-                jumpStackEntries.put(Integer.valueOf(target), new ArrayList<Item>(stack));
+                jumpStackEntries.put(target, new ArrayList<Item>(stack));
             }
         } else {
             if (mergeLists(atTarget, lvValues, false)) {
                 setJumpInfoChangedByBackwardBranch("locals", from, target);
             }
-            List<Item> stackAtTarget = jumpStackEntries.get(Integer.valueOf(target));
+            List<Item> stackAtTarget = jumpStackEntries.get(target);
             if (stack.size() > 0 && stackAtTarget != null) {
                 if (mergeLists(stackAtTarget, stack, false)) {
                     setJumpInfoChangedByBackwardBranch("stack", from, target);
@@ -2943,8 +3000,8 @@ public class OpcodeStack implements Constants2 {
         if (info == null) {
             return;
         }
-        jumpEntries = new HashMap<Integer, List<Item>>(info.jumpEntries);
-        jumpStackEntries = new HashMap<Integer, List<Item>>(info.jumpStackEntries);
+        jumpEntries = new IntHashMap<List<Item>>(info.jumpEntries);
+        jumpStackEntries = new IntHashMap<List<Item>>(info.jumpStackEntries);
         jumpEntryLocations = (BitSet) info.jumpEntryLocations.clone();
     }
 
@@ -2955,7 +3012,7 @@ public class OpcodeStack implements Constants2 {
         jumpEntryLocations.clear();
         encountedTop = false;
         backwardsBranch = false;
-        lastUpdate.clear();
+        numLastUpdates = 0;
         convertJumpToOneZeroState = convertJumpToZeroOneState = 0;
         zeroOneComing = -1;
         registerTestedFoundToBeNonnegative = -1;
@@ -2997,15 +3054,18 @@ public class OpcodeStack implements Constants2 {
 
     private JumpInfo getJumpInfo() {
         IAnalysisCache analysisCache = Global.getAnalysisCache();
-        XMethod xMethod = XFactory.createXMethod(v.getThisClass(), v.getMethod());
-        if (xMethod instanceof MethodInfo) {
+        MethodDescriptor descriptor = BCELUtil.getMethodDescriptor(v.getThisClass(), v.getMethod());
+        XMethod xMethod = XFactory.createXMethod(descriptor);
+        // Bridge methods resolve to the method they override, which may be
+        // declared by a superclass
+        if (xMethod instanceof MethodInfo && xMethod.getMethodDescriptor().equals(descriptor)) {
             MethodInfo mi = (MethodInfo) xMethod;
             if (!mi.hasBackBranch()) {
                 return null;
             }
         }
         try {
-            return analysisCache.getMethodAnalysis(JumpInfo.class, xMethod.getMethodDescriptor());
+            return analysisCache.getMethodAnalysis(JumpInfo.class, descriptor);
         } catch (CheckedAnalysisException e) {
             AnalysisContext.logError("Error getting jump information", e);
             return null;
@@ -222,7 +222,7 @@ public abstract class PackageMemberAnnotation extends BugAnnotationWithSourceLin
     @Override
     public String toString(ClassAnnotation primaryClass) {
         String pattern = I18N.instance().getAnnotationDescription(description);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, primaryClass);
     }
 
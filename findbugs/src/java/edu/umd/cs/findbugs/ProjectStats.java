@@ -32,12 +32,14 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -56,6 +58,7 @@ import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.workflow.FileBugHash;
 import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLAttributeList;
 import edu.umd.cs.findbugs.xml.XMLOutput;
 import edu.umd.cs.findbugs.xml.XMLWriteable;
 
@@ -94,6 +97,9 @@ public class ProjectStats implements XMLWriteable, Cloneable {
 
     private final Profiler profiler;
 
+    /** Methods analyzed with a reduced feature set because they exceeded their analysis budget */
+    private final SortedSet<String> degradedMethods;
+
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder();
@@ -115,6 +121,7 @@ public class ProjectStats implements XMLWriteable, Cloneable {
         this.analysisTimestamp = new Date();
         this.baseFootprint = new Footprint();
         this.profiler = new Profiler();
+        this.degradedMethods = new TreeSet<String>();
     }
 
     public boolean hasClassStats() {
@@ -218,7 +225,7 @@ public class ProjectStats implements XMLWriteable, Cloneable {
      *            detect/FindBugsSummaryStats.
      * @param updatePackageStats TODO
      */
-    public void addClass(@DottedClassName String className, @CheckForNull String sourceFile, boolean isInterface, int size, boolean updatePackageStats) {
+    public synchronized void addClass(@DottedClassName String className, @CheckForNull String sourceFile, boolean isInterface, int size, boolean updatePackageStats) {
         if(!hasClassStats) {
             // totalClasses/totalSize might be set from FindBugsSummary before when parsing XML: reset them
             totalClasses = 0;
@@ -263,9 +270,12 @@ public class ProjectStats implements XMLWriteable, Cloneable {
     }
 
     /**
-     * Called when a bug is reported.
+     * Called when a bug is reported. Synchronized with
+     * {@link #addClass(String, String, boolean, int, boolean)}, since bugs may
+     * be reported on another thread than the analysis (see
+     * {@link AsyncBugReporter}).
      */
-    public void addBug(BugInstance bug) {
+    public synchronized void addBug(BugInstance bug) {
 
         SourceLineAnnotation source = bug.getPrimarySourceLineAnnotation();
         PackageStats stat = getPackageStats(source.getPackageName());
@@ -431,6 +441,10 @@ public class ProjectStats implements XMLWriteable, Cloneable {
             xmlOutput.addAttribute("gc_seconds", twoPlaces.format(gcTime / 1000.0));
         }
 
+        if (!degradedMethods.isEmpty()) {
+            xmlOutput.addAttribute("degraded_methods", String.valueOf(degradedMethods.size()));
+        }
+
         BugCounts.writeBugPriorities(xmlOutput, totalErrors);
 
         xmlOutput.stopTag(false);
@@ -457,6 +471,10 @@ public class ProjectStats implements XMLWriteable, Cloneable {
             }
         }
 
+        for (String method : degradedMethods) {
+            xmlOutput.openCloseTag("DegradedMethod", new XMLAttributeList().addAttribute("name", method));
+        }
+
         getProfiler().writeXML(xmlOutput);
         xmlOutput.closeTag("FindBugsSummary");
     }
@@ -578,6 +596,8 @@ public class ProjectStats implements XMLWriteable, Cloneable {
             hasClassStats = true;
         }
 
+        degradedMethods.addAll(stats2.degradedMethods);
+
         for (Map.Entry<String, PackageStats> entry : stats2.packageStatsMap.entrySet()) {
             String key = entry.getKey();
             PackageStats pkgStats2 = entry.getValue();
@@ -610,6 +630,25 @@ public class ProjectStats implements XMLWriteable, Cloneable {
         return profiler;
     }
 
+    /**
+     * Record a method which was analyzed with a reduced feature set because it
+     * exceeded its analysis budget.
+     *
+     * @param method
+     *            the method, as fully qualified name and signature
+     */
+    public void addDegradedMethod(String method) {
+        degradedMethods.add(method);
+    }
+
+    /**
+     * @return the methods which were analyzed with a reduced feature set
+     *         because they exceeded their analysis budget
+     */
+    public Collection<String> getDegradedMethods() {
+        return Collections.unmodifiableSortedSet(degradedMethods);
+    }
+
     public void setTotalClasses(int totalClasses) {
         this.totalClasses = totalClasses;
     }
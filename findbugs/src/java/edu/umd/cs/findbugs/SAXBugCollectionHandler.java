@@ -24,13 +24,21 @@ import static java.util.Collections.unmodifiableSet;
 
 import java.io.File;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -38,6 +46,7 @@ import javax.annotation.CheckForNull;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 import edu.umd.cs.findbugs.filter.AndMatcher;
@@ -78,6 +87,15 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     private static final Logger LOGGER = Logger.getLogger(SAXBugCollectionHandler.class.getName());
 
+    /**
+     * Number of threads building the BugInstances of a bug collection; see
+     * {@link #setParseThreads(int)}.
+     */
+    private static final int PARSE_THREADS = SystemProperties.getInt("findbugs.xml.parseThreads", 1);
+
+    /** number of BugInstance elements handed to a worker at once */
+    private static final int BUG_BATCH_SIZE = 256;
+
     public String getOptionalAttribute(Attributes attributes, String qName) {
         return memoized(attributes.getValue(qName));
     }
@@ -117,6 +135,34 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     private String cloudPropertyKey;
 
+    private int parseThreads = 1;
+
+    private @CheckForNull
+    ExecutorService workers;
+
+    /**
+     * Handler building BugInstances on each worker thread; kept for all the
+     * batches of the thread, so that its memoized strings are reused
+     */
+    private final ThreadLocal<SAXBugCollectionHandler> builders = new ThreadLocal<SAXBugCollectionHandler>();
+
+    /** batches of BugInstances being built, in document order */
+    private final ArrayDeque<Future<List<BugInstance>>> pendingBatches = new ArrayDeque<Future<List<BugInstance>>>();
+
+    private @CheckForNull
+    List<RecordedBugInstance> currentBatch;
+
+    /** the BugInstance element being recorded, if any */
+    private @CheckForNull
+    RecordedBugInstance recordedBug;
+
+    /**
+     * For a handler building the BugInstances of a batch, the BugInstances
+     * built; null otherwise
+     */
+    private @CheckForNull
+    List<BugInstance> builtBugs;
+
     private SAXBugCollectionHandler(String topLevelName, @CheckForNull BugCollection bugCollection,
             @CheckForNull Project project, @CheckForNull File base) {
         this.topLevelName = topLevelName;
@@ -132,10 +178,12 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     public SAXBugCollectionHandler(BugCollection bugCollection, @CheckForNull File base) {
         this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), base);
+        this.parseThreads = PARSE_THREADS;
     }
 
     public SAXBugCollectionHandler(BugCollection bugCollection) {
         this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), null);
+        this.parseThreads = PARSE_THREADS;
     }
 
     public SAXBugCollectionHandler(Project project, File base) {
@@ -148,6 +196,17 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         pushCompoundMatcher(filter);
     }
 
+    /**
+     * Set the number of threads building BugInstances. With more than one
+     * thread, this handler only records the SAX events of each BugInstance
+     * element; batches of recorded elements are turned into BugInstances by a
+     * pool of worker threads, and added to the bug collection in document
+     * order. Defaults to the findbugs.xml.parseThreads property.
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
     Pattern ignoredElement = Pattern.compile("Message|ShortMessage|LongMessage");
 
     public boolean discardedElement(String qName) {
@@ -178,6 +237,21 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         // URI should always be empty.
         // So, qName is the name of the element.
 
+        if (recordedBug != null) {
+            recordedBug.startElement(qName, attributes);
+            return;
+        }
+        if (parseThreads > 1 && nestingOfIgnoredElements == 0 && !elementStack.isEmpty()
+                && BUG_COLLECTION.equals(elementStack.get(elementStack.size() - 1))) {
+            if ("BugInstance".equals(qName)) {
+                recordedBug = new RecordedBugInstance();
+                recordedBug.startElement(qName, attributes);
+                return;
+            }
+            // Keep the bugs ahead of whatever follows them
+            addBuiltBugs(0);
+        }
+
         if (discardedElement(qName)) {
             nestingOfIgnoredElements++;
         } else if (nestingOfIgnoredElements > 0) {
@@ -346,6 +420,10 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                         analysisError = new AnalysisError("Unknown error");
                         stackTrace.clear();
                     }
+                } else if ("FindBugsSummary".equals(outerElement) && "DegradedMethod".equals(qName)) {
+                    BugCollection bugCollection = this.bugCollection;
+                    assert bugCollection != null;
+                    bugCollection.getProjectStats().addDegradedMethod(getRequiredAttribute(attributes, "name", qName));
                 } else if ("FindBugsSummary".equals(outerElement) && "PackageStats".equals(qName)) {
                     BugCollection bugCollection = this.bugCollection;
                     assert bugCollection != null;
@@ -735,6 +813,15 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         // URI should always be empty.
         // So, qName is the name of the element.
 
+        RecordedBugInstance recorded = recordedBug;
+        if (recorded != null) {
+            if (recorded.endElement(qName)) {
+                recordedBug = null;
+                addToBatch(recorded);
+            }
+            return;
+        }
+
         if (discardedElement(qName)) {
             nestingOfIgnoredElements--;
         } else if (nestingOfIgnoredElements > 0) {
@@ -752,9 +839,13 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                 matcherStack.pop();
             } else if (BUG_COLLECTION.equals(outerElement)) {
                 BugCollection bugCollection = this.bugCollection;
-                assert bugCollection != null;
+                assert bugCollection != null || builtBugs != null;
                 if ("BugInstance".equals(qName)) {
-                    bugCollection.add(bugInstance, false);
+                    if (builtBugs != null) {
+                        builtBugs.add(bugInstance);
+                    } else {
+                        bugCollection.add(bugInstance, false);
+                    }
                 }
             } else if (PROJECT.equals(outerElement)) {
                 Project project = this.project;
@@ -833,9 +924,184 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     @Override
     public void characters(char[] ch, int start, int length) {
+        if (recordedBug != null) {
+            recordedBug.characters(ch, start, length);
+            return;
+        }
         textBuffer.append(ch, start, length);
     }
 
+    @Override
+    public void endDocument() throws SAXException {
+        addBuiltBugs(0);
+        shutdownWorkers();
+    }
+
+    /**
+     * Stop the worker threads, if any. Called when parsing ends, including
+     * when it fails.
+     */
+    void shutdownWorkers() {
+        ExecutorService w = workers;
+        if (w != null) {
+            w.shutdownNow();
+            workers = null;
+        }
+        pendingBatches.clear();
+        currentBatch = null;
+        recordedBug = null;
+    }
+
+    private void addToBatch(RecordedBugInstance recorded) throws SAXException {
+        List<RecordedBugInstance> batch = currentBatch;
+        if (batch == null) {
+            batch = currentBatch = new ArrayList<RecordedBugInstance>(BUG_BATCH_SIZE);
+        }
+        batch.add(recorded);
+        if (batch.size() < BUG_BATCH_SIZE) {
+            return;
+        }
+        currentBatch = null;
+        submit(batch);
+        // Bound the number of recorded elements held in memory
+        addBuiltBugs(2 * parseThreads);
+    }
+
+    private void submit(final List<RecordedBugInstance> batch) {
+        ExecutorService w = workers;
+        if (w == null) {
+            // Load the plugins here rather than on a worker thread
+            DetectorFactoryCollection.instance();
+            w = workers = Executors.newFixedThreadPool(parseThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "BugInstance parser");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        pendingBatches.add(w.submit(new Callable<List<BugInstance>>() {
+            @Override
+            public List<BugInstance> call() throws SAXException {
+                SAXBugCollectionHandler builder = builders.get();
+                if (builder == null) {
+                    builder = new SAXBugCollectionHandler(BUG_COLLECTION, null, null, base);
+                    builder.elementStack.add(BUG_COLLECTION);
+                    builders.set(builder);
+                }
+                List<BugInstance> built = new ArrayList<BugInstance>(batch.size());
+                builder.builtBugs = built;
+                boolean done = false;
+                try {
+                    for (RecordedBugInstance recorded : batch) {
+                        recorded.replay(builder);
+                    }
+                    done = true;
+                } finally {
+                    builder.builtBugs = null;
+                    if (!done) {
+                        // Don't build the next batch with a half-built element
+                        builders.remove();
+                    }
+                }
+                return built;
+            }
+        }));
+    }
+
+    /**
+     * Add the built BugInstances to the bug collection, in document order,
+     * until no more than the given number of batches are pending.
+     */
+    private void addBuiltBugs(int maxPending) throws SAXException {
+        List<RecordedBugInstance> batch = currentBatch;
+        if (maxPending == 0 && batch != null) {
+            currentBatch = null;
+            submit(batch);
+        }
+        BugCollection bugCollection = this.bugCollection;
+        while (pendingBatches.size() > maxPending) {
+            List<BugInstance> bugs;
+            try {
+                bugs = pendingBatches.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Interrupted while parsing BugInstances", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SAXException) {
+                    throw (SAXException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SAXException("Error parsing BugInstances", e);
+            }
+            assert bugCollection != null;
+            for (BugInstance bug : bugs) {
+                bugCollection.add(bug, false);
+            }
+        }
+    }
+
+    /**
+     * The SAX events of a BugInstance element, to be replayed on another
+     * thread. Text is only kept where the handler uses it.
+     */
+    private static class RecordedBugInstance {
+        /** element name of each start or end event, or null for text */
+        private final ArrayList<String> names = new ArrayList<String>();
+
+        /**
+         * attributes of a start event, null for an end event, or the text
+         */
+        private final ArrayList<Object> values = new ArrayList<Object>();
+
+        private int depth;
+
+        private boolean inUserAnnotation;
+
+        void startElement(String qName, Attributes attributes) {
+            names.add(qName);
+            values.add(new AttributesImpl(attributes));
+            depth++;
+            inUserAnnotation = "UserAnnotation".equals(qName);
+        }
+
+        void characters(char[] ch, int start, int length) {
+            if (inUserAnnotation) {
+                names.add(null);
+                values.add(new String(ch, start, length));
+            }
+        }
+
+        /**
+         * @return true if this is the end of the BugInstance element
+         */
+        boolean endElement(String qName) {
+            names.add(qName);
+            values.add(null);
+            inUserAnnotation = false;
+            return --depth == 0;
+        }
+
+        void replay(SAXBugCollectionHandler handler) throws SAXException {
+            for (int i = 0; i < names.size(); i++) {
+                String qName = names.get(i);
+                Object value = values.get(i);
+                if (qName == null) {
+                    String text = (String) value;
+                    handler.characters(text.toCharArray(), 0, text.length());
+                } else if (value != null) {
+                    handler.startElement("", qName, qName, (Attributes) value);
+                } else {
+                    handler.endElement("", qName, qName);
+                }
+            }
+        }
+    }
+
     private String getRequiredAttribute(Attributes attributes, String attrName, String elementName) throws SAXException {
         String value = attributes.getValue(attrName);
         if (value == null) {
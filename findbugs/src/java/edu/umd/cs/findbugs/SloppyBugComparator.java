@@ -29,7 +29,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  *
  * @author David Hovemeyer
  */
-public class SloppyBugComparator implements WarningComparator {
+public class SloppyBugComparator implements WarningComparator, MatchKeyComparator {
 
     private static final boolean DEBUG = SystemProperties.getBoolean("sloppyComparator.debug");
 
@@ -158,6 +158,25 @@ public class SloppyBugComparator implements WarningComparator {
         return 0;
     }
 
+    @Override
+    public Object getMatchKey(BugInstance bug) {
+        BugMatcher.KeyBuilder key = new BugMatcher.KeyBuilder().add(bug.getBugPattern().getAbbrev());
+        ClassAnnotation primaryClass = bug.getPrimaryClass();
+        key.add(primaryClass == null ? null : classNameRewriter.rewriteClassName(primaryClass.getClassName()));
+        MethodAnnotation primaryMethod = bug.getPrimaryMethod();
+        if (primaryMethod != null) {
+            MethodAnnotation method = convertMethod(primaryMethod);
+            key.add("M").add(method.getClassName()).add(method.getMethodName()).add(method.getMethodSignature());
+        } else {
+            FieldAnnotation primaryField = bug.getPrimaryField();
+            if (primaryField != null) {
+                FieldAnnotation field = convertField(primaryField);
+                key.add("F").add(field.getClassName()).add(field.getFieldName()).add(field.getFieldSignature());
+            }
+        }
+        return key.getKey();
+    }
+
     /*
     private static String getAbbrevFromBugType(String type) {
         int bar = type.indexOf('_');
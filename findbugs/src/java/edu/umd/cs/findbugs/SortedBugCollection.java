@@ -95,6 +95,11 @@ public class SortedBugCollection implements BugCollection {
 
     private static final boolean REPORT_SUMMARY_HTML = SystemProperties.getBoolean("findbugs.report.SummaryHTML");
 
+    private static final boolean COMPACT_STORAGE = SystemProperties.getBoolean("findbugs.bugCollection.compact");
+
+    /** number of threads computing the instance hashes of the bugs */
+    private static final int HASH_THREADS = SystemProperties.getInt("findbugs.bugCollection.hashThreads", 1);
+
     long analysisTimestamp = System.currentTimeMillis();
 
     String analysisVersion = Version.RELEASE;
@@ -109,6 +114,9 @@ public class SortedBugCollection implements BugCollection {
 
     private boolean applySuppressions = false;
 
+    /** strings of the compactly stored bug annotations, or null if bugs are not compacted */
+    private @CheckForNull BugAnnotationTable annotationTable = COMPACT_STORAGE ? new BugAnnotationTable() : null;
+
     private @CheckForNull Cloud cloud;
 
     boolean shouldNotUsePlugin;
@@ -423,6 +431,7 @@ public class SortedBugCollection implements BugCollection {
             }
             throw new DocumentException("Sax error ", e);
         } finally {
+            handler.shutdownWorkers();
             Util.closeSilently(reader);
             profiler.end(handler.getClass());
         }
@@ -539,6 +548,7 @@ public class SortedBugCollection implements BugCollection {
             return;
         }
         invalidateHashes();
+        InstanceHash.computeAll(getCollection(), HASH_THREADS);
         HashMap<String, Integer> seen = new HashMap<String, Integer>();
 
         for (BugInstance bugInstance : getCollection()) {
@@ -890,11 +900,18 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
-    public static class BugInstanceComparator implements Comparator<BugInstance> {
+    public static class BugInstanceComparator implements MatchKeyComparator {
 
         private BugInstanceComparator() {
         }
 
+        @Override
+        public Object getMatchKey(BugInstance bug) {
+            ClassAnnotation primaryClass = bug.getPrimaryClass();
+            return new BugMatcher.KeyBuilder().add(primaryClass == null ? null : primaryClass.getClassName())
+                    .add(bug.getType()).add(bug.getPriority()).getKey();
+        }
+
         @Override
         public int compare(BugInstance lhs, BugInstance rhs) {
             ClassAnnotation lca = lhs.getPrimaryClass();
@@ -1018,6 +1035,9 @@ public class SortedBugCollection implements BugCollection {
         }
 
         invalidateHashes();
+        if (annotationTable != null) {
+            bugInstance.compact(annotationTable);
+        }
         if (!bugInstance.isDead()) {
             projectStats.addBug(bugInstance);
         }
@@ -1401,6 +1421,24 @@ public class SortedBugCollection implements BugCollection {
         this.minimalXML = minimalXML;
     }
 
+    /**
+     * Set whether the annotations of bugs added from now on are stored
+     * compactly, trading speed for memory when loading very large
+     * collections; see {@link BugInstance#compact(BugAnnotationTable)}.
+     * Defaults to the findbugs.bugCollection.compact property.
+     */
+    public void setCompactStorage(boolean compact) {
+        if (!compact) {
+            annotationTable = null;
+        } else if (annotationTable == null) {
+            annotationTable = new BugAnnotationTable();
+        }
+    }
+
+    public boolean isCompactStorage() {
+        return annotationTable != null;
+    }
+
     public void setDoNotUseCloud(boolean b) {
         this.shouldNotUsePlugin = b;
     }
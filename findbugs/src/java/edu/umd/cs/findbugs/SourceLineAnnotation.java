@@ -38,12 +38,15 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.Hierarchy;
 import edu.umd.cs.findbugs.ba.JavaClassAndMethod;
+import edu.umd.cs.findbugs.ba.LineNumberIndex;
 import edu.umd.cs.findbugs.ba.Location;
 import edu.umd.cs.findbugs.ba.SourceFinder;
 import edu.umd.cs.findbugs.ba.SourceInfoMap;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.BCELUtil;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
@@ -432,8 +435,9 @@ public class SourceLineAnnotation implements BugAnnotation {
         try {
             IAnalysisCache analysisCache = Global.getAnalysisCache();
             JavaClass jclass = analysisCache.getClassAnalysis(JavaClass.class, methodDescriptor.getClassDescriptor());
-            Method method = analysisCache.getMethodAnalysis(Method.class, methodDescriptor);
-            return fromVisitedInstruction(jclass, method, position);
+            LineNumberIndex lineNumberIndex = analysisCache.getMethodAnalysis(LineNumberIndex.class, methodDescriptor);
+            int line = lineNumberIndex.getSourceLine(position);
+            return new SourceLineAnnotation(jclass.getClassName(), jclass.getSourceFileName(), line, line, position, position);
         } catch (CheckedAnalysisException e) {
             return createReallyUnknown(methodDescriptor.getClassDescriptor().toDottedClassName());
         }
@@ -466,14 +470,11 @@ public class SourceLineAnnotation implements BugAnnotation {
      * @return SourceLineAnnotation describing visited instruction
      */
     public static SourceLineAnnotation fromVisitedInstruction(JavaClass jclass, Method method, int pc) {
-        LineNumberTable lineNumberTable = method.getCode().getLineNumberTable();
+        LineNumberIndex lineNumberIndex = getLineNumberIndex(jclass, method);
         String className = jclass.getClassName();
         String sourceFile = jclass.getSourceFileName();
-        if (lineNumberTable == null) {
-            return createUnknown(className, sourceFile, pc, pc);
-        }
 
-        int startLine = lineNumberTable.getSourceLine(pc);
+        int startLine = lineNumberIndex.getSourceLine(pc);
         return new SourceLineAnnotation(className, sourceFile, startLine, startLine, pc, pc);
     }
 
@@ -492,16 +493,12 @@ public class SourceLineAnnotation implements BugAnnotation {
      *         information for the instruction
      */
     public static SourceLineAnnotation fromVisitedInstructionRange(BytecodeScanningDetector visitor, int startPC, int endPC) {
-        LineNumberTable lineNumberTable = getLineNumberTable(visitor);
+        LineNumberIndex lineNumberIndex = getLineNumberIndex(visitor);
         String className = visitor.getDottedClassName();
         String sourceFile = visitor.getSourceFile();
 
-        if (lineNumberTable == null) {
-            return createUnknown(className, sourceFile, startPC, endPC);
-        }
-
-        int startLine = lineNumberTable.getSourceLine(startPC);
-        int endLine = lineNumberTable.getSourceLine(endPC);
+        int startLine = lineNumberIndex.getSourceLine(startPC);
+        int endLine = lineNumberIndex.getSourceLine(endPC);
         return new SourceLineAnnotation(className, sourceFile, startLine, endLine, startPC, endPC);
     }
 
@@ -527,16 +524,12 @@ public class SourceLineAnnotation implements BugAnnotation {
             throw new IllegalArgumentException("Start pc " + startPC + " greater than end pc " + endPC);
         }
 
-        LineNumberTable lineNumberTable = getLineNumberTable(visitor);
+        LineNumberIndex lineNumberIndex = getLineNumberIndex(visitor);
         String className = visitor.getDottedClassName();
         String sourceFile = visitor.getSourceFile();
 
-        if (lineNumberTable == null) {
-            return createUnknown(className, sourceFile, startPC, endPC);
-        }
-
-        int startLine = lineNumberTable.getSourceLine(startPC);
-        int endLine = lineNumberTable.getSourceLine(endPC);
+        int startLine = lineNumberIndex.getSourceLine(startPC);
+        int endLine = lineNumberIndex.getSourceLine(endPC);
         return new SourceLineAnnotation(className, sourceFile, startLine, endLine, startPC, endPC);
     }
 
@@ -578,16 +571,12 @@ public class SourceLineAnnotation implements BugAnnotation {
     @Nonnull
     public static SourceLineAnnotation fromVisitedInstruction(ClassContext classContext, MethodGen methodGen, String sourceFile,
             @Nonnull InstructionHandle handle) {
-        LineNumberTable table = methodGen.getLineNumberTable(methodGen.getConstantPool());
+        LineNumberIndex lineNumberIndex = getLineNumberIndex(methodGen);
         String className = methodGen.getClassName();
 
         int bytecodeOffset = handle.getPosition();
 
-        if (table == null) {
-            return createUnknown(className, sourceFile, bytecodeOffset, bytecodeOffset);
-        }
-
-        int lineNumber = table.getSourceLine(handle.getPosition());
+        int lineNumber = lineNumberIndex.getSourceLine(bytecodeOffset);
         return new SourceLineAnnotation(className, sourceFile, lineNumber, lineNumber, bytecodeOffset, bytecodeOffset);
     }
 
@@ -606,15 +595,11 @@ public class SourceLineAnnotation implements BugAnnotation {
      */
     public static SourceLineAnnotation fromVisitedInstructionRange(ClassContext classContext, MethodGen methodGen,
             String sourceFile, InstructionHandle start, InstructionHandle end) {
-        LineNumberTable lineNumberTable = methodGen.getLineNumberTable(methodGen.getConstantPool());
+        LineNumberIndex lineNumberIndex = getLineNumberIndex(methodGen);
         String className = methodGen.getClassName();
 
-        if (lineNumberTable == null) {
-            return createUnknown(className, sourceFile, start.getPosition(), end.getPosition());
-        }
-
-        int startLine = lineNumberTable.getSourceLine(start.getPosition());
-        int endLine = lineNumberTable.getSourceLine(end.getPosition());
+        int startLine = lineNumberIndex.getSourceLine(start.getPosition());
+        int endLine = lineNumberIndex.getSourceLine(end.getPosition());
         return new SourceLineAnnotation(className, sourceFile, startLine, endLine, start.getPosition(), end.getPosition());
     }
 
@@ -626,6 +611,54 @@ public class SourceLineAnnotation implements BugAnnotation {
         return code.getLineNumberTable();
     }
 
+    /**
+     * Get the line number index of a method from the analysis cache, so that
+     * the LineNumberTable of the method is indexed once however many
+     * annotations are created for it.
+     *
+     * @return the index, or null if there is no analysis cache or the method
+     *         is not known to it
+     */
+    private static @CheckForNull
+    LineNumberIndex lookupLineNumberIndex(@CheckForNull MethodDescriptor methodDescriptor) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        if (analysisCache == null || methodDescriptor == null) {
+            return null;
+        }
+        try {
+            return analysisCache.getMethodAnalysis(LineNumberIndex.class, methodDescriptor);
+        } catch (CheckedAnalysisException e) {
+            return null;
+        }
+    }
+
+    private static LineNumberIndex getLineNumberIndex(PreorderVisitor visitor) {
+        LineNumberIndex lineNumberIndex = lookupLineNumberIndex(visitor.getMethodDescriptor());
+        if (lineNumberIndex == null) {
+            lineNumberIndex = LineNumberIndex.create(getLineNumberTable(visitor));
+        }
+        return lineNumberIndex;
+    }
+
+    private static LineNumberIndex getLineNumberIndex(JavaClass jclass, Method method) {
+        LineNumberIndex lineNumberIndex = lookupLineNumberIndex(BCELUtil.getMethodDescriptor(jclass, method));
+        if (lineNumberIndex == null) {
+            lineNumberIndex = LineNumberIndex.create(method.getLineNumberTable());
+        }
+        return lineNumberIndex;
+    }
+
+    private static LineNumberIndex getLineNumberIndex(MethodGen methodGen) {
+        // MethodGen.getLineNumberTable() builds a new table on each call
+        MethodDescriptor methodDescriptor = DescriptorFactory.instance().getMethodDescriptor(
+                methodGen.getClassName().replace('.', '/'), methodGen.getName(), methodGen.getSignature(), methodGen.isStatic());
+        LineNumberIndex lineNumberIndex = lookupLineNumberIndex(methodDescriptor);
+        if (lineNumberIndex == null) {
+            lineNumberIndex = LineNumberIndex.create(methodGen.getLineNumberTable(methodGen.getConstantPool()));
+        }
+        return lineNumberIndex;
+    }
+
     @Nonnull
     @DottedClassName
     public String getClassName() {
@@ -785,7 +818,7 @@ public class SourceLineAnnotation implements BugAnnotation {
             desc = DEFAULT_ROLE_UNKNOWN_LINE;
         }
         String pattern = I18N.instance().getAnnotationDescription(desc);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, null);
     }
 
@@ -24,9 +24,7 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.annotation.CheckForNull;
 
@@ -47,6 +45,7 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.util.IntHashMap;
 
 /**
  * @author pugh
@@ -73,7 +72,7 @@ public  class StackMapAnalyzer {
     static class JumpInfoFromStackMap extends JumpInfo {
 
 
-        JumpInfoFromStackMap(Map<Integer, List<Item>> jumpEntries, Map<Integer, List<Item>> jumpStackEntries, BitSet jumpEntryLocations) {
+        JumpInfoFromStackMap(IntHashMap<List<Item>> jumpEntries, IntHashMap<List<Item>> jumpStackEntries, BitSet jumpEntryLocations) {
             super(jumpEntries, jumpStackEntries, jumpEntryLocations);
         }
 
@@ -201,9 +200,9 @@ public  class StackMapAnalyzer {
         if (stackMapTable == null) {
             return null;
         }
-        Map<Integer, List<Item>> jumpEntries = new HashMap<Integer, List<Item>>();
+        IntHashMap<List<Item>> jumpEntries = new IntHashMap<List<Item>>();
 
-        Map<Integer, List<Item>> jumpStackEntries = new HashMap<Integer, List<Item>>();
+        IntHashMap<List<Item>> jumpStackEntries = new IntHashMap<List<Item>>();
 
         List<Item> locals = getInitialLocals(descriptor);
         List<Item> stack = new ArrayList<Item>();
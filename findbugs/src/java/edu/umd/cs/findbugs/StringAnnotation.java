@@ -116,7 +116,7 @@ public class StringAnnotation implements BugAnnotation {
 
     @Override
     public void setDescription(String description) {
-        this.description = description;
+        this.description = description.intern();
     }
 
     @Override
@@ -150,7 +150,7 @@ public class StringAnnotation implements BugAnnotation {
     @Override
     public String toString() {
         String pattern = I18N.instance().getAnnotationDescription(description);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, null);
     }
 
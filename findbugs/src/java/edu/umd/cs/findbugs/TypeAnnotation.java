@@ -174,7 +174,7 @@ public class TypeAnnotation extends BugAnnotationWithSourceLines {
     @Override
     public String toString() {
         String pattern = I18N.instance().getAnnotationDescription(roleDescription);
-        FindBugsMessageFormat format = new FindBugsMessageFormat(pattern);
+        FindBugsMessageFormat format = FindBugsMessageFormat.forPattern(pattern);
         return format.format(new BugAnnotation[] { this }, null);
     }
 
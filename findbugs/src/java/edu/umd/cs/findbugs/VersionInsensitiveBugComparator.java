@@ -30,7 +30,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  * Compare bug instances by only those criteria which we would expect to remain
  * constant between versions.
  */
-public class VersionInsensitiveBugComparator implements WarningComparator {
+public class VersionInsensitiveBugComparator implements WarningComparator, MatchKeyComparator {
 
     private ClassNameRewriter classNameRewriter = IdentityClassNameRewriter.instance();
 
@@ -167,8 +167,8 @@ public class VersionInsensitiveBugComparator implements WarningComparator {
             }
         }
 
-        Iterator<BugAnnotation> lhsIter = new FilteringAnnotationIterator(lhs.annotationIterator());
-        Iterator<BugAnnotation> rhsIter = new FilteringAnnotationIterator(rhs.annotationIterator());
+        Iterator<BugAnnotation> lhsIter = new FilteringAnnotationIterator(lhs.getAnnotationsForReading().iterator());
+        Iterator<BugAnnotation> rhsIter = new FilteringAnnotationIterator(rhs.getAnnotationsForReading().iterator());
 
         while (lhsIter.hasNext() && rhsIter.hasNext()) {
             BugAnnotation lhsAnnotation = lhsIter.next();
@@ -262,6 +262,53 @@ public class VersionInsensitiveBugComparator implements WarningComparator {
         }
     }
 
+    /**
+     * The match key is made of the bug abbreviation (and type and priority,
+     * if they are compared) and the significant annotations other than local
+     * variables, with class names rewritten. Local variable annotations are
+     * left out, since unnamed ones match any name and insignificant ones may
+     * be skipped when comparing.
+     */
+    @Override
+    public Object getMatchKey(BugInstance bug) {
+        BugPattern pattern = bug.getBugPattern();
+        BugMatcher.KeyBuilder key = new BugMatcher.KeyBuilder().add(pattern.getAbbrev());
+        if (isExactBugPatternMatch()) {
+            key.add(pattern.getType());
+        }
+        if (comparePriorities) {
+            key.add(bug.getPriority());
+        }
+        for (Iterator<BugAnnotation> i = new FilteringAnnotationIterator(bug.getAnnotationsForReading().iterator()); i.hasNext();) {
+            BugAnnotation annotation = i.next();
+            Class<? extends BugAnnotation> annotationClass = annotation.getClass();
+            if (annotationClass == LocalVariableAnnotation.class) {
+                continue;
+            }
+            if (annotationClass == ClassAnnotation.class) {
+                key.add(classNameRewriter.rewriteClassName(((ClassAnnotation) annotation).getClassName()));
+            } else if (annotationClass == MethodAnnotation.class) {
+                MethodAnnotation method = ClassNameRewriterUtil.convertMethodAnnotation(classNameRewriter,
+                        (MethodAnnotation) annotation);
+                key.add(method.getClassName()).add(method.getMethodName()).add(method.getMethodSignature());
+            } else if (annotationClass == FieldAnnotation.class) {
+                FieldAnnotation field = ClassNameRewriterUtil.convertFieldAnnotation(classNameRewriter,
+                        (FieldAnnotation) annotation);
+                key.add(field.getClassName()).add(field.getFieldName()).add(field.getFieldSignature());
+            } else if (annotationClass == StringAnnotation.class) {
+                key.add(((StringAnnotation) annotation).getValue());
+            } else if (annotationClass == TypeAnnotation.class) {
+                key.add(ClassNameRewriterUtil.rewriteSignature(classNameRewriter,
+                        ((TypeAnnotation) annotation).getTypeDescriptor()));
+            } else if (annotationClass == IntAnnotation.class) {
+                key.add(((IntAnnotation) annotation).getValue());
+            } else {
+                key.add(annotationClass.getName());
+            }
+        }
+        return key.getKey();
+    }
+
     private boolean interestingNext(Iterator<BugAnnotation> i) {
         while (i.hasNext()) {
             BugAnnotation a = i.next();
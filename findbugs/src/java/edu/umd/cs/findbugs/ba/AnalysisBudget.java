@@ -0,0 +1,232 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.generic.MethodGen;
+
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.util.ClassName;
+
+/**
+ * Per-method analysis budgets. The dataflow analyses of a method are charged
+ * with their wall time and the number of block transfer functions they apply.
+ * <ul>
+ * <li>Once a method exceeds its budget, it is <em>degraded</em>: analyses
+ * started afterwards use a cheaper feature set (for instance, the null pointer
+ * analysis no longer tracks value numbers or guaranteed dereferences).
+ * <li>If a method exceeds the hard limit factor times its budget, the
+ * running dataflow analysis is abandoned, just like when it exceeds the
+ * maximum number of iterations.
+ * </ul>
+ * The budgets are set with the findbugs.budget.methodMillis and
+ * findbugs.budget.methodTransfers properties; both are disabled by default.
+ * The degraded methods are reported in the ProjectStats of the analysis.
+ *
+ * @see AnalysisContext#getAnalysisBudget()
+ */
+public class AnalysisBudget {
+    /** Wall time budget per method in milliseconds, or 0 for no limit */
+    public static final int METHOD_MILLIS = SystemProperties.getInt("findbugs.budget.methodMillis", 0);
+
+    /** Budget of block transfer function applications per method, or 0 for no limit */
+    public static final int METHOD_TRANSFERS = SystemProperties.getInt("findbugs.budget.methodTransfers", 0);
+
+    /** Multiple of the budget after which a dataflow analysis is abandoned */
+    public static final int HARD_LIMIT_FACTOR = SystemProperties.getInt("findbugs.budget.hardLimitFactor", 4);
+
+    private static final boolean DEBUG = SystemProperties.getBoolean("findbugs.budget.debug");
+
+    private static class Usage {
+        long nanos;
+
+        long transfers;
+
+        boolean degraded;
+    }
+
+    private final int methodMillis;
+
+    private final int methodTransfers;
+
+    private final int hardLimitFactor;
+
+    private final ConcurrentMap<MethodDescriptor, Usage> usageMap = new ConcurrentHashMap<MethodDescriptor, Usage>();
+
+    /**
+     * Create a budget with the limits set by the system properties.
+     */
+    public AnalysisBudget() {
+        this(METHOD_MILLIS, METHOD_TRANSFERS, HARD_LIMIT_FACTOR);
+    }
+
+    /**
+     * Create a budget with the given limits.
+     *
+     * @param methodMillis
+     *            wall time budget per method in milliseconds, or 0 for no
+     *            limit
+     * @param methodTransfers
+     *            budget of block transfer function applications per method,
+     *            or 0 for no limit
+     * @param hardLimitFactor
+     *            multiple of the budget after which a dataflow analysis is
+     *            abandoned
+     */
+    public AnalysisBudget(int methodMillis, int methodTransfers, int hardLimitFactor) {
+        this.methodMillis = methodMillis;
+        this.methodTransfers = methodTransfers;
+        this.hardLimitFactor = hardLimitFactor;
+    }
+
+    /**
+     * @return true if a budget has been set
+     */
+    public boolean isEnabled() {
+        return methodMillis > 0 || methodTransfers > 0;
+    }
+
+    /**
+     * Get the method descriptor to charge for an analysis of the given method.
+     *
+     * @param methodGen
+     *            the analyzed method, may be null
+     * @return the method descriptor, or null if budgets are disabled or the
+     *         method is unknown
+     */
+    public @CheckForNull
+    MethodDescriptor getChargedMethod(@CheckForNull MethodGen methodGen) {
+        if (!isEnabled() || methodGen == null) {
+            return null;
+        }
+        return DescriptorFactory.instance().getMethodDescriptor(ClassName.toSlashedClassName(methodGen.getClassName()),
+                methodGen.getName(), methodGen.getSignature(), methodGen.isStatic());
+    }
+
+    /**
+     * Charge a method with the cost of (part of) an analysis.
+     *
+     * @param method
+     *            the method
+     * @param nanos
+     *            wall time spent, in nanoseconds
+     * @param transfers
+     *            number of block transfer functions applied
+     * @return true if the method has exceeded the hard limit, and the
+     *         analysis should be abandoned
+     */
+    public boolean charge(MethodDescriptor method, long nanos, long transfers) {
+        Usage usage = usageMap.get(method);
+        if (usage == null) {
+            usage = new Usage();
+            Usage existing = usageMap.putIfAbsent(method, usage);
+            if (existing != null) {
+                usage = existing;
+            }
+        }
+        synchronized (usage) {
+            usage.nanos += nanos;
+            usage.transfers += transfers;
+            int factor = exceededBy(usage);
+            if (factor >= 1 && !usage.degraded) {
+                usage.degraded = true;
+                if (DEBUG) {
+                    System.out.println("Degrading analysis of " + method + ": " + usage.nanos / 1000000 + " msec, "
+                            + usage.transfers + " transfers");
+                }
+            }
+            return factor >= hardLimitFactor;
+        }
+    }
+
+    /**
+     * @return the largest multiple of a budget the usage has reached
+     */
+    private int exceededBy(Usage usage) {
+        long factor = 0;
+        if (methodMillis > 0) {
+            factor = usage.nanos / (methodMillis * 1000000L);
+        }
+        if (methodTransfers > 0) {
+            factor = Math.max(factor, usage.transfers / methodTransfers);
+        }
+        return (int) Math.min(factor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Should analyses of the given method use the cheaper feature set?
+     *
+     * @param method
+     *            the method
+     * @return true if the method has exceeded its budget
+     */
+    public boolean isDegraded(MethodDescriptor method) {
+        Usage usage = usageMap.get(method);
+        if (usage == null) {
+            return false;
+        }
+        synchronized (usage) {
+            return usage.degraded;
+        }
+    }
+
+    /**
+     * Should analyses of the given method use the cheaper feature set? Always
+     * false if no budget has been set.
+     *
+     * @param methodGen
+     *            the method, may be null
+     * @return true if the method has exceeded its budget
+     */
+    public static boolean isDegraded(@CheckForNull MethodGen methodGen) {
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        if (analysisContext == null) {
+            return false;
+        }
+        AnalysisBudget budget = analysisContext.getAnalysisBudget();
+        MethodDescriptor method = budget.getChargedMethod(methodGen);
+        return method != null && budget.isDegraded(method);
+    }
+
+    /**
+     * @return the methods which have exceeded their budget
+     */
+    public Collection<MethodDescriptor> getDegradedMethods() {
+        List<MethodDescriptor> result = new ArrayList<MethodDescriptor>();
+        for (Map.Entry<MethodDescriptor, Usage> e : usageMap.entrySet()) {
+            synchronized (e.getValue()) {
+                if (e.getValue().degraded) {
+                    result.add(e.getKey());
+                }
+            }
+        }
+        return result;
+    }
+}
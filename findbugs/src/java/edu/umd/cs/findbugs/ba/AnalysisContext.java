@@ -157,6 +157,8 @@ public class AnalysisContext {
 
     private final HashSet<MethodDescriptor> skippedDueToInvokeDynamic;
 
+    private AnalysisBudget analysisBudget;
+
     private final Project project;
 
     private final EqualsKindSummary equalsKindSummary;
@@ -178,6 +180,7 @@ public class AnalysisContext {
         this.boolPropertySet = new BitSet();
         this.lookupFailureCallback = new DelegatingRepositoryLookupFailureCallback();
         skippedDueToInvokeDynamic = new HashSet<>();
+        analysisBudget = new AnalysisBudget();
         equalsKindSummary = new EqualsKindSummary();
         unreadFieldsData = new UnreadFieldsData();
         suppressionMatcher = new SuppressionMatcher();
@@ -228,6 +231,21 @@ public class AnalysisContext {
         this.classSummary = classSummary;
     }
 
+    /**
+     * Get the per-method analysis budgets of this analysis.
+     */
+    public AnalysisBudget getAnalysisBudget() {
+        return analysisBudget;
+    }
+
+    /**
+     * Replace the per-method analysis budgets of this analysis. Must be called
+     * before any method has been analyzed.
+     */
+    public void setAnalysisBudget(@Nonnull AnalysisBudget analysisBudget) {
+        this.analysisBudget = analysisBudget;
+    }
+
     public EqualsKindSummary getEqualsKindSummary() {
         return equalsKindSummary;
     }
@@ -34,6 +34,7 @@ import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
 /**
  * Perform dataflow analysis on a method using a control flow graph. Both
@@ -148,6 +149,13 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
         int timestamp = 0;
         boolean firstTime = true;
+
+        // Charge the work to the method's analysis budget, if any
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        AnalysisBudget budget = analysisContext != null ? analysisContext.getAnalysisBudget() : null;
+        MethodDescriptor chargedMethod = budget != null ? budget.getChargedMethod(cfg.getMethodGen()) : null;
+        long lastChargeTime = chargedMethod != null ? System.nanoTime() : 0;
+        int transfers = 0;
         do {
             change = false;
             boolean sawBackEdge = false;
@@ -374,6 +382,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
                 // Apply the transfer function.
 
                 analysis.transfer(block, null, start, result);
+                transfers++;
                 //                } else {
                 //                    analysis.copy(start, result);
                 //                }
@@ -421,6 +430,16 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
             }
 
             analysis.finishIteration();
+            if (chargedMethod != null) {
+                long now = System.nanoTime();
+                boolean abandon = budget.charge(chargedMethod, now - lastChargeTime, transfers);
+                lastChargeTime = now;
+                transfers = 0;
+                if (abandon) {
+                    throw new DataflowAnalysisException("Analysis budget exceeded (" + numIterations
+                            + " iterations) in dataflow when analyzing " + getFullyQualifiedMethodName());
+                }
+            }
             if (!sawBackEdge) {
                 break;
             }
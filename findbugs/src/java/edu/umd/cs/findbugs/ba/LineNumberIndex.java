@@ -0,0 +1,128 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.Arrays;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.LineNumberTable;
+
+/**
+ * An index from the bytecode offsets of a method to its source lines, built
+ * from the LineNumberTable of the method. The start offsets of the table
+ * entries are kept sorted in an int array, so a lookup is a binary search
+ * which does not depend on the order of the table in the class file.
+ *
+ * @see edu.umd.cs.findbugs.classfile.engine.bcel.LineNumberIndexFactory
+ */
+public class LineNumberIndex {
+    /** The index of a method without line number information */
+    public static final LineNumberIndex EMPTY = new LineNumberIndex(new int[0], new int[0]);
+
+    private final int[] startPCs;
+
+    private final int[] lines;
+
+    private LineNumberIndex(int[] startPCs, int[] lines) {
+        this.startPCs = startPCs;
+        this.lines = lines;
+    }
+
+    /**
+     * Create the index of a LineNumberTable.
+     *
+     * @param table
+     *            the table, or null if the method has no line number
+     *            information
+     * @return the index, which is {@link #EMPTY} if there is no table
+     */
+    public static LineNumberIndex create(@CheckForNull LineNumberTable table) {
+        if (table == null) {
+            return EMPTY;
+        }
+        LineNumber[] entries = table.getLineNumberTable();
+        if (entries == null || entries.length == 0) {
+            return EMPTY;
+        }
+        int n = entries.length;
+        int[] startPCs = new int[n];
+        int[] lines = new int[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            startPCs[i] = entries[i].getStartPC();
+            lines[i] = entries[i].getLineNumber();
+            if (i > 0 && startPCs[i] <= startPCs[i - 1]) {
+                sorted = false;
+            }
+        }
+        if (!sorted) {
+            // Sort the entries by start offset, keeping the first of the
+            // entries with the same start offset
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = ((long) startPCs[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+            int m = 0;
+            int[] sortedLines = new int[n];
+            for (int i = 0; i < n; i++) {
+                int pc = (int) (packed[i] >>> 32);
+                if (m > 0 && startPCs[m - 1] == pc) {
+                    continue;
+                }
+                startPCs[m] = pc;
+                sortedLines[m] = lines[(int) packed[i]];
+                m++;
+            }
+            startPCs = Arrays.copyOf(startPCs, m);
+            lines = Arrays.copyOf(sortedLines, m);
+        }
+        return new LineNumberIndex(startPCs, lines);
+    }
+
+    /**
+     * @return true if there is no line number information
+     */
+    public boolean isEmpty() {
+        return startPCs.length == 0;
+    }
+
+    /**
+     * Get the source line of the instruction at a bytecode offset: the line of
+     * the entry with the greatest start offset not above it.
+     *
+     * @param pc
+     *            the bytecode offset
+     * @return the source line, or -1 if it is not known
+     */
+    public int getSourceLine(int pc) {
+        int i = Arrays.binarySearch(startPCs, pc);
+        if (i < 0) {
+            i = -i - 2;
+            if (i < 0) {
+                return -1;
+            }
+        }
+        return lines[i];
+    }
+}
@@ -19,8 +19,6 @@
 
 package edu.umd.cs.findbugs.ba;
 
-import java.util.IdentityHashMap;
-
 import org.apache.bcel.classfile.LineNumber;
 import org.apache.bcel.classfile.LineNumberTable;
 import org.apache.bcel.generic.InstructionHandle;
@@ -37,17 +35,9 @@ public class LineNumberMap {
      */
     private static final boolean DEBUG = SystemProperties.getBoolean("lnm.debug");
 
-    /**
-     * When this is true, the workaround for the bug in BCEL 5.0's
-     * LineNumberTable class is disabled.
-     */
-    private static final boolean LINE_NUMBER_BUG = SystemProperties.getBoolean("lineNumberBug");
-
     private final MethodGen methodGen;
 
-    private final IdentityHashMap<InstructionHandle, LineNumber> lineNumberMap;
-
-    private boolean hasLineNumbers;
+    private LineNumberIndex lineNumberIndex;
 
     /**
      * Constructor.
@@ -57,8 +47,7 @@ public class LineNumberMap {
      */
     public LineNumberMap(MethodGen methodGen) {
         this.methodGen = methodGen;
-        lineNumberMap = new IdentityHashMap<InstructionHandle, LineNumber>();
-        hasLineNumbers = false;
+        lineNumberIndex = LineNumberIndex.EMPTY;
     }
 
     /**
@@ -66,67 +55,21 @@ public class LineNumberMap {
      * methods.
      */
     public void build() {
-        int numGood = 0, numBytecodes = 0;
-
         if (DEBUG) {
             System.out.println("Method: " + methodGen.getName() + " - " + methodGen.getSignature() + "in class "
                     + methodGen.getClassName());
         }
 
-        // Associate line number information with each InstructionHandle
         LineNumberTable table = methodGen.getLineNumberTable(methodGen.getConstantPool());
+        lineNumberIndex = LineNumberIndex.create(table);
 
-        if (table != null && table.getTableLength() > 0) {
-            checkTable(table);
-            InstructionHandle handle = methodGen.getInstructionList().getStart();
-            while (handle != null) {
-                int bytecodeOffset = handle.getPosition();
-                if (bytecodeOffset < 0) {
-                    throw new IllegalStateException("Bad bytecode offset: " + bytecodeOffset);
-                }
-                if (DEBUG) {
-                    System.out.println("Looking for source line for bytecode offset " + bytecodeOffset);
-                }
-                int sourceLine;
-                try {
-                    sourceLine = table.getSourceLine(bytecodeOffset);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    if (LINE_NUMBER_BUG) {
-                        throw e;
-                    } else {
-                        sourceLine = -1;
-                    }
-                }
-                if (sourceLine >= 0) {
-                    ++numGood;
-                }
-                lineNumberMap.put(handle, new LineNumber(bytecodeOffset, sourceLine));
-                handle = handle.getNext();
-                ++numBytecodes;
-            }
-            hasLineNumbers = true;
-
-            if (DEBUG) {
-                System.out.println("\t" + numGood + "/" + numBytecodes + " had valid line numbers");
-            }
-        }
-    }
-
-    private void checkTable(LineNumberTable table) {
-        if (DEBUG) {
+        if (DEBUG && table != null) {
             System.out.println("line number table has length " + table.getTableLength());
-        }
-        LineNumber[] entries = table.getLineNumberTable();
-        int lastBytecode = -1;
-        for (int i = 0; i < entries.length; ++i) {
-            LineNumber ln = entries[i];
-            if (DEBUG) {
+            LineNumber[] entries = table.getLineNumberTable();
+            for (int i = 0; i < entries.length; ++i) {
+                LineNumber ln = entries[i];
                 System.out.println("Entry " + i + ": pc=" + ln.getStartPC() + ", line=" + ln.getLineNumber());
             }
-            int pc = ln.getStartPC();
-            if (pc <= lastBytecode) {
-                throw new IllegalStateException("LineNumberTable is not sorted");
-            }
         }
     }
 
@@ -134,7 +77,7 @@ public class LineNumberMap {
      * Does this method have line number information?
      */
     public boolean hasLineNumbers() {
-        return hasLineNumbers;
+        return !lineNumberIndex.isEmpty();
     }
 
     /**
@@ -143,9 +86,13 @@ public class LineNumberMap {
      * @param handle
      *            the InstructionHandle
      * @return the LineNumber object containing bytecode offset and source line
-     *         number
+     *         number, or null if the method has no line number information
      */
     public LineNumber lookupLineNumber(InstructionHandle handle) {
-        return lineNumberMap.get(handle);
+        if (lineNumberIndex.isEmpty()) {
+            return null;
+        }
+        int bytecodeOffset = handle.getPosition();
+        return new LineNumber(bytecodeOffset, lineNumberIndex.getSourceLine(bytecodeOffset));
     }
 }
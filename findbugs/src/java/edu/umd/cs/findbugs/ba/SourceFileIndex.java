@@ -0,0 +1,461 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.SystemProperties;
+
+/**
+ * An index of the files under a source directory, so that looking up a source
+ * file doesn't touch the file system. The index records, for each directory,
+ * its last modification time and its files and subdirectories; it is built
+ * by walking the directories on several threads.
+ * <p>
+ * An index can be saved and loaded again. Loading it refreshes it
+ * incrementally: only the directories whose modification time changed, i.e.,
+ * in which files were added, removed or renamed, are listed again. Changes to
+ * the contents of the files don't matter to the index.
+ * <p>
+ * Paths in the index are relative to the root directory, with '/' as
+ * separator.
+ */
+public class SourceFileIndex {
+
+    /** Should the source directories be indexed? */
+    public static final boolean ENABLED = SystemProperties.getBoolean("findbugs.sourceIndex");
+
+    private static final int THREADS = SystemProperties.getInt("findbugs.sourceIndex.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final int MAGIC = 0x46425349;
+
+    /**
+     * Directories modified this recently may still change within the
+     * resolution of their modification time; they are listed again by the
+     * next refresh.
+     */
+    private static final long RECENTLY_MODIFIED_MILLIS = 2000;
+
+    private static final int VERSION = 1;
+
+    /** The indexes of this run, by canonical root directory */
+    private static final Map<String, SourceFileIndex> indexes = new HashMap<String, SourceFileIndex>();
+
+    /**
+     * A directory of the index.
+     */
+    private static class Directory {
+        final long lastModified;
+
+        final String[] files;
+
+        final String[] subdirectories;
+
+        Directory(long lastModified, String[] files, String[] subdirectories) {
+            this.lastModified = lastModified;
+            this.files = files;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private final String rootPath;
+
+    /** directories by relative path, "" for the root */
+    private final Map<String, Directory> directories;
+
+    /** relative paths of all files */
+    private final Set<String> files;
+
+    /** relative paths of all files, by file name; built on first use */
+    private Map<String, List<String>> filesByName;
+
+    /** Did the refresh find changes since the index was saved? */
+    private final boolean changed;
+
+    private SourceFileIndex(String rootPath, Map<String, Directory> directories, boolean changed) {
+        this.rootPath = rootPath;
+        this.directories = directories;
+        this.changed = changed;
+        int numFiles = 0;
+        for (Directory d : directories.values()) {
+            numFiles += d.files.length;
+        }
+        files = new HashSet<String>(numFiles * 4 / 3 + 1);
+        for (Map.Entry<String, Directory> e : directories.entrySet()) {
+            for (String name : e.getValue().files) {
+                files.add(child(e.getKey(), name));
+            }
+        }
+    }
+
+    /**
+     * Get the index of a source directory. The index is kept for the rest of
+     * the run; if the findbugs.sourceIndex.dir property is set, it is also
+     * saved in that directory, and loaded from there by later runs. Either
+     * way, it is refreshed first. Failures to read or save the index are
+     * logged.
+     */
+    public static SourceFileIndex forDirectory(File root) {
+        String rootPath = canonicalPath(root);
+        String indexDir = SystemProperties.getProperty("findbugs.sourceIndex.dir");
+        File indexFile = indexDir == null ? null : new File(indexDir, Integer.toHexString(rootPath.hashCode()) + "-"
+                + new File(rootPath).getName() + ".idx");
+        synchronized (indexes) {
+            SourceFileIndex previous = indexes.get(rootPath);
+            if (previous == null && indexFile != null && indexFile.isFile()) {
+                try {
+                    previous = read(indexFile, rootPath);
+                } catch (IOException e) {
+                    AnalysisContext.logError("Unable to read source index " + indexFile, e);
+                }
+            }
+            SourceFileIndex index = build(new File(rootPath), previous);
+            if (indexFile != null && (index.changed || !indexFile.isFile())) {
+                try {
+                    indexFile.getParentFile().mkdirs();
+                    index.write(indexFile);
+                } catch (IOException e) {
+                    AnalysisContext.logError("Unable to save source index " + indexFile, e);
+                }
+            }
+            indexes.put(rootPath, index);
+            return index;
+        }
+    }
+
+    /**
+     * Index a directory.
+     *
+     * @param root
+     *            the directory
+     * @param previous
+     *            an earlier index of the directory, whose unchanged
+     *            directories are reused, or null
+     */
+    public static SourceFileIndex build(File root, @CheckForNull SourceFileIndex previous) {
+        String rootPath = canonicalPath(root);
+        Map<String, Directory> old = previous != null && previous.rootPath.equals(rootPath) ? previous.directories : Collections
+                .<String, Directory> emptyMap();
+        ConcurrentHashMap<String, Directory> result = new ConcurrentHashMap<String, Directory>();
+        Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        visited.add(rootPath);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, THREADS));
+        try {
+            pool.invoke(new Scan(rootPath, new File(rootPath), "", old, result, visited));
+        } finally {
+            pool.shutdown();
+        }
+        boolean changed = result.size() != old.size();
+        if (!changed) {
+            for (Map.Entry<String, Directory> e : result.entrySet()) {
+                if (old.get(e.getKey()) != e.getValue()) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return new SourceFileIndex(rootPath, new HashMap<String, Directory>(result), changed);
+    }
+
+    /**
+     * Indexes a directory and, in parallel, its subdirectories.
+     */
+    private static class Scan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final String rootPath;
+
+        final File dir;
+
+        final String path;
+
+        final Map<String, Directory> old;
+
+        final ConcurrentHashMap<String, Directory> result;
+
+        final Set<String> visited;
+
+        Scan(String rootPath, File dir, String path, Map<String, Directory> old, ConcurrentHashMap<String, Directory> result,
+                Set<String> visited) {
+            this.rootPath = rootPath;
+            this.dir = dir;
+            this.path = path;
+            this.old = old;
+            this.result = result;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            long lastModified = dir.lastModified();
+            if (lastModified == 0) {
+                // Gone, or not readable
+                return;
+            }
+            Directory d = old.get(path);
+            if (d == null || d.lastModified != lastModified) {
+                d = list(lastModified);
+                if (d == null) {
+                    return;
+                }
+            }
+            result.put(path, d);
+            List<Scan> subtasks = new ArrayList<Scan>(d.subdirectories.length);
+            for (String name : d.subdirectories) {
+                subtasks.add(new Scan(rootPath, new File(dir, name), child(path, name), old, result, visited));
+            }
+            invokeAll(subtasks);
+        }
+
+        private @CheckForNull Directory list(long lastModified) {
+            File[] contents = dir.listFiles();
+            if (contents == null) {
+                return null;
+            }
+            List<String> fileNames = new ArrayList<String>();
+            List<String> subdirectoryNames = new ArrayList<String>();
+            for (File f : contents) {
+                if (f.isDirectory()) {
+                    // Like RecursiveFileSearch, stay under the root and
+                    // don't follow links to directories seen already
+                    String canonical = canonicalPath(f);
+                    if (canonical.startsWith(rootPath) && visited.add(canonical)) {
+                        subdirectoryNames.add(f.getName());
+                    }
+                } else {
+                    fileNames.add(f.getName());
+                }
+            }
+            if (System.currentTimeMillis() - lastModified < RECENTLY_MODIFIED_MILLIS) {
+                lastModified = -1;
+            }
+            return new Directory(lastModified, fileNames.toArray(new String[fileNames.size()]),
+                    subdirectoryNames.toArray(new String[subdirectoryNames.size()]));
+        }
+    }
+
+    private static String child(String path, String name) {
+        return path.length() == 0 ? name : path + "/" + name;
+    }
+
+    private static String canonicalPath(File f) {
+        try {
+            return f.getCanonicalPath();
+        } catch (IOException e) {
+            return f.getAbsolutePath();
+        }
+    }
+
+    /**
+     * @return the canonical path of the indexed directory
+     */
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    /**
+     * @return the number of files in the index
+     */
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Is there a file with the given path, relative to the root directory and
+     * with '/' as separator?
+     */
+    public boolean contains(String relativePath) {
+        return files.contains(relativePath);
+    }
+
+    /**
+     * Could a file have been added at the given path since the directory was
+     * indexed? Adding a file or a directory changes the modification time of
+     * the directory holding it, so only the deepest indexed directory on the
+     * path is checked.
+     *
+     * @param relativePath
+     *            path with '/' as separator
+     * @return true if that directory was modified after it was indexed, or
+     *         so shortly before that the change may not show
+     */
+    public boolean isStale(String relativePath) {
+        String path = relativePath;
+        Directory d;
+        do {
+            int slash = path.lastIndexOf('/');
+            path = slash < 0 ? "" : path.substring(0, slash);
+            d = directories.get(path);
+        } while (d == null && path.length() > 0);
+        if (d == null) {
+            // The root itself wasn't readable
+            return new File(rootPath).lastModified() != 0;
+        }
+        return d.lastModified == -1 || new File(rootPath, path.replace('/', File.separatorChar)).lastModified() != d.lastModified;
+    }
+
+    /**
+     * @return the relative paths of the directories of the index
+     */
+    public Set<String> getDirectories() {
+        return Collections.unmodifiableSet(directories.keySet());
+    }
+
+    /**
+     * Find the directories which hold a file at the given relative path,
+     * such as a source file name qualified by its package directory.
+     *
+     * @param relativePath
+     *            path with '/' as separator
+     * @return the relative paths of the directories d such that d/relativePath
+     *         is in the index, with "" for the root
+     */
+    public List<String> findDirectoriesContaining(String relativePath) {
+        Map<String, List<String>> byName;
+        synchronized (this) {
+            byName = filesByName;
+            if (byName == null) {
+                byName = new HashMap<String, List<String>>();
+                for (String file : files) {
+                    String name = file.substring(file.lastIndexOf('/') + 1);
+                    List<String> paths = byName.get(name);
+                    if (paths == null) {
+                        paths = new ArrayList<String>(1);
+                        byName.put(name, paths);
+                    }
+                    paths.add(file);
+                }
+                filesByName = byName;
+            }
+        }
+        List<String> paths = byName.get(relativePath.substring(relativePath.lastIndexOf('/') + 1));
+        if (paths == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<String>();
+        for (String file : paths) {
+            if (file.equals(relativePath)) {
+                result.add("");
+            } else if (file.endsWith(relativePath) && file.charAt(file.length() - relativePath.length() - 1) == '/') {
+                result.add(file.substring(0, file.length() - relativePath.length() - 1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Save the index.
+     */
+    public void write(File indexFile) throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(rootPath);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, Directory> e : directories.entrySet()) {
+                Directory d = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(d.lastModified);
+                writeNames(out, d.files);
+                writeNames(out, d.subdirectories);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!tmp.renameTo(indexFile)) {
+                tmp.delete();
+                throw new IOException("Unable to write " + indexFile);
+            }
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    /**
+     * Load a saved index, without refreshing it.
+     *
+     * @param rootPath
+     *            canonical path of the directory the index should be for, or
+     *            null for any
+     * @return the index, or null if the file is not an index of the directory
+     */
+    public static @CheckForNull SourceFileIndex read(File indexFile, @CheckForNull String rootPath) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(indexFile))));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String indexedPath = in.readUTF();
+            if (rootPath != null && !rootPath.equals(indexedPath)) {
+                return null;
+            }
+            int numDirectories = in.readInt();
+            Map<String, Directory> directories = new HashMap<String, Directory>(numDirectories * 4 / 3 + 1);
+            for (int i = 0; i < numDirectories; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                directories.put(path, new Directory(lastModified, readNames(in), readNames(in)));
+            }
+            return new SourceFileIndex(indexedPath, directories, false);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+}
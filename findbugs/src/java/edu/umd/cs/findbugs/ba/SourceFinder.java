@@ -99,8 +99,15 @@ public class SourceFinder {
     private static class DirectorySourceRepository implements SourceRepository {
         private final String baseDir;
 
-        public DirectorySourceRepository(String baseDir) {
+        /** Should the directory be indexed? */
+        private final boolean indexed;
+
+        /** index of the directory, if it is indexed */
+        private SourceFileIndex index;
+
+        public DirectorySourceRepository(String baseDir, boolean indexed) {
             this.baseDir = baseDir;
+            this.indexed = indexed;
         }
 
         @Override
@@ -108,8 +115,46 @@ public class SourceFinder {
             return "DirectorySourceRepository:" + baseDir;
         }
 
+        /**
+         * @return the index of the directory, built or refreshed on first
+         *         use, or null if the directory is not indexed
+         */
+        private synchronized SourceFileIndex getIndex() {
+            if (index == null && indexed) {
+                index = SourceFileIndex.forDirectory(new File(baseDir));
+            }
+            return index;
+        }
+
+        /**
+         * Look up a file in the index. A miss is only trusted if the
+         * directory which would hold the file is unchanged since it was
+         * indexed; otherwise the index is refreshed and asked again. A file
+         * removed after indexing is still found, and fails to open.
+         */
+        private synchronized boolean indexContains(String relativePath) {
+            if (index.contains(relativePath)) {
+                return true;
+            }
+            if (!index.isStale(relativePath)) {
+                return false;
+            }
+            if (DEBUG) {
+                System.out.println("Refreshing index of " + baseDir + " for " + relativePath);
+            }
+            index = SourceFileIndex.forDirectory(new File(baseDir));
+            return index.contains(relativePath);
+        }
+
         @Override
         public boolean contains(String fileName) {
+            if (getIndex() != null) {
+                boolean exists = indexContains(fileName.replace(File.separatorChar, '/'));
+                if (DEBUG) {
+                    System.out.println("Indexed " + exists + " for " + fileName + " in " + baseDir);
+                }
+                return exists;
+            }
             File file = new File(getFullFileName(fileName));
             boolean exists = file.exists();
             if (DEBUG) {
@@ -360,6 +405,8 @@ public class SourceFinder {
 
     private Project project;
 
+    private final boolean indexSourceDirectories;
+
     /*
      * ----------------------------------------------------------------------
      * Public methods
@@ -367,6 +414,16 @@ public class SourceFinder {
      */
 
     public SourceFinder(Project project) {
+        this(project, SourceFileIndex.ENABLED);
+    }
+
+    /**
+     * @param indexSourceDirectories
+     *            should source directories be indexed, instead of looking up
+     *            each file in the file system?
+     */
+    SourceFinder(Project project, boolean indexSourceDirectories) {
+        this.indexSourceDirectories = indexSourceDirectories;
         setProject(project);
     }
 
@@ -398,7 +455,7 @@ public class SourceFinder {
             } else {
                 File dir = new File(repos);
                 if (dir.canRead() && dir.isDirectory()) {
-                    repositoryList.add(new DirectorySourceRepository(repos));
+                    repositoryList.add(new DirectorySourceRepository(repos, indexSourceDirectories));
                 } else {
                     AnalysisContext.logError("Unable to load " + repos);
 
@@ -20,11 +20,11 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -64,26 +64,31 @@ import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
- * Factory methods for creating XMethod objects.
+ * Factory methods for creating XMethod objects. The interning tables and the
+ * called method sets are safe for concurrent use.
  *
  * @author David Hovemeyer
  */
 public class XFactory {
     public static final boolean DEBUG_UNRESOLVED = SystemProperties.getBoolean("findbugs.xfactory.debugunresolved");
 
-    private final Set<ClassDescriptor> reflectiveClasses = new HashSet<ClassDescriptor>();
+    private final Set<ClassDescriptor> reflectiveClasses = newConcurrentSet();
 
-    private final Map<MethodDescriptor, XMethod> methods = new HashMap<MethodDescriptor, XMethod>();
+    private final ConcurrentMap<MethodDescriptor, XMethod> methods = new ConcurrentHashMap<MethodDescriptor, XMethod>();
 
-    private final Map<FieldDescriptor, XField> fields = new HashMap<FieldDescriptor, XField>();
+    private final ConcurrentMap<FieldDescriptor, XField> fields = new ConcurrentHashMap<FieldDescriptor, XField>();
 
-    private final Set<XMethod> calledMethods = new HashSet<XMethod>();
+    private final Set<XMethod> calledMethods = newConcurrentSet();
 
-    private final Set<XField> emptyArrays = new HashSet<XField>();
+    private final Set<XField> emptyArrays = newConcurrentSet();
 
-    private final Set<String> calledMethodSignatures = new HashSet<String>();
+    private final Set<String> calledMethodSignatures = newConcurrentSet();
 
-    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = new HashSet<MethodDescriptor>();
+    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = newConcurrentSet();
+
+    private static <E> Set<E> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<E, Boolean>());
+    }
 
     public void canonicalizeAll() {
         DescriptorFactory descriptorFactory = DescriptorFactory.instance();
@@ -130,7 +135,7 @@ public class XFactory {
     }
 
     public boolean isEmptyArrayField(@CheckForNull XField f) {
-        return emptyArrays.contains(f);
+        return f != null && emptyArrays.contains(f);
     }
 
     public boolean isCalled(XMethod m) {
@@ -330,7 +335,11 @@ public class XFactory {
             xFactory.methods.put((MethodDescriptor) m, m);
             DescriptorFactory.instance().canonicalize((MethodDescriptor) m);
         } else {
-            xFactory.methods.put(desc, m);
+            // another thread may have resolved the same descriptor meanwhile
+            XMethod existing = xFactory.methods.putIfAbsent(desc, m);
+            if (existing != null) {
+                return existing;
+            }
         }
         return m;
     }
@@ -556,7 +565,10 @@ public class XFactory {
             return m;
         }
         m = xFactory.resolveXField(desc);
-        xFactory.fields.put(desc, m);
+        XField existing = xFactory.fields.putIfAbsent(desc, m);
+        if (existing != null) {
+            return existing;
+        }
         return m;
     }
 
@@ -29,10 +29,10 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.WillClose;
@@ -43,7 +43,9 @@ import edu.umd.cs.findbugs.classfile.FieldOrMethodDescriptor;
 import edu.umd.cs.findbugs.util.Util;
 
 /**
- * Property database for interprocedural analysis.
+ * Property database for interprocedural analysis. Properties may be set and
+ * queried concurrently, e.g. by first pass detectors running on several
+ * threads.
  *
  * @param <KeyType>
  *            key type: either MethodDescriptor or FieldDescriptor
@@ -59,7 +61,7 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      * Constructor. Creates an empty property database.
      */
     protected PropertyDatabase() {
-        this.propertyMap = new HashMap<KeyType, ValueType>();
+        this.propertyMap = new ConcurrentHashMap<KeyType, ValueType>();
     }
 
     /**
@@ -25,7 +25,6 @@ import org.apache.bcel.generic.ConstantPoolGen;
 
 import edu.umd.cs.findbugs.ba.BasicBlock;
 import edu.umd.cs.findbugs.ba.CFG;
-import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.DepthFirstSearch;
 import edu.umd.cs.findbugs.ba.ReverseDepthFirstSearch;
 import edu.umd.cs.findbugs.ba.XMethod;
@@ -60,7 +59,7 @@ TypeQualifierDataflowFactory<BackwardTypeQualifierDataflowAnalysis, BackwardType
      * (non-Javadoc)
      *
      * @see
-     * edu.umd.cs.findbugs.ba.jsr305.TypeQualifierDataflowFactory#getDataflow
+     * edu.umd.cs.findbugs.ba.jsr305.TypeQualifierDataflowFactory#createAnalysis
      * (edu.umd.cs.findbugs.ba.DepthFirstSearch, edu.umd.cs.findbugs.ba.XMethod,
      * edu.umd.cs.findbugs.ba.CFG,
      * edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow,
@@ -70,7 +69,7 @@ TypeQualifierDataflowFactory<BackwardTypeQualifierDataflowAnalysis, BackwardType
      * edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue)
      */
     @Override
-    protected BackwardTypeQualifierDataflow getDataflow(DepthFirstSearch dfs, XMethod xmethod, CFG cfg,
+    protected BackwardTypeQualifierDataflowAnalysis createAnalysis(DepthFirstSearch dfs, XMethod xmethod, CFG cfg,
             ValueNumberDataflow vnaDataflow, ConstantPoolGen cpg, IAnalysisCache analysisCache,
             MethodDescriptor methodDescriptor, TypeQualifierValue<?> typeQualifierValue) throws CheckedAnalysisException {
         ReverseDepthFirstSearch rdfs = analysisCache.getMethodAnalysis(ReverseDepthFirstSearch.class, methodDescriptor);
@@ -86,14 +85,12 @@ TypeQualifierDataflowFactory<BackwardTypeQualifierDataflowAnalysis, BackwardType
         ForwardTypeQualifierDataflow forwardDataflow = forwardFactory.getDataflow(typeQualifierValue);
         analysis.setForwardTypeQualifierDataflow(forwardDataflow);
         analysis.registerSourceSinkLocations();
+        return analysis;
+    }
 
-        BackwardTypeQualifierDataflow dataflow = new BackwardTypeQualifierDataflow(cfg, analysis);
-
-        dataflow.execute();
-        if (ClassContext.DUMP_DATAFLOW_ANALYSIS) {
-            dataflow.dumpDataflow(analysis);
-        }
-        return dataflow;
+    @Override
+    protected BackwardTypeQualifierDataflow createDataflow(CFG cfg, BackwardTypeQualifierDataflowAnalysis analysis) {
+        return new BackwardTypeQualifierDataflow(cfg, analysis);
     }
 
     @Override
@@ -0,0 +1,346 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba.jsr305;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.generic.InstructionHandle;
+
+import edu.umd.cs.findbugs.ba.BasicBlock;
+import edu.umd.cs.findbugs.ba.BlockOrder;
+import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.DataflowAnalysis;
+import edu.umd.cs.findbugs.ba.DataflowAnalysisException;
+import edu.umd.cs.findbugs.ba.Edge;
+import edu.umd.cs.findbugs.ba.Location;
+
+/**
+ * Runs several TypeQualifierDataflowAnalyses of the same method and the same
+ * direction, one per type qualifier value, in a single pass of the Dataflow
+ * driver. Each fact is a vector with one TypeQualifierValueSet (a "lane") per
+ * analysis, and every operation is applied lane by lane.
+ *
+ * <p>
+ * The start and result facts of the lanes are the start and result facts of
+ * the analyses themselves, so after execution each analysis (and a
+ * TypeQualifierDataflow created for it) answers queries as if it had been run
+ * on its own. To get exactly the same facts as separate runs, a lane is frozen
+ * after the first iteration in which none of its result facts changed, which
+ * is the iteration after which its own Dataflow would have stopped: frozen
+ * lanes are no longer touched by the driver.
+ * </p>
+ *
+ * <p>
+ * All analyses must use the same CFG and the same block order.
+ * </p>
+ *
+ * @see TypeQualifierDataflowFactory#prepareDataflows(java.util.Collection)
+ */
+public class CombinedTypeQualifierDataflowAnalysis implements
+DataflowAnalysis<CombinedTypeQualifierDataflowAnalysis.Lanes> {
+
+    /**
+     * Dataflow fact of the combined analysis: one TypeQualifierValueSet for
+     * each analysis.
+     */
+    public static class Lanes {
+        final TypeQualifierValueSet[] lane;
+
+        Lanes(TypeQualifierValueSet[] lane) {
+            this.lane = lane;
+        }
+
+        public TypeQualifierValueSet getLane(int i) {
+            return lane[i];
+        }
+    }
+
+    private final TypeQualifierDataflowAnalysis[] analyses;
+
+    private final IdentityHashMap<BasicBlock, Lanes> startFactMap = new IdentityHashMap<BasicBlock, Lanes>();
+
+    private final IdentityHashMap<BasicBlock, Lanes> resultFactMap = new IdentityHashMap<BasicBlock, Lanes>();
+
+    /** lanes whose facts are final */
+    private final BitSet frozen = new BitSet();
+
+    /** lanes with a result fact changed in the current iteration */
+    private final BitSet changed = new BitSet();
+
+    /** result facts before the transfer function is applied */
+    private final TypeQualifierValueSet[] scratch;
+
+    /**
+     * Constructor.
+     *
+     * @param analyses
+     *            the analyses to run; they must be ready to execute, i.e.,
+     *            their source and sink locations must have been registered
+     */
+    public CombinedTypeQualifierDataflowAnalysis(List<? extends TypeQualifierDataflowAnalysis> analyses) {
+        if (analyses.isEmpty()) {
+            throw new IllegalArgumentException("No analyses to combine");
+        }
+        this.analyses = analyses.toArray(new TypeQualifierDataflowAnalysis[analyses.size()]);
+        this.scratch = new TypeQualifierValueSet[this.analyses.length];
+        for (int i = 0; i < this.analyses.length; i++) {
+            scratch[i] = this.analyses[i].createFact();
+        }
+    }
+
+    /**
+     * @return the number of analyses which are still iterating
+     */
+    public int getNumActiveLanes() {
+        return analyses.length - frozen.cardinality();
+    }
+
+    private boolean isActive(int i) {
+        return !frozen.get(i);
+    }
+
+    @Override
+    public Lanes createFact() {
+        TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+        for (int i = 0; i < analyses.length; i++) {
+            lane[i] = analyses[i].createFact();
+        }
+        return new Lanes(lane);
+    }
+
+    @Override
+    public Lanes getStartFact(BasicBlock block) {
+        Lanes fact = startFactMap.get(block);
+        if (fact == null) {
+            TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+            for (int i = 0; i < analyses.length; i++) {
+                lane[i] = analyses[i].getStartFact(block);
+            }
+            fact = new Lanes(lane);
+            startFactMap.put(block, fact);
+        }
+        return fact;
+    }
+
+    @Override
+    public Lanes getResultFact(BasicBlock block) {
+        Lanes fact = resultFactMap.get(block);
+        if (fact == null) {
+            TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+            for (int i = 0; i < analyses.length; i++) {
+                lane[i] = analyses[i].getResultFact(block);
+            }
+            fact = new Lanes(lane);
+            resultFactMap.put(block, fact);
+        }
+        return fact;
+    }
+
+    @Override
+    public Lanes getFactAtLocation(Location location) throws DataflowAnalysisException {
+        TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+        for (int i = 0; i < analyses.length; i++) {
+            lane[i] = analyses[i].getFactAtLocation(location);
+        }
+        return new Lanes(lane);
+    }
+
+    @Override
+    public Lanes getFactAfterLocation(Location location) throws DataflowAnalysisException {
+        TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+        for (int i = 0; i < analyses.length; i++) {
+            lane[i] = analyses[i].getFactAfterLocation(location);
+        }
+        return new Lanes(lane);
+    }
+
+    @Override
+    public Lanes getFactOnEdge(Edge edge) throws DataflowAnalysisException {
+        TypeQualifierValueSet[] lane = new TypeQualifierValueSet[analyses.length];
+        for (int i = 0; i < analyses.length; i++) {
+            lane[i] = analyses[i].getFactOnEdge(edge);
+        }
+        return new Lanes(lane);
+    }
+
+    @Override
+    public void copy(Lanes source, Lanes dest) {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].copy(source.lane[i], dest.lane[i]);
+            }
+        }
+    }
+
+    @Override
+    public void initEntryFact(Lanes result) throws DataflowAnalysisException {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].initEntryFact(result.lane[i]);
+            }
+        }
+    }
+
+    @Override
+    public void makeFactTop(Lanes fact) {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].makeFactTop(fact.lane[i]);
+            }
+        }
+    }
+
+    /**
+     * A fact is top if all its active lanes are top.
+     */
+    @Override
+    public boolean isTop(Lanes fact) {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i) && !analyses[i].isTop(fact.lane[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isForwards() {
+        return analyses[0].isForwards();
+    }
+
+    @Override
+    public BlockOrder getBlockOrder(CFG cfg) {
+        return analyses[0].getBlockOrder(cfg);
+    }
+
+    /**
+     * Two facts are the same if each active lane is unchanged in the sense the
+     * Dataflow driver uses for a single analysis.
+     */
+    @Override
+    public boolean same(Lanes fact1, Lanes fact2) {
+        for (int i = 0; i < analyses.length; i++) {
+            if (!isActive(i)) {
+                continue;
+            }
+            TypeQualifierDataflowAnalysis analysis = analyses[i];
+            if (analysis.isTop(fact2.lane[i]) ? !analysis.isTop(fact1.lane[i]) : !analysis.same(fact1.lane[i], fact2.lane[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void transfer(BasicBlock basicBlock, @CheckForNull InstructionHandle end, Lanes start, Lanes result)
+            throws DataflowAnalysisException {
+        for (int i = 0; i < analyses.length; i++) {
+            if (!isActive(i)) {
+                continue;
+            }
+            TypeQualifierDataflowAnalysis analysis = analyses[i];
+            TypeQualifierValueSet laneResult = result.lane[i];
+            if (end != null) {
+                analysis.transfer(basicBlock, end, start.lane[i], laneResult);
+                continue;
+            }
+
+            // Track changes of the lane's block results the way the
+            // Dataflow driver does
+            boolean wasTop = analysis.isTop(laneResult);
+            if (!wasTop) {
+                analysis.copy(laneResult, scratch[i]);
+            }
+            analysis.transfer(basicBlock, null, start.lane[i], laneResult);
+            if (wasTop ? !analysis.isTop(laneResult) : !analysis.same(laneResult, scratch[i])) {
+                changed.set(i);
+            }
+        }
+    }
+
+    @Override
+    public void edgeTransfer(Edge edge, Lanes fact) throws DataflowAnalysisException {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].edgeTransfer(edge, fact.lane[i]);
+            }
+        }
+    }
+
+    @Override
+    public void meetInto(Lanes fact, Edge edge, Lanes result) throws DataflowAnalysisException {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].meetInto(fact.lane[i], edge, result.lane[i]);
+            }
+        }
+    }
+
+    @Override
+    public void startIteration() {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].startIteration();
+            }
+        }
+        changed.clear();
+    }
+
+    /**
+     * Freeze the lanes which reached their fixpoint in this iteration.
+     */
+    @Override
+    public void finishIteration() {
+        for (int i = 0; i < analyses.length; i++) {
+            if (isActive(i)) {
+                analyses[i].finishIteration();
+                if (!changed.get(i)) {
+                    frozen.set(i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getLastUpdateTimestamp(Lanes fact) {
+        return 0;
+    }
+
+    @Override
+    public void setLastUpdateTimestamp(Lanes fact, int timestamp) {
+    }
+
+    @Override
+    public String factToString(Lanes fact) {
+        StringBuilder buf = new StringBuilder("[");
+        for (int i = 0; i < analyses.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(analyses[i].factToString(fact.lane[i]));
+        }
+        return buf.append(']').toString();
+    }
+}
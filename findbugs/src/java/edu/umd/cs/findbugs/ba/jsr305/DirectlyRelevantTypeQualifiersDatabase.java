@@ -21,15 +21,15 @@ package edu.umd.cs.findbugs.ba.jsr305;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
 /**
- * Database of type qualfiers applied directly to methods.
+ * Database of type qualfiers applied directly to methods. The database may be
+ * updated concurrently.
  *
  * @author William Pugh
  * @author David Hovemeyer
@@ -44,8 +44,8 @@ public class DirectlyRelevantTypeQualifiersDatabase {
      * Constructor.
      */
     public DirectlyRelevantTypeQualifiersDatabase() {
-        methodToDirectlyRelevantQualifiersMap = new HashMap<MethodDescriptor, Collection<TypeQualifierValue<?>>>();
-        allKnownQualifiers = new HashSet<TypeQualifierValue<?>>();
+        methodToDirectlyRelevantQualifiersMap = new ConcurrentHashMap<MethodDescriptor, Collection<TypeQualifierValue<?>>>();
+        allKnownQualifiers = Collections.newSetFromMap(new ConcurrentHashMap<TypeQualifierValue<?>, Boolean>());
     }
 
     /**
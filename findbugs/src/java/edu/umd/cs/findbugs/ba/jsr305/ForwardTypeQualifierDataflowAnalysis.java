@@ -19,7 +19,10 @@
 
 package edu.umd.cs.findbugs.ba.jsr305;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.meta.When;
@@ -59,6 +62,10 @@ import edu.umd.cs.findbugs.classfile.Global;
 public class ForwardTypeQualifierDataflowAnalysis extends TypeQualifierDataflowAnalysis {
     private final DepthFirstSearch dfs;
 
+    /** results of the custom validator for the constants of the method */
+    private @CheckForNull
+    Map<Object, When> validatedConstants;
+
     /**
      * Constructor.
      *
@@ -99,6 +106,9 @@ public class ForwardTypeQualifierDataflowAnalysis extends TypeQualifierDataflowA
     }
 
     private void registerInstructionSources() throws DataflowAnalysisException {
+        if (typeQualifierValue.canValidate(null)) {
+            validateConstants();
+        }
         for (Iterator<Location> i = cfg.locationIterator(); i.hasNext();) {
             Location location = i.next();
             Instruction instruction = location.getHandle().getInstruction();
@@ -130,6 +140,29 @@ public class ForwardTypeQualifierDataflowAnalysis extends TypeQualifierDataflowA
         }
     }
 
+    /**
+     * Run the custom validator on all the constants used by the method at
+     * once, rather than entering the validation sandbox for each of them.
+     */
+    private void validateConstants() {
+        List<Object> constantValues = new ArrayList<Object>();
+        for (Iterator<Location> i = cfg.locationIterator(); i.hasNext();) {
+            Instruction instruction = i.next().getHandle().getInstruction();
+            if (instruction instanceof LDC) {
+                constantValues.add(((LDC) instruction).getValue(cpg));
+            } else if (instruction instanceof LDC2_W) {
+                constantValues.add(((LDC2_W) instruction).getValue(cpg));
+            } else if (instruction instanceof ConstantPushInstruction) {
+                constantValues.add(((ConstantPushInstruction) instruction).getValue());
+            } else if (instruction instanceof ACONST_NULL) {
+                constantValues.add(null);
+            }
+        }
+        if (!constantValues.isEmpty()) {
+            validatedConstants = typeQualifierValue.validateAll(constantValues);
+        }
+    }
+
     private void registerLDCValueSource(Location location) throws DataflowAnalysisException {
 
         LDC instruction = (LDC) location.getHandle().getInstruction();
@@ -149,7 +182,11 @@ public class ForwardTypeQualifierDataflowAnalysis extends TypeQualifierDataflowA
 
         When w;
         if (typeQualifierValue.canValidate(constantValue)) {
-            w = typeQualifierValue.validate(constantValue);
+            if (validatedConstants != null && validatedConstants.containsKey(constantValue)) {
+                w = validatedConstants.get(constantValue);
+            } else {
+                w = typeQualifierValue.validate(constantValue);
+            }
         } else if (typeQualifierValue.isStrictQualifier()) {
             return;
         } else {
@@ -30,7 +30,6 @@ import org.apache.bcel.generic.RETURN;
 import org.apache.bcel.generic.ReturnInstruction;
 
 import edu.umd.cs.findbugs.ba.CFG;
-import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.DataflowAnalysisException;
 import edu.umd.cs.findbugs.ba.DepthFirstSearch;
 import edu.umd.cs.findbugs.ba.Location;
@@ -64,19 +63,18 @@ TypeQualifierDataflowFactory<ForwardTypeQualifierDataflowAnalysis, ForwardTypeQu
 
 
     @Override
-    protected ForwardTypeQualifierDataflow getDataflow(DepthFirstSearch dfs, XMethod xmethod, CFG cfg,
+    protected ForwardTypeQualifierDataflowAnalysis createAnalysis(DepthFirstSearch dfs, XMethod xmethod, CFG cfg,
             ValueNumberDataflow vnaDataflow, ConstantPoolGen cpg, IAnalysisCache analysisCache,
             MethodDescriptor methodDescriptor, TypeQualifierValue<?> typeQualifierValue) throws DataflowAnalysisException {
         ForwardTypeQualifierDataflowAnalysis analysis = new ForwardTypeQualifierDataflowAnalysis(dfs, xmethod, cfg, vnaDataflow,
                 cpg, typeQualifierValue);
         analysis.registerSourceSinkLocations();
+        return analysis;
+    }
 
-        ForwardTypeQualifierDataflow dataflow = new ForwardTypeQualifierDataflow(cfg, analysis);
-        dataflow.execute();
-        if (ClassContext.DUMP_DATAFLOW_ANALYSIS) {
-            dataflow.dumpDataflow(analysis);
-        }
-        return dataflow;
+    @Override
+    protected ForwardTypeQualifierDataflow createDataflow(CFG cfg, ForwardTypeQualifierDataflowAnalysis analysis) {
+        return new ForwardTypeQualifierDataflow(cfg, analysis);
     }
 
     @Override
@@ -19,11 +19,17 @@
 
 package edu.umd.cs.findbugs.ba.jsr305;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import org.apache.bcel.generic.ConstantPoolGen;
 
+import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.Dataflow;
 import edu.umd.cs.findbugs.ba.DataflowAnalysisException;
 import edu.umd.cs.findbugs.ba.DepthFirstSearch;
 import edu.umd.cs.findbugs.ba.XFactory;
@@ -78,6 +84,79 @@ public abstract class TypeQualifierDataflowFactory<AnalysisType extends TypeQual
         return result.get();
     }
 
+    /**
+     * Compute the dataflows for several type qualifier values at once, in a
+     * single pass over the CFG with a
+     * {@link CombinedTypeQualifierDataflowAnalysis}. The results are meant to
+     * be those of separate {@link #getDataflow(TypeQualifierValue)} calls,
+     * which then return the precomputed dataflows. If the combined analysis
+     * fails, the error is logged, nothing is precomputed, and the dataflows
+     * are computed one by one on demand.
+     *
+     * @param typeQualifierValues
+     *            the type qualifier values whose dataflows will be needed
+     */
+    public void prepareDataflows(Collection<TypeQualifierValue<?>> typeQualifierValues) {
+        List<TypeQualifierValue<?>> pending = new ArrayList<TypeQualifierValue<?>>();
+        for (TypeQualifierValue<?> typeQualifierValue : typeQualifierValues) {
+            if (!dataflowMap.containsKey(typeQualifierValue) && !pending.contains(typeQualifierValue)) {
+                pending.add(typeQualifierValue);
+            }
+        }
+        if (pending.size() < 2) {
+            return;
+        }
+
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        XMethod xmethod;
+        CFG cfg;
+        ValueNumberDataflow vnaDataflow;
+        List<AnalysisType> analyses = new ArrayList<AnalysisType>(pending.size());
+        List<DataflowType> dataflows = new ArrayList<DataflowType>(pending.size());
+        try {
+            DepthFirstSearch dfs = analysisCache.getMethodAnalysis(DepthFirstSearch.class, methodDescriptor);
+            xmethod = XFactory.createXMethod(methodDescriptor);
+            cfg = analysisCache.getMethodAnalysis(CFG.class, methodDescriptor);
+            vnaDataflow = analysisCache.getMethodAnalysis(ValueNumberDataflow.class, methodDescriptor);
+            ConstantPoolGen cpg = analysisCache.getClassAnalysis(ConstantPoolGen.class, methodDescriptor.getClassDescriptor());
+
+            for (TypeQualifierValue<?> typeQualifierValue : pending) {
+                AnalysisType analysis = createAnalysis(dfs, xmethod, cfg, vnaDataflow, cpg, analysisCache, methodDescriptor,
+                        typeQualifierValue);
+                analyses.add(analysis);
+                // Initializes the analysis' result facts
+                dataflows.add(createDataflow(cfg, analysis));
+            }
+
+            new Dataflow<CombinedTypeQualifierDataflowAnalysis.Lanes, CombinedTypeQualifierDataflowAnalysis>(cfg,
+                    new CombinedTypeQualifierDataflowAnalysis(analyses)).execute();
+        } catch (CheckedAnalysisException e) {
+            AnalysisContext.logError("Error computing combined type qualifier dataflows of " + methodDescriptor
+                    + "; computing them one by one", e);
+            return;
+        } catch (RuntimeException e) {
+            AnalysisContext.logError("Error computing combined type qualifier dataflows of " + methodDescriptor
+                    + "; computing them one by one", e);
+            return;
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            DataflowResult<DataflowType> result = new DataflowResult<DataflowType>();
+            result.dataflow = dataflows.get(i);
+            if (ClassContext.DUMP_DATAFLOW_ANALYSIS) {
+                result.dataflow.dumpDataflow(analyses.get(i));
+            }
+            try {
+                populateDatabase(result.dataflow, vnaDataflow, xmethod, pending.get(i), analysisCache);
+            } catch (CheckedAnalysisException e) {
+                result.checkedException = e;
+            } catch (RuntimeException e) {
+                result.runtimeException = e;
+            }
+            dataflowMap.put(pending.get(i), result);
+        }
+    }
+
     private DataflowResult<DataflowType> compute(TypeQualifierValue<?> typeQualifierValue) {
         DataflowResult<DataflowType> result = new DataflowResult<DataflowType>();
 
@@ -90,18 +169,17 @@ public abstract class TypeQualifierDataflowFactory<AnalysisType extends TypeQual
             ValueNumberDataflow vnaDataflow = analysisCache.getMethodAnalysis(ValueNumberDataflow.class, methodDescriptor);
             ConstantPoolGen cpg = analysisCache.getClassAnalysis(ConstantPoolGen.class, methodDescriptor.getClassDescriptor());
 
-            DataflowType dataflow = getDataflow(dfs, xmethod, cfg, vnaDataflow, cpg, analysisCache, methodDescriptor,
+            AnalysisType analysis = createAnalysis(dfs, xmethod, cfg, vnaDataflow, cpg, analysisCache, methodDescriptor,
                     typeQualifierValue);
+            DataflowType dataflow = createDataflow(cfg, analysis);
+            dataflow.execute();
+            if (ClassContext.DUMP_DATAFLOW_ANALYSIS) {
+                dataflow.dumpDataflow(analysis);
+            }
 
             result.dataflow = dataflow;
 
-            if (TypeQualifierDatabase.USE_DATABASE) {
-                try {
-                    populateDatabase(dataflow, vnaDataflow, xmethod, typeQualifierValue);
-                } catch (DataflowAnalysisException e) {
-                    analysisCache.getErrorLogger().logError("Error populating type qualifier database", e);
-                }
-            }
+            populateDatabase(dataflow, vnaDataflow, xmethod, typeQualifierValue, analysisCache);
         } catch (CheckedAnalysisException e) {
             result.checkedException = e;
         } catch (RuntimeException e) {
@@ -111,9 +189,28 @@ public abstract class TypeQualifierDataflowFactory<AnalysisType extends TypeQual
         return result;
     }
 
-    protected abstract DataflowType getDataflow(DepthFirstSearch dfs, XMethod xmethod, CFG cfg, ValueNumberDataflow vnaDataflow,
-            ConstantPoolGen cpg, IAnalysisCache analysisCache, MethodDescriptor methodDescriptor1,
-            TypeQualifierValue<?> typeQualifierValue) throws CheckedAnalysisException;
+    private void populateDatabase(DataflowType dataflow, ValueNumberDataflow vnaDataflow, XMethod xmethod,
+            TypeQualifierValue<?> typeQualifierValue, IAnalysisCache analysisCache) throws CheckedAnalysisException {
+        if (TypeQualifierDatabase.USE_DATABASE) {
+            try {
+                populateDatabase(dataflow, vnaDataflow, xmethod, typeQualifierValue);
+            } catch (DataflowAnalysisException e) {
+                analysisCache.getErrorLogger().logError("Error populating type qualifier database", e);
+            }
+        }
+    }
+
+    /**
+     * Create the analysis for a type qualifier value, ready to be executed.
+     */
+    protected abstract AnalysisType createAnalysis(DepthFirstSearch dfs, XMethod xmethod, CFG cfg,
+            ValueNumberDataflow vnaDataflow, ConstantPoolGen cpg, IAnalysisCache analysisCache,
+            MethodDescriptor methodDescriptor1, TypeQualifierValue<?> typeQualifierValue) throws CheckedAnalysisException;
+
+    /**
+     * Create the (not yet executed) dataflow for an analysis.
+     */
+    protected abstract DataflowType createDataflow(CFG cfg, AnalysisType analysis);
 
     protected abstract void populateDatabase(DataflowType dataflow, ValueNumberDataflow vnaDataflow, XMethod xmethod,
             TypeQualifierValue<?> tqv) throws CheckedAnalysisException;
@@ -23,10 +23,14 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.CheckForNull;
@@ -48,6 +52,7 @@ import edu.umd.cs.findbugs.classfile.analysis.ClassData;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.util.DualKeyHashMap;
+import edu.umd.cs.findbugs.util.MapCache;
 import edu.umd.cs.findbugs.util.Util;
 
 /**
@@ -63,6 +68,12 @@ public class TypeQualifierValue<A extends Annotation> {
     public static final boolean DEBUG = SystemProperties.getBoolean("tqv.debug");
     public static final boolean DEBUG_CLASSLOADING = SystemProperties.getBoolean("tqv.debug.classloading");
 
+    /**
+     * Maximum number of constant values whose validation result is
+     * remembered for each type qualifier value with a custom validator.
+     */
+    private static final int VALIDATION_CACHE_SIZE = SystemProperties.getInt("findbugs.typeQualifiers.validationCache", 1000);
+
     private static final ClassDescriptor EXCLUSIVE_ANNOTATION = DescriptorFactory.instance().getClassDescriptor(
             javax.annotation.meta.Exclusive.class);
 
@@ -85,6 +96,12 @@ public class TypeQualifierValue<A extends Annotation> {
     private final @CheckForNull
     TypeQualifierValidator<A> validator;
 
+    /**
+     * Results of the custom validator, by constant value; null if there is
+     * no validator or caching is disabled.
+     */
+    private final @CheckForNull
+    MapCache<Object, When> validationCache;
 
 
     private TypeQualifierValue(ClassDescriptor typeQualifier, @CheckForNull Object value) {
@@ -202,10 +219,34 @@ public class TypeQualifierValue<A extends Annotation> {
             }
         }
         this.validator = validator1;
+        this.validationCache = validator1 != null ? createValidationCache() : null;
         this.typeQualifierClass = qualifierClass;
         this.proxy = proxy1;
     }
 
+    /**
+     * Constructor for a TypeQualifierValue of the given annotation using the
+     * given validator, without looking up the type qualifier class in the
+     * analysis cache. Package-private for testing.
+     */
+    @SuppressWarnings("unchecked")
+    TypeQualifierValue(A proxy, TypeQualifierValidator<A> validator) {
+        this.typeQualifierClass = (Class<A>) proxy.annotationType();
+        this.typeQualifier = DescriptorFactory.createClassDescriptor(typeQualifierClass);
+        this.value = null;
+        this.isStrict = false;
+        this.isExclusive = false;
+        this.isExhaustive = false;
+        this.validator = validator;
+        this.validationCache = createValidationCache();
+        this.proxy = proxy;
+    }
+
+    private static @CheckForNull
+    MapCache<Object, When> createValidationCache() {
+        return VALIDATION_CACHE_SIZE > 0 ? new MapCache<Object, When>(VALIDATION_CACHE_SIZE) : null;
+    }
+
     private static <A extends Annotation> TypeQualifierValidator<A> getValidator(
             Class<? extends TypeQualifierValidator<A>> checkerClass)
                     throws InstantiationException, IllegalAccessException {
@@ -270,17 +311,102 @@ public class TypeQualifierValue<A extends Annotation> {
         if (validator == null) {
             throw new IllegalStateException("No validator");
         }
+        When result = getCachedValidation(constantValue);
+        if (result != null) {
+            return result;
+        }
         IAnalysisCache analysisCache = Global.getAnalysisCache();
         Profiler profiler = analysisCache.getProfiler();
         profiler.start(validator.getClass());
         try {
-            return ValidationSecurityManager.sandboxedValidation(proxy, validator, constantValue);
+            result = ValidationSecurityManager.sandboxedValidation(proxy, validator, constantValue);
         } catch (Exception e) {
             AnalysisContext.logError("Error executing custom validator for " + typeQualifier + " " + constantValue, e);
             return When.UNKNOWN;
         } finally {
             profiler.end(validator.getClass());
         }
+        cacheValidation(constantValue, result);
+        return result;
+    }
+
+    /**
+     * Validate several constant values, e.g., all the constants used by a
+     * method. Values validated before are looked up in the cache; the others
+     * are validated in a single sandboxed call.
+     *
+     * @param constantValues
+     *            the constant values to validate
+     * @return map of each constant value to the result of
+     *         {@link #validate(Object)} for it
+     */
+    public Map<Object, When> validateAll(Collection<?> constantValues) {
+        if (validator == null) {
+            throw new IllegalStateException("No validator");
+        }
+        Map<Object, When> results = new HashMap<Object, When>();
+        List<Object> pending = new ArrayList<Object>();
+        for (Object constantValue : constantValues) {
+            if (results.containsKey(constantValue)) {
+                continue;
+            }
+            When result = getCachedValidation(constantValue);
+            results.put(constantValue, result);
+            if (result == null) {
+                pending.add(constantValue);
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+
+        Object[] values = pending.toArray();
+        When[] validated = new When[values.length];
+        Exception[] failures = new Exception[values.length];
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        Profiler profiler = analysisCache.getProfiler();
+        profiler.start(validator.getClass());
+        boolean completed = false;
+        try {
+            ValidationSecurityManager.sandboxedValidation(proxy, validator, values, validated, failures);
+            completed = true;
+        } catch (Exception e) {
+            AnalysisContext.logError("Error executing custom validator for " + typeQualifier, e);
+        } finally {
+            profiler.end(validator.getClass());
+        }
+        for (int i = 0; i < values.length; i++) {
+            When result = validated[i];
+            if (failures[i] != null) {
+                AnalysisContext.logError("Error executing custom validator for " + typeQualifier + " " + values[i], failures[i]);
+                result = When.UNKNOWN;
+            } else if (completed) {
+                cacheValidation(values[i], result);
+            } else if (result == null) {
+                result = When.UNKNOWN;
+            }
+            results.put(values[i], result);
+        }
+        return results;
+    }
+
+    private @CheckForNull
+    When getCachedValidation(@CheckForNull Object constantValue) {
+        if (validationCache == null) {
+            return null;
+        }
+        synchronized (validationCache) {
+            return validationCache.get(constantValue);
+        }
+    }
+
+    private void cacheValidation(@CheckForNull Object constantValue, @CheckForNull When result) {
+        if (validationCache == null || result == null) {
+            return;
+        }
+        synchronized (validationCache) {
+            validationCache.put(constantValue, result);
+        }
     }
 
     /**
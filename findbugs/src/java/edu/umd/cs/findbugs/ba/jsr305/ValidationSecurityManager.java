@@ -75,6 +75,41 @@ final class ValidationSecurityManager extends SecurityManager {
     }
 
 
+    /**
+     * Validate several constant values in a single sandboxed call. An
+     * exception thrown by the validator for one value is stored in failures
+     * and does not stop the validation of the other values.
+     */
+    static <A extends Annotation> void sandboxedValidation(A proxy, TypeQualifierValidator<A> v, Object[] constantValues,
+            When[] results, Exception[] failures) {
+        if (performingValidation.get()) {
+            throw new IllegalStateException("recursive validation");
+        }
+
+        try {
+            performingValidation.set(Boolean.TRUE);
+            if (TypeQualifierValue.DEBUG_CLASSLOADING) {
+                System.out.println("Performing " + constantValues.length + " validations in thread "
+                        + Thread.currentThread().getName());
+            }
+            for (int i = 0; i < constantValues.length; i++) {
+                try {
+                    results[i] = v.forConstantValue(proxy, constantValues[i]);
+                } catch (Exception e) {
+                    failures[i] = e;
+                }
+            }
+            if (!performingValidation.get()) {
+                throw new IllegalStateException("performingValidation not set when validation completes");
+            }
+        } finally {
+            performingValidation.set(Boolean.FALSE);
+            if (TypeQualifierValue.DEBUG_CLASSLOADING) {
+                System.out.println("Validation finished in thread " + Thread.currentThread().getName());
+            }
+        }
+    }
+
     @Override
     public void checkPermission(Permission perm) {
         if (TypeQualifierValue.DEBUG_CLASSLOADING) {
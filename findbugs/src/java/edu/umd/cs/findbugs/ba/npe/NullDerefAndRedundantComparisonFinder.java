@@ -42,6 +42,7 @@ import edu.umd.cs.findbugs.BugAnnotation;
 import edu.umd.cs.findbugs.FieldAnnotation;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.ba.AnalysisBudget;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.AnalysisFeatures;
 import edu.umd.cs.findbugs.ba.AssertionMethods;
@@ -131,7 +132,8 @@ public class NullDerefAndRedundantComparisonFinder {
         this.method = method;
         this.collector = collector;
         this.findGuaranteedDerefs = classContext.getAnalysisContext().getBoolProperty(
-                AnalysisFeatures.TRACK_GUARANTEED_VALUE_DEREFS_IN_NULL_POINTER_ANALYSIS);
+                AnalysisFeatures.TRACK_GUARANTEED_VALUE_DEREFS_IN_NULL_POINTER_ANALYSIS)
+                && !AnalysisBudget.isDegraded(classContext.getMethodGen(method));
         this.lineMentionedMultipleTimes = classContext.linesMentionedMultipleTimes(method);
 
         this.redundantBranchList = new LinkedList<RedundantBranch>();
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.bcel;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.OverridingMethodsMustInvokeSuper;
 
 import org.apache.bcel.classfile.Code;
@@ -51,6 +52,12 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
 
     protected OpcodeStack stack;
 
+    /**
+     * True if stack is maintained by a FusedBytecodeScanner rather than by
+     * this detector.
+     */
+    private boolean sharedStack;
+
     public OpcodeStack getStack() {
         return stack;
     }
@@ -66,10 +73,27 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
         stack = null;
     }
 
+    /**
+     * Use a stack maintained by someone else, namely a
+     * {@link edu.umd.cs.findbugs.FusedBytecodeScanner} feeding the same
+     * instructions to several detectors. While a shared stack is set,
+     * beforeOpcode and afterOpcode don't update the stack; the owner of the
+     * stack does so once for all detectors.
+     *
+     * @param sharedStack
+     *            the shared stack, or null to go back to a stack of our own
+     */
+    public final void setSharedStack(@CheckForNull OpcodeStack sharedStack) {
+        this.stack = sharedStack;
+        this.sharedStack = sharedStack != null;
+    }
+
     @Override
     @OverridingMethodsMustInvokeSuper
     public boolean beforeOpcode(int seen) {
-        stack.precomputation(this);
+        if (!sharedStack) {
+            stack.precomputation(this);
+        }
         return !stack.isTop();
     }
 
@@ -80,7 +104,9 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
     @Override
     @OverridingMethodsMustInvokeSuper
     public void afterOpcode(int seen) {
-        stack.sawOpcode(this, seen);
+        if (!sharedStack) {
+            stack.sawOpcode(this, seen);
+        }
     }
 
     /**
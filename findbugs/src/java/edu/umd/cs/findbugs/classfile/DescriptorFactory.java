@@ -19,9 +19,11 @@
 
 package edu.umd.cs.findbugs.classfile;
 
+import java.io.PrintStream;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -37,12 +39,22 @@ import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
-import edu.umd.cs.findbugs.util.MapCache;
+import edu.umd.cs.findbugs.util.WeakInterner;
 
 /**
  * Factory for creating ClassDescriptors, MethodDescriptors, and
  * FieldDescriptors.
  *
+ * Descriptors and the strings they are made of are interned in process-wide
+ * tables which only weakly reference their entries, so analyses running on
+ * different threads (and successive analyses in a long-lived process) share
+ * one instance of each descriptor. The DescriptorFactory instance of an
+ * analysis only records which classes it has seen and which MethodInfo and
+ * FieldInfo objects it has made canonical. It is kept per thread and is not
+ * inherited by threads created from the analysis thread: worker threads of an
+ * analysis must be given the factory of the analysis thread with
+ * {@link #setInstanceForCurrentThread(DescriptorFactory)}.
+ *
  * @author David Hovemeyer
  */
 public class DescriptorFactory {
@@ -53,34 +65,43 @@ public class DescriptorFactory {
         }
     };
 
-    private final Map<String, ClassDescriptor> classDescriptorMap;
+    private static final WeakInterner<String> stringInterner = new WeakInterner<String>();
+
+    private static final WeakInterner<ClassDescriptor> classDescriptorInterner = new WeakInterner<ClassDescriptor>();
+
+    private static final WeakInterner<MethodDescriptor> methodDescriptorInterner = new WeakInterner<MethodDescriptor>();
 
-    private final Map<String, ClassDescriptor> dottedClassDescriptorMap;
+    private static final WeakInterner<FieldDescriptor> fieldDescriptorInterner = new WeakInterner<FieldDescriptor>();
 
-    private final Map<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
+    /** Class descriptors requested during this analysis */
+    private final ConcurrentMap<String, ClassDescriptor> classDescriptorMap;
 
-    private final Map<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
+    private final ConcurrentMap<String, ClassDescriptor> dottedClassDescriptorMap;
+
+    /**
+     * Method descriptors made canonical for this analysis by
+     * {@link #canonicalize(MethodDescriptor)}
+     */
+    private final ConcurrentMap<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
+
+    /**
+     * Field descriptors made canonical for this analysis by
+     * {@link #canonicalize(FieldDescriptor)}
+     */
+    private final ConcurrentMap<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
 
     private DescriptorFactory() {
-        this.classDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.dottedClassDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.methodDescriptorMap = new HashMap<MethodDescriptor, MethodDescriptor>();
-        this.fieldDescriptorMap = new HashMap<FieldDescriptor, FieldDescriptor>();
+        this.classDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.dottedClassDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.methodDescriptorMap = new ConcurrentHashMap<MethodDescriptor, MethodDescriptor>();
+        this.fieldDescriptorMap = new ConcurrentHashMap<FieldDescriptor, FieldDescriptor>();
     }
 
-    private final MapCache<String, String> stringCache = new MapCache<String, String>(10000);
-
     public static String canonicalizeString(@CheckForNull String s) {
         if (s == null) {
             return s;
         }
-        DescriptorFactory df =  instanceThreadLocal.get();
-        String cached = df.stringCache.get(s);
-        if (cached != null) {
-            return cached;
-        }
-        df.stringCache.put(s, s);
-        return s;
+        return stringInterner.intern(s);
     }
 
     /**
@@ -92,10 +113,26 @@ public class DescriptorFactory {
         return instanceThreadLocal.get();
     }
 
+    /**
+     * Forget the DescriptorFactory of the current thread. Other threads
+     * using the same factory keep using it.
+     */
     public static void clearInstance() {
         instanceThreadLocal.remove();
     }
 
+    /**
+     * Make the current thread use the given DescriptorFactory. Worker threads
+     * analyzing classes concurrently must share the factory of the analysis
+     * thread, so that descriptors remain canonical.
+     *
+     * @param factory
+     *            the DescriptorFactory of the analysis thread
+     */
+    public static void setInstanceForCurrentThread(DescriptorFactory factory) {
+        instanceThreadLocal.set(factory);
+    }
+
     public Collection<ClassDescriptor> getAllClassDescriptors() {
         return classDescriptorMap.values();
     }
@@ -125,8 +162,11 @@ public class DescriptorFactory {
         className = canonicalizeString(className);
         ClassDescriptor classDescriptor = classDescriptorMap.get(className);
         if (classDescriptor == null) {
-            classDescriptor = new ClassDescriptor(className);
-            classDescriptorMap.put(className, classDescriptor);
+            classDescriptor = classDescriptorInterner.intern(new ClassDescriptor(className));
+            ClassDescriptor existing = classDescriptorMap.putIfAbsent(className, classDescriptor);
+            if (existing != null) {
+                classDescriptor = existing;
+            }
         }
         return classDescriptor;
     }
@@ -174,18 +214,16 @@ public class DescriptorFactory {
         }
         MethodDescriptor methodDescriptor = new MethodDescriptor(className, name, signature, isStatic);
         MethodDescriptor existing = methodDescriptorMap.get(methodDescriptor);
-        if (existing == null) {
-            methodDescriptorMap.put(methodDescriptor, methodDescriptor);
-            existing = methodDescriptor;
+        if (existing != null) {
+            return existing;
         }
-        return existing;
+        return methodDescriptorInterner.intern(methodDescriptor);
     }
 
     public void profile() {
         int total = 0;
         int keys = 0;
         int values = 0;
-        int bad = 0;
         for (Map.Entry<MethodDescriptor, MethodDescriptor> e : methodDescriptorMap.entrySet()) {
             total++;
             if (e.getKey() instanceof MethodInfo) {
@@ -196,9 +234,43 @@ public class DescriptorFactory {
             }
         }
         System.out.printf("Descriptor factory: %d/%d/%d%n", keys, values, total);
+        System.out.printf("Descriptor factory: %d classes, %d canonical fields%n", classDescriptorMap.size(),
+                fieldDescriptorMap.size());
+        printInternerStatistics(System.out);
+    }
+
+    /**
+     * Print the size and approximate memory use of the process-wide
+     * descriptor and string tables.
+     *
+     * @param out
+     *            where to print the statistics
+     */
+    public static void printInternerStatistics(PrintStream out) {
+        out.println("Interned strings: " + stringInterner);
+        out.println("Interned class descriptors: " + classDescriptorInterner);
+        out.println("Interned method descriptors: " + methodDescriptorInterner);
+        out.println("Interned field descriptors: " + fieldDescriptorInterner);
+    }
 
+    /**
+     * @return the number of entries in the process-wide descriptor and string
+     *         tables
+     */
+    public static int getInternedEntryCount() {
+        return stringInterner.size() + classDescriptorInterner.size() + methodDescriptorInterner.size()
+                + fieldDescriptorInterner.size();
     }
 
+    /**
+     * Make m the descriptor returned by getMethodDescriptor() for the rest of
+     * this analysis. Used to hand out the MethodInfo objects of the analyzed
+     * classes; those are specific to the analysis and therefore never enter
+     * the process-wide table.
+     *
+     * @param m
+     *            a method descriptor
+     */
     public void canonicalize(MethodDescriptor m) {
         MethodDescriptor existing = methodDescriptorMap.get(m);
         if (m != existing) {
@@ -207,6 +279,13 @@ public class DescriptorFactory {
 
     }
 
+    /**
+     * Make m the descriptor returned by getFieldDescriptor() for the rest of
+     * this analysis.
+     *
+     * @param m
+     *            a field descriptor
+     */
     public void canonicalize(FieldDescriptor m) {
         FieldDescriptor existing = fieldDescriptorMap.get(m);
         if (m != existing) {
@@ -237,11 +316,10 @@ public class DescriptorFactory {
     public FieldDescriptor getFieldDescriptor(@SlashedClassName String className, String name, String signature, boolean isStatic) {
         FieldDescriptor fieldDescriptor = new FieldDescriptor(className, name, signature, isStatic);
         FieldDescriptor existing = fieldDescriptorMap.get(fieldDescriptor);
-        if (existing == null) {
-            fieldDescriptorMap.put(fieldDescriptor, fieldDescriptor);
-            existing = fieldDescriptor;
+        if (existing != null) {
+            return existing;
         }
-        return existing;
+        return fieldDescriptorInterner.intern(fieldDescriptor);
     }
 
     public FieldDescriptor getFieldDescriptor(@SlashedClassName String className, Field ma) {
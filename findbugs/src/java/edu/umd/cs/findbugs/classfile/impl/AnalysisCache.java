@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -38,6 +39,7 @@ import edu.umd.cs.findbugs.asm.FBClassReader;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.Debug;
+import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
@@ -77,7 +79,7 @@ public class AnalysisCache implements IAnalysisCache {
     // Fields
     private final IClassPath classPath;
 
-    private final BugReporter bugReporter;
+    private volatile BugReporter bugReporter;
 
     private final Map<Class<?>, IClassAnalysisEngine<?>> classAnalysisEngineMap;
 
@@ -89,7 +91,19 @@ public class AnalysisCache implements IAnalysisCache {
 
     private final Map<Class<?>, Object> databaseMap;
 
-    private final Map<?, ?> analysisLocals = Collections.synchronizedMap(new HashMap<Object, Object>());
+    private final Map<?, ?> analysisLocals;
+
+    /**
+     * Cache this cache was forked from by {@link #createWorkerCache()}, or
+     * null if this is the primary cache of the analysis.
+     */
+    private final @CheckForNull AnalysisCache parent;
+
+    /** Number of class analysis requests answered from the cache */
+    private long classAnalysisHits;
+
+    /** Number of class analysis requests which had to run an engine */
+    private long classAnalysisMisses;
 
     @Override
     public final Map<?, ?> getAnalysisLocals() {
@@ -161,7 +175,50 @@ public class AnalysisCache implements IAnalysisCache {
         this.methodAnalysisEngineMap = new HashMap<Class<?>, IMethodAnalysisEngine<?>>();
         this.databaseFactoryMap = new HashMap<Class<?>, IDatabaseFactory<?>>();
         this.classAnalysisMap = new HashMap<Class<?>, Map<ClassDescriptor, Object>>();
-        this.databaseMap = new HashMap<Class<?>, Object>();
+        this.databaseMap = new ConcurrentHashMap<Class<?>, Object>();
+        this.analysisLocals = Collections.synchronizedMap(new HashMap<Object, Object>());
+        this.parent = null;
+    }
+
+    /**
+     * Constructor for worker caches.
+     *
+     * @param parent
+     *            the cache to share engines, databases and analysis locals
+     *            with
+     * @param errorLogger
+     *            the error logger of the worker
+     */
+    private AnalysisCache(AnalysisCache parent, BugReporter errorLogger) {
+        this.classPath = parent.classPath;
+        this.bugReporter = errorLogger;
+        this.classAnalysisEngineMap = parent.classAnalysisEngineMap;
+        this.methodAnalysisEngineMap = parent.methodAnalysisEngineMap;
+        this.databaseFactoryMap = parent.databaseFactoryMap;
+        this.classAnalysisMap = new HashMap<Class<?>, Map<ClassDescriptor, Object>>();
+        this.databaseMap = parent.databaseMap;
+        this.analysisLocals = parent.analysisLocals;
+        this.parent = parent;
+    }
+
+    /**
+     * Create a cache to be installed on a worker thread which analyzes
+     * classes concurrently with other workers. The worker cache shares the
+     * registered engines, the databases and the analysis locals (and thus
+     * the XFactory) with this cache, but keeps its own class and method
+     * analysis results, so that no locking is needed for them. XClass
+     * results are always taken from this cache, since XMethod and XField
+     * objects must stay unique across threads.
+     * <p>
+     * Registering engines or purging analyses is not allowed while worker
+     * caches are in use.
+     *
+     * @param errorLogger
+     *            thread-safe error logger for the worker
+     * @return a new worker cache
+     */
+    public AnalysisCache createWorkerCache(BugReporter errorLogger) {
+        return new AnalysisCache(this, errorLogger);
     }
 
     @Override
@@ -239,6 +296,11 @@ public class AnalysisCache implements IAnalysisCache {
     @SuppressWarnings("unchecked")
     public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) throws CheckedAnalysisException {
         requireNonNull(classDescriptor, "classDescriptor is null");
+        if (parent != null && analysisClass == XClass.class) {
+            synchronized (parent) {
+                return parent.getClassAnalysis(analysisClass, classDescriptor);
+            }
+        }
         // Get the descriptor->result map for this analysis class,
         // creating if necessary
         Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(classAnalysisMap,
@@ -249,6 +311,7 @@ public class AnalysisCache implements IAnalysisCache {
         Object analysisResult = descriptorMap.get(classDescriptor);
         if (analysisResult == null) {
             // No cached result - compute (or recompute)
+            classAnalysisMisses++;
 
             IAnalysisEngine<ClassDescriptor, E> engine = (IAnalysisEngine<ClassDescriptor, E>) classAnalysisEngineMap
                     .get(analysisClass);
@@ -288,6 +351,8 @@ public class AnalysisCache implements IAnalysisCache {
 
             // Save the result
             descriptorMap.put(classDescriptor, analysisResult);
+        } else {
+            classAnalysisHits++;
         }
 
         // Abnormal analysis result?
@@ -298,8 +363,38 @@ public class AnalysisCache implements IAnalysisCache {
         return checkedCast(analysisClass, analysisResult);
     }
 
+    /**
+     * @return the number of class analysis requests answered from the cache
+     *         since the last call to {@link #resetClassAnalysisStatistics()}
+     */
+    public long getClassAnalysisHits() {
+        return classAnalysisHits;
+    }
+
+    /**
+     * @return the number of class analysis requests which required running
+     *         an analysis engine since the last call to
+     *         {@link #resetClassAnalysisStatistics()}
+     */
+    public long getClassAnalysisMisses() {
+        return classAnalysisMisses;
+    }
+
+    /**
+     * Reset the class analysis hit and miss counts.
+     */
+    public void resetClassAnalysisStatistics() {
+        classAnalysisHits = 0;
+        classAnalysisMisses = 0;
+    }
+
     @Override
     public <E> E probeClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) {
+        if (parent != null && analysisClass == XClass.class) {
+            synchronized (parent) {
+                return parent.probeClassAnalysis(analysisClass, classDescriptor);
+            }
+        }
         Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
         if (descriptorMap == null) {
             return null;
@@ -475,24 +570,16 @@ public class AnalysisCache implements IAnalysisCache {
         Object database = databaseMap.get(databaseClass);
 
         if (database == null) {
-            try {
-                // Find the database factory
-                IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
-                if (databaseFactory == null) {
-                    if (optional) {
+            synchronized (databaseMap) {
+                database = databaseMap.get(databaseClass);
+                if (database == null) {
+                    database = createDatabase(databaseClass, optional);
+                    if (database == null) {
                         return null;
                     }
-                    throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
+                    databaseMap.put(databaseClass, database);
                 }
-
-                // Create the database
-                database = databaseFactory.createDatabase();
-            } catch (CheckedAnalysisException e) {
-                // Error - record the analysis error
-                database = new AbnormalAnalysisResult(e);
             }
-            // FIXME: should catch and re-throw RuntimeExceptions?
-            databaseMap.put(databaseClass, database);
         }
 
         if (database instanceof AbnormalAnalysisResult) {
@@ -502,6 +589,26 @@ public class AnalysisCache implements IAnalysisCache {
         return databaseClass.cast(database);
     }
 
+    private @CheckForNull Object createDatabase(Class<?> databaseClass, boolean optional) {
+        try {
+            // Find the database factory
+            IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
+            if (databaseFactory == null) {
+                if (optional) {
+                    return null;
+                }
+                throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
+            }
+
+            // Create the database
+            return databaseFactory.createDatabase();
+        } catch (CheckedAnalysisException e) {
+            // Error - record the analysis error
+            return new AbnormalAnalysisResult(e);
+        }
+        // FIXME: should catch and re-throw RuntimeExceptions?
+    }
+
     @Override
     public <E> void eagerlyPutDatabase(Class<E> databaseClass, E database) {
         databaseMap.put(databaseClass, database);
@@ -512,6 +619,20 @@ public class AnalysisCache implements IAnalysisCache {
         return bugReporter;
     }
 
+    /**
+     * Set the reporter which the errors logged through this cache (and thus
+     * through the AnalysisContext) are reported to. Used when the reporter
+     * the cache was created with gets wrapped by one which must see every
+     * error, such as an AsyncBugReporter. Worker caches created before keep
+     * their own error logger.
+     *
+     * @param errorLogger
+     *            the new error logger
+     */
+    public void setErrorLogger(BugReporter errorLogger) {
+        this.bugReporter = errorLogger;
+    }
+
     @Override
     public Profiler getProfiler() {
         return bugReporter.getProjectStats().getProfiler();
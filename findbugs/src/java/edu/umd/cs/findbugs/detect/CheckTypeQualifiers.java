@@ -94,14 +94,35 @@ public class CheckTypeQualifiers extends CFGDetector {
 
     private static final String DEBUG_DATAFLOW_MODE = SystemProperties.getProperty("ctq.dataflow.debug.mode", "both");
 
+    /**
+     * Compute the dataflows of all relevant type qualifiers of a method in one
+     * forward and one backward pass, by default.
+     */
+    private static final boolean COMBINED_DATAFLOW = SystemProperties.getBoolean("findbugs.typeQualifiers.combined");
+
     private static final String NONNULL_ANNOTATION = JSR305NullnessAnnotations.NONNULL.getClassName();
 
     private static final String METHOD = SystemProperties.getProperty("ctq.method");
 
     private final BugReporter bugReporter;
 
+    private final boolean combinedDataflow;
+
     public CheckTypeQualifiers(BugReporter bugReporter) {
+        this(bugReporter, COMBINED_DATAFLOW);
+    }
+
+    /**
+     * @param bugReporter
+     *            the BugReporter
+     * @param combinedDataflow
+     *            true if the dataflows of all relevant type qualifiers of a
+     *            method should be computed in one pass, false if they should
+     *            be computed one type qualifier at a time
+     */
+    CheckTypeQualifiers(BugReporter bugReporter, boolean combinedDataflow) {
         this.bugReporter = bugReporter;
+        this.combinedDataflow = combinedDataflow;
     }
 
     boolean checked;
@@ -179,6 +200,12 @@ public class CheckTypeQualifiers extends CFGDetector {
                 BackwardTypeQualifierDataflowFactory.class, methodDescriptor);
         ValueNumberDataflow vnaDataflow = analysisCache.getMethodAnalysis(ValueNumberDataflow.class, methodDescriptor);
 
+        if (combinedDataflow) {
+            // The backward analyses use the forward dataflows
+            forwardDataflowFactory.prepareDataflows(relevantQualifiers);
+            backwardDataflowFactory.prepareDataflows(relevantQualifiers);
+        }
+
         for (TypeQualifierValue<?> typeQualifierValue : relevantQualifiers) {
 
             try {
@@ -27,6 +27,7 @@ import org.apache.bcel.classfile.Method;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.FieldAnnotation;
+import edu.umd.cs.findbugs.FusableBytecodeDetector;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
@@ -34,7 +35,7 @@ import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.detect.FindNoSideEffectMethods.MethodSideEffectStatus;
 import edu.umd.cs.findbugs.detect.FindNoSideEffectMethods.NoSideEffectMethodsDatabase;
 
-public class FindDoubleCheck extends OpcodeStackDetector {
+public class FindDoubleCheck extends OpcodeStackDetector implements FusableBytecodeDetector {
     static final boolean DEBUG = false;
 
     int stage = 0;
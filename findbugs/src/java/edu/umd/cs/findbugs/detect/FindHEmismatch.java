@@ -37,6 +37,7 @@ import org.apache.bcel.classfile.Signature;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ClassAnnotation;
+import edu.umd.cs.findbugs.FusableBytecodeDetector;
 import edu.umd.cs.findbugs.Lookup;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
@@ -57,7 +58,7 @@ import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class FindHEmismatch extends OpcodeStackDetector implements StatelessDetector {
+public class FindHEmismatch extends OpcodeStackDetector implements StatelessDetector, FusableBytecodeDetector {
 
     static final Pattern mapPattern = Pattern.compile("[^y]HashMap<L([^;<]*);");
     static final Pattern hashTablePattern = Pattern.compile("Hashtable<L([^;<]*);");
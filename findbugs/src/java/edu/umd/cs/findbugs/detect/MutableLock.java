@@ -29,9 +29,10 @@ import org.apache.bcel.classfile.Method;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.FusableBytecodeDetector;
 import edu.umd.cs.findbugs.StatelessDetector;
 
-public class MutableLock extends BytecodeScanningDetector implements StatelessDetector {
+public class MutableLock extends BytecodeScanningDetector implements StatelessDetector, FusableBytecodeDetector {
     Set<String> setFields = new HashSet<String>();
 
     Set<String> finalFields = new HashSet<String>();
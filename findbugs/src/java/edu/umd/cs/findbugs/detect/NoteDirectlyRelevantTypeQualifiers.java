@@ -27,8 +27,8 @@ import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.ConcurrentFirstPassDetector;
 import edu.umd.cs.findbugs.Detector;
-import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XField;
@@ -46,7 +46,7 @@ import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
  * DirectlyRelevantTypeQualifiersDatabase. This helps the CheckTypeQualifiers
  * detector figure out which type qualifiers to check for each method.
  */
-public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implements Detector, NonReportingDetector {
+public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implements Detector, ConcurrentFirstPassDetector {
 
     private DirectlyRelevantTypeQualifiersDatabase qualifiers;
 
@@ -133,5 +133,15 @@ public class NoteDirectlyRelevantTypeQualifiers extends DismantleBytecode implem
 
     @Override
     public void report() {
+        if (qualifiers == null) {
+            return;
+        }
+        // TypeQualifierValues are interned per thread; make sure the
+        // qualifiers seen by this detector are also known on the thread
+        // calling report(), which may differ from the one that visited the
+        // classes.
+        for (TypeQualifierValue<?> tqv : qualifiers.getAllKnownQualifiers()) {
+            TypeQualifierValue.getValue(tqv.typeQualifier, tqv.value);
+        }
     }
 }
@@ -25,6 +25,7 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.FieldAnnotation;
+import edu.umd.cs.findbugs.FusableBytecodeDetector;
 
 /*
  * This is a very simply written detector. It checks if there is exactly
@@ -34,7 +35,7 @@ import edu.umd.cs.findbugs.FieldAnnotation;
  * Author: Kristin Stephens
  */
 
-public class SynchronizeAndNullCheckField extends BytecodeScanningDetector {
+public class SynchronizeAndNullCheckField extends BytecodeScanningDetector implements FusableBytecodeDetector {
 
     BugReporter bugReporter;
 
@@ -49,11 +49,23 @@ public class ClassMatcher implements Matcher {
         this.role = role;
     }
 
+    NameMatch getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the role of the class annotation matched, or null or empty for
+     *         the primary class
+     */
+    String getRole() {
+        return role;
+    }
+
     @Override
     public boolean match(BugInstance bugInstance) {
         ClassAnnotation classAnnotation = bugInstance.getPrimaryClass();
         if (role != null && !"".equals(role)) {
-            for (BugAnnotation a : bugInstance.getAnnotations()) {
+            for (BugAnnotation a : bugInstance.getAnnotationsForReading()) {
                 if (a instanceof ClassAnnotation && role.equals(a.getDescription())) {
                     classAnnotation = (ClassAnnotation) a;
                     break;
@@ -0,0 +1,313 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.ClassAnnotation;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * A {@link Filter} compiled for matching many BugInstances. Matching a Filter
+ * tries each of its rules in turn; a CompiledFilter only tries the rules which
+ * can match the BugInstance, found by looking up the class name and bug
+ * pattern of the BugInstance in an index of the rules.
+ *
+ * A rule is indexed by one of its conjuncts:
+ * <ul>
+ * <li>a Class matcher for an exact class name, by the class name,</li>
+ * <li>a Bug matcher, by its codes, patterns and categories,</li>
+ * <li>a Class matcher for a regular expression starting with a literal
+ * prefix (e.g., <code>~com\.foo\..*</code>), by the prefix.</li>
+ * </ul>
+ * Other rules are tried for every BugInstance. The rules which can match are
+ * tried in the order of the Filter, so the result, and the side effects of
+ * matching, are the same as for the Filter.
+ *
+ * A CompiledFilter is a snapshot of the Filter: later changes to the Filter,
+ * including enabling and disabling rules, don't affect it.
+ */
+public class CompiledFilter implements Matcher {
+
+    private static class PrefixNode {
+        final HashMap<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+
+        final List<Integer> rules = new ArrayList<Integer>();
+    }
+
+    private final Filter filter;
+
+    private final Matcher[] rules;
+
+    private final BitSet unindexed = new BitSet();
+
+    private final Map<String, List<Integer>> byClass = new HashMap<String, List<Integer>>();
+
+    private final Map<String, List<Integer>> byCode = new HashMap<String, List<Integer>>();
+
+    private final Map<String, List<Integer>> byPattern = new HashMap<String, List<Integer>>();
+
+    private final Map<String, List<Integer>> byCategory = new HashMap<String, List<Integer>>();
+
+    private final PrefixNode byClassPrefix = new PrefixNode();
+
+    public CompiledFilter(Filter filter) {
+        this.filter = filter;
+        List<Matcher> enabled = new ArrayList<Matcher>();
+        for (Matcher rule : filter.getChildren()) {
+            if (filter.isEnabled(rule)) {
+                enabled.add(rule);
+            }
+        }
+        rules = enabled.toArray(new Matcher[enabled.size()]);
+        for (int i = 0; i < rules.length; i++) {
+            if (!index(i, rules[i])) {
+                unindexed.set(i);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rules which are tried for every BugInstance
+     */
+    public int getNumUnindexedRules() {
+        return unindexed.cardinality();
+    }
+
+    /**
+     * Index a rule by one of its conjuncts.
+     *
+     * @return false if the rule has no conjunct which can be indexed
+     */
+    private boolean index(int ruleNum, Matcher rule) {
+        List<Matcher> conjuncts = new ArrayList<Matcher>();
+        if (rule instanceof AndMatcher) {
+            conjuncts.addAll(((AndMatcher) rule).getChildren());
+        } else {
+            conjuncts.add(rule);
+        }
+
+        for (Matcher m : conjuncts) {
+            if (m instanceof ClassMatcher && isPrimaryClass((ClassMatcher) m)) {
+                String exact = ((ClassMatcher) m).getClassName().getExact();
+                if (exact != null) {
+                    add(byClass, exact, ruleNum);
+                    return true;
+                }
+            }
+        }
+        for (Matcher m : conjuncts) {
+            if (m instanceof BugMatcher) {
+                BugMatcher bugMatcher = (BugMatcher) m;
+                for (String code : bugMatcher.getCodes().getStrings()) {
+                    add(byCode, code, ruleNum);
+                }
+                for (String pattern : bugMatcher.getPatterns().getStrings()) {
+                    add(byPattern, pattern, ruleNum);
+                }
+                for (String category : bugMatcher.getCategories().getStrings()) {
+                    add(byCategory, category, ruleNum);
+                }
+                return true;
+            }
+        }
+        for (Matcher m : conjuncts) {
+            if (m instanceof ClassMatcher && isPrimaryClass((ClassMatcher) m)) {
+                Pattern pattern = ((ClassMatcher) m).getClassName().getPattern();
+                String prefix = pattern == null ? "" : getLiteralPrefix(pattern.pattern());
+                if (prefix.length() > 0) {
+                    PrefixNode node = byClassPrefix;
+                    for (int i = 0; i < prefix.length(); i++) {
+                        Character c = prefix.charAt(i);
+                        PrefixNode child = node.children.get(c);
+                        if (child == null) {
+                            child = new PrefixNode();
+                            node.children.put(c, child);
+                        }
+                        node = child;
+                    }
+                    node.rules.add(ruleNum);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPrimaryClass(ClassMatcher m) {
+        return m.getRole() == null || "".equals(m.getRole());
+    }
+
+    private static void add(Map<String, List<Integer>> index, String key, int ruleNum) {
+        List<Integer> rules = index.get(key);
+        if (rules == null) {
+            rules = new ArrayList<Integer>(2);
+            index.put(key, rules);
+        }
+        rules.add(ruleNum);
+    }
+
+    /**
+     * Get a prefix of every string matched by a regular expression.
+     *
+     * @return the prefix, or the empty string if the regular expression doesn't
+     *         start with a literal
+     */
+    static String getLiteralPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // character class, back reference, quotation, ...
+                    break;
+                }
+                c = regex.charAt(++i);
+            } else if ("?*{".indexOf(c) >= 0) {
+                // the previous character is optional
+                if (prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            } else if (".[]()}+^$".indexOf(c) >= 0) {
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    @Override
+    public boolean match(BugInstance bugInstance) {
+        BitSet candidates = (BitSet) unindexed.clone();
+        ClassAnnotation primaryClass = bugInstance.getPrimaryClass();
+        if (primaryClass != null) {
+            String className = primaryClass.getClassName();
+            addCandidates(candidates, byClass.get(className));
+            PrefixNode node = byClassPrefix;
+            for (int i = 0; i < className.length() && node != null; i++) {
+                node = node.children.get(className.charAt(i));
+                if (node != null) {
+                    addCandidates(candidates, node.rules);
+                }
+            }
+        }
+        if (!byCode.isEmpty()) {
+            addCandidates(candidates, byCode.get(bugInstance.getAbbrev().trim()));
+        }
+        if (!byPattern.isEmpty()) {
+            addCandidates(candidates, byPattern.get(bugInstance.getType().trim()));
+        }
+        if (!byCategory.isEmpty()) {
+            addCandidates(candidates, byCategory.get(bugInstance.getBugPattern().getCategory().trim()));
+        }
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (rules[i].match(bugInstance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addCandidates(BitSet candidates, List<Integer> rules) {
+        if (rules != null) {
+            for (int i = 0, n = rules.size(); i < n; i++) {
+                candidates.set(rules.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void writeXML(XMLOutput xmlOutput, boolean disabled) throws IOException {
+        filter.writeXML(xmlOutput, disabled);
+    }
+
+    @Override
+    public String toString() {
+        return filter.toString();
+    }
+
+    /**
+     * Match the BugInstances of a bug collection with a filter and with the
+     * compiled filter, checking that the results are the same, and print the
+     * time each takes.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: " + CompiledFilter.class.getName() + " <filter file> <bug collection> [<rounds>]");
+            System.exit(1);
+        }
+        FindBugs.setNoAnalysis();
+        DetectorFactoryCollection.instance();
+        Filter filter = new Filter(args[0]);
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.readXML(args[1]);
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        BugInstance[] bugs = bugCollection.getCollection().toArray(new BugInstance[0]);
+
+        long start = System.nanoTime();
+        CompiledFilter compiledFilter = new CompiledFilter(filter);
+        long compileTime = System.nanoTime() - start;
+        System.out.println(compiledFilter.rules.length + " rules, " + compiledFilter.getNumUnindexedRules()
+                + " not indexed, compiled in " + compileTime / 1000000 + " ms");
+
+        int matched = 0;
+        for (BugInstance bug : bugs) {
+            boolean expected = filter.match(bug);
+            if (expected != compiledFilter.match(bug)) {
+                System.out.println("Different result for " + bug.getMessageWithoutPrefix() + ": filter " + expected);
+            }
+            if (expected) {
+                matched++;
+            }
+        }
+        System.out.println(matched + " of " + bugs.length + " warnings matched");
+
+        for (int r = 0; r < rounds; r++) {
+            long filterTime = time(filter, bugs);
+            long compiledTime = time(compiledFilter, bugs);
+            System.out.printf("round %d: filter %d ms, compiled filter %d ms%n", r, filterTime / 1000000,
+                    compiledTime / 1000000);
+        }
+    }
+
+    private static long time(Matcher matcher, BugInstance[] bugs) {
+        long start = System.nanoTime();
+        for (BugInstance bug : bugs) {
+            matcher.match(bug);
+        }
+        return System.nanoTime() - start;
+    }
+}
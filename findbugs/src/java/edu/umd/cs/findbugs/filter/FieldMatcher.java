@@ -55,7 +55,7 @@ public class FieldMatcher extends MemberMatcher implements Matcher {
         if (role == null || "".equals(role)) {
             fieldAnnotation = bugInstance.getPrimaryField();
         } else {
-            for (BugAnnotation a : bugInstance.getAnnotations()) {
+            for (BugAnnotation a : bugInstance.getAnnotationsForReading()) {
                 if (a instanceof FieldAnnotation && role.equals(a.getDescription())) {
                     fieldAnnotation = (FieldAnnotation) a;
                     break;
@@ -0,0 +1,143 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.filter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
+
+/**
+ * The classes and bug patterns for which exclude filters exclude every
+ * warning, so that they don't need to be analyzed.
+ *
+ * A rule of an exclude filter excludes every warning of a class if it only
+ * matches the name of the primary class, and every warning of a bug pattern
+ * if it only matches bug codes, patterns or categories. The disjuncts of an Or
+ * rule are considered separately; other rules (e.g., matching both a class and
+ * a bug pattern, or a method) don't exclude whole classes or bug patterns.
+ */
+public class FilterExclusions {
+
+    private final Set<String> excludedClasses = new HashSet<String>();
+
+    private final List<NameMatch> excludedClassPatterns = new ArrayList<NameMatch>();
+
+    private final List<BugMatcher> excludedBugs = new ArrayList<BugMatcher>();
+
+    /**
+     * Add the exclusions of the enabled rules of an exclude filter.
+     */
+    public void addExcludeFilter(Filter filter) {
+        for (Matcher rule : filter.getChildren()) {
+            if (filter.isEnabled(rule)) {
+                addRule(rule);
+            }
+        }
+    }
+
+    private void addRule(Matcher rule) {
+        if (rule instanceof ClassMatcher) {
+            ClassMatcher classMatcher = (ClassMatcher) rule;
+            if (classMatcher.getRole() == null || "".equals(classMatcher.getRole())) {
+                NameMatch className = classMatcher.getClassName();
+                if (className.getExact() != null) {
+                    excludedClasses.add(className.getExact());
+                } else {
+                    excludedClassPatterns.add(className);
+                }
+            }
+        } else if (rule instanceof BugMatcher) {
+            excludedBugs.add((BugMatcher) rule);
+        } else if (rule instanceof OrMatcher) {
+            for (Matcher child : ((OrMatcher) rule).getChildren()) {
+                addRule(child);
+            }
+        } else if (rule instanceof AndMatcher && ((AndMatcher) rule).getChildren().size() == 1) {
+            addRule(((AndMatcher) rule).getChildren().iterator().next());
+        }
+    }
+
+    /**
+     * @return true if no class or bug pattern is excluded
+     */
+    public boolean isEmpty() {
+        return !excludesClasses() && excludedBugs.isEmpty();
+    }
+
+    public boolean excludesClasses() {
+        return !excludedClasses.isEmpty() || !excludedClassPatterns.isEmpty();
+    }
+
+    /**
+     * @return true if every warning whose primary class is the given class is
+     *         excluded
+     */
+    public boolean excludesClass(@DottedClassName String className) {
+        if (excludedClasses.contains(className)) {
+            return true;
+        }
+        for (NameMatch pattern : excludedClassPatterns) {
+            if (pattern.match(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if every warning of the given bug pattern is excluded
+     */
+    public boolean excludesBugPattern(BugPattern bugPattern) {
+        for (BugMatcher m : excludedBugs) {
+            if (m.getCodes().match(bugPattern.getAbbrev()) || m.getPatterns().match(bugPattern.getType())
+                    || m.getCategories().match(bugPattern.getCategory())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the detector reports bugs, and every warning it may
+     *         report is excluded
+     */
+    public boolean excludesDetector(DetectorFactory factory) {
+        if (excludedBugs.isEmpty() || factory.isDetectorClassSubtypeOf(FirstPassDetector.class)) {
+            return false;
+        }
+        Set<BugPattern> reportedBugPatterns = factory.getReportedBugPatterns();
+        if (reportedBugPatterns.isEmpty()) {
+            return false;
+        }
+        for (BugPattern b : reportedBugPatterns) {
+            if (!excludesBugPattern(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
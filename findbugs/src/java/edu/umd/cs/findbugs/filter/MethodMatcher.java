@@ -53,7 +53,7 @@ public class MethodMatcher extends MemberMatcher implements Matcher {
         if (role == null || "".equals(role)) {
             methodAnnotation = bugInstance.getPrimaryMethod();
         } else {
-            for (BugAnnotation a : bugInstance.getAnnotations()) {
+            for (BugAnnotation a : bugInstance.getAnnotationsForReading()) {
                 if (a instanceof MethodAnnotation && role.equals(a.getDescription())) {
                     methodAnnotation = (MethodAnnotation) a;
                     break;
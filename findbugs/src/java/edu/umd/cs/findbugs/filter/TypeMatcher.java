@@ -52,7 +52,7 @@ public class TypeMatcher implements Matcher {
     public boolean match(BugInstance bugInstance) {
         TypeAnnotation typeAnnotation = bugInstance.getPrimaryType();
         if (role != null && !"".equals(role)) {
-            for (BugAnnotation a : bugInstance.getAnnotations()) {
+            for (BugAnnotation a : bugInstance.getAnnotationsForReading()) {
                 if (a instanceof TypeAnnotation && role.equals(a.getDescription())) {
                     typeAnnotation = (TypeAnnotation) a;
                     break;
@@ -47,7 +47,6 @@ public class Profiler implements XMLWriteable {
     final static boolean MAX_CONTEXT = SystemProperties.getBoolean("findbugs.profiler.maxcontext");
 
     public Profiler() {
-        startTimes = new Stack<Clock>();
         profile = new ConcurrentHashMap<Class<?>, Profile>();
         if (REPORT) {
             System.err.println("Profiling activated");
@@ -208,22 +207,37 @@ public class Profiler implements XMLWriteable {
 
     }
 
-    final Stack<Clock> startTimes;
+    /**
+     * Timing and context stacks are kept per thread, so that one profiler can
+     * be shared by threads analyzing classes concurrently.
+     */
+    final ThreadLocal<Stack<Clock>> startTimes = new ThreadLocal<Stack<Clock>>() {
+        @Override
+        protected Stack<Clock> initialValue() {
+            return new Stack<Clock>();
+        }
+    };
 
     final ConcurrentMap<Class<?>, Profile> profile;
 
-    final Stack<Object> context = new Stack<Object>();
+    final ThreadLocal<Stack<Object>> contextStack = new ThreadLocal<Stack<Object>>() {
+        @Override
+        protected Stack<Object> initialValue() {
+            return new Stack<Object>();
+        }
+    };
 
     public void startContext(Object context) {
-        this.context.push(context);
+        contextStack.get().push(context);
     }
 
     public void endContext(Object context) {
-        Object o = this.context.pop();
+        Object o = contextStack.get().pop();
         assert o == context;
     }
 
     private Object getContext() {
+        Stack<Object> context = contextStack.get();
         if (context.size() == 0) {
             return "";
         }
@@ -236,7 +250,7 @@ public class Profiler implements XMLWriteable {
     public void start(Class<?> c) {
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         if (!stack.isEmpty()) {
             stack.peek().accumulateTime(currentNanoTime);
         }
@@ -249,7 +263,7 @@ public class Profiler implements XMLWriteable {
         // System.err.println("pop " + c.getSimpleName());
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         Clock ending = stack.pop();
         if (ending.clazz != c) {
             throw new AssertionError("Asked to end timing for " + c + " but top of stack is " + ending.clazz
@@ -417,7 +431,7 @@ public class Profiler implements XMLWriteable {
      */
     public void clear() {
         profile.clear();
-        startTimes.clear();
+        startTimes.get().clear();
     }
 
     public Profile getProfile(Class<?> c) {
@@ -111,7 +111,7 @@ public class MovedClassMap implements ClassNameRewriter {
 
         for (Iterator<BugInstance> i = bugCollection.iterator(); i.hasNext();) {
             BugInstance warning = i.next();
-            for (Iterator<BugAnnotation> j = warning.annotationIterator(); j.hasNext();) {
+            for (Iterator<BugAnnotation> j = warning.getAnnotationsForReading().iterator(); j.hasNext();) {
                 BugAnnotation annotation = j.next();
                 if (!(annotation instanceof ClassAnnotation)) {
                     continue;
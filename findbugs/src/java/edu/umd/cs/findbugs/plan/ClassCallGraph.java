@@ -0,0 +1,42 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.plan;
+
+import edu.umd.cs.findbugs.graph.AbstractGraph;
+
+/**
+ * Graph of calls between the classes of an analysis pass. Edges flow from
+ * calling classes to called classes.
+ *
+ * @see ClassNode
+ * @see ClassCallEdge
+ * @see ClassSchedule
+ */
+public class ClassCallGraph extends AbstractGraph<ClassCallEdge, ClassNode> {
+    @Override
+    protected ClassCallEdge allocateEdge(ClassNode source, ClassNode target) {
+        return new ClassCallEdge(source, target);
+    }
+
+    @Override
+    public String toString() {
+        return "ClassCallGraph[Vertices: " + getNumVertices() + " Edges: " + getNumEdges() + "]";
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.plan;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.graph.AbstractVertex;
+
+/**
+ * Node in a ClassCallGraph. It represents a single class to be analyzed.
+ *
+ * @see ClassCallGraph
+ * @see ClassCallEdge
+ * @see ClassSchedule
+ */
+public class ClassNode extends AbstractVertex<ClassCallEdge, ClassNode> {
+    private final ClassDescriptor classDescriptor;
+
+    /**
+     * Constructor.
+     *
+     * @param classDescriptor
+     *            the class this node represents
+     */
+    public ClassNode(ClassDescriptor classDescriptor) {
+        this.classDescriptor = classDescriptor;
+    }
+
+    /**
+     * Get the class this node represents.
+     */
+    public ClassDescriptor getClassDescriptor() {
+        return classDescriptor;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassNode[" + classDescriptor + "]";
+    }
+}
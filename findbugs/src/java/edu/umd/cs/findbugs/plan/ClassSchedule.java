@@ -0,0 +1,312 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.plan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.graph.GraphToolkit;
+import edu.umd.cs.findbugs.graph.StronglyConnectedComponents;
+import edu.umd.cs.findbugs.util.TopologicalSort;
+import edu.umd.cs.findbugs.util.TopologicalSort.OutEdges;
+
+/**
+ * Order in which the classes of an analysis pass are analyzed, computed from
+ * the calls between them.
+ *
+ * The classes are partitioned into the strongly connected components of the
+ * class call graph. Components are grouped into levels: the components of
+ * level 0 call no other component, and every other component only calls
+ * components of lower levels. Classes are thus analyzed after the classes
+ * they call (as far as cycles permit), and the components of one level do
+ * not depend on each other, so that each level may be analyzed in parallel.
+ *
+ * Within a level, components calling the same heavily used class are placed
+ * next to each other, so that the analysis results of that class are still
+ * cached when they are needed again.
+ *
+ * @see ClassCallGraph
+ */
+public class ClassSchedule {
+    /**
+     * A strongly connected component of the class call graph.
+     */
+    public static class Component {
+        private final List<ClassDescriptor> classes;
+
+        private final int level;
+
+        private final ClassDescriptor groupKey;
+
+        Component(List<ClassDescriptor> classes, int level, ClassDescriptor groupKey) {
+            this.classes = classes;
+            this.level = level;
+            this.groupKey = groupKey;
+        }
+
+        /**
+         * @return the classes of the component, in evaluation order
+         */
+        public List<ClassDescriptor> getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return the level of the component; a component only calls
+         *         components of lower levels
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * @return the class used to group this component with components
+         *         calling the same class
+         */
+        public ClassDescriptor getGroupKey() {
+            return groupKey;
+        }
+
+        @Override
+        public String toString() {
+            return "Component[level " + level + ": " + classes + "]";
+        }
+    }
+
+    private final List<List<Component>> levels;
+
+    private final List<ClassDescriptor> evaluationOrder;
+
+    private final int numComponents;
+
+    /**
+     * Compute the schedule for a collection of classes.
+     *
+     * @param classCollection
+     *            the classes to analyze
+     * @param outEdges
+     *            the classes called by each class
+     */
+    public ClassSchedule(Collection<ClassDescriptor> classCollection, OutEdges<ClassDescriptor> outEdges) {
+        // Build the call graph
+        ClassCallGraph graph = new ClassCallGraph();
+        Map<ClassDescriptor, ClassNode> nodeMap = new LinkedHashMap<ClassDescriptor, ClassNode>();
+        for (ClassDescriptor c : classCollection) {
+            if (!nodeMap.containsKey(c)) {
+                ClassNode node = new ClassNode(c);
+                graph.addVertex(node);
+                nodeMap.put(c, node);
+            }
+        }
+        Map<ClassDescriptor, Integer> numCallers = new HashMap<ClassDescriptor, Integer>();
+        for (ClassNode node : nodeMap.values()) {
+            Set<ClassNode> callees = new HashSet<ClassNode>();
+            for (ClassDescriptor called : outEdges.getOutEdges(node.getClassDescriptor())) {
+                ClassNode target = nodeMap.get(called);
+                if (target != null && target != node && callees.add(target)) {
+                    graph.createEdge(node, target);
+                    Integer n = numCallers.get(called);
+                    numCallers.put(called, n == null ? 1 : n + 1);
+                }
+            }
+        }
+
+        // Find the strongly connected components
+        StronglyConnectedComponents<ClassCallGraph, ClassCallEdge, ClassNode> scc = new StronglyConnectedComponents<ClassCallGraph, ClassCallEdge, ClassNode>();
+        scc.findStronglyConnectedComponents(graph, new GraphToolkit<ClassCallGraph, ClassCallEdge, ClassNode>() {
+            @Override
+            public ClassCallGraph createGraph() {
+                return new ClassCallGraph();
+            }
+
+            @Override
+            public ClassNode duplicateVertex(ClassNode original) {
+                return new ClassNode(original.getClassDescriptor());
+            }
+
+            @Override
+            public void copyEdge(ClassCallEdge source, ClassCallEdge dest) {
+            }
+        });
+        List<Set<ClassNode>> componentList = new ArrayList<Set<ClassNode>>();
+        Map<ClassNode, Integer> componentIndex = new HashMap<ClassNode, Integer>();
+        for (Iterator<Set<ClassNode>> i = scc.setIterator(); i.hasNext();) {
+            Set<ClassNode> component = i.next();
+            for (ClassNode node : component) {
+                componentIndex.put(node, componentList.size());
+            }
+            componentList.add(component);
+        }
+        numComponents = componentList.size();
+
+        // Compute the components called by each component, and the
+        // components calling it
+        List<Set<Integer>> calleeComponents = new ArrayList<Set<Integer>>(numComponents);
+        List<List<Integer>> callerComponents = new ArrayList<List<Integer>>(numComponents);
+        for (int i = 0; i < numComponents; i++) {
+            calleeComponents.add(new HashSet<Integer>());
+            callerComponents.add(new ArrayList<Integer>());
+        }
+        for (Iterator<ClassCallEdge> i = graph.edgeIterator(); i.hasNext();) {
+            ClassCallEdge edge = i.next();
+            int source = componentIndex.get(edge.getSource());
+            int target = componentIndex.get(edge.getTarget());
+            if (source != target && calleeComponents.get(source).add(target)) {
+                callerComponents.get(target).add(source);
+            }
+        }
+
+        // Assign levels, starting with the components which call no other
+        // component
+        int[] level = new int[numComponents];
+        int[] remainingCallees = new int[numComponents];
+        LinkedList<Integer> ready = new LinkedList<Integer>();
+        for (int i = 0; i < numComponents; i++) {
+            remainingCallees[i] = calleeComponents.get(i).size();
+            if (remainingCallees[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int maxLevel = 0;
+        while (!ready.isEmpty()) {
+            int c = ready.removeFirst();
+            maxLevel = Math.max(maxLevel, level[c]);
+            for (int caller : callerComponents.get(c)) {
+                level[caller] = Math.max(level[caller], level[c] + 1);
+                if (--remainingCallees[caller] == 0) {
+                    ready.add(caller);
+                }
+            }
+        }
+
+        // Build the components and sort each level so that components
+        // calling the same class are adjacent
+        int numLevels = numComponents == 0 ? 0 : maxLevel + 1;
+        levels = new ArrayList<List<Component>>(numLevels);
+        for (int i = 0; i < numLevels; i++) {
+            levels.add(new ArrayList<Component>());
+        }
+        for (int i = 0; i < numComponents; i++) {
+            List<ClassDescriptor> classes = orderComponent(componentList.get(i), outEdges);
+            ClassDescriptor groupKey = getGroupKey(classes, outEdges, nodeMap, componentIndex, i, numCallers);
+            levels.get(level[i]).add(new Component(classes, level[i], groupKey));
+        }
+        Comparator<Component> byGroup = new Comparator<Component>() {
+            @Override
+            public int compare(Component c1, Component c2) {
+                int cmp = c1.getGroupKey().compareTo(c2.getGroupKey());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return c1.getClasses().get(0).compareTo(c2.getClasses().get(0));
+            }
+        };
+        evaluationOrder = new ArrayList<ClassDescriptor>(nodeMap.size());
+        for (List<Component> levelComponents : levels) {
+            Collections.sort(levelComponents, byGroup);
+            for (Component component : levelComponents) {
+                evaluationOrder.addAll(component.getClasses());
+            }
+        }
+    }
+
+    /**
+     * Order the classes of a component. Classes in a cycle are ordered using
+     * the heuristics of {@link TopologicalSort}.
+     */
+    private static List<ClassDescriptor> orderComponent(Set<ClassNode> component, OutEdges<ClassDescriptor> outEdges) {
+        List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>(component.size());
+        for (ClassNode node : component) {
+            classes.add(node.getClassDescriptor());
+        }
+        if (classes.size() > 1) {
+            classes = TopologicalSort.sortByCallGraph(classes, outEdges);
+        }
+        return classes;
+    }
+
+    /**
+     * Get the class a component is grouped by: the class outside of the
+     * component called by the largest number of classes, or the first class
+     * of the component if it calls no other class.
+     */
+    private static ClassDescriptor getGroupKey(List<ClassDescriptor> classes, OutEdges<ClassDescriptor> outEdges,
+            Map<ClassDescriptor, ClassNode> nodeMap, Map<ClassNode, Integer> componentIndex, int component,
+            Map<ClassDescriptor, Integer> numCallers) {
+        ClassDescriptor best = null;
+        int bestCount = 0;
+        for (ClassDescriptor c : classes) {
+            for (ClassDescriptor called : outEdges.getOutEdges(c)) {
+                ClassNode node = nodeMap.get(called);
+                if (node == null || componentIndex.get(node) == component) {
+                    continue;
+                }
+                int count = numCallers.get(called);
+                if (count > bestCount || (count == bestCount && called.compareTo(best) < 0)) {
+                    best = called;
+                    bestCount = count;
+                }
+            }
+        }
+        return best != null ? best : classes.get(0);
+    }
+
+    /**
+     * @return the classes in the order they should be analyzed
+     */
+    public List<ClassDescriptor> getEvaluationOrder() {
+        return evaluationOrder;
+    }
+
+    /**
+     * Get the levels of the schedule. The components of a level do not call
+     * each other, and only call components of lower levels, so they can be
+     * analyzed in parallel once all lower levels are done.
+     *
+     * @return the list of levels, lowest level first
+     */
+    public List<List<Component>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return the number of strongly connected components
+     */
+    public int getNumComponents() {
+        return numComponents;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassSchedule[" + evaluationOrder.size() + " classes, " + numComponents + " components, " + levels.size()
+                + " levels]";
+    }
+}
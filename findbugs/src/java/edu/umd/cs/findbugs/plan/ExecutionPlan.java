@@ -116,6 +116,24 @@ public class ExecutionPlan {
         return isActive(detectorClass.getName());
     }
 
+    /**
+     * Determine whether the given detector is the earlier detector of an
+     * intra-pass (WithinPass) ordering constraint, i.e., whether some other
+     * detector of its pass relies on it having seen a class first.
+     *
+     * @param factory
+     *            a DetectorFactory
+     * @return true if the detector must precede some detector within its pass
+     */
+    public boolean isEarlierWithinPass(DetectorFactory factory) {
+        for (DetectorOrderingConstraint constraint : intraPassConstraintList) {
+            if (constraint.getEarlier().selectFactory(factory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Add a Plugin whose Detectors should be added to the execution plan.
      */
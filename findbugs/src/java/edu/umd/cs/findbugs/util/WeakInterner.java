@@ -0,0 +1,179 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Thread safe table of canonical instances. Entries are only weakly
+ * referenced, so a canonical instance is dropped from the table once it is
+ * no longer used anywhere else.
+ *
+ * The table is split into a fixed number of stripes, each guarded by its own
+ * lock, so that threads interning different values rarely contend.
+ */
+public class WeakInterner<E> {
+    private static final int DEFAULT_STRIPES = 32;
+
+    /**
+     * Approximate heap footprint of one table entry (the WeakHashMap entry and
+     * the WeakReference to the value), not counting the value itself.
+     */
+    public static final int ENTRY_OVERHEAD_BYTES = 80;
+
+    private final Stripe<E>[] stripes;
+
+    private final int mask;
+
+    private static class Stripe<E> {
+        final WeakHashMap<E, WeakReference<E>> map = new WeakHashMap<E, WeakReference<E>>();
+
+        long hits;
+
+        long misses;
+    }
+
+    public WeakInterner() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param minStripes
+     *            minimal number of independently locked stripes
+     */
+    @SuppressWarnings("unchecked")
+    public WeakInterner(int minStripes) {
+        int n = 1;
+        while (n < minStripes) {
+            n <<= 1;
+        }
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe<E>();
+        }
+        mask = n - 1;
+    }
+
+    private Stripe<E> stripeFor(Object value) {
+        int h = value.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+
+    /**
+     * Get the canonical instance equal to the given value. If there is none,
+     * the value itself becomes the canonical instance.
+     *
+     * @param value
+     *            a value
+     * @return the canonical instance equal to value
+     */
+    public E intern(E value) {
+        Stripe<E> stripe = stripeFor(value);
+        synchronized (stripe) {
+            WeakReference<E> ref = stripe.map.get(value);
+            if (ref != null) {
+                E existing = ref.get();
+                if (existing != null) {
+                    stripe.hits++;
+                    return existing;
+                }
+            }
+            stripe.misses++;
+            stripe.map.put(value, new WeakReference<E>(value));
+            return value;
+        }
+    }
+
+    /**
+     * Get the canonical instance equal to the given value, without adding
+     * the value to the table.
+     *
+     * @param value
+     *            a value
+     * @return the canonical instance, or null if there is none
+     */
+    public @CheckForNull
+    E probe(E value) {
+        Stripe<E> stripe = stripeFor(value);
+        synchronized (stripe) {
+            WeakReference<E> ref = stripe.map.get(value);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    /**
+     * @return the number of entries currently in the table; entries whose
+     *         values have been collected but not yet expunged are included
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of calls to {@link #intern(Object)} which returned
+     *         an existing canonical instance
+     */
+    public long getHits() {
+        long hits = 0;
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return the number of calls to {@link #intern(Object)} which added a
+     *         new canonical instance
+     */
+    public long getMisses() {
+        long misses = 0;
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                misses += stripe.misses;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * @return approximate number of bytes used by the table itself
+     */
+    public long getOverheadBytes() {
+        return (long) size() * ENTRY_OVERHEAD_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return size() + " entries, " + getHits() + " hits, " + getMisses() + " misses, ~" + getOverheadBytes() / 1024
+                + " KB overhead";
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.visitclass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantInteger;
+import org.apache.bcel.classfile.ConstantInvokeDynamic;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantString;
+import org.apache.bcel.classfile.ConstantUtf8;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+
+/**
+ * The instructions of a method, decoded once: opcodes, operands, branch
+ * offsets and switch tables are kept in parallel arrays, and constant pool
+ * operands are resolved (to the referenced class, name, signature or string)
+ * once per constant pool entry rather than once per instruction.
+ *
+ * DecodedCode objects are method analyses (see
+ * edu.umd.cs.findbugs.classfile.engine.bcel.DecodedCodeFactory), so
+ * that every {@link DismantleBytecode} visiting a method, including the
+ * iterations of the OpcodeStack jump info computation, replays the same
+ * decoded instructions.
+ */
+public class DecodedCode implements Constants2 {
+
+    static final int INVALID_OFFSET = Integer.MIN_VALUE;
+
+    static final int FLAG_WIDE = 1;
+
+    static final int FLAG_INT = 2;
+
+    static final int FLAG_REGISTER_LOAD = 4;
+
+    static final int FLAG_REGISTER_STORE = 8;
+
+    /**
+     * A constant pool operand, resolved.
+     */
+    static class ResolvedConstant {
+        final Constant constant;
+
+        @CheckForNull
+        String classOperand;
+
+        @CheckForNull
+        ClassDescriptor referencedClass;
+
+        @CheckForNull
+        String nameOperand;
+
+        @CheckForNull
+        String sigOperand;
+
+        @CheckForNull
+        String stringOperand;
+
+        boolean isRef;
+
+        ResolvedConstant(Constant constant) {
+            this.constant = constant;
+        }
+    }
+
+    /**
+     * The operands of a LOOKUPSWITCH or TABLESWITCH, sorted by offset.
+     */
+    static class SwitchTable {
+        final int[] offsets;
+
+        final int[] labels;
+
+        final int low;
+
+        final int high;
+
+        SwitchTable(int[] offsets, int[] labels, int low, int high) {
+            this.offsets = offsets;
+            this.labels = labels;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    private final byte[] codeBytes;
+
+    private final int numInstructions;
+
+    private final int[] pcs;
+
+    private final short[] opcodes;
+
+    private final byte[] flags;
+
+    private final int[] registers;
+
+    private final int[] intOperands;
+
+    private final int[] branchOffsets;
+
+    private final int[] constantIndexes;
+
+    private final ResolvedConstant[] constants;
+
+    private final @CheckForNull
+    SwitchTable[] switches;
+
+    private DecodedCode(byte[] codeBytes, int numInstructions, int[] pcs, short[] opcodes, byte[] flags, int[] registers,
+            int[] intOperands, int[] branchOffsets, int[] constantIndexes, ResolvedConstant[] constants,
+            @CheckForNull SwitchTable[] switches) {
+        this.codeBytes = codeBytes;
+        this.numInstructions = numInstructions;
+        this.pcs = pcs;
+        this.opcodes = opcodes;
+        this.flags = flags;
+        this.registers = registers;
+        this.intOperands = intOperands;
+        this.branchOffsets = branchOffsets;
+        this.constantIndexes = constantIndexes;
+        this.constants = constants;
+        this.switches = switches;
+    }
+
+    /**
+     * @return the bytecode this was decoded from
+     */
+    public byte[] getCodeBytes() {
+        return codeBytes;
+    }
+
+    /**
+     * @return number of instructions
+     */
+    public int getNumInstructions() {
+        return numInstructions;
+    }
+
+    /**
+     * @return the pc of the k-th instruction
+     */
+    public int getPC(int k) {
+        return pcs[k];
+    }
+
+    /**
+     * @return the pc following the k-th instruction
+     */
+    public int getNextPC(int k) {
+        return pcs[k + 1];
+    }
+
+    /**
+     * @return the opcode of the k-th instruction; for a wide instruction, the
+     *         opcode it modifies
+     */
+    public int getOpcode(int k) {
+        return opcodes[k];
+    }
+
+    /**
+     * @return true if the k-th instruction is prefixed by WIDE
+     */
+    public boolean isWide(int k) {
+        return (flags[k] & FLAG_WIDE) != 0;
+    }
+
+    /**
+     * @return the branch target of the k-th instruction (the default target,
+     *         for a switch), or -1 if it is not a branch or switch
+     */
+    public int getBranchTarget(int k) {
+        int offset = branchOffsets[k];
+        return offset == INVALID_OFFSET ? -1 : pcs[k] + offset;
+    }
+
+    /**
+     * @return the register operand of the k-th instruction, or -1 if it has
+     *         none
+     */
+    public int getRegisterOperand(int k) {
+        return registers[k];
+    }
+
+    /**
+     * @return the resolved constant pool operand of the k-th instruction, or
+     *         null if it has none
+     */
+    public @CheckForNull
+    Constant getConstantOperand(int k) {
+        int index = constantIndexes[k];
+        return index < 0 ? null : constants[index].constant;
+    }
+
+    int getFlags(int k) {
+        return flags[k];
+    }
+
+    int getIntOperand(int k) {
+        return intOperands[k];
+    }
+
+    int getBranchOffset(int k) {
+        return branchOffsets[k];
+    }
+
+    @CheckForNull
+    ResolvedConstant getResolvedConstant(int k) {
+        int index = constantIndexes[k];
+        return index < 0 ? null : constants[index];
+    }
+
+    @CheckForNull
+    SwitchTable getSwitchTable(int k) {
+        return switches == null ? null : switches[k];
+    }
+
+    /**
+     * Decode a Code attribute.
+     *
+     * If the bytecode ends in the middle of an instruction, the error is
+     * logged and the instructions before the truncated one are kept, so
+     * visitors of the method see only those. This is what DismantleBytecode
+     * did before decoding was shared, except that the error is now logged
+     * once per method rather than once per visitor, and is never turned into
+     * an AssertionError. Invalid opcodes and invalid operands of WIDE still
+     * throw an IllegalStateException.
+     *
+     * @param code
+     *            the Code attribute
+     * @param constantPool
+     *            the constant pool of the class the code belongs to
+     * @return the decoded instructions
+     */
+    public static DecodedCode decode(Code code, ConstantPool constantPool) {
+        return new Decoder(code.getCode(), constantPool).decode();
+    }
+
+    private static class Decoder {
+        final byte[] b;
+
+        final ConstantPool constantPool;
+
+        int n;
+
+        int[] pcs;
+
+        short[] opcodes;
+
+        byte[] flags;
+
+        int[] registers;
+
+        int[] intOperands;
+
+        int[] branchOffsets;
+
+        int[] constantIndexes;
+
+        SwitchTable[] switches;
+
+        final Map<Integer, Integer> constantPoolToResolved = new HashMap<Integer, Integer>();
+
+        final List<ResolvedConstant> resolved = new ArrayList<ResolvedConstant>();
+
+        Decoder(byte[] b, ConstantPool constantPool) {
+            this.b = b;
+            this.constantPool = constantPool;
+            int capacity = b.length + 1;
+            pcs = new int[capacity];
+            opcodes = new short[capacity];
+            flags = new byte[capacity];
+            registers = new int[capacity];
+            intOperands = new int[capacity];
+            branchOffsets = new int[capacity];
+            constantIndexes = new int[capacity];
+        }
+
+        int u1(int i) {
+            return b[i] & 0xff;
+        }
+
+        int u2(int i) {
+            return ((b[i] & 0xff) << 8) | (b[i + 1] & 0xff);
+        }
+
+        int s2(int i) {
+            return (short) u2(i);
+        }
+
+        int s4(int i) {
+            return ((b[i] & 0xff) << 24) | ((b[i + 1] & 0xff) << 16) | ((b[i + 2] & 0xff) << 8) | (b[i + 3] & 0xff);
+        }
+
+        DecodedCode decode() {
+            int i = 0;
+            try {
+                while (i < b.length) {
+                    i = decodeInstruction(i);
+                    n++;
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // truncated instruction at i: keep the instructions before it
+                AnalysisContext.logError("Error while dismantling bytecode", e);
+            }
+            pcs[n] = i;
+            return new DecodedCode(b, n, Arrays.copyOf(pcs, n + 1), Arrays.copyOf(opcodes, n), Arrays.copyOf(flags, n),
+                    Arrays.copyOf(registers, n), Arrays.copyOf(intOperands, n), Arrays.copyOf(branchOffsets, n),
+                    Arrays.copyOf(constantIndexes, n), resolved.toArray(new ResolvedConstant[resolved.size()]),
+                    switches == null ? null : Arrays.copyOf(switches, n));
+        }
+
+        /**
+         * Decode the instruction at pc into slot n.
+         *
+         * @return the pc of the next instruction
+         */
+        int decodeInstruction(int pc) {
+            int i = pc;
+            int opcode = u1(i++);
+            int flag = 0;
+            int register = -1;
+            int intOperand = 0;
+            int branchOffset = INVALID_OFFSET;
+            int constantIndex = -1;
+
+            int byteStreamArgCount = NO_OF_OPERANDS[opcode];
+            if (byteStreamArgCount == UNPREDICTABLE) {
+                if (opcode == LOOKUPSWITCH) {
+                    i += padding(i);
+                    branchOffset = s4(i);
+                    i += 4;
+                    int npairs = s4(i);
+                    i += 4;
+                    int[] switchOffsets = new int[npairs];
+                    int[] switchLabels = new int[npairs];
+                    for (int o = 0; o < npairs; o++) {
+                        switchLabels[o] = s4(i);
+                        switchOffsets[o] = s4(i + 4);
+                        i += 8;
+                    }
+                    sortByOffset(switchOffsets, switchLabels);
+                    setSwitchTable(new SwitchTable(switchOffsets, switchLabels, 1000000, -1000000));
+                } else if (opcode == TABLESWITCH) {
+                    i += padding(i);
+                    branchOffset = s4(i);
+                    i += 4;
+                    int switchLow = s4(i);
+                    i += 4;
+                    int switchHigh = s4(i);
+                    i += 4;
+                    int npairs = switchHigh - switchLow + 1;
+                    int[] switchOffsets = new int[npairs];
+                    int[] switchLabels = new int[npairs];
+                    for (int o = 0; o < npairs; o++) {
+                        switchLabels[o] = o + switchLow;
+                        switchOffsets[o] = s4(i);
+                        i += 4;
+                    }
+                    sortByOffset(switchOffsets, switchLabels);
+                    setSwitchTable(new SwitchTable(switchOffsets, switchLabels, switchLow, switchHigh));
+                } else if (opcode == WIDE) {
+                    flag |= FLAG_WIDE;
+                    opcode = u1(i++);
+                    switch (opcode) {
+                    case ILOAD:
+                    case FLOAD:
+                    case ALOAD:
+                    case LLOAD:
+                    case DLOAD:
+                    case ISTORE:
+                    case FSTORE:
+                    case ASTORE:
+                    case LSTORE:
+                    case DSTORE:
+                    case RET:
+                        register = u2(i);
+                        i += 2;
+                        break;
+                    case IINC:
+                        register = u2(i);
+                        i += 2;
+                        intOperand = s2(i);
+                        flag |= FLAG_INT;
+                        i += 2;
+                        break;
+                    default:
+                        throw new IllegalStateException(String.format("bad wide bytecode %d: %s", opcode, OPCODE_NAMES[opcode]));
+                    }
+                } else {
+                    throw new IllegalStateException(String.format("bad unpredicatable bytecode %d: %s", opcode,
+                            OPCODE_NAMES[opcode]));
+                }
+            } else {
+                if (byteStreamArgCount < 0) {
+                    throw new IllegalStateException(String.format("bad length for bytecode %d: %s", opcode, OPCODE_NAMES[opcode]));
+                }
+                for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
+                    int v;
+                    int t = TYPE_OF_OPERANDS[opcode][k];
+                    int m = DismantleBytecode.MEANING_OF_OPERANDS[opcode][k];
+                    boolean unsigned = (m == DismantleBytecode.M_CP || m == DismantleBytecode.M_R || m == DismantleBytecode.M_UINT);
+                    switch (t) {
+                    case T_BYTE:
+                        v = unsigned ? u1(i) : b[i];
+                        i++;
+                        break;
+                    case T_SHORT:
+                        v = unsigned ? u2(i) : s2(i);
+                        i += 2;
+                        break;
+                    case T_INT:
+                        v = s4(i);
+                        i += 4;
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                    }
+                    switch (m) {
+                    case DismantleBytecode.M_BR:
+                        branchOffset = v;
+                        break;
+                    case DismantleBytecode.M_CP:
+                        constantIndex = resolve(v);
+                        Constant constant = resolved.get(constantIndex).constant;
+                        if (constant instanceof ConstantInteger) {
+                            intOperand = ((ConstantInteger) constant).getBytes();
+                            flag |= FLAG_INT;
+                        }
+                        break;
+                    case DismantleBytecode.M_R:
+                        register = v;
+                        break;
+                    case DismantleBytecode.M_UINT:
+                    case DismantleBytecode.M_INT:
+                        intOperand = v;
+                        flag |= FLAG_INT;
+                        break;
+                    case DismantleBytecode.M_PAD:
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpecting meaning " + m);
+                    }
+                }
+            }
+
+            switch (opcode) {
+            case IINC:
+                flag |= FLAG_REGISTER_LOAD | FLAG_REGISTER_STORE;
+                break;
+            case ILOAD_0:
+            case ILOAD_1:
+            case ILOAD_2:
+            case ILOAD_3:
+                register = opcode - ILOAD_0;
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case ALOAD_0:
+            case ALOAD_1:
+            case ALOAD_2:
+            case ALOAD_3:
+                register = opcode - ALOAD_0;
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case FLOAD_0:
+            case FLOAD_1:
+            case FLOAD_2:
+            case FLOAD_3:
+                register = opcode - FLOAD_0;
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case DLOAD_0:
+            case DLOAD_1:
+            case DLOAD_2:
+            case DLOAD_3:
+                register = opcode - DLOAD_0;
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case LLOAD_0:
+            case LLOAD_1:
+            case LLOAD_2:
+            case LLOAD_3:
+                register = opcode - LLOAD_0;
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case ILOAD:
+            case FLOAD:
+            case ALOAD:
+            case LLOAD:
+            case DLOAD:
+                flag |= FLAG_REGISTER_LOAD;
+                break;
+            case ISTORE_0:
+            case ISTORE_1:
+            case ISTORE_2:
+            case ISTORE_3:
+                register = opcode - ISTORE_0;
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            case ASTORE_0:
+            case ASTORE_1:
+            case ASTORE_2:
+            case ASTORE_3:
+                register = opcode - ASTORE_0;
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            case FSTORE_0:
+            case FSTORE_1:
+            case FSTORE_2:
+            case FSTORE_3:
+                register = opcode - FSTORE_0;
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            case DSTORE_0:
+            case DSTORE_1:
+            case DSTORE_2:
+            case DSTORE_3:
+                register = opcode - DSTORE_0;
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            case LSTORE_0:
+            case LSTORE_1:
+            case LSTORE_2:
+            case LSTORE_3:
+                register = opcode - LSTORE_0;
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            case ISTORE:
+            case FSTORE:
+            case ASTORE:
+            case LSTORE:
+            case DSTORE:
+                flag |= FLAG_REGISTER_STORE;
+                break;
+            default:
+                break;
+            }
+
+            pcs[n] = pc;
+            opcodes[n] = (short) opcode;
+            flags[n] = (byte) flag;
+            registers[n] = register;
+            intOperands[n] = intOperand;
+            branchOffsets[n] = branchOffset;
+            constantIndexes[n] = constantIndex;
+            return i;
+        }
+
+        private static int padding(int i) {
+            int pad = 4 - (i & 3);
+            return pad == 4 ? 0 : pad;
+        }
+
+        private void setSwitchTable(SwitchTable table) {
+            if (switches == null) {
+                switches = new SwitchTable[pcs.length];
+            }
+            switches[n] = table;
+        }
+
+        private String getStringFromIndex(int i) {
+            return ((ConstantUtf8) constantPool.getConstant(i)).getBytes();
+        }
+
+        /**
+         * @return the index of the resolved constant for the given constant
+         *         pool index
+         */
+        private int resolve(int constantPoolIndex) {
+            Integer known = constantPoolToResolved.get(constantPoolIndex);
+            if (known != null) {
+                return known;
+            }
+            ResolvedConstant r = new ResolvedConstant(constantPool.getConstant(constantPoolIndex));
+            Constant constant = r.constant;
+            if (constant instanceof ConstantClass) {
+                r.classOperand = getStringFromIndex(((ConstantClass) constant).getNameIndex());
+                r.referencedClass = DescriptorFactory.createClassDescriptor(r.classOperand);
+            } else if (constant instanceof ConstantString) {
+                r.stringOperand = getStringFromIndex(((ConstantString) constant).getStringIndex());
+            } else if (constant instanceof ConstantInvokeDynamic) {
+                ConstantInvokeDynamic id = (ConstantInvokeDynamic) constant;
+                ConstantNameAndType sig = (ConstantNameAndType) constantPool.getConstant(id.getNameAndTypeIndex());
+                r.nameOperand = getStringFromIndex(sig.getNameIndex());
+                r.sigOperand = getStringFromIndex(sig.getSignatureIndex());
+            } else if (constant instanceof ConstantCP) {
+                ConstantCP cp = (ConstantCP) constant;
+                ConstantClass clazz = (ConstantClass) constantPool.getConstant(cp.getClassIndex());
+                r.classOperand = getStringFromIndex(clazz.getNameIndex());
+                r.referencedClass = DescriptorFactory.createClassDescriptor(r.classOperand);
+                ConstantNameAndType sig = (ConstantNameAndType) constantPool.getConstant(cp.getNameAndTypeIndex());
+                r.nameOperand = getStringFromIndex(sig.getNameIndex());
+                r.sigOperand = getStringFromIndex(sig.getSignatureIndex());
+                r.isRef = true;
+            }
+            int index = resolved.size();
+            resolved.add(r);
+            constantPoolToResolved.put(constantPoolIndex, index);
+            return index;
+        }
+    }
+
+    private static void sortByOffset(int[] switchOffsets, int[] switchLabels) {
+        int npairs = switchOffsets.length;
+        // Sort by offset
+        for (int j = 0; j < npairs; j++) {
+            int min = j;
+            for (int k = j + 1; k < npairs; k++) {
+                if (switchOffsets[min] > switchOffsets[k]) {
+                    min = k;
+                }
+            }
+            if (min > j) {
+                int tmp = switchOffsets[min];
+                switchOffsets[min] = switchOffsets[j];
+                switchOffsets[j] = tmp;
+                tmp = switchLabels[min];
+                switchLabels[min] = switchLabels[j];
+                switchLabels[j] = tmp;
+            }
+        }
+    }
+}
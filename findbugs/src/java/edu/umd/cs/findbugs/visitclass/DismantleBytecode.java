@@ -19,9 +19,6 @@
 
 package edu.umd.cs.findbugs.visitclass;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.text.NumberFormat;
 
 import javax.annotation.CheckForNull;
@@ -29,17 +26,14 @@ import javax.annotation.CheckForNull;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.CodeException;
 import org.apache.bcel.classfile.Constant;
-import org.apache.bcel.classfile.ConstantCP;
 import org.apache.bcel.classfile.ConstantClass;
 import org.apache.bcel.classfile.ConstantDouble;
 import org.apache.bcel.classfile.ConstantFieldref;
 import org.apache.bcel.classfile.ConstantFloat;
 import org.apache.bcel.classfile.ConstantInteger;
 import org.apache.bcel.classfile.ConstantInterfaceMethodref;
-import org.apache.bcel.classfile.ConstantInvokeDynamic;
 import org.apache.bcel.classfile.ConstantLong;
 import org.apache.bcel.classfile.ConstantMethodref;
-import org.apache.bcel.classfile.ConstantNameAndType;
 import org.apache.bcel.classfile.ConstantString;
 import org.apache.bcel.classfile.LineNumberTable;
 
@@ -54,6 +48,7 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.FieldDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
@@ -489,27 +484,6 @@ abstract public class DismantleBytecode extends AnnotationVisitor {
         referencedXField = null;
     }
 
-    private static void sortByOffset(int[] switchOffsets, int[] switchLabels) {
-        int npairs = switchOffsets.length;
-        // Sort by offset
-        for (int j = 0; j < npairs; j++) {
-            int min = j;
-            for (int k = j + 1; k < npairs; k++) {
-                if (switchOffsets[min] > switchOffsets[k]) {
-                    min = k;
-                }
-            }
-            if (min > j) {
-                int tmp = switchOffsets[min];
-                switchOffsets[min] = switchOffsets[j];
-                switchOffsets[j] = tmp;
-                tmp = switchLabels[min];
-                switchLabels[min] = switchLabels[j];
-                switchLabels[j] = tmp;
-            }
-        }
-    }
-
     public int getMaxPC() {
         return codeBytes.length - 1;
     }
@@ -531,425 +505,242 @@ abstract public class DismantleBytecode extends AnnotationVisitor {
         return false;
     }
 
+    /**
+     * Visit the instructions of a Code attribute. Truncated bytecode is
+     * visited up to the truncated instruction; see
+     * {@link DecodedCode#decode(Code, org.apache.bcel.classfile.ConstantPool)}.
+     */
     @Override
     public void visit(Code obj) {
         //        if (getXMethod().usesInvokeDynamic()) {
         //            AnalysisContext.currentAnalysisContext().analysisSkippedDueToInvokeDynamic(getXMethod());
         //            return;
         //        }
-        sizePrevOpcodeBuffer = 0;
-        currentPosInPrevOpcodeBuffer = prevOpcode.length - 1;
-
-        int switchLow = 1000000;
-        int switchHigh = -1000000;
-        codeBytes = obj.getCode();
-        DataInputStream byteStream = new DataInputStream(new ByteArrayInputStream(codeBytes));
-
-        lineNumberTable = obj.getLineNumberTable();
-
-        try {
-            for (int i = 0; i < codeBytes.length;) {
-                resetState();
-                PC = i;
-                opcodeIsWide = false;
-                opcode = byteStream.readUnsignedByte();
-
-                sizePrevOpcodeBuffer++;
-                currentPosInPrevOpcodeBuffer++;
-                if (currentPosInPrevOpcodeBuffer >= prevOpcode.length) {
-                    currentPosInPrevOpcodeBuffer = 0;
+        resetForCode(obj);
+        DecodedCode decoded = getDecodedCode(obj);
+
+        for (int instruction = 0; instruction < decoded.getNumInstructions(); instruction++) {
+            resetState();
+            loadInstruction(decoded, instruction);
+            DecodedCode.SwitchTable switchTable = decoded.getSwitchTable(instruction);
+            int switchLow = switchTable == null ? 1000000 : switchTable.low;
+            int switchHigh = switchTable == null ? -1000000 : switchTable.high;
+
+            if (beforeOpcode(opcode)) {
+                sawOpcode(opcode);
+            }
+            afterOpcode(opcode);
+
+            if (opcode == TABLESWITCH) {
+                sawInt(switchLow);
+                sawInt(switchHigh);
+                //                    int prevOffset = i - PC;
+                for (int o = 0; o <= switchHigh - switchLow; o++) {
+                    sawBranchTo(switchOffsets[o] + PC);
+                    //                        prevOffset = switchOffsets[o];
                 }
-                prevOpcode[currentPosInPrevOpcodeBuffer] = opcode;
-                i++;
-                // System.out.println(OPCODE_NAMES[opCode]);
-                int byteStreamArgCount = NO_OF_OPERANDS[opcode];
-                if (byteStreamArgCount == UNPREDICTABLE) {
-
-                    if (opcode == LOOKUPSWITCH) {
-                        int pad = 4 - (i & 3);
-                        if (pad == 4) {
-                            pad = 0;
-                        }
-                        int count = pad;
-                        while (count > 0) {
-                            count -= byteStream.skipBytes(count);
-                        }
-                        i += pad;
-                        defaultSwitchOffset = byteStream.readInt();
-                        branchOffset = defaultSwitchOffset;
-                        branchTarget = branchOffset + PC;
-                        i += 4;
-                        int npairs = byteStream.readInt();
-                        i += 4;
-                        switchOffsets = new int[npairs];
-                        switchLabels = new int[npairs];
-                        for (int o = 0; o < npairs; o++) {
-                            switchLabels[o] = byteStream.readInt();
-                            switchOffsets[o] = byteStream.readInt();
-                            i += 8;
-                        }
-                        sortByOffset(switchOffsets, switchLabels);
-                    } else if (opcode == TABLESWITCH) {
-                        int pad = 4 - (i & 3);
-                        if (pad == 4) {
-                            pad = 0;
-                        }
-                        int count = pad;
-                        while (count > 0) {
-                            count -= byteStream.skipBytes(count);
-                        }
-                        i += pad;
-                        defaultSwitchOffset = byteStream.readInt();
-                        branchOffset = defaultSwitchOffset;
-                        branchTarget = branchOffset + PC;
-                        i += 4;
-                        switchLow = byteStream.readInt();
-                        i += 4;
-                        switchHigh = byteStream.readInt();
-                        i += 4;
-                        int npairs = switchHigh - switchLow + 1;
-                        switchOffsets = new int[npairs];
-                        switchLabels = new int[npairs];
-                        for (int o = 0; o < npairs; o++) {
-                            switchLabels[o] = o + switchLow;
-                            switchOffsets[o] = byteStream.readInt();
-                            i += 4;
-                        }
-                        sortByOffset(switchOffsets, switchLabels);
-                    } else if (opcode == WIDE) {
-                        opcodeIsWide = true;
-                        opcode = byteStream.readUnsignedByte();
-                        i++;
-                        switch (opcode) {
-                        case ILOAD:
-                        case FLOAD:
-                        case ALOAD:
-                        case LLOAD:
-                        case DLOAD:
-                        case ISTORE:
-                        case FSTORE:
-                        case ASTORE:
-                        case LSTORE:
-                        case DSTORE:
-                        case RET:
-                            registerOperand = byteStream.readUnsignedShort();
-                            i += 2;
-                            break;
-                        case IINC:
-                            registerOperand = byteStream.readUnsignedShort();
-                            i += 2;
-                            intConstant = byteStream.readShort();
-                            i += 2;
-                            break;
-                        default:
-                            throw new IllegalStateException(String.format("bad wide bytecode %d: %s" , opcode, OPCODE_NAMES[opcode]));
-                        }
-                    } else {
-                        throw new IllegalStateException(String.format("bad unpredicatable bytecode %d: %s" , opcode, OPCODE_NAMES[opcode]));
-                    }
-                } else {
-                    if (byteStreamArgCount < 0) {
-                        throw new IllegalStateException(String.format("bad length for bytecode %d: %s" , opcode, OPCODE_NAMES[opcode]));
-                    }
-                    for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
-
-                        int v;
-                        int t = TYPE_OF_OPERANDS[opcode][k];
-                        int m = MEANING_OF_OPERANDS[opcode][k];
-                        boolean unsigned = (m == M_CP || m == M_R || m == M_UINT);
-                        switch (t) {
-                        case T_BYTE:
-                            if (unsigned) {
-                                v = byteStream.readUnsignedByte();
-                            } else {
-                                v = byteStream.readByte();
-                            }
-                            /*
-                             * System.out.print("Read byte " + v);
-                             * System.out.println(" with meaning" + m);
-                             */
-                            i++;
-                            break;
-                        case T_SHORT:
-                            if (unsigned) {
-                                v = byteStream.readUnsignedShort();
-                            } else {
-                                v = byteStream.readShort();
-                            }
-                            i += 2;
-                            break;
-                        case T_INT:
-                            v = byteStream.readInt();
-                            i += 4;
-                            break;
-                        default:
-                            throw new IllegalStateException();
-                        }
-                        switch (m) {
-                        case M_BR:
-                            branchOffset = v;
-                            branchTarget = v + PC;
-                            branchFallThrough = i;
-                            break;
-                        case M_CP:
-                            constantRefOperand = getConstantPool().getConstant(v);
-                            if (constantRefOperand instanceof ConstantClass) {
-                                ConstantClass clazz = (ConstantClass) constantRefOperand;
-                                classConstantOperand = getStringFromIndex(clazz.getNameIndex());
-                                referencedClass = DescriptorFactory.createClassDescriptor(classConstantOperand);
-
-                            } else if (constantRefOperand instanceof ConstantInteger) {
-                                intConstant = ((ConstantInteger) constantRefOperand).getBytes();
-                            } else if (constantRefOperand instanceof ConstantLong) {
-                                longConstant = ((ConstantLong) constantRefOperand).getBytes();
-                            } else if (constantRefOperand instanceof ConstantFloat) {
-                                floatConstant = ((ConstantFloat) constantRefOperand).getBytes();
-                            } else if (constantRefOperand instanceof ConstantDouble) {
-                                doubleConstant = ((ConstantDouble) constantRefOperand).getBytes();
-                            } else if (constantRefOperand instanceof ConstantString) {
-                                int s = ((ConstantString) constantRefOperand).getStringIndex();
-
-                                stringConstantOperand = getStringFromIndex(s);
-                            } else if (constantRefOperand instanceof ConstantInvokeDynamic) {
-                                ConstantInvokeDynamic id = (ConstantInvokeDynamic) constantRefOperand;
-                                ConstantNameAndType sig = (ConstantNameAndType) getConstantPool().getConstant(
-                                        id.getNameAndTypeIndex());
-                                nameConstantOperand = getStringFromIndex(sig.getNameIndex());
-                                sigConstantOperand = getStringFromIndex(sig.getSignatureIndex());
-                            } else if (constantRefOperand instanceof ConstantCP) {
-                                ConstantCP cp = (ConstantCP) constantRefOperand;
-                                ConstantClass clazz = (ConstantClass) getConstantPool().getConstant(cp.getClassIndex());
-                                classConstantOperand = getStringFromIndex(clazz.getNameIndex());
-                                referencedClass = DescriptorFactory.createClassDescriptor(classConstantOperand);
-                                referencedXClass = null;
-                                ConstantNameAndType sig = (ConstantNameAndType) getConstantPool().getConstant(
-                                        cp.getNameAndTypeIndex());
-                                nameConstantOperand = getStringFromIndex(sig.getNameIndex());
-                                sigConstantOperand = getStringFromIndex(sig.getSignatureIndex());
-                                refConstantOperand = null;
-                            }
-                            break;
-                        case M_R:
-                            registerOperand = v;
-                            break;
-                        case M_UINT:
-                        case M_INT:
-                            intConstant = v;
-                            break;
-                        case M_PAD:
-                            break;
-                        default:
-                            throw new IllegalStateException("Unexpecting meaning " + m);
+                sawBranchTo(defaultSwitchOffset + PC);
+            } else if (opcode == LOOKUPSWITCH) {
+                sawInt(switchOffsets.length);
+                //                    int prevOffset = i - PC;
+                for (int o = 0; o < switchOffsets.length; o++) {
+                    sawBranchTo(switchOffsets[o] + PC);
+                    //                        prevOffset = switchOffsets[o];
+                    sawInt(switchLabels[o]);
+                }
+                sawBranchTo(defaultSwitchOffset + PC);
+            } else {
+                for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
+                    int m = MEANING_OF_OPERANDS[opcode][k];
+                    switch (m) {
+                    case M_BR:
+                        sawBranchTo(branchOffset + PC);
+                        break;
+                    case M_CP:
+                        if (constantRefOperand instanceof ConstantInteger) {
+                            sawInt(intConstant);
+                        } else if (constantRefOperand instanceof ConstantLong) {
+                            sawLong(longConstant);
+                        } else if (constantRefOperand instanceof ConstantFloat) {
+                            sawFloat(floatConstant);
+                        } else if (constantRefOperand instanceof ConstantDouble) {
+                            sawDouble(doubleConstant);
+                        } else if (constantRefOperand instanceof ConstantString) {
+                            sawString(stringConstantOperand);
+                        } else if (constantRefOperand instanceof ConstantFieldref) {
+                            sawField();
+                        } else if (constantRefOperand instanceof ConstantMethodref) {
+                            sawMethod();
+                        } else if (constantRefOperand instanceof ConstantInterfaceMethodref) {
+                            sawIMethod();
+                        } else if (constantRefOperand instanceof ConstantClass) {
+                            sawClass();
                         }
+                        break;
+                    case M_R:
+                        sawRegister(registerOperand);
+                        break;
+                    case M_INT:
+                        sawInt(intConstant);
+                        break;
+                    default:
+                        break;
                     }
-
-                }
-                switch (opcode) {
-                case IINC:
-                    isRegisterLoad = true;
-                    isRegisterStore = true;
-                    break;
-                case ILOAD_0:
-                case ILOAD_1:
-                case ILOAD_2:
-                case ILOAD_3:
-                    registerOperand = opcode - ILOAD_0;
-                    isRegisterLoad = true;
-                    break;
-
-                case ALOAD_0:
-                case ALOAD_1:
-                case ALOAD_2:
-                case ALOAD_3:
-                    registerOperand = opcode - ALOAD_0;
-                    isRegisterLoad = true;
-                    break;
-
-                case FLOAD_0:
-                case FLOAD_1:
-                case FLOAD_2:
-                case FLOAD_3:
-                    registerOperand = opcode - FLOAD_0;
-                    isRegisterLoad = true;
-                    break;
-
-                case DLOAD_0:
-                case DLOAD_1:
-                case DLOAD_2:
-                case DLOAD_3:
-                    registerOperand = opcode - DLOAD_0;
-                    isRegisterLoad = true;
-                    break;
-
-                case LLOAD_0:
-                case LLOAD_1:
-                case LLOAD_2:
-                case LLOAD_3:
-                    registerOperand = opcode - LLOAD_0;
-                    isRegisterLoad = true;
-                    break;
-                case ILOAD:
-                case FLOAD:
-                case ALOAD:
-                case LLOAD:
-                case DLOAD:
-                    isRegisterLoad = true;
-                    break;
-
-                case ISTORE_0:
-                case ISTORE_1:
-                case ISTORE_2:
-                case ISTORE_3:
-                    registerOperand = opcode - ISTORE_0;
-                    isRegisterStore = true;
-                    break;
-
-                case ASTORE_0:
-                case ASTORE_1:
-                case ASTORE_2:
-                case ASTORE_3:
-                    registerOperand = opcode - ASTORE_0;
-                    isRegisterStore = true;
-                    break;
-
-                case FSTORE_0:
-                case FSTORE_1:
-                case FSTORE_2:
-                case FSTORE_3:
-                    registerOperand = opcode - FSTORE_0;
-                    isRegisterStore = true;
-                    break;
-
-                case DSTORE_0:
-                case DSTORE_1:
-                case DSTORE_2:
-                case DSTORE_3:
-                    registerOperand = opcode - DSTORE_0;
-                    isRegisterStore = true;
-                    break;
-
-                case LSTORE_0:
-                case LSTORE_1:
-                case LSTORE_2:
-                case LSTORE_3:
-                    registerOperand = opcode - LSTORE_0;
-                    isRegisterStore = true;
-                    break;
-                case ISTORE:
-                case FSTORE:
-                case ASTORE:
-                case LSTORE:
-                case DSTORE:
-                    isRegisterStore = true;
-                    break;
-                default:
-                    break;
                 }
+            }
+        }
+    }
 
-                switch (opcode) {
-                case ILOAD:
-                case FLOAD:
-                case ALOAD:
-                case LLOAD:
-                case DLOAD:
-                    // registerKind = opcode - ILOAD;
-                    break;
-                case ISTORE:
-                case FSTORE:
-                case ASTORE:
-                case LSTORE:
-                case DSTORE:
-                    // registerKind = opcode - ISTORE;
-                    break;
-                case RET:
-                    // registerKind = R_REF;
-                    break;
-                case GETSTATIC:
-                case PUTSTATIC:
-                    refFieldIsStatic = true;
-                    break;
-                case GETFIELD:
-                case PUTFIELD:
-                    refFieldIsStatic = false;
-                    break;
-                default:
-                    break;
+    /**
+     * Get the decoded instructions of the given Code attribute, from the
+     * analysis cache if it is the Code of the method being visited.
+     */
+    private DecodedCode getDecodedCode(Code obj) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        if (analysisCache != null && visitingMethod() && getMethodDescriptor() != null) {
+            try {
+                DecodedCode decoded = analysisCache.getMethodAnalysis(DecodedCode.class, getMethodDescriptor());
+                if (decoded != null && decoded.getCodeBytes() == obj.getCode()) {
+                    return decoded;
                 }
+            } catch (CheckedAnalysisException e) {
+                AnalysisContext.logError("Error getting decoded code for " + getMethodDescriptor(), e);
+            }
+        }
+        return DecodedCode.decode(obj, getConstantPool());
+    }
 
-                nextPC = i;
-                if (beforeOpcode(opcode)) {
-                    sawOpcode(opcode);
-                }
-                afterOpcode(opcode);
-
-                if (opcode == TABLESWITCH) {
-                    sawInt(switchLow);
-                    sawInt(switchHigh);
-                    //                    int prevOffset = i - PC;
-                    for (int o = 0; o <= switchHigh - switchLow; o++) {
-                        sawBranchTo(switchOffsets[o] + PC);
-                        //                        prevOffset = switchOffsets[o];
-                    }
-                    sawBranchTo(defaultSwitchOffset + PC);
-                } else if (opcode == LOOKUPSWITCH) {
-                    sawInt(switchOffsets.length);
-                    //                    int prevOffset = i - PC;
-                    for (int o = 0; o < switchOffsets.length; o++) {
-                        sawBranchTo(switchOffsets[o] + PC);
-                        //                        prevOffset = switchOffsets[o];
-                        sawInt(switchLabels[o]);
-                    }
-                    sawBranchTo(defaultSwitchOffset + PC);
-                } else {
-                    for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
-                        int m = MEANING_OF_OPERANDS[opcode][k];
-                        switch (m) {
-                        case M_BR:
-                            sawBranchTo(branchOffset + PC);
-                            break;
-                        case M_CP:
-                            if (constantRefOperand instanceof ConstantInteger) {
-                                sawInt(intConstant);
-                            } else if (constantRefOperand instanceof ConstantLong) {
-                                sawLong(longConstant);
-                            } else if (constantRefOperand instanceof ConstantFloat) {
-                                sawFloat(floatConstant);
-                            } else if (constantRefOperand instanceof ConstantDouble) {
-                                sawDouble(doubleConstant);
-                            } else if (constantRefOperand instanceof ConstantString) {
-                                sawString(stringConstantOperand);
-                            } else if (constantRefOperand instanceof ConstantFieldref) {
-                                sawField();
-                            } else if (constantRefOperand instanceof ConstantMethodref) {
-                                sawMethod();
-                            } else if (constantRefOperand instanceof ConstantInterfaceMethodref) {
-                                sawIMethod();
-                            } else if (constantRefOperand instanceof ConstantClass) {
-                                sawClass();
-                            }
-                            break;
-                        case M_R:
-                            sawRegister(registerOperand);
-                            break;
-                        case M_INT:
-                            sawInt(intConstant);
-                            break;
-                        default:
-                            break;
-                        }
-                    }
-                }
+    /**
+     * Set the state of this visitor to the k-th decoded instruction.
+     */
+    private void loadInstruction(DecodedCode decoded, int k) {
+        PC = decoded.getPC(k);
+        nextPC = decoded.getNextPC(k);
+        opcode = decoded.getOpcode(k);
+        pushPrevOpcode(opcode);
+        int flags = decoded.getFlags(k);
+        opcodeIsWide = (flags & DecodedCode.FLAG_WIDE) != 0;
+        if ((flags & DecodedCode.FLAG_INT) != 0) {
+            intConstant = decoded.getIntOperand(k);
+        }
+        registerOperand = decoded.getRegisterOperand(k);
+        isRegisterLoad = (flags & DecodedCode.FLAG_REGISTER_LOAD) != 0;
+        isRegisterStore = (flags & DecodedCode.FLAG_REGISTER_STORE) != 0;
+        refFieldIsStatic = opcode == GETSTATIC || opcode == PUTSTATIC;
+
+        int offset = decoded.getBranchOffset(k);
+        if (offset != INVALID_OFFSET) {
+            branchOffset = offset;
+            branchTarget = PC + offset;
+            if (isBranch(opcode)) {
+                branchFallThrough = nextPC;
+            }
+        }
+        DecodedCode.SwitchTable switchTable = decoded.getSwitchTable(k);
+        if (switchTable != null) {
+            defaultSwitchOffset = offset;
+            switchOffsets = switchTable.offsets;
+            switchLabels = switchTable.labels;
+        }
+
+        DecodedCode.ResolvedConstant c = decoded.getResolvedConstant(k);
+        if (c != null) {
+            constantRefOperand = c.constant;
+            if (c.classOperand != null) {
+                classConstantOperand = c.classOperand;
+                referencedClass = c.referencedClass;
+            }
+            if (c.nameOperand != null) {
+                nameConstantOperand = c.nameOperand;
+            }
+            if (c.sigOperand != null) {
+                sigConstantOperand = c.sigOperand;
+            }
+            if (c.stringOperand != null) {
+                stringConstantOperand = c.stringOperand;
+            }
+            if (c.isRef) {
+                refConstantOperand = null;
+            }
+            if (constantRefOperand instanceof ConstantLong) {
+                longConstant = ((ConstantLong) constantRefOperand).getBytes();
+            } else if (constantRefOperand instanceof ConstantFloat) {
+                floatConstant = ((ConstantFloat) constantRefOperand).getBytes();
+            } else if (constantRefOperand instanceof ConstantDouble) {
+                doubleConstant = ((ConstantDouble) constantRefOperand).getBytes();
             }
-        } catch (IOException e) {
-            AnalysisContext.logError("Error while dismantling bytecode", e);
-            assert false;
         }
+    }
+
+    private void resetForCode(Code obj) {
+        sizePrevOpcodeBuffer = 0;
+        currentPosInPrevOpcodeBuffer = prevOpcode.length - 1;
+        codeBytes = obj.getCode();
+        lineNumberTable = obj.getLineNumberTable();
+    }
 
-        try {
-            byteStream.close();
-        } catch (IOException e) {
-            assert false;
+    private void pushPrevOpcode(int opcode) {
+        sizePrevOpcodeBuffer++;
+        currentPosInPrevOpcodeBuffer++;
+        if (currentPosInPrevOpcodeBuffer >= prevOpcode.length) {
+            currentPosInPrevOpcodeBuffer = 0;
         }
+        prevOpcode[currentPosInPrevOpcodeBuffer] = opcode;
+    }
+
+    /**
+     * Start visiting a Code attribute whose instructions will be supplied by
+     * {@link #copyInstructionFrom(DismantleBytecode)} instead of being decoded
+     * by this visitor.
+     */
+    @Override
+    public void startVisitingCode(Code obj) {
+        super.startVisitingCode(obj);
+        resetForCode(obj);
+    }
+
+    /**
+     * Take over the instruction just decoded by another visitor of the same
+     * Code attribute, so that the accessors of this visitor describe it. The
+     * caller is responsible for then calling beforeOpcode, sawOpcode and the
+     * other callbacks.
+     *
+     * @param other
+     *            visitor that has decoded the current instruction
+     */
+    public void copyInstructionFrom(DismantleBytecode other) {
+        opcode = other.opcode;
+        opcodeIsWide = other.opcodeIsWide;
+        PC = other.PC;
+        nextPC = other.nextPC;
+        pushPrevOpcode(opcode);
+        branchOffset = other.branchOffset;
+        branchTarget = other.branchTarget;
+        branchFallThrough = other.branchFallThrough;
+        switchOffsets = other.switchOffsets;
+        switchLabels = other.switchLabels;
+        defaultSwitchOffset = other.defaultSwitchOffset;
+        classConstantOperand = other.classConstantOperand;
+        referencedClass = other.referencedClass;
+        referencedXClass = other.referencedXClass;
+        referencedMethod = other.referencedMethod;
+        referencedXMethod = other.referencedXMethod;
+        referencedField = other.referencedField;
+        referencedXField = other.referencedXField;
+        dottedClassConstantOperand = other.dottedClassConstantOperand;
+        nameConstantOperand = other.nameConstantOperand;
+        sigConstantOperand = other.sigConstantOperand;
+        stringConstantOperand = other.stringConstantOperand;
+        refConstantOperand = other.refConstantOperand;
+        refFieldIsStatic = other.refFieldIsStatic;
+        constantRefOperand = other.constantRefOperand;
+        intConstant = other.intConstant;
+        longConstant = other.longConstant;
+        floatConstant = other.floatConstant;
+        doubleConstant = other.doubleConstant;
+        registerOperand = other.registerOperand;
+        isRegisterLoad = other.isRegisterLoad;
+        isRegisterStore = other.isRegisterStore;
     }
 
     public void sawDouble(double seen) {
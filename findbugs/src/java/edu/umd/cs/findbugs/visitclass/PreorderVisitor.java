@@ -239,8 +239,24 @@ public class PreorderVisitor extends BetterVisitor implements Constants2 {
     // Attributes
     @Override
     public void visitCode(Code obj) {
-        code = obj;
+        startVisitingCode(obj);
         super.visitCode(obj);
+        finishVisitingCode(obj);
+    }
+
+    /**
+     * Start visiting a Code attribute without visiting its instructions; see
+     * {@link #startVisitingClass(JavaClass)}.
+     */
+    public void startVisitingCode(Code obj) {
+        code = obj;
+    }
+
+    /**
+     * Finish visiting a Code attribute: visit its exception table and
+     * attributes, then call visitAfter(Code).
+     */
+    public void finishVisitingCode(Code obj) {
         CodeException[] exceptions = obj.getExceptionTable();
         for (CodeException exception : exceptions) {
             exception.accept(this);
@@ -303,24 +319,78 @@ public class PreorderVisitor extends BetterVisitor implements Constants2 {
         if (visitingMethod) {
             throw new IllegalStateException("doVisitMethod called when already visiting a method");
         }
-        visitingMethod = true;
         try {
-            this.method = method;
-            methodName = methodSig = dottedMethodSig = fullyQualifiedMethodName = null;
-            thisMethodInfo = (MethodInfo) thisClassInfo.findMethod(getMethodName(), getMethodSig(), method.isStatic());
-            assert thisMethodInfo != null : "Can't get method info for " + getFullyQualifiedMethodName();
+            enterMethod(method);
             this.method.accept(this);
             Attribute[] attributes = method.getAttributes();
             for (Attribute attribute : attributes) {
                 attribute.accept(this);
             }
         } finally {
-            visitingMethod = false;
-            this.method = null;
-            this.thisMethodInfo = null;
+            abortVisitingMethod();
         }
     }
 
+    private void enterMethod(Method method) {
+        visitingMethod = true;
+        this.method = method;
+        methodName = methodSig = dottedMethodSig = fullyQualifiedMethodName = null;
+        thisMethodInfo = (MethodInfo) thisClassInfo.findMethod(getMethodName(), getMethodSig(), method.isStatic());
+        assert thisMethodInfo != null : "Can't get method info for " + getFullyQualifiedMethodName();
+    }
+
+    /**
+     * Start visiting a method: visit the method and those of its attributes
+     * which precede its Code attribute. See
+     * {@link #startVisitingClass(JavaClass)}.
+     */
+    public void startVisitingMethod(Method method) {
+        if (visitingMethod) {
+            throw new IllegalStateException("startVisitingMethod called when already visiting a method");
+        }
+        try {
+            enterMethod(method);
+            method.accept(this);
+            for (Attribute attribute : method.getAttributes()) {
+                if (attribute instanceof Code) {
+                    return;
+                }
+                attribute.accept(this);
+            }
+        } catch (RuntimeException e) {
+            abortVisitingMethod();
+            throw e;
+        }
+    }
+
+    /**
+     * Finish visiting a method: visit those of its attributes which follow its
+     * Code attribute.
+     */
+    public void finishVisitingMethod(Method method) {
+        try {
+            boolean afterCode = false;
+            for (Attribute attribute : method.getAttributes()) {
+                if (afterCode) {
+                    attribute.accept(this);
+                } else if (attribute instanceof Code) {
+                    afterCode = true;
+                }
+            }
+        } finally {
+            abortVisitingMethod();
+        }
+    }
+
+    /**
+     * Stop visiting the current method, e.g., because visiting it failed.
+     */
+    public void abortVisitingMethod() {
+        visitingMethod = false;
+        this.method = null;
+        this.thisMethodInfo = null;
+    }
+
     public boolean amVisitingMainMethod() {
         if (!visitingMethod) {
             throw new IllegalStateException("Not visiting a method");
@@ -372,14 +442,7 @@ public class PreorderVisitor extends BetterVisitor implements Constants2 {
     // General classes
     @Override
     public void visitJavaClass(JavaClass obj) {
-        setupVisitorForClass(obj);
-        if (shouldVisit(obj)) {
-            constantPool.accept(this);
-            Field[] fields = obj.getFields();
-            Attribute[] attributes = obj.getAttributes();
-            for (Field field : fields) {
-                doVisitField(field);
-            }
+        if (startVisitingClass(obj)) {
             boolean didInCallOrder = false;
 
             if (visitMethodsInCallOrder) {
@@ -403,11 +466,46 @@ public class PreorderVisitor extends BetterVisitor implements Constants2 {
                     doVisitMethod(m);
                 }
             }
-            for (Attribute attribute : attributes) {
-                attribute.accept(this);
-            }
-            visitAfter(obj);
+            finishVisitingClass(obj);
+        }
+    }
+
+    /**
+     * Start visiting a class: set up the visitor for the class and, if it
+     * should be visited, visit its constant pool and fields.
+     *
+     * <p>
+     * Together with {@link #startVisitingMethod(Method)},
+     * {@link #startVisitingCode(Code)} and the corresponding finish methods,
+     * this allows a driver such as
+     * {@link edu.umd.cs.findbugs.FusedBytecodeScanner} to walk several visitors
+     * over a class in lockstep, in the same order as
+     * {@link #visitJavaClass(JavaClass)} would.
+     * </p>
+     *
+     * @return true if the class should be visited, false if not
+     */
+    public boolean startVisitingClass(JavaClass obj) {
+        setupVisitorForClass(obj);
+        if (!shouldVisit(obj)) {
+            return false;
         }
+        constantPool.accept(this);
+        for (Field field : obj.getFields()) {
+            doVisitField(field);
+        }
+        return true;
+    }
+
+    /**
+     * Finish visiting a class: visit its attributes, then call
+     * visitAfter(JavaClass).
+     */
+    public void finishVisitingClass(JavaClass obj) {
+        for (Attribute attribute : obj.getAttributes()) {
+            attribute.accept(this);
+        }
+        visitAfter(obj);
     }
 
     public void setupVisitorForClass(JavaClass obj) {
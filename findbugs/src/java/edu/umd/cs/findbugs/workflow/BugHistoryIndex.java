@@ -0,0 +1,335 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.ClassAnnotation;
+
+/**
+ * A column oriented index over the bugs of a historical bug collection, for
+ * computing counts per version and per group without going over the
+ * BugInstances again.
+ *
+ * Each bug is identified by its position in the index. For each bug, the
+ * index holds its first and last version, its history flags and the columns
+ * of {@link Column}. String valued columns are dictionary encoded: the column
+ * holds the id of the value in the {@link Dictionary} of the column.
+ *
+ * @see MineBugHistory
+ * @see Churn
+ */
+public class BugHistoryIndex {
+
+    public enum Column {
+        /** bug type, dictionary encoded */
+        PATTERN,
+        /** abbreviation of the bug category, dictionary encoded */
+        CATEGORY,
+        /** package of the primary class, dictionary encoded */
+        PACKAGE,
+        /** primary class, dictionary encoded */
+        CLASS,
+        /** bug priority */
+        PRIORITY,
+        /** bug rank, computed on first use */
+        RANK
+    }
+
+    /**
+     * Maps the distinct values of a column to consecutive ids.
+     */
+    public static class Dictionary {
+        private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+        private final ArrayList<String> values = new ArrayList<String>();
+
+        int getOrAdd(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        /**
+         * @return the id of the value, or -1 if it doesn't occur
+         */
+        public int getId(String value) {
+            Integer id = ids.get(value);
+            return id == null ? -1 : id.intValue();
+        }
+
+        public String get(int id) {
+            return values.get(id);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    }
+
+    private static final byte REMOVED_BY_CHANGE_OF_PERSISTING_CLASS = 1;
+
+    private static final byte INTRODUCED_BY_CHANGE_OF_EXISTING_CLASS = 2;
+
+    private final BugInstance[] bugs;
+
+    private final int numVersions;
+
+    private final int[] firstVersion;
+
+    /** last version, or -1 if the bug is still alive */
+    private final int[] lastVersion;
+
+    private final byte[] flags;
+
+    private final int[][] columns = new int[Column.values().length][];
+
+    private final Dictionary[] dictionaries = new Dictionary[Column.values().length];
+
+    public BugHistoryIndex(BugCollection bugCollection) {
+        numVersions = (int) bugCollection.getSequenceNumber() + 1;
+        bugs = bugCollection.getCollection().toArray(new BugInstance[0]);
+        int n = bugs.length;
+        firstVersion = new int[n];
+        lastVersion = new int[n];
+        flags = new byte[n];
+        int[] pattern = new int[n];
+        int[] category = new int[n];
+        int[] packageName = new int[n];
+        int[] className = new int[n];
+        int[] priority = new int[n];
+        Dictionary patterns = new Dictionary();
+        Dictionary categories = new Dictionary();
+        Dictionary packages = new Dictionary();
+        Dictionary classes = new Dictionary();
+        // Only a few distinct bug types occur; look their category up once
+        HashMap<String, Integer> categoryOfType = new HashMap<String, Integer>();
+
+        for (int i = 0; i < n; i++) {
+            BugInstance bug = bugs[i];
+            firstVersion[i] = (int) bug.getFirstVersion();
+            lastVersion[i] = (int) bug.getLastVersion();
+            byte f = 0;
+            if (bug.isRemovedByChangeOfPersistingClass()) {
+                f |= REMOVED_BY_CHANGE_OF_PERSISTING_CLASS;
+            }
+            if (bug.isIntroducedByChangeOfExistingClass()) {
+                f |= INTRODUCED_BY_CHANGE_OF_EXISTING_CLASS;
+            }
+            flags[i] = f;
+
+            String type = bug.getType();
+            pattern[i] = patterns.getOrAdd(type);
+            Integer c = categoryOfType.get(type);
+            if (c == null) {
+                c = categories.getOrAdd(bug.getCategoryAbbrev());
+                categoryOfType.put(type, c);
+            }
+            category[i] = c;
+            ClassAnnotation primaryClass = bug.getPrimaryClass();
+            if (primaryClass != null) {
+                packageName[i] = packages.getOrAdd(primaryClass.getPackageName());
+                className[i] = classes.getOrAdd(primaryClass.getClassName());
+            } else {
+                packageName[i] = packages.getOrAdd("");
+                className[i] = classes.getOrAdd("");
+            }
+            priority[i] = bug.getPriority();
+        }
+        setColumn(Column.PATTERN, pattern, patterns);
+        setColumn(Column.CATEGORY, category, categories);
+        setColumn(Column.PACKAGE, packageName, packages);
+        setColumn(Column.CLASS, className, classes);
+        setColumn(Column.PRIORITY, priority, null);
+    }
+
+    private void setColumn(Column column, int[] values, Dictionary dictionary) {
+        columns[column.ordinal()] = values;
+        dictionaries[column.ordinal()] = dictionary;
+    }
+
+    /**
+     * @return the number of bugs
+     */
+    public int size() {
+        return bugs.length;
+    }
+
+    /**
+     * @return the number of versions, i.e., one more than the sequence number
+     *         of the collection
+     */
+    public int getNumVersions() {
+        return numVersions;
+    }
+
+    public BugInstance getBug(int bug) {
+        return bugs[bug];
+    }
+
+    public int getFirstVersion(int bug) {
+        return firstVersion[bug];
+    }
+
+    /**
+     * @return the last version the bug was seen in, or -1 if it is alive
+     */
+    public int getLastVersion(int bug) {
+        return lastVersion[bug];
+    }
+
+    public boolean isDead(int bug) {
+        return lastVersion[bug] != -1;
+    }
+
+    public boolean isRemovedByChangeOfPersistingClass(int bug) {
+        return (flags[bug] & REMOVED_BY_CHANGE_OF_PERSISTING_CLASS) != 0;
+    }
+
+    public boolean isIntroducedByChangeOfExistingClass(int bug) {
+        return (flags[bug] & INTRODUCED_BY_CHANGE_OF_EXISTING_CLASS) != 0;
+    }
+
+    /**
+     * Get the values of a column, indexed by bug. The array is shared with
+     * the index and must not be modified.
+     */
+    public int[] getColumn(Column column) {
+        int[] values = columns[column.ordinal()];
+        if (values == null && column == Column.RANK) {
+            values = new int[bugs.length];
+            for (int i = 0; i < bugs.length; i++) {
+                values[i] = BugRanker.findRank(bugs[i]);
+            }
+            columns[column.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * @return the dictionary of a dictionary encoded column, or null for
+     *         PRIORITY and RANK, whose values are stored directly
+     */
+    public Dictionary getDictionary(Column column) {
+        return dictionaries[column.ordinal()];
+    }
+
+    /**
+     * @return the number of groups of a column: the size of its dictionary,
+     *         or one more than its largest value
+     */
+    public int getNumGroups(Column column) {
+        Dictionary dictionary = getDictionary(column);
+        if (dictionary != null) {
+            return dictionary.size();
+        }
+        int max = -1;
+        for (int v : getColumn(column)) {
+            if (max < v) {
+                max = v;
+            }
+        }
+        return max + 1;
+    }
+
+    /**
+     * @return the number of bugs with each value of the column, indexed by
+     *         group
+     */
+    public int[] count(Column groupBy) {
+        int[] result = new int[getNumGroups(groupBy)];
+        for (int g : getColumn(groupBy)) {
+            result[g]++;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of bugs alive in each version, indexed by version
+     */
+    public int[] countActiveByVersion() {
+        int[] diff = new int[numVersions + 1];
+        for (int i = 0; i < bugs.length; i++) {
+            addActiveRange(diff, i);
+        }
+        return prefixSums(diff);
+    }
+
+    /**
+     * @return the number of bugs alive in each version, indexed by group and
+     *         version
+     */
+    public int[][] countActiveByVersion(Column groupBy) {
+        int[] group = getColumn(groupBy);
+        int[][] result = new int[getNumGroups(groupBy)][];
+        for (int i = 0; i < bugs.length; i++) {
+            int[] diff = result[group[i]];
+            if (diff == null) {
+                diff = result[group[i]] = new int[numVersions + 1];
+            }
+            addActiveRange(diff, i);
+        }
+        for (int g = 0; g < result.length; g++) {
+            result[g] = result[g] == null ? new int[numVersions] : prefixSums(result[g]);
+        }
+        return result;
+    }
+
+    private void addActiveRange(int[] diff, int bug) {
+        int last = lastVersion[bug] == -1 ? numVersions - 1 : lastVersion[bug];
+        addRange(diff, firstVersion[bug], last);
+    }
+
+    /**
+     * Add one to the versions from..to (inclusive) of a difference array of
+     * numVersions + 1 elements; see {@link #prefixSums(int[])}.
+     */
+    void addRange(int[] diff, int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, numVersions - 1);
+        if (from > to) {
+            return;
+        }
+        diff[from]++;
+        diff[to + 1]--;
+    }
+
+    /**
+     * Turn a difference array filled by {@link #addRange(int[], int, int)}
+     * into the counts per version.
+     */
+    int[] prefixSums(int[] diff) {
+        int[] result = new int[numVersions];
+        int sum = 0;
+        for (int v = 0; v < numVersions; v++) {
+            sum += diff[v];
+            result[v] = sum;
+        }
+        return result;
+    }
+}
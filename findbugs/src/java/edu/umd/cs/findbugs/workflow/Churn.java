@@ -22,12 +22,10 @@ package edu.umd.cs.findbugs.workflow;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 
 import edu.umd.cs.findbugs.BugCollection;
-import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.charsets.UTF8;
@@ -52,13 +50,9 @@ public class Churn {
         this.bugCollection = bugCollection;
     }
 
-    String getKey(BugInstance b) {
-        if (false) {
-            return b.getType();
-        }
-        String result = b.getCategoryAbbrev();
-        if ("C".equals(result) || "N".equals(result)) {
-            return result;
+    String getKey(String categoryAbbrev) {
+        if ("C".equals(categoryAbbrev) || "N".equals(categoryAbbrev)) {
+            return categoryAbbrev;
         }
         return "O";
 
@@ -80,13 +74,13 @@ public class Churn {
 
         Map<Long, Integer> lastCount = new HashMap<Long, Integer>();
 
-        void update(BugInstance bug) {
-            if (bug.isDead()) {
+        void update(BugHistoryIndex index, int bug) {
+            if (index.isDead(bug)) {
                 fixed++;
             } else {
                 persist++;
             }
-            final long lastVersion = bug.getLastVersion();
+            final long lastVersion = index.getLastVersion(bug);
             if (lastVersion != -1) {
                 Integer v = lastCount.get(lastVersion);
                 if (v == null) {
@@ -109,22 +103,28 @@ public class Churn {
     public Churn execute() {
 
         data.put("all", all);
-        aliveAt = new int[(int) bugCollection.getSequenceNumber() + 1];
         diedAfter = new int[(int) bugCollection.getSequenceNumber() + 1];
 
-        for (Iterator<BugInstance> j = bugCollection.iterator(); j.hasNext();) {
-            BugInstance bugInstance = j.next();
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        BugHistoryIndex.Dictionary categories = index.getDictionary(BugHistoryIndex.Column.CATEGORY);
+        String[] keyOfCategory = new String[categories.size()];
+        for (int c = 0; c < keyOfCategory.length; c++) {
+            keyOfCategory[c] = getKey(categories.get(c));
+        }
+        int[] category = index.getColumn(BugHistoryIndex.Column.CATEGORY);
+        int[] aliveDiff = new int[index.getNumVersions() + 1];
 
-            String key = getKey(bugInstance);
+        for (int b = 0; b < index.size(); b++) {
+            String key = keyOfCategory[category[b]];
             Data d = data.get(key);
             if (d == null) {
                 data.put(key, d = new Data());
             }
-            d.update(bugInstance);
-            all.update(bugInstance);
+            d.update(index, b);
+            all.update(index, b);
 
-            long first = bugInstance.getFirstVersion();
-            long last = bugInstance.getLastVersion();
+            long first = index.getFirstVersion(b);
+            long last = index.getLastVersion(b);
 
             if (last != -1) {
                 System.out.printf("%3d #fixed %s%n", last, key);
@@ -135,16 +135,13 @@ public class Churn {
                 System.out.printf("%3d #age %s%n", lifespan, key);
                 System.out.printf("%3d %3d #spread %s%n", first, last, key);
                 diedAfter[lifespan]++;
-                for (int t = 1; t < lifespan; t++) {
-                    aliveAt[t]++;
-                }
+                index.addRange(aliveDiff, 1, lifespan - 1);
             } else if (first != 0) {
                 int lifespan = (int) (bugCollection.getSequenceNumber() - first + 1);
-                for (int t = 1; t < lifespan; t++) {
-                    aliveAt[t]++;
-                }
+                index.addRange(aliveDiff, 1, lifespan - 1);
             }
         }
+        aliveAt = index.prefixSums(aliveDiff);
         return this;
     }
 
@@ -24,7 +24,6 @@ import java.util.TreeMap;
 import org.dom4j.DocumentException;
 
 import edu.umd.cs.findbugs.BugCollection;
-import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.PackageStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
@@ -62,13 +61,16 @@ public class CountByPackagePrefix {
         Map<String, Integer> map = new TreeMap<String, Integer>();
         Map<String, Integer> ncss = new TreeMap<String, Integer>();
 
-        for (BugInstance b : origCollection.getCollection()) {
-            String prefix = ClassName.extractPackagePrefix(b.getPrimaryClass().getPackageName(), prefixLength);
+        BugHistoryIndex index = new BugHistoryIndex(origCollection);
+        BugHistoryIndex.Dictionary packages = index.getDictionary(BugHistoryIndex.Column.PACKAGE);
+        int[] countByPackage = index.count(BugHistoryIndex.Column.PACKAGE);
+        for (int p = 0; p < countByPackage.length; p++) {
+            String prefix = ClassName.extractPackagePrefix(packages.get(p), prefixLength);
             Integer v = map.get(prefix);
             if (v == null) {
-                map.put(prefix, 1);
+                map.put(prefix, countByPackage[p]);
             } else {
-                map.put(prefix, v + 1);
+                map.put(prefix, v + countByPackage[p]);
             }
         }
         for (PackageStats ps : origCollection.getProjectStats().getPackageStats()) {
@@ -0,0 +1,52 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.File;
+
+import edu.umd.cs.findbugs.BaselineHashIndex;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+/**
+ * Java main application to write a {@link BaselineHashIndex} of the instance
+ * hashes of a bug collection. The index can be passed to -excludeBugs instead
+ * of the bug collection, and is much faster to load.
+ */
+public class CreateBaselineHashIndex {
+
+    private static final String USAGE = "Usage: <cmd> " + "  <bugs.xml> <baseline.idx>";
+
+    public static void main(String[] args) throws Exception {
+        FindBugs.setNoAnalysis();
+        DetectorFactoryCollection.instance();
+        if (args.length != 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.readXML(args[0]);
+        File indexFile = new File(args[1]);
+        BaselineHashIndex.write(bugCollection, indexFile);
+        System.out.println("Wrote " + BaselineHashIndex.open(indexFile).size() + " instance hashes to " + indexFile);
+    }
+}
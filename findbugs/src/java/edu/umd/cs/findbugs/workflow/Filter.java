@@ -19,8 +19,12 @@
 package edu.umd.cs.findbugs.workflow;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,6 +39,9 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
 
 import org.dom4j.DocumentException;
 
@@ -42,6 +49,7 @@ import edu.umd.cs.findbugs.AppVersion;
 import edu.umd.cs.findbugs.BugCategory;
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugMatcher;
 import edu.umd.cs.findbugs.BugPattern;
 import edu.umd.cs.findbugs.BugRanker;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
@@ -57,13 +65,17 @@ import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SloppyBugComparator;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.cloud.Cloud;
 import edu.umd.cs.findbugs.cloud.Cloud.SigninState;
 import edu.umd.cs.findbugs.config.CommandLine;
+import edu.umd.cs.findbugs.filter.CompiledFilter;
 import edu.umd.cs.findbugs.filter.FilterException;
 import edu.umd.cs.findbugs.filter.Matcher;
 import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
 
 /**
  * Java main application to filter/transform an XML bug collection or bug
@@ -196,6 +208,10 @@ public class Filter {
 
         public boolean withMessages = false;
 
+        public boolean stream = false;
+
+        public boolean streamSpecified = false;
+
         private final List<Matcher> includeFilter = new LinkedList<Matcher>();
 
         private final List<Matcher> excludeFilter = new LinkedList<Matcher>();
@@ -206,7 +222,7 @@ public class Filter {
 
         Set<String> categoryKey = new HashSet<String>();
 
-        SortedSet<BugInstance> uniqueSloppy;
+        BugMatcher uniqueSloppy;
 
         int priority = 3;
 
@@ -266,9 +282,41 @@ public class Filter {
             addSwitch("-dontUpdateStats",
                     "used when withSource is specified to only update bugs, not the class and package stats");
             addOption("-hashes", "hash file", "only bugs with instance hashes contained in the hash file");
+            addSwitch("-stream",
+                    "filter the warnings while reading them, without holding them all in memory; the input must be a file");
 
         }
 
+        /**
+         * @return the first option given which needs all of the warnings to be
+         *         read before filtering, or null if the warnings can be
+         *         filtered while reading them
+         */
+        String getOptionRequiringAllBugs() {
+            if (maybeMutatedAsString != null) {
+                return "-maybeMutated";
+            }
+            if (hashChangedSpecified) {
+                return "-hashChanged";
+            }
+            if (withMessages) {
+                return "-withMessages";
+            }
+            if (maxAgeSpecified) {
+                return "-maxAge";
+            }
+            if (notAProblemSpecified) {
+                return "-notAProblem";
+            }
+            if (shouldFixSpecified) {
+                return "-shouldFix";
+            }
+            if (SystemProperties.getBoolean("findbugs.report.summaryFirst")) {
+                return "findbugs.report.summaryFirst";
+            }
+            return null;
+        }
+
         public static long getVersionNum(BugCollection collection, String val,
                 boolean roundToLaterVersion) {
             if (val == null) {
@@ -369,7 +417,7 @@ public class Filter {
             absent = getVersionNum(collection, absentAsString, true);
 
             if (sloppyUniqueSpecified) {
-                uniqueSloppy = new TreeSet<BugInstance>(new SloppyBugComparator());
+                uniqueSloppy = new BugMatcher(new SloppyBugComparator());
             }
 
             long fixed = getVersionNum(collection, fixedAsString, true);
@@ -534,7 +582,7 @@ public class Filter {
             }
 
             if (sloppyUniqueSpecified) {
-                boolean unique = uniqueSloppy.add(bug);
+                boolean unique = uniqueSloppy.addIfUnmatched(bug);
                 if (unique != sloppyUnique) {
                     return false;
                 }
@@ -652,13 +700,15 @@ public class Filter {
                 }
             } else if ("-include".equals(option)) {
                 try {
-                    includeFilter.add(new edu.umd.cs.findbugs.filter.Filter(argument));
+                    edu.umd.cs.findbugs.filter.Filter filter = new edu.umd.cs.findbugs.filter.Filter(argument);
+                    includeFilter.add(FindBugs.COMPILED_FILTERS ? new CompiledFilter(filter) : filter);
                 } catch (FilterException e) {
                     throw new IllegalArgumentException("Error processing include file: " + argument, e);
                 }
             } else if ("-exclude".equals(option)) {
                 try {
-                    excludeFilter.add(new edu.umd.cs.findbugs.filter.Filter(argument));
+                    edu.umd.cs.findbugs.filter.Filter filter = new edu.umd.cs.findbugs.filter.Filter(argument);
+                    excludeFilter.add(FindBugs.COMPILED_FILTERS ? new CompiledFilter(filter) : filter);
                 } catch (FilterException e) {
                     throw new IllegalArgumentException("Error processing include file: " + argument, e);
                 }
@@ -763,12 +813,42 @@ public class Filter {
 
         int argCount = commandLine.parse(args, 0, 2, "Usage: " + Filter.class.getName()
                 + " [options] [<orig results> [<new results]] ");
-        SortedBugCollection origCollection = new SortedBugCollection();
+        SortedBugCollection origCollection;
+        File streamInput = null;
 
-        if (argCount == args.length) {
-            origCollection.readXML(System.in);
+        if (commandLine.stream) {
+            if (argCount == args.length) {
+                throw new IllegalArgumentException("-stream can't read the warnings from standard input");
+            }
+            String option = commandLine.getOptionRequiringAllBugs();
+            if (option != null) {
+                throw new IllegalArgumentException("-stream can't be used with " + option);
+            }
+            streamInput = new File(args[argCount++]);
+            if (argCount < args.length
+                    && new File(args[argCount]).getCanonicalFile().equals(streamInput.getCanonicalFile())) {
+                throw new IllegalArgumentException("-stream can't write the warnings to the file they are read from");
+            }
+            // The history, errors and summary follow the warnings in the
+            // file, so read all but the warnings first. The stats are kept,
+            // since they list the packages of the live warnings.
+            origCollection = new SortedBugCollection() {
+                @Override
+                public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+                    if (!bugInstance.isDead()) {
+                        getProjectStats().addBug(bugInstance);
+                    }
+                    return false;
+                }
+            };
+            origCollection.readXML(streamInput);
         } else {
-            origCollection.readXML(args[argCount++]);
+            origCollection = new SortedBugCollection();
+            if (argCount == args.length) {
+                origCollection.readXML(System.in);
+            } else {
+                origCollection.readXML(args[argCount++]);
+            }
         }
         boolean verbose = argCount < args.length;
         SortedBugCollection resultCollection = origCollection.createEmptyCollectionWithMetadata();
@@ -833,19 +913,20 @@ public class Filter {
             }
         }
 
+        if (streamInput != null) {
+            String outputFile = argCount == args.length ? null : args[argCount++];
+            BugStream bugStream = new BugStream(commandLine, origCollection, resultCollection, trimToVersion);
+            bugStream.filter(streamInput, outputFile);
+            if (verbose) {
+                System.out.println(bugStream.passed + " warnings passed through, " + bugStream.dropped + " warnings dropped");
+            }
+            return;
+        }
+
         commandLine.getReady(origCollection);
 
         for (BugInstance bug : origCollection.getCollection()) {
-            if (commandLine.accept(origCollection, bug)) {
-                if (trimToVersion >= 0) {
-                    if (bug.getFirstVersion() > trimToVersion) {
-                        dropped++;
-                        continue;
-                    } else if (bug.getLastVersion() >= trimToVersion) {
-                        bug.setLastVersion(-1);
-                        bug.setRemovedByChangeOfPersistingClass(false);
-                    }
-                }
+            if (accept(commandLine, origCollection, trimToVersion, bug)) {
                 resultCollection.add(bug, false);
                 passed++;
             } else {
@@ -864,6 +945,42 @@ public class Filter {
         if (verbose) {
             System.out.println(passed + " warnings passed through, " + dropped + " warnings dropped");
         }
+        updateStats(commandLine, projectStats);
+        if (argCount == args.length) {
+            assert !verbose;
+            resultCollection.writeXML(System.out);
+        } else {
+            resultCollection.writeXML(args[argCount++]);
+
+        }
+
+    }
+
+    /**
+     * Apply the filter to a bug, trimming the history of a bug which passes
+     * it to the -trimToVersion version.
+     *
+     * @return true if the bug passes the filter
+     */
+    static boolean accept(FilterCommandLine commandLine, BugCollection origCollection, long trimToVersion, BugInstance bug) {
+        if (!commandLine.accept(origCollection, bug)) {
+            return false;
+        }
+        if (trimToVersion >= 0) {
+            if (bug.getFirstVersion() > trimToVersion) {
+                return false;
+            } else if (bug.getLastVersion() >= trimToVersion) {
+                bug.setLastVersion(-1);
+                bug.setRemovedByChangeOfPersistingClass(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Update the class and package stats once all bugs have been filtered.
+     */
+    static void updateStats(FilterCommandLine commandLine, ProjectStats projectStats) {
         if (commandLine.withSourceSpecified && commandLine.withSource && !commandLine.dontUpdateStats
                 && projectStats.hasClassStats()) {
             for (PackageStats stats : projectStats.getPackageStats()) {
@@ -879,16 +996,160 @@ public class Filter {
 
         }
         projectStats.recomputeFromComponents();
-        if (argCount == args.length) {
-            assert !verbose;
-            resultCollection.writeXML(System.out);
-        } else {
-            resultCollection.writeXML(args[argCount++]);
+    }
+
+    /**
+     * Filters the bugs of a file while it is parsed, writing the bugs which
+     * pass the filter as soon as they have been read. Only the metadata of the
+     * collections is held in memory, so that collections too big to be read
+     * can be filtered.
+     *
+     * <p>
+     * The input must be sorted the way SortedBugCollection writes it. Then the
+     * bugs which only differ in their history are adjacent, and are buffered
+     * until a different bug is read, so that they are de-duplicated and
+     * ordered as they would be when reading the whole collection. Unsorted
+     * input is reported as an error.
+     * </p>
+     *
+     * <p>
+     * The metadata of the result collection (history, errors, summary) must
+     * have been read and adjusted before, since it is written around the bugs.
+     * </p>
+     */
+    static class BugStream extends SortedBugCollection {
+        final FilterCommandLine commandLine;
+
+        final BugCollection origCollection;
+
+        final SortedBugCollection resultCollection;
+
+        final long trimToVersion;
+
+        final boolean purgeHistory;
+
+        XMLOutput xmlOutput;
+
+        IOException failure;
+
+        int passed;
+
+        int dropped;
+
+        /** first bug of the current run of bugs which only differ in their history */
+        BugInstance runHead;
+
+        /** first and last versions of the bugs read in the current run */
+        final List<long[]> runVersions = new ArrayList<long[]>();
+
+        /** bugs of the current run which passed the filter */
+        final SortedSet<BugInstance> runPassed = new TreeSet<BugInstance>(MultiversionBugInstanceComparator.instance);
 
+        BugStream(FilterCommandLine commandLine, BugCollection origCollection, SortedBugCollection resultCollection,
+                long trimToVersion) {
+            this.commandLine = commandLine;
+            this.origCollection = origCollection;
+            this.resultCollection = resultCollection;
+            this.trimToVersion = trimToVersion;
+            this.purgeHistory = commandLine.purgeHistorySpecified && commandLine.purgeHistory;
         }
 
-    }
+        /**
+         * @param outputFile
+         *            the file to write to, or null to write to System.out
+         */
+        void filter(File input, @CheckForNull String outputFile) throws IOException, DocumentException {
+            if (purgeHistory) {
+                resultCollection.clearAppVersions();
+            }
+            OutputStream out;
+            if (outputFile == null) {
+                out = System.out;
+            } else {
+                out = new FileOutputStream(outputFile);
+                if (outputFile.endsWith(".gz")) {
+                    out = new GZIPOutputStream(out);
+                }
+            }
+            xmlOutput = new OutputStreamXMLOutput(out);
+            try {
+                resultCollection.writePrologue(xmlOutput);
+                readXML(input);
+                if (failure == null) {
+                    writeRun();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                updateStats(commandLine, resultCollection.getProjectStats());
+                resultCollection.writeEpilogue(xmlOutput);
+            } finally {
+                xmlOutput.finish();
+            }
+        }
+
+        @Override
+        public boolean add(BugInstance bug, boolean updateActiveTime) {
+            if (failure != null) {
+                return false;
+            }
+            if (runHead != null) {
+                int cmp = BugInstanceComparator.instance.compare(runHead, bug);
+                if (cmp > 0) {
+                    failure = new IOException("The warnings are not sorted (" + bug.getInstanceKey() + " follows "
+                            + runHead.getInstanceKey() + "); filter them without -stream");
+                    return false;
+                }
+                if (cmp < 0) {
+                    writeRun();
+                }
+            }
+            if (runHead == null) {
+                runHead = bug;
+            }
+            // A SortedBugCollection keeps the first of equal bugs
+            for (long[] versions : runVersions) {
+                if (versions[0] == bug.getFirstVersion() && versions[1] == bug.getLastVersion()) {
+                    return false;
+                }
+            }
+            runVersions.add(new long[] { bug.getFirstVersion(), bug.getLastVersion() });
+
+            if (!accept(commandLine, origCollection, trimToVersion, bug)) {
+                dropped++;
+                return false;
+            }
+            passed++;
+            if (!bug.isDead()) {
+                resultCollection.getProjectStats().addBug(bug);
+            }
+            runPassed.add(bug);
+            return false;
+        }
 
+        /**
+         * Write the bugs of the current run which passed the filter, and start
+         * a new run.
+         */
+        private void writeRun() {
+            try {
+                for (BugInstance bug : runPassed) {
+                    if (purgeHistory) {
+                        bug.clearHistory();
+                    }
+                    if (!resultCollection.isApplySuppressions()
+                            || !resultCollection.getProject().getSuppressionFilter().match(bug)) {
+                        bug.writeXML(xmlOutput, resultCollection, false);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            runHead = null;
+            runVersions.clear();
+            runPassed.clear();
+        }
+    }
 
 
     private static void disconnect(boolean verbose, final FilterCommandLine commandLine, SortedBugCollection resultCollection,
@@ -0,0 +1,131 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+
+/**
+ * Compare the peak heap use and the time of filterBugs reading the whole bug
+ * collection and filtering it while reading it (-stream). The bug collection
+ * is either given, or made up of synthetic warnings, about a hundred per
+ * class, written to a temporary file. Since the peak
+ * heap use includes garbage not collected yet, the smallest -Xmx with which
+ * each mode runs on a given file is the better measure; run each mode in its
+ * own JVM for that.
+ */
+public class FilterStreamBenchmark {
+
+    private static final String[] BUG_TYPES = { "NP_NULL_ON_SOME_PATH", "DLS_DEAD_LOCAL_STORE", "SE_BAD_FIELD",
+            "URF_UNREAD_FIELD", "RV_RETURN_VALUE_IGNORED" };
+
+    static SortedBugCollection createBugCollection(int numBugs) {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        for (int i = 0; i < numBugs; i++) {
+            String className = "com.example.p" + (i / 1000 % 97) + ".C" + (i / 100);
+            String sourceFile = "C" + (i / 100) + ".java";
+            int line = 10 + i % 1000;
+            BugInstance bug = new BugInstance(BUG_TYPES[i % BUG_TYPES.length], Priorities.NORMAL_PRIORITY);
+            bug.addClass(className, sourceFile);
+            bug.addMethod(className, "m" + (i % 10), "(Ljava/lang/String;I)V", false);
+            bug.addSourceLine(new SourceLineAnnotation(className, sourceFile, line, line + 2, 4 * line, 4 * line + 10));
+            bug.setFirstVersion(i % 5);
+            bugCollection.add(bug, false);
+        }
+        return bugCollection;
+    }
+
+    static long peakHeapAfter(Runnable runnable) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        runnable.run();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static void filter(boolean stream, File input, File output) {
+        String[] args = stream ? new String[] { "-stream", "-priority", "2", input.getPath(), output.getPath() }
+                : new String[] { "-priority", "2", input.getPath(), output.getPath() };
+        try {
+            Filter.main(args);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 2) {
+            System.out.println("Usage: " + FilterStreamBenchmark.class.getName()
+                    + " [numBugs|bugCollection.xml [stream|whole|both]]");
+            System.exit(1);
+        }
+        String mode = args.length > 1 ? args[1] : "both";
+        FindBugs.setNoAnalysis();
+
+        final File input;
+        if (args.length > 0 && new File(args[0]).isFile()) {
+            input = new File(args[0]);
+        } else {
+            int numBugs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+            input = File.createTempFile("bugCollection", ".xml");
+            input.deleteOnExit();
+            createBugCollection(numBugs).writeXML(input);
+            System.out.printf("%d bugs, ", numBugs);
+        }
+        System.out.printf("%d bytes%n", input.length());
+        final File output = File.createTempFile("filtered", ".xml");
+        output.deleteOnExit();
+
+        for (final boolean stream : new boolean[] { false, true }) {
+            if (!"both".equals(mode) && stream != "stream".equals(mode)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            long peak = peakHeapAfter(new Runnable() {
+                @Override
+                public void run() {
+                    filter(stream, input, output);
+                }
+            });
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.printf("%s: %d ms, peak heap %d MB, %d bytes written%n", stream ? "-stream" : "whole collection",
+                    millis, peak / (1024 * 1024), output.length());
+        }
+    }
+}
@@ -29,7 +29,6 @@ import java.util.Locale;
 import java.util.Map;
 
 import edu.umd.cs.findbugs.AppVersion;
-import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.SortedBugCollection;
@@ -85,9 +84,13 @@ public class MineBugHistory {
         }
 
         void increment(int key) {
-            tuple[key]++;
+            add(key, 1);
+        }
+
+        void add(int key, int count) {
+            tuple[key] += count;
             if (key == ADDED || key == RETAINED || key == NEWCODE) {
-                tuple[ACTIVE_NOW]++;
+                tuple[ACTIVE_NOW] += count;
             }
         }
 
@@ -160,24 +163,38 @@ public class MineBugHistory {
         AppVersion currentAppVersion = bugCollection.getCurrentAppVersion();
         sequenceToAppVersionMap.put(sequenceNumber, currentAppVersion);
 
-        for (Iterator<BugInstance> j = bugCollection.iterator(); j.hasNext();) {
-            BugInstance bugInstance = j.next();
-
+        // A bug is ADDED (or NEWCODE) in its first version, RETAINED until its
+        // last version, REMOVED (or REMOVEDCODE) in the version after that and
+        // DEAD from then on; count these ranges per version rather than
+        // classifying every bug in every version.
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        int[][] diff = new int[TUPLE_SIZE][maxSequence + 2];
+        for (int b = 0; b < index.size(); b++) {
+            int first = index.getFirstVersion(b);
+            int added = index.isIntroducedByChangeOfExistingClass(b) ? ADDED : NEWCODE;
+            if (!index.isDead(b)) {
+                index.addRange(diff[added], first, first);
+                index.addRange(diff[RETAINED], first + 1, maxSequence);
+                continue;
+            }
+            int last = index.getLastVersion(b);
+            if (last < first) {
+                index.addRange(diff[DEAD], first, maxSequence);
+                continue;
+            }
+            int removed = index.isRemovedByChangeOfPersistingClass(b) ? REMOVED : REMOVEDCODE;
+            index.addRange(diff[added], first, first);
+            index.addRange(diff[RETAINED], first + 1, last);
+            index.addRange(diff[removed], last + 1, last + 1);
+            index.addRange(diff[DEAD], last + 2, maxSequence);
+        }
+        for (int key = 0; key < TUPLE_SIZE; key++) {
+            if (key == ACTIVE_NOW) {
+                continue;
+            }
+            int[] counts = index.prefixSums(diff[key]);
             for (int i = 0; i <= maxSequence; ++i) {
-                if (bugInstance.getFirstVersion() > i) {
-                    continue;
-                }
-                boolean activePrevious = bugInstance.getFirstVersion() < i
-                        && (!bugInstance.isDead() || bugInstance.getLastVersion() >= i - 1);
-                boolean activeCurrent = !bugInstance.isDead() || bugInstance.getLastVersion() >= i;
-
-                int key = getKey(activePrevious, activeCurrent);
-                if (key == REMOVED && !bugInstance.isRemovedByChangeOfPersistingClass()) {
-                    key = REMOVEDCODE;
-                } else if (key == ADDED && !bugInstance.isIntroducedByChangeOfExistingClass()) {
-                    key = NEWCODE;
-                }
-                versionList[i].increment(key);
+                versionList[i].add(key, counts[i]);
             }
         }
 
@@ -403,26 +420,6 @@ public class MineBugHistory {
         out.print("</history>");
     }
 
-    /**
-     * Get key used to classify the presence and/or absence of a BugInstance in
-     * successive versions in the history.
-     *
-     * @param activePrevious
-     *            true if the bug was active in the previous version, false if
-     *            not
-     * @param activeCurrent
-     *            true if the bug is active in the current version, false if not
-     * @return the key: one of ADDED, RETAINED, REMOVED, and DEAD
-     */
-    private int getKey(boolean activePrevious, boolean activeCurrent) {
-        if (activePrevious) {
-            return activeCurrent ? RETAINED : REMOVED;
-        } else {
-            // !activePrevious
-            return activeCurrent ? ADDED : DEAD;
-        }
-    }
-
     class MineBugHistoryCommandLine extends CommandLine {
 
         MineBugHistoryCommandLine() {
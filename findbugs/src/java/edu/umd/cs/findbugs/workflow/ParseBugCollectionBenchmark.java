@@ -0,0 +1,134 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.SAXBugCollectionHandler;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+/**
+ * Compare the time taken to read a large bug collection with the
+ * BugInstances built on the reading thread and with the BugInstances built by
+ * a pool of threads (see the findbugs.xml.parseThreads property). The bug
+ * collection is made up of synthetic warnings, written to a temporary file.
+ */
+public class ParseBugCollectionBenchmark {
+
+    private static final String[] BUG_TYPES = { "NP_NULL_ON_SOME_PATH", "DLS_DEAD_LOCAL_STORE", "SE_BAD_FIELD",
+            "URF_UNREAD_FIELD", "RV_RETURN_VALUE_IGNORED" };
+
+    static SortedBugCollection createBugCollection(int numBugs) {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        for (int i = 0; i < numBugs; i++) {
+            String className = "com.example.p" + (i % 97) + ".C" + (i / 10);
+            String sourceFile = "C" + (i / 10) + ".java";
+            int line = 10 + i % 1000;
+            BugInstance bug = new BugInstance(BUG_TYPES[i % BUG_TYPES.length], Priorities.NORMAL_PRIORITY);
+            bug.addClass(className, sourceFile);
+            bug.addMethod(className, "m" + (i % 10), "(Ljava/lang/String;I)V", false);
+            if (i % 3 == 0) {
+                bug.addField(className, "f" + (i % 7), "Ljava/util/List;", false);
+            }
+            bug.addSourceLine(new SourceLineAnnotation(className, sourceFile, line, line + 2, 4 * line, 4 * line + 10));
+            bug.setFirstVersion(i % 5);
+            bugCollection.add(bug, false);
+        }
+        return bugCollection;
+    }
+
+    static SortedBugCollection read(File file, int parseThreads) throws IOException, SAXException {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        SAXBugCollectionHandler handler = new SAXBugCollectionHandler(bugCollection, file);
+        handler.setParseThreads(parseThreads);
+        XMLReader xr = XMLReaderFactory.createXMLReader();
+        xr.setContentHandler(handler);
+        xr.setErrorHandler(handler);
+        Reader reader = new BufferedReader(UTF8.fileReader(file));
+        try {
+            xr.parse(new InputSource(reader));
+        } finally {
+            reader.close();
+        }
+        return bugCollection;
+    }
+
+    static void checkSame(SortedBugCollection expected, SortedBugCollection actual) {
+        if (expected.getCollection().size() != actual.getCollection().size()) {
+            throw new IllegalStateException("Read " + actual.getCollection().size() + " bugs, expected "
+                    + expected.getCollection().size());
+        }
+        Iterator<BugInstance> i = expected.iterator();
+        Iterator<BugInstance> j = actual.iterator();
+        while (i.hasNext()) {
+            BugInstance e = i.next();
+            BugInstance a = j.next();
+            if (!e.equals(a) || !e.getInstanceHash().equals(a.getInstanceHash())
+                    || e.getFirstVersion() != a.getFirstVersion()) {
+                throw new IllegalStateException("Read " + a + ", expected " + e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, SAXException {
+        if (args.length > 2) {
+            System.out.println("Usage: " + ParseBugCollectionBenchmark.class.getName() + " [numBugs [threads]]");
+            System.exit(1);
+        }
+        int numBugs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        FindBugs.setNoAnalysis();
+
+        File file = File.createTempFile("bugCollection", ".xml");
+        file.deleteOnExit();
+        createBugCollection(numBugs).writeXML(file);
+        System.out.printf("%d bugs, %d bytes%n", numBugs, file.length());
+
+        // Warm up
+        read(file, 1);
+        read(file, threads);
+
+        long start = System.nanoTime();
+        SortedBugCollection sequential = read(file, 1);
+        long sequentialNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        SortedBugCollection parallel = read(file, threads);
+        long parallelNanos = System.nanoTime() - start;
+
+        checkSame(sequential, parallel);
+        System.out.printf("1 thread: %d ms%n", sequentialNanos / 1000000);
+        System.out.printf("%d threads: %d ms%n", threads, parallelNanos / 1000000);
+    }
+}
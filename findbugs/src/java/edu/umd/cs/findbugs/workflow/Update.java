@@ -26,8 +26,12 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.dom4j.DocumentException;
 
@@ -35,6 +39,7 @@ import edu.umd.cs.findbugs.AppVersion;
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugDesignation;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugMatcher;
 import edu.umd.cs.findbugs.BugRanker;
 import edu.umd.cs.findbugs.ClassAnnotation;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
@@ -83,6 +88,8 @@ public class Update {
 
     int maxRank = BugRanker.VISIBLE_RANK_MAX;
 
+    int numReaderThreads = Runtime.getRuntime().availableProcessors();
+
     class UpdateCommandLine extends CommandLine {
         boolean overrideRevisionNames = false;
 
@@ -106,6 +113,7 @@ public class Update {
             addSwitch("-useAnalysisTimes", "use analysis timestamp rather than code timestamp in history");
             addSwitch("-withMessages", "Add bug description");
             addOption("-onlyMostRecent", "number", "only use the last # input files");
+            addOption("-threads", "number", "number of threads used to read ahead input files (default: number of processors)");
         }
 
         @Override
@@ -156,6 +164,8 @@ public class Update {
                 maxRank = Integer.parseInt(argument);
             } else if ("-onlyMostRecent".equals(option)) {
                 mostRecent = Integer.parseInt(argument);
+            } else if ("-threads".equals(option)) {
+                numReaderThreads = Math.max(1, Integer.parseInt(argument));
             } else {
                 throw new IllegalArgumentException("Can't handle option " + option);
             }
@@ -351,9 +361,9 @@ public class Update {
     private void discardUnwantedBugs(BugCollection newCollection) {
         BugRanker.trimToMaxRank(newCollection, maxRank);
         if (sloppyMatch) {
-            TreeSet<BugInstance> sloppyUnique = new TreeSet<BugInstance>(new SloppyBugComparator());
+            BugMatcher sloppyUnique = new BugMatcher(new SloppyBugComparator());
             for(Iterator<BugInstance> i = newCollection.iterator(); i.hasNext(); ) {
-                if (!sloppyUnique.add(i.next())) {
+                if (!sloppyUnique.addIfUnmatched(i.next())) {
                     i.remove();
                 }
             }
@@ -498,49 +508,62 @@ public class Update {
 
         discardUnwantedBugs(origCollection);
 
-        while (argCount <= (args.length - 1)) {
-
-            BugCollection newCollection = new SortedBugCollection();
+        // Reading and parsing the input files is independent of the merge,
+        // so the next few files are read ahead while the current one is merged
+        ExecutorService readers = Executors.newFixedThreadPool(numReaderThreads, new ThreadFactory() {
+            int count;
 
-            String newFilename = args[argCount++];
-            if (verbose) {
-                System.out.println("Merging " + newFilename);
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Update reader " + (++count));
+                t.setDaemon(true);
+                return t;
             }
-            try {
-                File f = new File(newFilename);
-                if (f.length() == 0) {
-                    if (verbose) {
-                        System.out.println("Empty input file: " + f);
-                    }
-                    continue;
-                }
-                newCollection.readXML(newFilename);
-
-                if (commandLine.overrideRevisionNames || newCollection.getReleaseName() == null
-                        || newCollection.getReleaseName().length() == 0) {
-                    newCollection.setReleaseName(getFilePathParts(newFilename)[commonPrefix]);
+        });
+        try {
+            LinkedList<String> pendingFilenames = new LinkedList<String>();
+            LinkedList<Future<BugCollection>> pendingCollections = new LinkedList<Future<BugCollection>>();
+            while (argCount <= (args.length - 1) || !pendingFilenames.isEmpty()) {
+                while (argCount <= (args.length - 1) && pendingFilenames.size() <= numReaderThreads) {
+                    String filename = args[argCount++];
+                    pendingFilenames.add(filename);
+                    pendingCollections.add(readers.submit(readCollection(filename, commandLine, commonPrefix)));
                 }
-                if (useAnalysisTimes) {
-                    newCollection.setTimestamp(newCollection.getAnalysisTimestamp());
-                }
-                discardUnwantedBugs(newCollection);
 
-                origCollection = mergeCollections(origCollection, newCollection, true, false);
-            } catch (IOException e) {
-                IOException e2 = new IOException("Error parsing " + newFilename);
-                e2.initCause(e);
+                String newFilename = pendingFilenames.removeFirst();
+                Future<BugCollection> future = pendingCollections.removeFirst();
                 if (verbose) {
-                    e2.printStackTrace();
+                    System.out.println("Merging " + newFilename);
                 }
-                throw e2;
-            } catch (DocumentException e) {
-                DocumentException e2 = new DocumentException("Error parsing " + newFilename);
-                e2.initCause(e);
-                if (verbose) {
-                    e2.printStackTrace();
+                try {
+                    BugCollection newCollection = getCollection(future);
+                    if (newCollection == null) {
+                        if (verbose) {
+                            System.out.println("Empty input file: " + newFilename);
+                        }
+                        continue;
+                    }
+                    discardUnwantedBugs(newCollection);
+
+                    origCollection = mergeCollections(origCollection, newCollection, true, false);
+                } catch (IOException e) {
+                    IOException e2 = new IOException("Error parsing " + newFilename);
+                    e2.initCause(e);
+                    if (verbose) {
+                        e2.printStackTrace();
+                    }
+                    throw e2;
+                } catch (DocumentException e) {
+                    DocumentException e2 = new DocumentException("Error parsing " + newFilename);
+                    e2.initCause(e);
+                    if (verbose) {
+                        e2.printStackTrace();
+                    }
+                    throw e2;
                 }
-                throw e2;
             }
+        } finally {
+            readers.shutdownNow();
         }
         /*
         if (false) {
@@ -563,6 +586,56 @@ public class Update {
 
     }
 
+    /**
+     * Get a task which reads a bug collection, or returns null if the file is
+     * empty.
+     */
+    private Callable<BugCollection> readCollection(final String filename, final UpdateCommandLine commandLine,
+            final int commonPrefix) {
+        return new Callable<BugCollection>() {
+            @Override
+            public BugCollection call() throws IOException, DocumentException {
+                File f = new File(filename);
+                if (f.length() == 0) {
+                    return null;
+                }
+                BugCollection newCollection = new SortedBugCollection();
+                newCollection.readXML(filename);
+
+                if (commandLine.overrideRevisionNames || newCollection.getReleaseName() == null
+                        || newCollection.getReleaseName().length() == 0) {
+                    newCollection.setReleaseName(getFilePathParts(filename)[commonPrefix]);
+                }
+                if (useAnalysisTimes) {
+                    newCollection.setTimestamp(newCollection.getAnalysisTimestamp());
+                }
+                return newCollection;
+            }
+        };
+    }
+
+    private static BugCollection getCollection(Future<BugCollection> future) throws IOException, DocumentException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            IOException e2 = new IOException("Interrupted while reading input");
+            e2.initCause(e);
+            throw e2;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof DocumentException) {
+                throw (DocumentException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private static int lengthCommonPrefix(String[] string, String[] string2) {
         int maxLength = Math.min(string.length, string2.length);
         for (int result = 0; result < maxLength; result++) {
@@ -604,8 +677,7 @@ public class Update {
     private void matchBugs(Comparator<BugInstance> bugInstanceComparator, BugCollection origCollection,
             BugCollection newCollection, MatchOldBugs matchOld) {
 
-        TreeMap<BugInstance, LinkedList<BugInstance>> set = new TreeMap<BugInstance, LinkedList<BugInstance>>(
-                bugInstanceComparator);
+        BugMatcher matcher = new BugMatcher(bugInstanceComparator);
         //        int oldBugs = 0;
         //        int newBugs = 0;
         //        int matchedBugs = 0;
@@ -613,27 +685,19 @@ public class Update {
             if (!matchedOldBugs.containsKey(bug)) {
                 if (matchOld.match(bug)) {
                     //                    oldBugs++;
-                    LinkedList<BugInstance> q = set.get(bug);
-                    if (q == null) {
-                        q = new LinkedList<BugInstance>();
-                        set.put(bug, q);
-                    }
-                    q.add(bug);
+                    matcher.add(bug);
                 }
 
             }
         }
         long newVersion = origCollection.getCurrentAppVersion().getSequenceNumber() + 1;
         for (BugInstance bug : newCollection.getCollection()) {
+            if (matcher.isEmpty()) {
+                break;
+            }
             if (!mapFromNewToOldBug.containsKey(bug)) {
                 //                newBugs++;
-                LinkedList<BugInstance> q = set.get(bug);
-                if (q == null) {
-                    continue;
-                }
-                for (Iterator<BugInstance> i = q.iterator(); i.hasNext();) {
-                    BugInstance matchedBug = i.next();
-
+                for (BugInstance matchedBug : matcher.getMatches(bug)) {
                     if (matchedBug.isDead()) {
                         if (noResurrections || matchedBug.isRemovedByChangeOfPersistingClass()
                                 && newVersion - matchedBug.getLastVersion() > maxResurrection) {
@@ -649,10 +713,7 @@ public class Update {
                     //                    matchedBugs++;
                     mapFromNewToOldBug.put(bug, matchedBug);
                     matchedOldBugs.put(matchedBug, null);
-                    i.remove();
-                    if (q.isEmpty()) {
-                        set.remove(bug);
-                    }
+                    matcher.remove(matchedBug);
                     break;
                 }
             }
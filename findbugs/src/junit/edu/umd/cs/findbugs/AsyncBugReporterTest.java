@@ -0,0 +1,260 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+public class AsyncBugReporterTest extends TestCase {
+
+    /**
+     * Records the events it gets, slowly, and the threads it gets them on.
+     */
+    static class RecordingBugReporter implements BugReporter {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        final List<DescriptorFactory> descriptorFactories = Collections.synchronizedList(new ArrayList<DescriptorFactory>());
+
+        /** count down before an event is recorded */
+        volatile CountDownLatch gate = new CountDownLatch(0);
+
+        final CountDownLatch firstEventStarted = new CountDownLatch(1);
+
+        private final SortedBugCollection bugCollection = new SortedBugCollection();
+
+        private void record(String event) {
+            firstEventStarted.countDown();
+            try {
+                gate.await();
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            threads.add(Thread.currentThread());
+            descriptorFactories.add(DescriptorFactory.instance());
+            events.add(event);
+        }
+
+        @Override
+        public void reportBug(@Nonnull BugInstance bugInstance) {
+            record("bug " + bugInstance.getType());
+        }
+
+        @Override
+        public void logError(String message) {
+            record("error " + message);
+        }
+
+        @Override
+        public void logError(String message, Throwable e) {
+            record("error " + message);
+        }
+
+        @Override
+        public void reportMissingClass(ClassNotFoundException ex) {
+            record("missing " + ex.getMessage());
+        }
+
+        @Override
+        public void reportMissingClass(ClassDescriptor classDescriptor) {
+            record("missing " + classDescriptor);
+        }
+
+        @Override
+        public void reportSkippedAnalysis(MethodDescriptor method) {
+            record("skipped " + method);
+        }
+
+        @Override
+        public void observeClass(ClassDescriptor classDescriptor) {
+            record("class " + classDescriptor);
+        }
+
+        @Override
+        public void setErrorVerbosity(int level) {
+        }
+
+        @Override
+        public void setPriorityThreshold(int threshold) {
+        }
+
+        @Override
+        public void finish() {
+            events.add("finish");
+        }
+
+        @Override
+        public void reportQueuedErrors() {
+        }
+
+        @Override
+        public void addObserver(BugReporterObserver observer) {
+        }
+
+        @Override
+        public ProjectStats getProjectStats() {
+            return bugCollection.getProjectStats();
+        }
+
+        @Override
+        public BugCollection getBugCollection() {
+            return bugCollection;
+        }
+    }
+
+    private RecordingBugReporter delegate;
+
+    private AsyncBugReporter reporter;
+
+    @Override
+    protected void setUp() throws Exception {
+        delegate = new RecordingBugReporter();
+        reporter = new AsyncBugReporter(delegate, 1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delegate.gate = new CountDownLatch(0);
+        reporter.finish();
+    }
+
+    public void testOrder() {
+        List<String> expected = new ArrayList<String>();
+        ClassDescriptor c = DescriptorFactory.createClassDescriptor("com/example/Foo");
+        for (int i = 0; i < 20; i++) {
+            switch (i % 4) {
+            case 0:
+                reporter.reportBug(new BugInstance("TEST" + i, Priorities.NORMAL_PRIORITY));
+                expected.add("bug TEST" + i);
+                break;
+            case 1:
+                reporter.logError("e" + i);
+                expected.add("error e" + i);
+                break;
+            case 2:
+                reporter.reportMissingClass(new ClassNotFoundException("m" + i));
+                expected.add("missing m" + i);
+                break;
+            default:
+                reporter.observeClass(c);
+                expected.add("class " + c);
+                break;
+            }
+        }
+        assertNotNull(reporter.getBugCollection());
+        // Nothing is pending once the bug collection is returned
+        assertEquals(expected, new ArrayList<String>(delegate.events));
+        for (Thread t : delegate.threads) {
+            assertNotSame(Thread.currentThread(), t);
+        }
+
+        reporter.finish();
+        expected.add("finish");
+        assertEquals(expected, new ArrayList<String>(delegate.events));
+
+        // Reported directly after finish
+        reporter.logError("late");
+        expected.add("error late");
+        assertEquals(expected, new ArrayList<String>(delegate.events));
+    }
+
+    public void testReportingThreadUsesDescriptorFactoryOfReporter() {
+        reporter.reportBug(new BugInstance("TEST1", Priorities.NORMAL_PRIORITY));
+        reporter.drain();
+        assertEquals(1, delegate.descriptorFactories.size());
+        assertNotSame(Thread.currentThread(), delegate.threads.get(0));
+        assertSame(DescriptorFactory.instance(), delegate.descriptorFactories.get(0));
+    }
+
+    public void testReportBugBlocksWhenQueueIsFull() throws Exception {
+        delegate.gate = new CountDownLatch(1);
+        // taken by the reporting thread, which waits at the gate
+        reporter.reportBug(new BugInstance("TEST1", Priorities.NORMAL_PRIORITY));
+        assertTrue(delegate.firstEventStarted.await(10, TimeUnit.SECONDS));
+        // fills the queue
+        reporter.reportBug(new BugInstance("TEST2", Priorities.NORMAL_PRIORITY));
+
+        Thread blocked = new Thread() {
+            @Override
+            public void run() {
+                reporter.reportBug(new BugInstance("TEST3", Priorities.NORMAL_PRIORITY));
+            }
+        };
+        blocked.start();
+        blocked.join(200);
+        assertTrue("reportBug did not wait for room in the queue", blocked.isAlive());
+        assertTrue(delegate.events.isEmpty());
+
+        delegate.gate.countDown();
+        blocked.join(10000);
+        assertFalse(blocked.isAlive());
+        reporter.finish();
+        assertEquals(4, delegate.events.size());
+        assertEquals("bug TEST1", delegate.events.get(0));
+        assertEquals("bug TEST2", delegate.events.get(1));
+        assertEquals("bug TEST3", delegate.events.get(2));
+        assertEquals("finish", delegate.events.get(3));
+    }
+
+    public void testInterruptedReporterKeepsOrder() throws Exception {
+        delegate.gate = new CountDownLatch(1);
+        reporter.reportBug(new BugInstance("TEST1", Priorities.NORMAL_PRIORITY));
+        assertTrue(delegate.firstEventStarted.await(10, TimeUnit.SECONDS));
+        reporter.reportBug(new BugInstance("TEST2", Priorities.NORMAL_PRIORITY));
+
+        final boolean[] interruptedAfterwards = new boolean[1];
+        Thread interrupted = new Thread() {
+            @Override
+            public void run() {
+                reporter.logError("e3");
+                interruptedAfterwards[0] = Thread.currentThread().isInterrupted();
+            }
+        };
+        interrupted.start();
+        interrupted.join(200);
+        interrupted.interrupt();
+        interrupted.join(200);
+        assertTrue("logError did not keep waiting for room in the queue", interrupted.isAlive());
+
+        delegate.gate.countDown();
+        interrupted.join(10000);
+        assertFalse(interrupted.isAlive());
+        assertTrue("interrupt flag not restored", interruptedAfterwards[0]);
+        reporter.drain();
+        assertEquals(3, delegate.events.size());
+        assertEquals("error e3", delegate.events.get(2));
+        for (Thread t : delegate.threads) {
+            assertNotSame(interrupted, t);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BaselineHashIndexTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("baseline", ".idx");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private static String randomHash(Random r) {
+        return new BigInteger(128, r).toString(16);
+    }
+
+    public void testRoundTrip() throws Exception {
+        Random r = new Random(17);
+        List<String> hashes = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            hashes.add(randomHash(r));
+        }
+        hashes.add("0");
+        hashes.add("1");
+        hashes.add("ffffffffffffffffffffffffffffffff");
+        hashes.add(hashes.get(0));
+        BaselineHashIndex.write(hashes, file);
+        assertTrue(BaselineHashIndex.isIndexFile(file));
+
+        BaselineHashIndex index = BaselineHashIndex.open(file);
+        assertEquals(hashes.size() - 1, index.size());
+        for (String hash : hashes) {
+            assertTrue(hash, index.contains(hash));
+        }
+        for (int i = 0; i < 5000; i++) {
+            String hash = randomHash(r);
+            assertEquals(hash, hashes.contains(hash), index.contains(hash));
+        }
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(new BigInteger(index.get(i - 1), 16).compareTo(new BigInteger(index.get(i), 16)) < 0);
+        }
+    }
+
+    public void testNonCanonicalHashes() throws Exception {
+        BaselineHashIndex.write(Arrays.asList("abc"), file);
+        BaselineHashIndex index = BaselineHashIndex.open(file);
+        assertTrue(index.contains("abc"));
+        assertFalse(index.contains("0abc"));
+        assertFalse(index.contains("ABC"));
+        assertFalse(index.contains(""));
+        try {
+            BaselineHashIndex.write(Arrays.asList("ABC"), file);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testEmpty() throws Exception {
+        BaselineHashIndex.write(new ArrayList<String>(), file);
+        BaselineHashIndex index = BaselineHashIndex.open(file);
+        assertEquals(0, index.size());
+        assertFalse(index.contains("abc"));
+    }
+
+    public void testNotAnIndex() throws Exception {
+        assertFalse(BaselineHashIndex.isIndexFile(file));
+    }
+}
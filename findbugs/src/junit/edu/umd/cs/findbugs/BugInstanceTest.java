@@ -128,6 +128,117 @@ public class BugInstanceTest extends TestCase {
         assertTrue("ageInDays", output.contains("ageInDays="));
     }
 
+    public void testCompactAnnotations() throws Exception {
+        BugInstance inst = createBugWithAnnotations();
+        BugInstance compact = createBugWithAnnotations();
+        compact.compact(new BugAnnotationTable());
+        assertTrue(compact.isCompact());
+
+        assertEquals(inst, compact);
+        assertEquals(0, inst.compareTo(compact));
+        assertEquals(inst.hashCode(), compact.hashCode());
+        assertEquals(inst.getPrimaryMethod(), compact.getPrimaryMethod());
+        assertEquals(inst.getPrimaryField(), compact.getPrimaryField());
+        assertEquals(inst.getPrimarySourceLineAnnotation(), compact.getPrimarySourceLineAnnotation());
+        SortedBugCollection bc = new SortedBugCollection();
+        assertEquals(writeXML(inst, bc), writeXML(compact, bc));
+        bc.setWithMessages(true);
+        assertEquals(writeXML(inst, bc), writeXML(compact, bc));
+        assertTrue(compact.isCompact());
+
+        assertEquals(inst.getAnnotations(), compact.getAnnotations());
+        assertFalse(compact.isCompact());
+    }
+
+    public void testReadingCompactAnnotations() throws Exception {
+        BugInstance inst = createBugWithAnnotations();
+        BugInstance compact = createBugWithAnnotations();
+        compact.compact(new BugAnnotationTable());
+
+        assertEquals(inst.getAnnotations(), compact.getAnnotationsForReading());
+        assertEquals(0, new VersionInsensitiveBugComparator().compare(inst, compact));
+        assertEquals(0, new FuzzyBugComparator().compare(inst, compact));
+        assertTrue(compact.isCompact());
+        try {
+            compact.getAnnotationsForReading().clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assert true;
+        }
+
+        // Changing a decoded copy doesn't change the bug
+        compact.getPrimaryMethod().setDescription(MethodAnnotation.METHOD_CALLED);
+        assertEquals(inst.getPrimaryMethod().getDescription(), compact.getPrimaryMethod().getDescription());
+    }
+
+    public void testWriteXMLKeepsPrimarySourceLines() throws Exception {
+        BugInstance inst = createBugWithoutSourceLine();
+        BugInstance compact = createBugWithoutSourceLine();
+        compact.compact(new BugAnnotationTable());
+        SortedBugCollection bc = new SortedBugCollection();
+        bc.setWithMessages(true);
+
+        // The primary source lines are those of the method, and are written
+        // as synthetic; the method's own stay as they are
+        String output = writeXML(inst, bc);
+        assertTrue(output, output.contains("synthetic=\"true\""));
+        assertFalse(inst.getPrimaryMethod().getSourceLines().isSynthetic());
+        assertEquals(output, writeXML(inst, bc));
+        assertEquals(output, writeXML(compact, bc));
+    }
+
+    public void testInflateWhileReading() throws Exception {
+        final BugInstance[] bugs = new BugInstance[2000];
+        BugAnnotationTable table = new BugAnnotationTable();
+        for (int i = 0; i < bugs.length; i++) {
+            bugs[i] = createBugWithAnnotations();
+            bugs[i].compact(table);
+        }
+        final Throwable[] failure = new Throwable[1];
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (BugInstance bug : bugs) {
+                        assertEquals("my.pkg.MyClass", bug.getPrimaryClass().getClassName());
+                        assertEquals(5, bug.getAnnotationsForReading().size());
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        reader.start();
+        for (BugInstance bug : bugs) {
+            bug.getAnnotations();
+        }
+        reader.join();
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+    }
+
+    private BugInstance createBugWithAnnotations() {
+        BugInstance inst = new BugInstance("ABC", 2);
+        inst.addClass("my.pkg.MyClass");
+        MethodAnnotation method = new MethodAnnotation("my.pkg.MyClass", "foo", "(I)V", false);
+        method.setSourceLines(new SourceLineAnnotation("my.pkg.MyClass", "MyClass.java", 10, 20, 0, 42));
+        inst.addMethod(method);
+        inst.addField(new FieldAnnotation("my.pkg.Other", "bar", "Ljava/lang/String;", true)).describe(FieldAnnotation.STORED_ROLE);
+        inst.addSourceLine(new SourceLineAnnotation("my.pkg.MyClass", "MyClass.java", 12, 12, 5, 7));
+        inst.addInt(3);
+        return inst;
+    }
+
+    private BugInstance createBugWithoutSourceLine() {
+        BugInstance inst = new BugInstance("ABC", 2);
+        inst.addClass("my.pkg.MyClass");
+        MethodAnnotation method = new MethodAnnotation("my.pkg.MyClass", "foo", "(I)V", false);
+        method.setSourceLines(new SourceLineAnnotation("my.pkg.MyClass", "MyClass.java", 10, 20, 0, 42));
+        inst.addMethod(method);
+        return inst;
+    }
+
     private String writeXML(BugInstance inst, BugCollection bc) throws IOException {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         XMLOutput out = new OutputStreamXMLOutput(bout);
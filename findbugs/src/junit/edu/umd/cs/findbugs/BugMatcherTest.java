@@ -0,0 +1,224 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.model.ClassNameRewriter;
+
+public class BugMatcherTest extends TestCase {
+
+    private static BugInstance bug(String type, String className, String methodName, int line) {
+        return new BugInstance(type, Priorities.NORMAL_PRIORITY).addClass(className)
+                .addMethod(className, methodName, "()V", false)
+                .addSourceLine(new SourceLineAnnotation(className, "Foo.java", line, line, 0, 0));
+    }
+
+    /**
+     * Rewrites com.example.Old, which moved to com.example.Foo.
+     */
+    private static final ClassNameRewriter MOVED_CLASS = new ClassNameRewriter() {
+        @Override
+        public String rewriteClassName(String className) {
+            return "com.example.Old".equals(className) ? "com.example.Foo" : className;
+        }
+    };
+
+    /**
+     * @return variants of a bug differing in what some comparators ignore:
+     *         moved classes, bug type, line numbers, priority, local
+     *         variables, insignificant annotations and version history
+     */
+    private static List<BugInstance> variants() {
+        List<BugInstance> result = new ArrayList<BugInstance>();
+        for (String className : new String[] { "com.example.Foo", "com.example.Old", "com.example.Bar" }) {
+            for (String type : new String[] { "NP_NULL_ON_SOME_PATH", "NP_NULL_ON_SOME_PATH_EXCEPTION" }) {
+                for (int line : new int[] { 10, 20 }) {
+                    result.add(bug(type, className, "bar", line));
+                    result.add(bug(type, className, "baz", line));
+
+                    BugInstance low = bug(type, className, "bar", line);
+                    low.setPriority(Priorities.LOW_PRIORITY);
+                    result.add(low);
+
+                    result.add(bug(type, className, "bar", line).add(new LocalVariableAnnotation("?", 1, line)));
+                    result.add(bug(type, className, "bar", line).add(new LocalVariableAnnotation("x", 1, line)));
+                    result.add(bug(type, className, "bar", line).add(new LocalVariableAnnotation("y", 1, line)));
+                    result.add(bug(type, className, "bar", line).addInt(line).describe(IntAnnotation.INT_SYNC_PERCENT));
+
+                    BugInstance later = bug(type, className, "bar", line);
+                    later.setFirstVersion(2);
+                    result.add(later);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check that a BugMatcher finds the same matches as a linear scan, in the
+     * same order.
+     *
+     * @return the number of ordered pairs of distinct bugs which compare
+     *         equal
+     */
+    private static int checkMatches(Comparator<BugInstance> comparator, List<BugInstance> bugs) {
+        BugMatcher matcher = new BugMatcher(comparator);
+        for (BugInstance bug : bugs) {
+            matcher.add(bug);
+        }
+        int equalPairs = 0;
+        for (BugInstance lhs : bugs) {
+            List<BugInstance> matches = new ArrayList<BugInstance>();
+            for (BugInstance rhs : bugs) {
+                if (comparator.compare(rhs, lhs) == 0) {
+                    matches.add(rhs);
+                }
+            }
+            equalPairs += matches.size() - 1;
+            assertEquals(matches, matcher.getMatches(lhs));
+            assertSame(matches.get(0), matcher.findMatch(lhs));
+        }
+        return equalPairs;
+    }
+
+    /**
+     * Check that every pair of bugs the comparator considers equal has equal
+     * match keys, and that a BugMatcher finds the same matches as a linear
+     * scan.
+     *
+     * @return the number of ordered pairs of distinct bugs which compare
+     *         equal
+     */
+    private static int checkMatchKeys(MatchKeyComparator comparator, List<BugInstance> bugs) {
+        for (BugInstance lhs : bugs) {
+            for (BugInstance rhs : bugs) {
+                if (lhs != rhs && comparator.compare(lhs, rhs) == 0
+                        && !comparator.getMatchKey(lhs).equals(comparator.getMatchKey(rhs))) {
+                    fail("different match keys for equal bugs " + lhs.getAnnotations() + " and " + rhs.getAnnotations());
+                }
+            }
+        }
+        return checkMatches(comparator, bugs);
+    }
+
+    public void testFindMatch() {
+        BugMatcher matcher = new BugMatcher(new SloppyBugComparator());
+        BugInstance old = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10);
+        matcher.add(old);
+
+        assertSame(old, matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 20)));
+        assertNull(matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "baz", 10)));
+        assertNull(matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Bar", "bar", 10)));
+
+        assertTrue(matcher.remove(old));
+        assertTrue(matcher.isEmpty());
+        assertNull(matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 20)));
+    }
+
+    public void testAddIfUnmatched() {
+        BugMatcher matcher = new BugMatcher(new SloppyBugComparator());
+        assertTrue(matcher.addIfUnmatched(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10)));
+        assertFalse(matcher.addIfUnmatched(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 30)));
+        assertTrue(matcher.addIfUnmatched(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "baz", 10)));
+        assertEquals(2, matcher.size());
+    }
+
+    public void testMatchesInOrderAdded() {
+        BugMatcher matcher = new BugMatcher(new SloppyBugComparator());
+        BugInstance first = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10);
+        BugInstance second = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 20);
+        matcher.add(first);
+        matcher.add(second);
+        assertEquals(2, matcher.getMatches(first).size());
+        assertSame(first, matcher.getMatches(second).get(0));
+    }
+
+    public void testComparatorWithoutMatchKeys() {
+        // Compares like a SloppyBugComparator, but gives no match keys
+        final SloppyBugComparator sloppy = new SloppyBugComparator();
+        Comparator<BugInstance> comparator = new Comparator<BugInstance>() {
+            @Override
+            public int compare(BugInstance lhs, BugInstance rhs) {
+                return sloppy.compare(lhs, rhs);
+            }
+        };
+        List<BugInstance> bugs = variants();
+        assertEquals(checkMatches(sloppy, bugs), checkMatches(comparator, bugs));
+        assertTrue(checkMatches(comparator, bugs) > 0);
+
+        BugMatcher matcher = new BugMatcher(comparator);
+        BugInstance old = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10);
+        assertTrue(matcher.addIfUnmatched(old));
+        assertFalse(matcher.addIfUnmatched(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 30)));
+        assertTrue(matcher.addIfUnmatched(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "baz", 10)));
+        assertEquals(2, matcher.size());
+        assertNull(matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Bar", "bar", 10)));
+        assertTrue(matcher.remove(old));
+        assertNull(matcher.findMatch(bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 20)));
+        assertEquals(1, matcher.size());
+    }
+
+    public void testVersionInsensitiveMatchKeys() {
+        VersionInsensitiveBugComparator comparator = new VersionInsensitiveBugComparator();
+        comparator.setClassNameRewriter(MOVED_CLASS);
+        BugInstance moved = bug("NP_NULL_ON_SOME_PATH", "com.example.Old", "bar", 20)
+                .add(new LocalVariableAnnotation("?", 1, 0));
+        BugInstance current = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10);
+        assertEquals(0, comparator.compare(moved, current));
+        assertEquals(comparator.getMatchKey(moved), comparator.getMatchKey(current));
+
+        List<BugInstance> bugs = variants();
+        assertTrue(checkMatchKeys(comparator, bugs) > 0);
+        comparator.setComparePriorities(true);
+        assertTrue(checkMatchKeys(comparator, bugs) > 0);
+        comparator.setExactBugPatternMatch(false);
+        assertTrue(checkMatchKeys(comparator, bugs) > 0);
+    }
+
+    public void testFuzzyMatchKeys() {
+        FuzzyBugComparator comparator = new FuzzyBugComparator();
+        comparator.setClassNameRewriter(MOVED_CLASS);
+        BugInstance low = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 20);
+        low.setPriority(Priorities.LOW_PRIORITY);
+        BugInstance synced = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10).addInt(50).describe(
+                IntAnnotation.INT_SYNC_PERCENT);
+        assertEquals(0, comparator.compare(low, synced));
+        assertEquals(comparator.getMatchKey(low), comparator.getMatchKey(synced));
+
+        assertTrue(checkMatchKeys(comparator, variants()) > 0);
+        comparator.setClassNameRewriter(null);
+        assertTrue(checkMatchKeys(comparator, variants()) > 0);
+    }
+
+    public void testSortedBugCollectionMatchKeys() {
+        SortedBugCollection.BugInstanceComparator comparator = SortedBugCollection.BugInstanceComparator.instance;
+        BugInstance first = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", "bar", 10);
+        BugInstance later = (BugInstance) first.clone();
+        later.setFirstVersion(2);
+        assertEquals(0, comparator.compare(first, later));
+        assertEquals(comparator.getMatchKey(first), comparator.getMatchKey(later));
+
+        assertTrue(checkMatchKeys(comparator, variants()) > 0);
+    }
+}
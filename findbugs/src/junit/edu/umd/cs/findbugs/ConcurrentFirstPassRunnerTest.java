@@ -0,0 +1,444 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.ba.jsr305.DirectlyRelevantTypeQualifiersDatabase;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+import edu.umd.cs.findbugs.detect.NoteDirectlyRelevantTypeQualifiers;
+import edu.umd.cs.findbugs.plan.ExecutionPlan;
+
+/**
+ * Tests for ConcurrentFirstPassRunner, which applies the
+ * ConcurrentFirstPassDetectors of the first pass on worker threads.
+ */
+public class ConcurrentFirstPassRunnerTest extends FindBugsTestCase {
+
+    private static final int NUM_THREADS = 3;
+
+    private static final int NUM_MISSING_CLASSES = 40;
+
+    /** Number of methods of the generated class which is too big to analyze */
+    private static final int NUM_HUGE_CLASS_METHODS = 1001;
+
+    /** Package whose classes are analyzed by testSameResultsAsSequential */
+    private static final String ANALYZED_PACKAGE = "edu/umd/cs/findbugs/ba/";
+
+    /** Classes visited by the detectors, with the number of visits */
+    static final Map<ClassDescriptor, AtomicInteger> visits = new ConcurrentHashMap<ClassDescriptor, AtomicInteger>();
+
+    /** Classes visited by the PlainRecordingDetectors */
+    static final Set<ClassDescriptor> plainVisits = Collections.synchronizedSet(new HashSet<ClassDescriptor>());
+
+    /** Names of the threads the detectors ran on */
+    static final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+    /** Classes the detectors could resolve to an XClass */
+    static final Set<ClassDescriptor> resolved = Collections.synchronizedSet(new HashSet<ClassDescriptor>());
+
+    /** Set if a worker saw the wrong DescriptorFactory or AnalysisCache */
+    static volatile String workerStateProblem;
+
+    /**
+     * Detector which records on which thread it visited which class. It is a
+     * FirstPassDetector, so it also visits the missing classes, which
+     * AnalysisContext.isTooBig() treats as too big to analyze.
+     */
+    static class RecordingDetector implements Detector2, FirstPassDetector {
+        private final DescriptorFactory expectedDescriptorFactory;
+
+        private final IAnalysisCache primaryAnalysisCache;
+
+        RecordingDetector(DescriptorFactory descriptorFactory, IAnalysisCache analysisCache) {
+            expectedDescriptorFactory = descriptorFactory;
+            primaryAnalysisCache = analysisCache;
+        }
+
+        @Override
+        public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+            threadNames.add(Thread.currentThread().getName());
+            AtomicInteger count = visits.get(classDescriptor);
+            if (count == null) {
+                workerStateProblem = "unexpected class " + classDescriptor;
+                return;
+            }
+            count.incrementAndGet();
+            if (DescriptorFactory.instance() != expectedDescriptorFactory) {
+                workerStateProblem = "worker does not share the DescriptorFactory of the analysis thread";
+            }
+            if (Global.getAnalysisCache() == primaryAnalysisCache) {
+                workerStateProblem = "worker uses the analysis cache of the analysis thread";
+            }
+            // Throws a MissingClassException for the classes that do not exist
+            Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+            resolved.add(classDescriptor);
+        }
+
+        @Override
+        public void finishPass() {
+        }
+
+        @Override
+        public String getDetectorClassName() {
+            return getClass().getName();
+        }
+    }
+
+    public void testWorkers() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                final IAnalysisCache analysisCache = Global.getAnalysisCache();
+                assertTrue(analysisCache instanceof AnalysisCache);
+                final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+
+                List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>();
+                ClassDescriptor empty = DescriptorFactory.createClassDescriptor("Empty");
+                classes.add(empty);
+                for (int i = 0; i < NUM_MISSING_CLASSES; i++) {
+                    classes.add(DescriptorFactory.createClassDescriptor("does/not/Exist" + i));
+                }
+                visits.clear();
+                threadNames.clear();
+                resolved.clear();
+                workerStateProblem = null;
+                for (ClassDescriptor classDescriptor : classes) {
+                    visits.put(classDescriptor, new AtomicInteger());
+                }
+
+                Plugin plugin = DetectorFactoryCollection.instance().pluginIterator().next();
+                DetectorFactory factory = new DetectorFactory(plugin, RecordingDetector.class.getName(),
+                        RecordingDetector.class, true, "fast", "", "") {
+                    @Override
+                    public Detector2 createDetector2(BugReporter bugReporter) {
+                        return new RecordingDetector(descriptorFactory, analysisCache);
+                    }
+                };
+
+                final Set<ClassDescriptor> missing = Collections.synchronizedSet(new HashSet<ClassDescriptor>());
+                final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+                BugReporter bugReporter = new DelegatingBugReporter(new PrintingBugReporter()) {
+                    @Override
+                    public void reportMissingClass(ClassDescriptor classDescriptor) {
+                        missing.add(classDescriptor);
+                    }
+
+                    @Override
+                    public void logError(String message, Throwable e) {
+                        errors.add(message);
+                    }
+
+                    @Override
+                    public void logError(String message) {
+                        errors.add(message);
+                    }
+                };
+
+                ConcurrentFirstPassRunner runner = new ConcurrentFirstPassRunner(Collections.singletonList(factory),
+                        (AnalysisCache) analysisCache, bugReporter, NUM_THREADS);
+                List<Detector2> detectors = runner.run(classes);
+
+                assertEquals("one detector per worker", NUM_THREADS, detectors.size());
+                assertNull(workerStateProblem, workerStateProblem);
+                for (ClassDescriptor classDescriptor : classes) {
+                    assertEquals(classDescriptor.toString(), 1, visits.get(classDescriptor).get());
+                }
+                for (String threadName : threadNames) {
+                    assertTrue(threadName, threadName.startsWith("FindBugs first pass worker"));
+                }
+                assertEquals(Collections.singleton(empty), resolved);
+                assertEquals(NUM_MISSING_CLASSES, missing.size());
+                assertFalse(missing.contains(empty));
+                assertEquals(Collections.emptyList(), errors);
+
+                // The analysis thread still uses its own cache
+                assertSame(analysisCache, Global.getAnalysisCache());
+                assertSame(descriptorFactory, DescriptorFactory.instance());
+            }
+        });
+    }
+
+    /**
+     * Detector which only records the classes it visits. It is not a
+     * FirstPassDetector, so it must skip classes which are too big.
+     */
+    static class PlainRecordingDetector implements Detector2 {
+        public PlainRecordingDetector(BugReporter bugReporter) {
+        }
+
+        @Override
+        public void visitClass(ClassDescriptor classDescriptor) {
+            plainVisits.add(classDescriptor);
+        }
+
+        @Override
+        public void finishPass() {
+        }
+
+        @Override
+        public String getDetectorClassName() {
+            return getClass().getName();
+        }
+    }
+
+    private static DetectorFactory createFactory(Class<?> detectorClass) {
+        Plugin plugin = DetectorFactoryCollection.instance().pluginIterator().next();
+        return new DetectorFactory(plugin, detectorClass.getName(), detectorClass, true, "fast", "", "");
+    }
+
+    public void testHugeClassesOnlyGetFirstPassDetectors() throws Exception {
+        File tmpdir = createTempDir();
+        File hugeClassFile = new File(tmpdir, "Huge.class");
+        writeHugeClass(hugeClassFile);
+        try {
+            executeFindBugsTest(new RunnableWithExceptions() {
+                @Override
+                public void run() throws Throwable {
+                    final IAnalysisCache analysisCache = Global.getAnalysisCache();
+                    final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+                    ClassDescriptor empty = DescriptorFactory.createClassDescriptor("Empty");
+                    ClassDescriptor huge = DescriptorFactory.createClassDescriptor("Huge");
+                    assertFalse(AnalysisContext.currentAnalysisContext().isTooBig(empty));
+                    assertTrue(AnalysisContext.currentAnalysisContext().isTooBig(huge));
+
+                    List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>();
+                    classes.add(empty);
+                    classes.add(huge);
+                    visits.clear();
+                    plainVisits.clear();
+                    workerStateProblem = null;
+                    for (ClassDescriptor classDescriptor : classes) {
+                        visits.put(classDescriptor, new AtomicInteger());
+                    }
+
+                    Plugin plugin = DetectorFactoryCollection.instance().pluginIterator().next();
+                    List<DetectorFactory> factoryList = new ArrayList<DetectorFactory>();
+                    factoryList.add(new DetectorFactory(plugin, RecordingDetector.class.getName(), RecordingDetector.class,
+                            true, "fast", "", "") {
+                        @Override
+                        public Detector2 createDetector2(BugReporter bugReporter) {
+                            return new RecordingDetector(descriptorFactory, analysisCache);
+                        }
+                    });
+                    factoryList.add(createFactory(PlainRecordingDetector.class));
+
+                    ConcurrentFirstPassRunner runner = new ConcurrentFirstPassRunner(factoryList,
+                            (AnalysisCache) analysisCache, new PrintingBugReporter(), NUM_THREADS);
+                    runner.run(classes);
+
+                    assertNull(workerStateProblem, workerStateProblem);
+                    assertEquals(1, visits.get(empty).get());
+                    assertEquals(1, visits.get(huge).get());
+                    assertEquals(Collections.singleton(empty), plainVisits);
+                }
+            }, tmpdir.getPath());
+        } finally {
+            hugeClassFile.delete();
+            tmpdir.delete();
+        }
+    }
+
+    public void testSameResultsAsSequential() throws Exception {
+        final File codeBase = codeBaseOf(Subtypes2.class);
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                List<ClassDescriptor> classes = listClasses(codeBase, ANALYZED_PACKAGE);
+                assertTrue(classes.size() > 100);
+                DetectorFactory factory = createFactory(NoteDirectlyRelevantTypeQualifiers.class);
+                IAnalysisCache analysisCache = Global.getAnalysisCache();
+                BugReporter bugReporter = new PrintingBugReporter();
+
+                // Run the workers first, so that they are the ones filling
+                // the shared class hierarchy
+                analysisCache.eagerlyPutDatabase(DirectlyRelevantTypeQualifiersDatabase.class,
+                        new DirectlyRelevantTypeQualifiersDatabase());
+                ConcurrentFirstPassRunner runner = new ConcurrentFirstPassRunner(Collections.singletonList(factory),
+                        (AnalysisCache) analysisCache, bugReporter, NUM_THREADS + 1);
+                for (Detector2 detector : runner.run(classes)) {
+                    detector.finishPass();
+                }
+                Map<MethodDescriptor, Set<TypeQualifierValue<?>>> concurrentResult = getRelevantQualifiers(classes);
+
+                analysisCache.eagerlyPutDatabase(DirectlyRelevantTypeQualifiersDatabase.class,
+                        new DirectlyRelevantTypeQualifiersDatabase());
+                Detector2 detector = factory.createDetector2(bugReporter);
+                for (ClassDescriptor classDescriptor : classes) {
+                    detector.visitClass(classDescriptor);
+                }
+                detector.finishPass();
+                Map<MethodDescriptor, Set<TypeQualifierValue<?>>> sequentialResult = getRelevantQualifiers(classes);
+
+                assertFalse(sequentialResult.isEmpty());
+                assertEquals(sequentialResult, concurrentResult);
+            }
+        }, codeBase.getPath(), codeBaseOf(Nonnull.class).getPath(), codeBaseOf(JavaClass.class).getPath());
+    }
+
+    /**
+     * @return the directly relevant type qualifiers of all methods of the
+     *         given classes which have any
+     */
+    private static Map<MethodDescriptor, Set<TypeQualifierValue<?>>> getRelevantQualifiers(List<ClassDescriptor> classes)
+            throws CheckedAnalysisException {
+        DirectlyRelevantTypeQualifiersDatabase database = Global.getAnalysisCache().getDatabase(
+                DirectlyRelevantTypeQualifiersDatabase.class);
+        Map<MethodDescriptor, Set<TypeQualifierValue<?>>> result = new HashMap<MethodDescriptor, Set<TypeQualifierValue<?>>>();
+        for (ClassDescriptor classDescriptor : classes) {
+            XClass xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+            for (XMethod xmethod : xclass.getXMethods()) {
+                Collection<TypeQualifierValue<?>> qualifiers = database.getDirectlyRelevantTypeQualifiers(xmethod
+                        .getMethodDescriptor());
+                if (!qualifiers.isEmpty()) {
+                    result.put(xmethod.getMethodDescriptor(), new HashSet<TypeQualifierValue<?>>(qualifiers));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static File codeBaseOf(Class<?> c) throws Exception {
+        return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * @return the classes in the given directory or archive whose resource
+     *         names start with the given prefix
+     */
+    private static List<ClassDescriptor> listClasses(File codeBase, String prefix) throws IOException {
+        List<String> resourceNames = new ArrayList<String>();
+        if (codeBase.isDirectory()) {
+            listClassFiles(new File(codeBase, prefix), prefix, resourceNames);
+        } else {
+            ZipFile zipFile = new ZipFile(codeBase);
+            try {
+                for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+                    String name = e.nextElement().getName();
+                    if (name.startsWith(prefix) && name.endsWith(".class")) {
+                        resourceNames.add(name);
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+        }
+        Collections.sort(resourceNames);
+        List<ClassDescriptor> result = new ArrayList<ClassDescriptor>();
+        for (String resourceName : resourceNames) {
+            result.add(DescriptorFactory.createClassDescriptorFromResourceName(resourceName));
+        }
+        return result;
+    }
+
+    private static void listClassFiles(File dir, String prefix, List<String> resourceNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listClassFiles(file, prefix + file.getName() + "/", resourceNames);
+            } else if (file.getName().endsWith(".class")) {
+                resourceNames.add(prefix + file.getName());
+            }
+        }
+    }
+
+    private static File createTempDir() throws IOException {
+        File tmpdir = File.createTempFile("fbtest", null);
+        if (!tmpdir.delete() || !tmpdir.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+        return tmpdir;
+    }
+
+    /**
+     * Write a class with more methods than FindBugs analyzes.
+     */
+    private static void writeHugeClass(File file) throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "Huge", null, "java/lang/Object", null);
+        for (int i = 0; i < NUM_HUGE_CLASS_METHODS; i++) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + i, "()V", null, null);
+            mv.visitCode();
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(cw.toByteArray());
+        } finally {
+            out.close();
+        }
+    }
+
+    public void testWithinPassEarlierDetectorsAreNotConcurrent() throws Exception {
+        Plugin corePlugin = DetectorFactoryCollection.instance().getCorePlugin();
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.addPlugin(corePlugin);
+
+        DetectorFactory noteParamDerefs = corePlugin.getFactoryByShortName("NoteUnconditionalParamDerefs");
+        assertNotNull(noteParamDerefs);
+        assertTrue(plan.isEarlierWithinPass(noteParamDerefs));
+
+        for (DetectorFactory factory : corePlugin.getDetectorFactories()) {
+            if (factory.isDetectorClassSubtypeOf(ConcurrentFirstPassDetector.class)) {
+                assertFalse(factory.getShortName(), plan.isEarlierWithinPass(factory));
+            }
+        }
+    }
+}
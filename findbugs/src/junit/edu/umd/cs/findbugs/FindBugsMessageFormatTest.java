@@ -0,0 +1,65 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import junit.framework.TestCase;
+
+public class FindBugsMessageFormatTest extends TestCase {
+
+    private static final BugAnnotation[] ARGS = { new IntAnnotation(7), new IntAnnotation(42) };
+
+    public void testFormat() {
+        FindBugsMessageFormat format = new FindBugsMessageFormat("{0} is not {1}, {1.hash}!");
+        assertEquals("7 is not 42, 42!", format.format(ARGS, null));
+        // The parsed pattern is reused
+        assertEquals("7 is not 42, 42!", format.format(ARGS, null));
+    }
+
+    public void testNoPlaceholders() {
+        assertEquals("", new FindBugsMessageFormat("").format(ARGS, null));
+        assertEquals("plain text", new FindBugsMessageFormat("plain text").format(ARGS, null));
+    }
+
+    public void testOutOfRange() {
+        assertEquals("x?>?2/2???", new FindBugsMessageFormat("x{2}").format(ARGS, null));
+    }
+
+    public void testBadPattern() {
+        try {
+            new FindBugsMessageFormat("a {0").format(ARGS, null);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            new FindBugsMessageFormat("a {x}").format(ARGS, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testForPatternIsShared() {
+        String pattern = "{0} and {1}";
+        assertSame(FindBugsMessageFormat.forPattern(pattern), FindBugsMessageFormat.forPattern(new String(pattern)));
+        assertEquals("7 and 42", FindBugsMessageFormat.forPattern(pattern).format(ARGS, null));
+    }
+}
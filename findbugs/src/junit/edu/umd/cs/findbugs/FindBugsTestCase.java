@@ -66,10 +66,13 @@ public abstract class FindBugsTestCase extends TestCase {
     private static final class TestRunnerThread extends Thread {
         private final RunnableWithExceptions runnable;
 
+        private final String[] auxClasspathEntries;
+
         private JUnitDetectorAdapter detectorAdapter;
 
-        private TestRunnerThread(RunnableWithExceptions runnable) {
+        private TestRunnerThread(RunnableWithExceptions runnable, String[] auxClasspathEntries) {
             this.runnable = runnable;
+            this.auxClasspathEntries = auxClasspathEntries;
         }
 
         /**
@@ -118,6 +121,9 @@ public abstract class FindBugsTestCase extends TestCase {
                 // Analyze the temporary directory we just created
                 Project project = new Project();
                 project.addFile(tmpdir.getAbsolutePath());
+                for (String entry : auxClasspathEntries) {
+                    project.addAuxClasspathEntry(entry);
+                }
 
                 engine.setProject(project);
                 PluginLoader fakeLoader = new PluginLoader(true, tmpfile.toURL());
@@ -192,7 +198,23 @@ public abstract class FindBugsTestCase extends TestCase {
      * @throws Exception
      */
     protected void executeFindBugsTest(final RunnableWithExceptions runnable) throws Exception {
-        TestRunnerThread thread = new TestRunnerThread(runnable);
+        executeFindBugsTest(runnable, new String[0]);
+    }
+
+    /**
+     * Execute some JUnit test code inside a Detector2 class running inside a
+     * FindBugs2 analysis run, with the given entries on the auxiliary
+     * classpath, so that the test code can analyze the classes in them.
+     *
+     * @param runnable
+     *            a RunnableWithExceptions object whose run() method has some
+     *            JUnit test code
+     * @param auxClasspathEntries
+     *            directories or archives to put on the auxiliary classpath
+     * @throws Exception
+     */
+    protected void executeFindBugsTest(final RunnableWithExceptions runnable, String... auxClasspathEntries) throws Exception {
+        TestRunnerThread thread = new TestRunnerThread(runnable, auxClasspathEntries);
 
         thread.start();
         try {
@@ -0,0 +1,264 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.FieldSummary;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.detect.BadSyntaxForRegularExpression;
+import edu.umd.cs.findbugs.detect.EmptyZipFileEntry;
+import edu.umd.cs.findbugs.detect.FindDoubleCheck;
+import edu.umd.cs.findbugs.detect.FindEmptySynchronizedBlock;
+import edu.umd.cs.findbugs.detect.FindFloatMath;
+import edu.umd.cs.findbugs.detect.FindHEmismatch;
+import edu.umd.cs.findbugs.detect.FindNoSideEffectMethods.NoSideEffectMethodsDatabase;
+import edu.umd.cs.findbugs.detect.FindSpinLoop;
+import edu.umd.cs.findbugs.detect.FindUnconditionalWait;
+import edu.umd.cs.findbugs.detect.InfiniteRecursiveLoop;
+import edu.umd.cs.findbugs.detect.MutableLock;
+import edu.umd.cs.findbugs.detect.SynchronizeAndNullCheckField;
+
+/**
+ * Tests for FusedBytecodeScanner, which applies several detectors in a single
+ * scan of each class.
+ */
+public class FusedBytecodeScannerTest extends FindBugsTestCase {
+
+    /** Package whose classes are analyzed by testSameBugsAsSeparateScans */
+    private static final String ANALYZED_PACKAGE = "edu/umd/cs/findbugs/";
+
+    static class StackDetector extends OpcodeStackDetector implements FusableBytecodeDetector {
+        @Override
+        public void sawOpcode(int seen) {
+        }
+    }
+
+    static class StackDetectorOverridingVisitCode extends StackDetector {
+        @Override
+        public void visit(Code obj) {
+            super.visit(obj);
+        }
+    }
+
+    static class PlainDetector extends BytecodeScanningDetector implements FusableBytecodeDetector {
+    }
+
+    static class PlainDetectorOverridingVisitCode extends PlainDetector {
+        @Override
+        public void visitCode(Code obj) {
+            super.visitCode(obj);
+        }
+    }
+
+    static class PlainDetectorOverridingVisit extends PlainDetector {
+        @Override
+        public void visit(Code obj) {
+            super.visit(obj);
+        }
+    }
+
+    public void testCodeOverridesAreNotFusable() {
+        assertTrue(FusedBytecodeScanner.isFusable(new StackDetector()));
+        assertTrue(FusedBytecodeScanner.isFusable(new PlainDetector()));
+        assertFalse(FusedBytecodeScanner.isFusable(new StackDetectorOverridingVisitCode()));
+        assertFalse(FusedBytecodeScanner.isFusable(new PlainDetectorOverridingVisitCode()));
+        assertFalse(FusedBytecodeScanner.isFusable(new PlainDetectorOverridingVisit()));
+    }
+
+    public void testCoreDetectorsAreFusable() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                for (BytecodeScanningDetector detector : createDetectors(new PrintingBugReporter())) {
+                    assertTrue(detector.getClass().getName(), FusedBytecodeScanner.isFusable(detector));
+                }
+            }
+        });
+    }
+
+    /**
+     * The fusable core detectors must report the same warnings on the
+     * FindBugs classes whether they share one scan or each scan the classes
+     * on their own.
+     */
+    public void testSameBugsAsSeparateScans() throws Exception {
+        final File codeBase = codeBaseOf(FusedBytecodeScanner.class);
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                List<ClassDescriptor> classes = listClasses(codeBase, ANALYZED_PACKAGE);
+                assertTrue(classes.size() > 1000);
+                // normally computed by FieldItemSummary in the first pass
+                AnalysisContext.currentAnalysisContext().setFieldSummary(new FieldSummary());
+
+                List<String> separate = new ArrayList<String>();
+                RecordingBugReporter bugReporter = new RecordingBugReporter(separate);
+                for (BytecodeScanningDetector detector : createDetectors(bugReporter)) {
+                    apply(detector, classes, bugReporter);
+                }
+
+                List<String> fused = new ArrayList<String>();
+                bugReporter = new RecordingBugReporter(fused);
+                apply(new FusedBytecodeScanner(bugReporter, createDetectors(bugReporter)), classes, bugReporter);
+
+                assertFalse(separate.isEmpty());
+                Collections.sort(separate);
+                Collections.sort(fused);
+                assertEquals(separate, fused);
+            }
+        }, codeBase.getPath(), codeBaseOf(Nonnull.class).getPath(), codeBaseOf(JavaClass.class).getPath());
+    }
+
+    private static List<BytecodeScanningDetector> createDetectors(BugReporter bugReporter) {
+        // FindDoubleCheck uses the results of FindNoSideEffectMethods, which
+        // doesn't run here
+        Global.getAnalysisCache().eagerlyPutDatabase(NoSideEffectMethodsDatabase.class, new NoSideEffectMethodsDatabase());
+        List<BytecodeScanningDetector> detectors = new ArrayList<BytecodeScanningDetector>();
+        detectors.add(new FindUnconditionalWait(bugReporter));
+        detectors.add(new FindSpinLoop(bugReporter));
+        detectors.add(new FindEmptySynchronizedBlock(bugReporter));
+        detectors.add(new BadSyntaxForRegularExpression(bugReporter));
+        detectors.add(new SynchronizeAndNullCheckField(bugReporter));
+        detectors.add(new FindDoubleCheck(bugReporter));
+        detectors.add(new MutableLock(bugReporter));
+        detectors.add(new FindHEmismatch(bugReporter));
+        detectors.add(new EmptyZipFileEntry(bugReporter));
+        detectors.add(new InfiniteRecursiveLoop(bugReporter));
+        detectors.add(new FindFloatMath(bugReporter));
+        return detectors;
+    }
+
+    /**
+     * Apply a detector to some classes, logging its exceptions the way
+     * FindBugs2 does.
+     */
+    private static void apply(Detector detector, List<ClassDescriptor> classes, BugReporter bugReporter) throws Exception {
+        for (ClassDescriptor classDescriptor : classes) {
+            ClassContext classContext = Global.getAnalysisCache().getClassAnalysis(ClassContext.class, classDescriptor);
+            try {
+                detector.visitClassContext(classContext);
+            } catch (RuntimeException e) {
+                bugReporter.logError("Exception analyzing " + classDescriptor.toDottedClassName() + " using detector "
+                        + detector.getClass().getName(), e);
+            }
+        }
+        detector.report();
+    }
+
+    /**
+     * BugReporter which records a description of each bug and error it is
+     * given.
+     */
+    static class RecordingBugReporter extends DelegatingBugReporter {
+        private final List<String> bugs;
+
+        RecordingBugReporter(List<String> bugs) {
+            super(new PrintingBugReporter());
+            this.bugs = bugs;
+        }
+
+        @Override
+        public void reportBug(@Nonnull BugInstance bugInstance) {
+            StringBuilder buf = new StringBuilder();
+            buf.append(bugInstance.getType()).append(' ').append(bugInstance.getPriority());
+            for (BugAnnotation annotation : bugInstance.getAnnotations()) {
+                buf.append(' ').append(annotation);
+            }
+            buf.append(' ').append(bugInstance.getPrimarySourceLineAnnotation());
+            bugs.add(buf.toString());
+        }
+
+        @Override
+        public void logError(String message, Throwable e) {
+            bugs.add(message + ": " + e);
+        }
+
+        @Override
+        public void logError(String message) {
+            bugs.add(message);
+        }
+    }
+
+    private static File codeBaseOf(Class<?> c) throws Exception {
+        return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * @return the classes in the given directory or archive whose resource
+     *         names start with the given prefix
+     */
+    private static List<ClassDescriptor> listClasses(File codeBase, String prefix) throws IOException {
+        List<String> resourceNames = new ArrayList<String>();
+        if (codeBase.isDirectory()) {
+            listClassFiles(new File(codeBase, prefix), prefix, resourceNames);
+        } else {
+            ZipFile zipFile = new ZipFile(codeBase);
+            try {
+                for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+                    String name = e.nextElement().getName();
+                    if (name.startsWith(prefix) && name.endsWith(".class")) {
+                        resourceNames.add(name);
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+        }
+        Collections.sort(resourceNames);
+        List<ClassDescriptor> result = new ArrayList<ClassDescriptor>();
+        for (String resourceName : resourceNames) {
+            result.add(DescriptorFactory.createClassDescriptorFromResourceName(resourceName));
+        }
+        return result;
+    }
+
+    private static void listClassFiles(File dir, String prefix, List<String> resourceNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listClassFiles(file, prefix + file.getName() + "/", resourceNames);
+            } else if (file.getName().endsWith(".class")) {
+                resourceNames.add(prefix + file.getName());
+            }
+        }
+    }
+}
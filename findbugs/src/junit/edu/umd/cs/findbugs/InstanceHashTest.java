@@ -0,0 +1,111 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.util.Util;
+
+public class InstanceHashTest extends TestCase {
+
+    /** The instance hash as it was computed from the instance key */
+    private static String hashOfKey(BugInstance bug) throws Exception {
+        MessageDigest digest = Util.getMD5Digest();
+        return new BigInteger(1, digest.digest(bug.getInstanceKey().getBytes("UTF-8"))).toString(16);
+    }
+
+    private static void checkHash(BugInstance bug) throws Exception {
+        assertEquals(bug.getInstanceKey(), hashOfKey(bug), bug.getInstanceHash());
+    }
+
+    private static BugInstance bug(BugAnnotation... annotations) {
+        BugInstance bug = new BugInstance("NP_NULL_ON_SOME_PATH", Priorities.NORMAL_PRIORITY);
+        bug.addAnnotations(Arrays.asList(annotations));
+        return bug;
+    }
+
+    public void testNoAnnotations() throws Exception {
+        checkHash(bug());
+    }
+
+    public void testPackageMembers() throws Exception {
+        ClassAnnotation subclass = new ClassAnnotation("com.example.Sub");
+        subclass.setDescription(ClassAnnotation.SUBCLASS_ROLE);
+        checkHash(bug(new ClassAnnotation("com.example.Foo"), subclass,
+                new MethodAnnotation("com.example.Foo", "bar", "(I[Ljava/lang/String;J[[D)V", false),
+                new MethodAnnotation("com.example.Foo", "<init>", "()V", false),
+                new FieldAnnotation("com.example.Foo", "baz", "Ljava/util/List;", true)));
+    }
+
+    public void testIntsAndLocals() throws Exception {
+        IntAnnotation occurrences = new IntAnnotation(12);
+        occurrences.setDescription(IntAnnotation.INT_OCCURRENCES);
+        checkHash(bug(new IntAnnotation(0), new IntAnnotation(-17), new IntAnnotation(Integer.MIN_VALUE),
+                new IntAnnotation(Integer.MAX_VALUE), occurrences, new LocalVariableAnnotation("x", 3, 10),
+                new LocalVariableAnnotation("?", -1, 10), new LocalVariableAnnotation("?", 2, 10)));
+    }
+
+    public void testOtherAnnotations() throws Exception {
+        checkHash(bug(new ClassAnnotation("Foo"), new StringAnnotation("a string"),
+                new TypeAnnotation("Ljava/util/Map;"), new SourceLineAnnotation("Foo", "Foo.java", 1, 2, 0, 5)));
+    }
+
+    public void testNonAsciiCharacters() throws Exception {
+        checkHash(bug(new ClassAnnotation("caf\u00e9.\u4e2d\u6587"), new StringAnnotation("\ud83d\ude00 and \ud83d"),
+                new StringAnnotation("\ude00 alone"), new LocalVariableAnnotation("\u00fc", 1, 0)));
+    }
+
+    public void testLongKey() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            buf.append("\u00e9x");
+        }
+        checkHash(bug(new StringAnnotation(buf.toString()), new IntAnnotation(123456)));
+    }
+
+    public void testAfterFailure() throws Exception {
+        BugInstance bad = bug(new ClassAnnotation("com.example.Foo"),
+                new MethodAnnotation("com.example.Foo", "bar", "V", false));
+        try {
+            bad.getInstanceHash();
+        } catch (RuntimeException e) {
+            // expected; what was hashed so far must not leak into the next hash
+        }
+        checkHash(bug(new ClassAnnotation("com.example.Foo"),
+                new MethodAnnotation("com.example.Foo", "bar", "()V", false)));
+    }
+
+    public void testComputeAll() throws Exception {
+        List<BugInstance> bugs = new ArrayList<BugInstance>();
+        for (int i = 0; i < 5000; i++) {
+            bugs.add(bug(new ClassAnnotation("Foo" + (i % 100)), new IntAnnotation(i)));
+        }
+        InstanceHash.computeAll(bugs, 4);
+        for (BugInstance bug : bugs) {
+            checkHash(bug);
+        }
+    }
+}
@@ -35,11 +35,14 @@ public class JUnitDetectorAdapter implements Detector2 {
 
     private boolean testExecuted;
 
+    private final BugReporter bugReporter;
+
     private static InheritableThreadLocal<JUnitDetectorAdapter> instance = new InheritableThreadLocal<JUnitDetectorAdapter>();
 
     private static InheritableThreadLocal<RunnableWithExceptions> runnableInstance = new InheritableThreadLocal<RunnableWithExceptions>();
 
     public JUnitDetectorAdapter(BugReporter bugReporter) {
+        this.bugReporter = bugReporter;
         instance.set(this);
     }
 
@@ -47,6 +50,13 @@ public class JUnitDetectorAdapter implements Detector2 {
         return instance.get();
     }
 
+    /**
+     * @return the bug reporter of the analysis running the test
+     */
+    public BugReporter getBugReporter() {
+        return bugReporter;
+    }
+
     /**
      * @param runnable
      *            The runnable to set.
@@ -0,0 +1,149 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.Method;
+
+import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.OpcodeStack.JumpInfo;
+import edu.umd.cs.findbugs.OpcodeStack.JumpInfoFactory;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * Checks the jump info computed by OpcodeStack.JumpInfoFactory for a loop, an
+ * exception handler and a value merged on the stack. These are the cases
+ * where seeding it from the StackMapTable frames and stopping after one pass
+ * went wrong.
+ */
+public class OpcodeStackJumpInfoTest extends FindBugsTestCase {
+
+    static class Fixture {
+        int countUp(int n) {
+            int i = 0;
+            while (i < n) {
+                i++;
+            }
+            return i;
+        }
+
+        int handler(InputStream in) {
+            try {
+                return in.read();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        String pick(boolean b, String x, String y) {
+            return String.valueOf(b ? x : y);
+        }
+    }
+
+    private interface JumpInfoCheck {
+        void check(JumpInfo jumpInfo, Method method);
+    }
+
+    private void checkJumpInfo(final String methodName, final JumpInfoCheck check) throws Exception {
+        File codeBase = new File(Fixture.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                IAnalysisCache analysisCache = Global.getAnalysisCache();
+                XClass xclass = analysisCache.getClassAnalysis(XClass.class,
+                        DescriptorFactory.createClassDescriptor(Fixture.class));
+                // Like FindBugs2 does for application classes, so that the
+                // methods resolve
+                AnalysisContext.currentXFactory().intern(xclass);
+                for (XMethod xmethod : xclass.getXMethods()) {
+                    if (xmethod.getName().equals(methodName)) {
+                        MethodDescriptor descriptor = xmethod.getMethodDescriptor();
+                        JumpInfo jumpInfo = analysisCache.getMethodAnalysis(JumpInfo.class, descriptor);
+                        assertNotNull(jumpInfo);
+                        check.check(jumpInfo, analysisCache.getMethodAnalysis(Method.class, descriptor));
+                        return;
+                    }
+                }
+                fail("no method " + methodName);
+            }
+        }, codeBase.getPath());
+    }
+
+    public void testLoopIsIterated() throws Exception {
+        JumpInfoFactory.resetStatistics();
+        checkJumpInfo("countUp", new JumpInfoCheck() {
+            @Override
+            public void check(JumpInfo jumpInfo, Method method) {
+                int targets = 0;
+                for (int pc = jumpInfo.getNextJump(0); pc >= 0; pc = jumpInfo.getNextJump(pc + 1)) {
+                    // i is 0 on entry and 1 after the first iteration, so
+                    // it is no constant at the loop header and the exit
+                    Item i = jumpInfo.jumpEntries.get(pc).get(2);
+                    assertEquals("I", i.getSignature());
+                    assertNull("i at " + pc + " is " + i, i.getConstant());
+                    targets++;
+                }
+                assertEquals(2, targets);
+            }
+        });
+        assertEquals(1, JumpInfoFactory.getMethodsIterated());
+        assertTrue(JumpInfoFactory.getExtraIterations() >= 1);
+    }
+
+    public void testHandlerIsNoJumpTarget() throws Exception {
+        checkJumpInfo("handler", new JumpInfoCheck() {
+            @Override
+            public void check(JumpInfo jumpInfo, Method method) {
+                CodeException[] handlers = method.getCode().getExceptionTable();
+                assertEquals(1, handlers.length);
+                assertFalse(jumpInfo.jumpEntryLocations.get(handlers[0].getHandlerPC()));
+            }
+        });
+    }
+
+    public void testStackAtMergeIsKept() throws Exception {
+        checkJumpInfo("pick", new JumpInfoCheck() {
+            @Override
+            public void check(JumpInfo jumpInfo, Method method) {
+                int withStack = 0;
+                for (int pc = jumpInfo.getNextJump(0); pc >= 0; pc = jumpInfo.getNextJump(pc + 1)) {
+                    List<Item> stack = jumpInfo.jumpStackEntries.get(pc);
+                    if (stack != null) {
+                        assertEquals(1, stack.size());
+                        assertEquals("Ljava/lang/String;", stack.get(0).getSignature());
+                        withStack++;
+                    }
+                }
+                assertEquals(1, withStack);
+            }
+        });
+    }
+}
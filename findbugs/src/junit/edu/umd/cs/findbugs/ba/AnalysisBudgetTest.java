@@ -0,0 +1,158 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.umd.cs.findbugs.FindBugsTestCase;
+import edu.umd.cs.findbugs.JUnitDetectorAdapter;
+import edu.umd.cs.findbugs.ProjectStats;
+import edu.umd.cs.findbugs.RunnableWithExceptions;
+import edu.umd.cs.findbugs.ba.npe.IsNullValueDataflow;
+import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * Runs the dataflow analyses of a method with a loop under different
+ * AnalysisBudgets.
+ */
+public class AnalysisBudgetTest extends FindBugsTestCase {
+
+    static class Fixture {
+        int countNonNull(Object[] a) {
+            int n = 0;
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != null) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    private interface BudgetCheck {
+        void check(AnalysisBudget budget, MethodDescriptor method) throws CheckedAnalysisException;
+    }
+
+    private void checkBudget(final AnalysisBudget budget, final BudgetCheck check) throws Exception {
+        File codeBase = new File(Fixture.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                if (budget != null) {
+                    AnalysisContext.currentAnalysisContext().setAnalysisBudget(budget);
+                }
+                XClass xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class,
+                        DescriptorFactory.createClassDescriptor(Fixture.class));
+                // Like FindBugs2 does for application classes, so that the
+                // methods resolve
+                AnalysisContext.currentXFactory().intern(xclass);
+                for (XMethod xmethod : xclass.getXMethods()) {
+                    if (xmethod.getName().equals("countNonNull")) {
+                        check.check(AnalysisContext.currentAnalysisContext().getAnalysisBudget(), xmethod.getMethodDescriptor());
+                        return;
+                    }
+                }
+                fail("no method countNonNull");
+            }
+        }, codeBase.getPath());
+    }
+
+    /**
+     * @return the start facts of the null pointer analysis of the method, by
+     *         block label
+     */
+    private static Map<Integer, String> getIsNullValueFacts(MethodDescriptor method) throws CheckedAnalysisException {
+        IsNullValueDataflow dataflow = Global.getAnalysisCache().getMethodAnalysis(IsNullValueDataflow.class, method);
+        Map<Integer, String> facts = new TreeMap<Integer, String>();
+        for (Iterator<BasicBlock> i = dataflow.getCFG().blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            facts.put(block.getLabel(), String.valueOf(dataflow.getStartFact(block)));
+        }
+        return facts;
+    }
+
+    public void testExhaustedBudgetStopsDataflow() throws Exception {
+        // Every iteration applies more than two transfer functions
+        checkBudget(new AnalysisBudget(0, 1, 2), new BudgetCheck() {
+            @Override
+            public void check(AnalysisBudget budget, MethodDescriptor method) {
+                try {
+                    Global.getAnalysisCache().getMethodAnalysis(ValueNumberDataflow.class, method);
+                    fail("dataflow not abandoned");
+                } catch (CheckedAnalysisException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("Analysis budget exceeded"));
+                }
+                assertTrue(budget.isDegraded(method));
+                assertEquals(1, budget.getDegradedMethods().size());
+            }
+        });
+    }
+
+    public void testDegradedMethodIsReportedOnce() throws Exception {
+        final List<ProjectStats> stats = new ArrayList<ProjectStats>();
+        // Exceeded, but far from the hard limit
+        checkBudget(new AnalysisBudget(0, 1, 1000000), new BudgetCheck() {
+            @Override
+            public void check(AnalysisBudget budget, MethodDescriptor method) throws CheckedAnalysisException {
+                IAnalysisCache analysisCache = Global.getAnalysisCache();
+                analysisCache.getMethodAnalysis(ValueNumberDataflow.class, method);
+                assertTrue(budget.isDegraded(method));
+                // Charged again by further analyses of the same method
+                analysisCache.getMethodAnalysis(IsNullValueDataflow.class, method);
+                assertEquals(1, budget.getDegradedMethods().size());
+                stats.add(JUnitDetectorAdapter.instance().getBugReporter().getProjectStats());
+            }
+        });
+        assertEquals(1, stats.size());
+        assertEquals("[" + Fixture.class.getName() + ".countNonNull([Ljava/lang/Object;)I]",
+                stats.get(0).getDegradedMethods().toString());
+    }
+
+    public void testBudgetNotExceeded() throws Exception {
+        final List<Map<Integer, String>> facts = new ArrayList<Map<Integer, String>>();
+        checkBudget(null, new BudgetCheck() {
+            @Override
+            public void check(AnalysisBudget budget, MethodDescriptor method) throws CheckedAnalysisException {
+                assertFalse(budget.isEnabled());
+                facts.add(getIsNullValueFacts(method));
+            }
+        });
+        checkBudget(new AnalysisBudget(0, 1000000, 4), new BudgetCheck() {
+            @Override
+            public void check(AnalysisBudget budget, MethodDescriptor method) throws CheckedAnalysisException {
+                facts.add(getIsNullValueFacts(method));
+                assertFalse(budget.isDegraded(method));
+                assertTrue(budget.getDegradedMethods().isEmpty());
+            }
+        });
+        assertEquals(2, facts.size());
+        assertEquals(facts.get(0), facts.get(1));
+    }
+}
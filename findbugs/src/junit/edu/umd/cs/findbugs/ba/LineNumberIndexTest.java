@@ -0,0 +1,70 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba;
+
+import junit.framework.TestCase;
+
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.LineNumberTable;
+
+public class LineNumberIndexTest extends TestCase {
+
+    private static LineNumberTable table(int... pcAndLine) {
+        LineNumber[] entries = new LineNumber[pcAndLine.length / 2];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new LineNumber(pcAndLine[2 * i], pcAndLine[2 * i + 1]);
+        }
+        return new LineNumberTable(0, 2 + 4 * entries.length, entries, null);
+    }
+
+    public void testNoTable() {
+        assertTrue(LineNumberIndex.create(null).isEmpty());
+        assertEquals(-1, LineNumberIndex.create(null).getSourceLine(0));
+        assertTrue(LineNumberIndex.create(table()).isEmpty());
+    }
+
+    public void testSameAsLineNumberTable() {
+        LineNumberTable table = table(0, 10, 4, 11, 9, 13, 20, 12, 31, 15);
+        LineNumberIndex index = LineNumberIndex.create(table);
+        assertFalse(index.isEmpty());
+        for (int pc = 0; pc < 40; pc++) {
+            assertEquals("pc " + pc, table.getSourceLine(pc), index.getSourceLine(pc));
+        }
+    }
+
+    public void testBeforeFirstEntry() {
+        LineNumberIndex index = LineNumberIndex.create(table(3, 7, 8, 9));
+        assertEquals(-1, index.getSourceLine(0));
+        assertEquals(7, index.getSourceLine(3));
+        assertEquals(7, index.getSourceLine(7));
+        assertEquals(9, index.getSourceLine(100));
+    }
+
+    public void testUnsortedTable() {
+        LineNumberIndex index = LineNumberIndex.create(table(20, 30, 0, 10, 10, 20, 10, 25));
+        assertEquals(10, index.getSourceLine(0));
+        assertEquals(10, index.getSourceLine(9));
+        // The first of the entries with the same start offset is used
+        assertEquals(20, index.getSourceLine(10));
+        assertEquals(20, index.getSourceLine(19));
+        assertEquals(30, index.getSourceLine(20));
+    }
+}
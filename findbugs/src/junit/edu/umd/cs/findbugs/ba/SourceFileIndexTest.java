@@ -0,0 +1,149 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SourceFileIndexTest extends TestCase {
+
+    private File root;
+
+    private long anHourAgo;
+
+    @Override
+    protected void setUp() throws Exception {
+        anHourAgo = (System.currentTimeMillis() - 3600 * 1000) / 1000 * 1000;
+        root = File.createTempFile("sources", "");
+        root.delete();
+        root.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    private static void delete(File f) {
+        File[] contents = f.listFiles();
+        if (contents != null) {
+            for (File c : contents) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    private File create(String path) throws IOException {
+        File f = new File(root, path.replace('/', File.separatorChar));
+        f.getParentFile().mkdirs();
+        f.createNewFile();
+        return f;
+    }
+
+    /** Make the directories look unmodified since an hour ago */
+    private void age(File dir) {
+        dir.setLastModified(anHourAgo);
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File c : contents) {
+                if (c.isDirectory()) {
+                    age(c);
+                }
+            }
+        }
+    }
+
+    public void testBuild() throws Exception {
+        create("src/com/example/Foo.java");
+        create("src/com/example/Bar.java");
+        create("test/com/example/Foo.java");
+        create("Top.java");
+        SourceFileIndex index = SourceFileIndex.build(root, null);
+        assertEquals(4, index.size());
+        assertTrue(index.contains("src/com/example/Foo.java"));
+        assertTrue(index.contains("Top.java"));
+        assertFalse(index.contains("src/com/example"));
+        assertFalse(index.contains("com/example/Foo.java"));
+
+        List<String> dirs = index.findDirectoriesContaining("com/example/Foo.java");
+        Collections.sort(dirs);
+        assertEquals(Arrays.asList("src", "test"), dirs);
+        assertEquals(Arrays.asList(""), index.findDirectoriesContaining("Top.java"));
+        assertEquals(Collections.emptyList(), index.findDirectoriesContaining("example/Baz.java"));
+        assertEquals(Collections.emptyList(), index.findDirectoriesContaining("ample/Foo.java"));
+    }
+
+    public void testRefresh() throws Exception {
+        create("src/com/example/Foo.java");
+        create("src/org/example/Baz.java");
+        age(root);
+        SourceFileIndex index = SourceFileIndex.build(root, null);
+
+        create("src/com/example/Bar.java");
+        new File(root, "src/org/example/Baz.java".replace('/', File.separatorChar)).delete();
+        create("src/net/New.java");
+        SourceFileIndex refreshed = SourceFileIndex.build(root, index);
+        assertTrue(refreshed.contains("src/com/example/Foo.java"));
+        assertTrue(refreshed.contains("src/com/example/Bar.java"));
+        assertFalse(refreshed.contains("src/org/example/Baz.java"));
+        assertTrue(refreshed.contains("src/net/New.java"));
+        assertEquals(3, refreshed.size());
+
+        delete(new File(root, "src"));
+        assertEquals(0, SourceFileIndex.build(root, refreshed).size());
+    }
+
+    public void testUnchangedDirectoriesAreReused() throws Exception {
+        File foo = create("src/com/example/Foo.java");
+        age(root);
+        SourceFileIndex index = SourceFileIndex.build(root, null);
+
+        // Only the modification time of the directory is checked
+        foo.delete();
+        age(root);
+        assertTrue(SourceFileIndex.build(root, index).contains("src/com/example/Foo.java"));
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        create("src/com/example/Foo.java");
+        create("src/com/example/Bar.java");
+        SourceFileIndex index = SourceFileIndex.build(root, null);
+        File indexFile = File.createTempFile("sources", ".idx");
+        try {
+            index.write(indexFile);
+            SourceFileIndex loaded = SourceFileIndex.read(indexFile, index.getRootPath());
+            assertNotNull(loaded);
+            assertEquals(index.getRootPath(), loaded.getRootPath());
+            assertEquals(2, loaded.size());
+            assertTrue(loaded.contains("src/com/example/Foo.java"));
+            assertEquals(index.getDirectories(), loaded.getDirectories());
+            assertNull(SourceFileIndex.read(indexFile, index.getRootPath() + "x"));
+        } finally {
+            indexFile.delete();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.ba;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.Project;
+
+/**
+ * Looks up files in an indexed source directory which changes after it was
+ * indexed.
+ */
+public class SourceFinderTest extends TestCase {
+
+    private File root;
+
+    private long anHourAgo;
+
+    @Override
+    protected void setUp() throws Exception {
+        anHourAgo = (System.currentTimeMillis() - 3600 * 1000) / 1000 * 1000;
+        root = File.createTempFile("sources", "");
+        root.delete();
+        root.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    private static void delete(File f) {
+        File[] contents = f.listFiles();
+        if (contents != null) {
+            for (File c : contents) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    private File create(String path) throws IOException {
+        File f = new File(root, path.replace('/', File.separatorChar));
+        f.getParentFile().mkdirs();
+        f.createNewFile();
+        return f;
+    }
+
+    /** Make the directories look unmodified since an hour ago */
+    private void age(File dir) {
+        dir.setLastModified(anHourAgo);
+        File[] contents = dir.listFiles();
+        if (contents != null) {
+            for (File c : contents) {
+                if (c.isDirectory()) {
+                    age(c);
+                }
+            }
+        }
+    }
+
+    private SourceFinder createIndexedSourceFinder() {
+        Project project = new Project();
+        project.addSourceDir(root.getAbsolutePath());
+        return new SourceFinder(project, true);
+    }
+
+    public void testFileAddedAfterIndexing() throws Exception {
+        create("com/example/Foo.java");
+        age(root);
+        SourceFinder finder = createIndexedSourceFinder();
+        assertTrue(finder.hasSourceFile("com.example", "Foo.java"));
+        assertFalse(finder.hasSourceFile("com.example", "Bar.java"));
+
+        create("com/example/Bar.java");
+        assertTrue(finder.hasSourceFile("com.example", "Bar.java"));
+        assertNotNull(finder.findSourceFile("com.example", "Bar.java"));
+    }
+
+    public void testPackageAddedAfterIndexing() throws Exception {
+        create("com/example/Foo.java");
+        age(root);
+        SourceFinder finder = createIndexedSourceFinder();
+        assertFalse(finder.hasSourceFile("org.example.util", "Baz.java"));
+
+        create("org/example/util/Baz.java");
+        assertTrue(finder.hasSourceFile("org.example.util", "Baz.java"));
+        assertTrue(finder.hasSourceFile("com.example", "Foo.java"));
+    }
+
+    public void testMissInUnchangedDirectoryIsTrusted() throws Exception {
+        create("com/example/Foo.java");
+        age(root);
+        SourceFinder finder = createIndexedSourceFinder();
+        assertFalse(finder.hasSourceFile("com.example", "Bar.java"));
+
+        // Only the modification time of the directory is checked
+        create("com/example/Bar.java");
+        age(root);
+        assertFalse(finder.hasSourceFile("com.example", "Bar.java"));
+
+        // Until the directory changes again
+        create("com/example/Baz.java");
+        assertTrue(finder.hasSourceFile("com.example", "Bar.java"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba.jsr305;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.meta.TypeQualifierValidator;
+import javax.annotation.meta.When;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
+
+/**
+ * Tests for the caching and batching of custom type qualifier validators.
+ */
+public class TypeQualifierValueTest extends TestCase {
+
+    @SlashedClassName
+    static class AnnotationTemplate {
+    }
+
+    private static final SlashedClassName ANNOTATION = AnnotationTemplate.class.getAnnotation(SlashedClassName.class);
+
+    /** thrown by {@link CountingValidator} for "fatal" */
+    static class ValidatorFailure extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Validator which records the values it is called for.
+     */
+    static class CountingValidator implements TypeQualifierValidator<SlashedClassName> {
+        final List<Object> calls = new ArrayList<Object>();
+
+        @Override
+        public @Nonnull
+        When forConstantValue(@Nonnull SlashedClassName annotation, Object value) {
+            calls.add(value);
+            if ("bad".equals(value)) {
+                throw new IllegalArgumentException("bad value");
+            }
+            if ("fatal".equals(value)) {
+                throw new ValidatorFailure();
+            }
+            return value instanceof String && ((String) value).indexOf('/') >= 0 ? When.ALWAYS : When.NEVER;
+        }
+    }
+
+    private CountingValidator validator;
+
+    private TypeQualifierValue<SlashedClassName> tqv;
+
+    @Override
+    protected void setUp() throws Exception {
+        IClassFactory classFactory = ClassFactory.instance();
+        Global.setAnalysisCacheForCurrentThread(classFactory.createAnalysisCache(classFactory.createClassPath(),
+                new PrintingBugReporter()));
+        validator = new CountingValidator();
+        tqv = new TypeQualifierValue<SlashedClassName>(ANNOTATION, validator);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Global.removeAnalysisCacheForCurrentThread();
+    }
+
+    public void testCachedResultSkipsValidator() {
+        assertEquals(When.ALWAYS, tqv.validate("java/lang/String"));
+        assertEquals(When.ALWAYS, tqv.validate("java/lang/String"));
+        assertEquals(Arrays.<Object> asList("java/lang/String"), validator.calls);
+
+        Map<Object, When> results = tqv.validateAll(Arrays.asList("java.lang.Object", "java/lang/String",
+                "java.lang.Object"));
+        assertEquals(2, results.size());
+        assertEquals(When.NEVER, results.get("java.lang.Object"));
+        assertEquals(When.ALWAYS, results.get("java/lang/String"));
+        assertEquals(Arrays.<Object> asList("java/lang/String", "java.lang.Object"), validator.calls);
+
+        assertEquals(When.NEVER, tqv.validate("java.lang.Object"));
+        assertEquals(results, tqv.validateAll(Arrays.asList("java/lang/String", "java.lang.Object")));
+        assertEquals(2, validator.calls.size());
+    }
+
+    public void testFailedValidationIsNotCached() {
+        assertEquals(When.UNKNOWN, tqv.validate("bad"));
+        Map<Object, When> results = tqv.validateAll(Arrays.asList("bad", "a/B"));
+        assertEquals(When.UNKNOWN, results.get("bad"));
+        assertEquals(When.ALWAYS, results.get("a/B"));
+        assertEquals(When.UNKNOWN, tqv.validate("bad"));
+        assertEquals(Arrays.<Object> asList("bad", "bad", "a/B", "bad"), validator.calls);
+    }
+
+    public void testBatchThatThrows() {
+        try {
+            tqv.validateAll(Arrays.asList("a/B", "fatal", "c/D"));
+            fail("validator error not propagated");
+        } catch (ValidatorFailure e) {
+            assert true;
+        }
+        assertEquals(Arrays.<Object> asList("a/B", "fatal"), validator.calls);
+
+        // performingValidation has been cleared, so this is not taken for a
+        // recursive validation; nothing of the failed batch was cached
+        validator.calls.clear();
+        assertEquals(When.ALWAYS, tqv.validate("a/B"));
+        assertEquals(When.ALWAYS, tqv.validateAll(Arrays.asList("c/D")).get("c/D"));
+        assertEquals(Arrays.<Object> asList("a/B", "c/D"), validator.calls);
+
+        When[] results = new When[1];
+        Exception[] failures = new Exception[1];
+        ValidationSecurityManager.sandboxedValidation(ANNOTATION, validator, new Object[] { "e/F" }, results, failures);
+        assertEquals(When.ALWAYS, results[0]);
+        assertNull(failures[0]);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the per-thread DescriptorFactory instances.
+ */
+public class DescriptorFactoryTest extends TestCase {
+
+    /**
+     * Runs on its own thread and records the DescriptorFactory it sees.
+     */
+    static class FactoryThread extends Thread {
+        private final DescriptorFactory factoryToUse;
+
+        volatile DescriptorFactory seen;
+
+        volatile boolean seesClass;
+
+        FactoryThread(DescriptorFactory factoryToUse) {
+            this.factoryToUse = factoryToUse;
+        }
+
+        @Override
+        public void run() {
+            if (factoryToUse != null) {
+                DescriptorFactory.setInstanceForCurrentThread(factoryToUse);
+            }
+            seen = DescriptorFactory.instance();
+            seesClass = false;
+            for (ClassDescriptor classDescriptor : seen.getAllClassDescriptors()) {
+                if ("com/example/Seen".equals(classDescriptor.getClassName())) {
+                    seesClass = true;
+                }
+            }
+            DescriptorFactory.clearInstance();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DescriptorFactory.clearInstance();
+    }
+
+    public void testNotInherited() throws Exception {
+        DescriptorFactory factory = DescriptorFactory.instance();
+        ClassDescriptor seen = DescriptorFactory.createClassDescriptor("com/example/Seen");
+
+        FactoryThread thread = new FactoryThread(null);
+        thread.start();
+        thread.join();
+        assertNotNull(thread.seen);
+        assertNotSame(factory, thread.seen);
+        assertFalse("class seen by another analysis leaked into the new thread", thread.seesClass);
+        // Descriptors are still canonical across factories
+        assertSame(seen, thread.seen.getClassDescriptor("com/example/Seen"));
+    }
+
+    public void testSharedWithWorker() throws Exception {
+        DescriptorFactory factory = DescriptorFactory.instance();
+        DescriptorFactory.createClassDescriptor("com/example/Seen");
+
+        FactoryThread thread = new FactoryThread(factory);
+        thread.start();
+        thread.join();
+        assertSame(factory, thread.seen);
+        assertTrue(thread.seesClass);
+
+        // The worker cleared only its own instance
+        assertSame(factory, DescriptorFactory.instance());
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.detect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.DelegatingBugReporter;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorToDetector2Adapter;
+import edu.umd.cs.findbugs.FindBugsTestCase;
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.RunnableWithExceptions;
+import edu.umd.cs.findbugs.ba.BasicBlock;
+import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.jsr305.Analysis;
+import edu.umd.cs.findbugs.ba.jsr305.BackwardTypeQualifierDataflowFactory;
+import edu.umd.cs.findbugs.ba.jsr305.DirectlyRelevantTypeQualifiersDatabase;
+import edu.umd.cs.findbugs.ba.jsr305.ForwardTypeQualifierDataflowFactory;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierDataflow;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierDataflowFactory;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValueSet;
+import edu.umd.cs.findbugs.ba.vna.ValueNumber;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * Checks that computing the type qualifier dataflows of a method in one pass
+ * (findbugs.typeQualifiers.combined) gives the same facts and warnings as
+ * computing them one type qualifier at a time. The fixture classes are
+ * compiled from the sources below, so they use several type qualifiers in
+ * the same methods, with branches, loops and exception handlers.
+ */
+public class CheckTypeQualifiersCombinedDataflowTest extends FindBugsTestCase {
+
+    private static final String FIXTURE_PACKAGE = "tqfixture";
+
+    private static final String[][] FIXTURE_SOURCES = {
+        { "Foo", //
+            "package tqfixture;", //
+            "import java.lang.annotation.*;", //
+            "import javax.annotation.meta.*;", //
+            "@TypeQualifier @Retention(RetentionPolicy.RUNTIME)", //
+            "public @interface Foo {", //
+            "    When when() default When.ALWAYS;", //
+            "}" },
+        { "Bar", //
+            "package tqfixture;", //
+            "import java.lang.annotation.*;", //
+            "import javax.annotation.meta.*;", //
+            "@TypeQualifier @Retention(RetentionPolicy.RUNTIME)", //
+            "public @interface Bar {", //
+            "    When when() default When.ALWAYS;", //
+            "}" },
+        { "Color", //
+            "package tqfixture;", //
+            "import java.lang.annotation.*;", //
+            "import javax.annotation.meta.*;", //
+            "@TypeQualifier @Retention(RetentionPolicy.RUNTIME)", //
+            "public @interface Color {", //
+            "    enum Value { RED, BLUE }", //
+            "    @Exclusive Value value();", //
+            "    When when() default When.ALWAYS;", //
+            "}" },
+        { "Checks", //
+            "package tqfixture;", //
+            "import javax.annotation.meta.When;", //
+            "public class Checks {", //
+            "    @Foo Object foo;", //
+            "    @Foo(when = When.NEVER) Object notFoo;", //
+            "    @Bar Object bar;", //
+            "    @Color(Color.Value.RED) Object red;", //
+            "    Object unknown;", //
+            "    boolean b;", //
+            "    @Foo Object returnsFoo() { return foo; }", //
+            "    @Bar(when = When.NEVER) Object returnsNotBar() { return unknown; }", //
+            "    void requiresFoo(@Foo Object x) { }", //
+            "    void requiresNotFoo(@Foo(when = When.NEVER) Object x) { }", //
+            "    void requiresBar(@Bar Object x) { }", //
+            "    void requiresBlue(@Color(Color.Value.BLUE) Object x) { }", //
+            "    void fooAndBar(@Foo Object f, @Bar(when = When.NEVER) Object nb) {", //
+            "        requiresNotFoo(f);", //
+            "        requiresBar(nb);", //
+            "    }", //
+            "    void merged(@Foo(when = When.NEVER) Object nf, @Bar(when = When.NEVER) Object nb) {", //
+            "        Object x = b ? nf : nb;", //
+            "        requiresFoo(b ? nf : returnsFoo());", //
+            "        requiresBar(x);", //
+            "    }", //
+            "    void loop(@Foo(when = When.NEVER) Object nf, @Bar Object g, int n) {", //
+            "        Object x = unknown;", //
+            "        Object y = nf;", //
+            "        for (int i = 0; i < n; i++) {", //
+            "            if (b) {", //
+            "                requiresFoo(x);", //
+            "            }", //
+            "            x = y;", //
+            "            y = g;", //
+            "        }", //
+            "        requiresBar(x);", //
+            "    }", //
+            "    void handler(@Bar(when = When.NEVER) Object nb) {", //
+            "        Object x = foo;", //
+            "        try {", //
+            "            x = returnsNotBar();", //
+            "            requiresFoo(notFoo);", //
+            "        } catch (RuntimeException e) {", //
+            "            requiresBar(nb);", //
+            "        }", //
+            "        bar = x;", //
+            "    }", //
+            "    void colors(@Color(Color.Value.BLUE) Object blue) {", //
+            "        red = blue;", //
+            "        requiresBlue(red);", //
+            "        requiresFoo(blue);", //
+            "    }", //
+            "    @Foo Object returnsNotFoo() {", //
+            "        return b ? notFoo : foo;", //
+            "    }", //
+            "}" },
+    };
+
+    private File fixtureClasses;
+
+    private List<ClassDescriptor> fixtureClassDescriptors;
+
+    @Override
+    protected void setUp() throws Exception {
+        fixtureClasses = File.createTempFile("tqfixture", null);
+        if (!fixtureClasses.delete() || !fixtureClasses.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+        File sourceDir = new File(fixtureClasses, FIXTURE_PACKAGE);
+        if (!sourceDir.mkdir()) {
+            throw new IOException("Could not create " + sourceDir);
+        }
+        List<String> args = new ArrayList<String>(Arrays.asList("-g", "-nowarn", "-d", fixtureClasses.getPath(), "-cp",
+                codeBaseOf(Nonnull.class).getPath()));
+        fixtureClassDescriptors = new ArrayList<ClassDescriptor>();
+        for (String[] source : FIXTURE_SOURCES) {
+            File sourceFile = new File(sourceDir, source[0] + ".java");
+            Writer out = new OutputStreamWriter(new FileOutputStream(sourceFile), "UTF-8");
+            try {
+                for (int i = 1; i < source.length; i++) {
+                    out.write(source[i]);
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+            args.add(sourceFile.getPath());
+            fixtureClassDescriptors.add(DescriptorFactory.createClassDescriptor(FIXTURE_PACKAGE + "/" + source[0]));
+        }
+        fixtureClassDescriptors.add(DescriptorFactory.createClassDescriptor(FIXTURE_PACKAGE + "/Color$Value"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("the tests must run on a JDK to compile the fixture classes", compiler);
+        assertEquals("compiling the fixture classes failed", 0,
+                compiler.run(null, null, null, args.toArray(new String[args.size()])));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(fixtureClasses);
+    }
+
+    private static void delete(File file) {
+        File[] contents = file.listFiles();
+        if (contents != null) {
+            for (File f : contents) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static File codeBaseOf(Class<?> c) throws Exception {
+        return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    public void testSameFacts() throws Exception {
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                noteDirectlyRelevantTypeQualifiers();
+                int combinedMethods = 0;
+                IAnalysisCache analysisCache = Global.getAnalysisCache();
+                for (ClassDescriptor classDescriptor : fixtureClassDescriptors) {
+                    XClass xclass = analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+                    for (XMethod xmethod : xclass.getXMethods()) {
+                        if (!xmethod.isAbstract() && !xmethod.isNative() && compareFacts(xmethod.getMethodDescriptor())) {
+                            combinedMethods++;
+                        }
+                    }
+                }
+                assertTrue("no method with several type qualifiers", combinedMethods > 0);
+            }
+        }, fixtureClasses.getPath(), codeBaseOf(Nonnull.class).getPath());
+    }
+
+    /**
+     * Run NoteDirectlyRelevantTypeQualifiers on the fixture classes, which
+     * also makes their type qualifiers known.
+     */
+    private void noteDirectlyRelevantTypeQualifiers() throws CheckedAnalysisException {
+        Global.getAnalysisCache().eagerlyPutDatabase(DirectlyRelevantTypeQualifiersDatabase.class,
+                new DirectlyRelevantTypeQualifiersDatabase());
+        Detector2 detector = new DetectorToDetector2Adapter(new NoteDirectlyRelevantTypeQualifiers(new PrintingBugReporter()));
+        for (ClassDescriptor classDescriptor : fixtureClassDescriptors) {
+            detector.visitClass(classDescriptor);
+        }
+        detector.finishPass();
+    }
+
+    /**
+     * Compare the dataflows of the relevant and the known type qualifiers of
+     * a method, computed in one pass and one by one.
+     *
+     * @return true if there were several type qualifiers, so that the
+     *         combined analysis was used
+     */
+    private static boolean compareFacts(MethodDescriptor methodDescriptor) throws CheckedAnalysisException {
+        CFG cfg = Global.getAnalysisCache().getMethodAnalysis(CFG.class, methodDescriptor);
+        Set<TypeQualifierValue<?>> qualifiers = new LinkedHashSet<TypeQualifierValue<?>>(
+                Analysis.getRelevantTypeQualifiers(methodDescriptor, cfg));
+        qualifiers.addAll(TypeQualifierValue.getAllKnownTypeQualifiers());
+        if (qualifiers.size() < 2) {
+            return false;
+        }
+
+        ForwardTypeQualifierDataflowFactory forwardCombined = new ForwardTypeQualifierDataflowFactory(methodDescriptor);
+        forwardCombined.prepareDataflows(qualifiers);
+        ForwardTypeQualifierDataflowFactory forwardSeparate = new ForwardTypeQualifierDataflowFactory(methodDescriptor);
+        BackwardTypeQualifierDataflowFactory backwardCombined = new BackwardTypeQualifierDataflowFactory(methodDescriptor);
+        backwardCombined.prepareDataflows(qualifiers);
+        BackwardTypeQualifierDataflowFactory backwardSeparate = new BackwardTypeQualifierDataflowFactory(methodDescriptor);
+
+        for (TypeQualifierValue<?> qualifier : qualifiers) {
+            String where = methodDescriptor + " " + qualifier;
+            compareDataflows("forward " + where, cfg, qualifier, forwardCombined, forwardSeparate);
+            compareDataflows("backward " + where, cfg, qualifier, backwardCombined, backwardSeparate);
+        }
+        return true;
+    }
+
+    private static <DataflowType extends TypeQualifierDataflow<?>> void compareDataflows(String where, CFG cfg,
+            TypeQualifierValue<?> qualifier, TypeQualifierDataflowFactory<?, DataflowType> combinedFactory,
+            TypeQualifierDataflowFactory<?, DataflowType> separateFactory) {
+        DataflowType combined;
+        DataflowType separate;
+        try {
+            separate = separateFactory.getDataflow(qualifier);
+        } catch (CheckedAnalysisException e) {
+            try {
+                combinedFactory.getDataflow(qualifier);
+                fail(where + ": only the separate dataflow failed: " + e);
+            } catch (CheckedAnalysisException e2) {
+                return;
+            }
+            return;
+        }
+        try {
+            combined = combinedFactory.getDataflow(qualifier);
+        } catch (CheckedAnalysisException e) {
+            throw new AssertionError(where + ": only the combined dataflow failed: " + e);
+        }
+        // A precomputed dataflow was never executed on its own
+        assertEquals(where + ": the combined analysis was not used", 0, combined.getNumIterations());
+
+        for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            assertSameFact(where + " start of " + block, combined.getStartFact(block), separate.getStartFact(block));
+            assertSameFact(where + " result of " + block, combined.getResultFact(block), separate.getResultFact(block));
+        }
+    }
+
+    private static void assertSameFact(String where, TypeQualifierValueSet combined, TypeQualifierValueSet separate) {
+        assertEquals(where, separate, combined);
+        assertEquals(where, separate.toString(), combined.toString());
+        if (separate.isValid()) {
+            for (ValueNumber vn : separate.getValueNumbers()) {
+                assertEquals(where + " always " + vn, separate.getWhereAlways(vn), combined.getWhereAlways(vn));
+                assertEquals(where + " never " + vn, separate.getWhereNever(vn), combined.getWhereNever(vn));
+            }
+        }
+    }
+
+    public void testSameWarnings() throws Exception {
+        List<String> separate = runCheckTypeQualifiers(false);
+        List<String> combined = runCheckTypeQualifiers(true);
+        for (String type : new String[] { "TQ_ALWAYS_VALUE_USED_WHERE_NEVER_REQUIRED",
+                "TQ_NEVER_VALUE_USED_WHERE_ALWAYS_REQUIRED" }) {
+            assertTrue("no " + type + " in " + separate, separate.toString().contains(type));
+        }
+        assertEquals(separate, combined);
+    }
+
+    /**
+     * Run CheckTypeQualifiers on the fixture classes, in a fresh analysis
+     * cache so that no dataflow is shared with the other run.
+     *
+     * @return the warnings and errors, sorted
+     */
+    private List<String> runCheckTypeQualifiers(final boolean combinedDataflow) throws Exception {
+        final List<String> result = new ArrayList<String>();
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                noteDirectlyRelevantTypeQualifiers();
+                BugReporter bugReporter = new DelegatingBugReporter(new PrintingBugReporter()) {
+                    @Override
+                    public void reportBug(@Nonnull BugInstance bugInstance) {
+                        result.add(bugInstance.getInstanceKey() + " " + bugInstance.getPrimarySourceLineAnnotation() + " "
+                                + bugInstance.getPriority());
+                    }
+
+                    @Override
+                    public void logError(String message, Throwable e) {
+                        result.add("error " + message);
+                    }
+
+                    @Override
+                    public void logError(String message) {
+                        result.add("error " + message);
+                    }
+                };
+                CheckTypeQualifiers detector = new CheckTypeQualifiers(bugReporter, combinedDataflow);
+                for (ClassDescriptor classDescriptor : fixtureClassDescriptors) {
+                    detector.visitClass(classDescriptor);
+                }
+                detector.finishPass();
+            }
+        }, fixtureClasses.getPath(), codeBaseOf(Nonnull.class).getPath());
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+
+public class CompiledFilterTest {
+
+    @Test
+    public void literalPrefix() {
+        assertEquals("com.foo.", CompiledFilter.getLiteralPrefix("com\\.foo\\..*"));
+        assertEquals("com.fo", CompiledFilter.getLiteralPrefix("com\\.foo?"));
+        assertEquals("com", CompiledFilter.getLiteralPrefix("com\\d+"));
+        assertEquals("com", CompiledFilter.getLiteralPrefix("com[.]foo"));
+        assertEquals("", CompiledFilter.getLiteralPrefix("com\\.foo|org\\.bar"));
+        assertEquals("", CompiledFilter.getLiteralPrefix("(?i)com"));
+        assertEquals("", CompiledFilter.getLiteralPrefix(".*Test"));
+    }
+
+    @Test
+    public void matchesLikeFilter() {
+        Filter filter = new Filter();
+        filter.addChild(match(new ClassMatcher("com.foo.Bar"), new MethodMatcher("run")));
+        filter.addChild(match(new ClassMatcher("~com\\.baz\\..*")));
+        filter.addChild(match(new ClassMatcher("~.*Test")));
+        Matcher disabled = match(new ClassMatcher("com.foo.Disabled"));
+        filter.addChild(disabled);
+        filter.disable(disabled);
+        CompiledFilter compiledFilter = new CompiledFilter(filter);
+
+        assertEquals(1, compiledFilter.getNumUnindexedRules());
+        String[] classes = { "com.foo.Bar", "com.foo.Baz", "com.baz.Qux", "com.bazz.Qux", "com.foo.BarTest",
+                "com.foo.Disabled" };
+        for (String className : classes) {
+            for (String methodName : new String[] { "run", "stop" }) {
+                BugInstance bug = new BugInstance("UUF_UNUSED_FIELD", 0).addClass(className).addMethod(className,
+                        methodName, "()V", false);
+                assertEquals(className + "." + methodName, filter.match(bug), compiledFilter.match(bug));
+            }
+        }
+    }
+
+    private static Matcher match(Matcher... children) {
+        AndMatcher result = new AndMatcher();
+        for (Matcher child : children) {
+            result.addChild(child);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FilterExclusionsTest {
+
+    @Test
+    public void excludesClassesOfClassOnlyRules() {
+        Filter filter = new Filter();
+        filter.addChild(match(new ClassMatcher("com.foo.Generated")));
+        OrMatcher or = new OrMatcher();
+        or.addChild(new ClassMatcher("~com\\.gen\\..*"));
+        or.addChild(new MethodMatcher("run"));
+        filter.addChild(match(or));
+        filter.addChild(match(new ClassMatcher("com.foo.Bar"), new MethodMatcher("run")));
+        filter.addChild(match(new ClassMatcher("com.foo.Role", "CLASS_REFTYPE")));
+        Matcher disabled = match(new ClassMatcher("com.foo.Disabled"));
+        filter.addChild(disabled);
+        filter.disable(disabled);
+
+        FilterExclusions exclusions = new FilterExclusions();
+        exclusions.addExcludeFilter(filter);
+
+        assertTrue(exclusions.excludesClass("com.foo.Generated"));
+        assertTrue(exclusions.excludesClass("com.gen.Parser$1"));
+        assertFalse(exclusions.excludesClass("com.foo.Bar"));
+        assertFalse(exclusions.excludesClass("com.foo.Role"));
+        assertFalse(exclusions.excludesClass("com.foo.Disabled"));
+        assertFalse(exclusions.excludesClass("com.generated.Parser"));
+    }
+
+    private static Matcher match(Matcher... children) {
+        AndMatcher result = new AndMatcher();
+        for (Matcher child : children) {
+            result.addChild(child);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.plan;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.util.MultiMap;
+import edu.umd.cs.findbugs.util.TopologicalSort.OutEdges;
+
+public class ClassScheduleTest extends TestCase {
+
+    private final MultiMap<ClassDescriptor, ClassDescriptor> calls = new MultiMap<ClassDescriptor, ClassDescriptor>(
+            java.util.LinkedList.class);
+
+    private final OutEdges<ClassDescriptor> outEdges = new OutEdges<ClassDescriptor>() {
+        @Override
+        public Collection<ClassDescriptor> getOutEdges(ClassDescriptor e) {
+            return calls.get(e);
+        }
+    };
+
+    private static ClassDescriptor c(String name) {
+        return DescriptorFactory.createClassDescriptor("test/" + name);
+    }
+
+    public void testLevels() {
+        calls.add(c("A"), c("B"));
+        calls.add(c("C"), c("B"));
+        calls.add(c("B"), c("D"));
+        calls.add(c("A"), c("Unknown"));
+
+        ClassSchedule schedule = new ClassSchedule(Arrays.asList(c("A"), c("B"), c("C"), c("D")), outEdges);
+        assertEquals(4, schedule.getNumComponents());
+        List<List<ClassSchedule.Component>> levels = schedule.getLevels();
+        assertEquals(3, levels.size());
+        assertEquals(Arrays.asList(c("D")), levels.get(0).get(0).getClasses());
+        assertEquals(Arrays.asList(c("B")), levels.get(1).get(0).getClasses());
+        assertEquals(2, levels.get(2).size());
+        assertEquals(Arrays.asList(c("D"), c("B"), c("A"), c("C")), schedule.getEvaluationOrder());
+    }
+
+    public void testGroupByCallee() {
+        calls.add(c("A"), c("Y"));
+        calls.add(c("B"), c("X"));
+        calls.add(c("C"), c("Y"));
+        calls.add(c("D"), c("X"));
+        calls.add(c("E"), c("X"));
+
+        ClassSchedule schedule = new ClassSchedule(Arrays.asList(c("A"), c("B"), c("C"), c("D"), c("E"), c("X"),
+                c("Y")), outEdges);
+        List<ClassSchedule.Component> callers = schedule.getLevels().get(1);
+        assertEquals(5, callers.size());
+        assertEquals(c("X"), callers.get(0).getGroupKey());
+        assertEquals(c("X"), callers.get(1).getGroupKey());
+        assertEquals(c("X"), callers.get(2).getGroupKey());
+        assertEquals(c("Y"), callers.get(3).getGroupKey());
+        assertEquals(c("Y"), callers.get(4).getGroupKey());
+    }
+}
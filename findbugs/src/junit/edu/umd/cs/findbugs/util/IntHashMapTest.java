@@ -0,0 +1,59 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import junit.framework.TestCase;
+
+public class IntHashMapTest extends TestCase {
+
+    public void testPutAndGet() {
+        IntHashMap<String> map = new IntHashMap<String>();
+        for (int i = 0; i < 1000; i += 3) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(334, map.size());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 == 0) {
+                assertEquals("v" + i, map.get(i));
+            } else {
+                assertNull(map.get(i));
+                assertFalse(map.containsKey(i));
+            }
+        }
+        assertEquals("v3", map.put(3, "x"));
+        assertEquals("x", map.get(3));
+        assertEquals(334, map.size());
+    }
+
+    public void testCopyAndClear() {
+        IntHashMap<String> map = new IntHashMap<String>();
+        map.put(-7, "a");
+        map.put(65535, "b");
+        IntHashMap<String> copy = new IntHashMap<String>(map);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-7));
+        assertEquals("a", copy.get(-7));
+        assertEquals("b", copy.get(65535));
+        map.put(1, "c");
+        assertEquals(1, map.size());
+        assertNull(copy.get(1));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import junit.framework.TestCase;
+
+public class WeakInternerTest extends TestCase {
+
+    public void testIntern() {
+        WeakInterner<String> interner = new WeakInterner<String>();
+        String a = new String("java/lang/Object");
+        String b = new String("java/lang/Object");
+        assertSame(a, interner.intern(a));
+        assertSame(a, interner.intern(b));
+        assertSame(a, interner.probe(b));
+        assertNull(interner.probe("java/lang/String"));
+        assertEquals(1, interner.size());
+        assertEquals(1, interner.getHits());
+        assertEquals(1, interner.getMisses());
+    }
+
+    public void testConcurrentIntern() throws InterruptedException {
+        final WeakInterner<String> interner = new WeakInterner<String>(4);
+        final String[][] results = new String[8][500];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            final String[] result = results[t];
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = interner.intern(new String("name" + i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int i = 0; i < results[0].length; i++) {
+            for (int t = 1; t < results.length; t++) {
+                assertSame(results[0][i], results[t][i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,987 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.visitclass;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantDouble;
+import org.apache.bcel.classfile.ConstantFieldref;
+import org.apache.bcel.classfile.ConstantFloat;
+import org.apache.bcel.classfile.ConstantInteger;
+import org.apache.bcel.classfile.ConstantInterfaceMethodref;
+import org.apache.bcel.classfile.ConstantInvokeDynamic;
+import org.apache.bcel.classfile.ConstantLong;
+import org.apache.bcel.classfile.ConstantMethodref;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantString;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.FindBugsTestCase;
+import edu.umd.cs.findbugs.RunnableWithExceptions;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+
+/**
+ * Tests for DecodedCode, checking that DismantleBytecode visitors see the
+ * same instructions, operands and callbacks as with the stream based decoder
+ * DismantleBytecode used before the decoding was shared.
+ */
+public class DecodedCodeTest extends FindBugsTestCase implements Constants2 {
+
+    private static final String FIXTURE = "DecodedCodeFixture";
+
+    /** Number of string constants needed to push later constants past index 255 */
+    private static final int NUM_FILLER_STRINGS = 300;
+
+    private static final int INVALID_OFFSET = Integer.MIN_VALUE;
+
+    /**
+     * What a visitor sees of one instruction.
+     */
+    static class InstructionState {
+        int pc;
+
+        int nextPC;
+
+        int opcode;
+
+        int prevOpcode;
+
+        boolean wide;
+
+        boolean registerLoad;
+
+        boolean registerStore;
+
+        boolean refFieldIsStatic;
+
+        int register = -1;
+
+        int intConstant;
+
+        long longConstant;
+
+        int branchOffset = INVALID_OFFSET;
+
+        int branchTarget = INVALID_OFFSET;
+
+        int branchFallThrough = INVALID_OFFSET;
+
+        int defaultSwitchOffset = INVALID_OFFSET;
+
+        int[] switchOffsets;
+
+        int[] switchLabels;
+
+        Constant constant;
+
+        String classOperand;
+
+        String nameOperand;
+
+        String sigOperand;
+
+        String stringOperand;
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder();
+            buf.append(pc).append(' ').append(OPCODE_NAMES[opcode]);
+            buf.append(" next=").append(nextPC).append(" prev=").append(prevOpcode);
+            buf.append(" wide=").append(wide).append(" load=").append(registerLoad).append(" store=").append(registerStore);
+            buf.append(" static=").append(refFieldIsStatic).append(" register=").append(register);
+            // the accessors of the constants assert that the instruction has one
+            if (opcode != LDC || constant instanceof ConstantInteger) {
+                buf.append(" int=").append(intConstant);
+            }
+            if (opcode != LDC2_W || constant instanceof ConstantLong) {
+                buf.append(" long=").append(longConstant);
+            }
+            buf.append(" branch=").append(branchOffset).append('/').append(branchTarget).append('/').append(branchFallThrough);
+            buf.append(" switch=").append(defaultSwitchOffset).append(Arrays.toString(switchOffsets))
+            .append(Arrays.toString(switchLabels));
+            buf.append(" constant=").append(constant);
+            buf.append(" operands=").append(classOperand).append(',').append(nameOperand).append(',').append(sigOperand)
+            .append(',').append(stringOperand);
+            return buf.toString();
+        }
+    }
+
+    /**
+     * Detector recording what it sees of each method: the state of each
+     * instruction, followed by the callbacks made for it.
+     */
+    static class Recorder extends BytecodeScanningDetector {
+        final Map<String, List<String>> transcripts = new LinkedHashMap<String, List<String>>();
+
+        List<String> current;
+
+        boolean firstInstruction;
+
+        @Override
+        public void visit(Method obj) {
+            current = new ArrayList<String>();
+            transcripts.put(obj.getName() + obj.getSignature(), current);
+        }
+
+        @Override
+        public void visit(Code obj) {
+            firstInstruction = true;
+            super.visit(obj);
+        }
+
+        @Override
+        public void sawOpcode(int seen) {
+            InstructionState s = new InstructionState();
+            s.pc = getPC();
+            s.nextPC = getNextPC();
+            s.opcode = seen;
+            s.prevOpcode = firstInstruction ? -1 : getPrevOpcode(1);
+            firstInstruction = false;
+            s.wide = isWideOpcode();
+            s.registerLoad = isRegisterLoad();
+            s.registerStore = isRegisterStore();
+            s.refFieldIsStatic = getRefFieldIsStatic();
+            try {
+                s.constant = getConstantRefOperand();
+            } catch (IllegalStateException e) {
+                // no constant operand
+            }
+            try {
+                s.register = getRegisterOperand();
+            } catch (IllegalStateException e) {
+                // no register operand
+            }
+            if (seen != LDC || s.constant instanceof ConstantInteger) {
+                s.intConstant = getIntConstant();
+            }
+            if (seen != LDC2_W || s.constant instanceof ConstantLong) {
+                s.longConstant = getLongConstant();
+            }
+            try {
+                s.branchOffset = getBranchOffset();
+                s.branchTarget = getBranchTarget();
+                s.branchFallThrough = getBranchFallThrough();
+            } catch (IllegalStateException e) {
+                // not a branch, or a switch
+            }
+            try {
+                s.defaultSwitchOffset = getDefaultSwitchOffset();
+                s.switchOffsets = getSwitchOffsets();
+                s.switchLabels = getSwitchLabels();
+            } catch (IllegalStateException e) {
+                // not a switch
+            }
+            try {
+                s.classOperand = getClassConstantOperand();
+            } catch (IllegalStateException e) {
+                // no class operand
+            }
+            try {
+                s.nameOperand = getNameConstantOperand();
+            } catch (IllegalStateException e) {
+                // no name operand
+            }
+            try {
+                s.sigOperand = getSigConstantOperand();
+            } catch (IllegalStateException e) {
+                // no signature operand
+            }
+            try {
+                s.stringOperand = getStringConstantOperand();
+            } catch (IllegalStateException e) {
+                // no string operand
+            }
+            current.add(s.toString());
+        }
+
+        @Override
+        public void sawBranchTo(int targetPC) {
+            current.add("branchTo " + targetPC);
+        }
+
+        @Override
+        public void sawRegister(int r) {
+            current.add("register " + r);
+        }
+
+        @Override
+        public void sawInt(int seen) {
+            current.add("int " + seen);
+        }
+
+        @Override
+        public void sawLong(long seen) {
+            current.add("long " + seen);
+        }
+
+        @Override
+        public void sawFloat(float seen) {
+            current.add("float " + seen);
+        }
+
+        @Override
+        public void sawDouble(double seen) {
+            current.add("double " + seen);
+        }
+
+        @Override
+        public void sawString(String seen) {
+            current.add("string " + seen);
+        }
+
+        @Override
+        public void sawField() {
+            current.add("field");
+        }
+
+        @Override
+        public void sawMethod() {
+            current.add("method");
+        }
+
+        @Override
+        public void sawIMethod() {
+            current.add("imethod");
+        }
+
+        @Override
+        public void sawClass() {
+            current.add("class");
+        }
+    }
+
+    /**
+     * The stream based decoding loop of DismantleBytecode.visit(Code) before
+     * DecodedCode, producing the same transcript as a {@link Recorder}. Like
+     * a DismantleBytecode, it keeps the last constants seen from one method
+     * to the next, so it must decode the methods of a class in the order
+     * they are visited.
+     */
+    static class LegacyDecoder {
+        private final ConstantPool cp;
+
+        private final List<String> transcript = new ArrayList<String>();
+
+        private int prevOpcode;
+
+        private int intConstant;
+
+        private long longConstant;
+
+        private float floatConstant;
+
+        private double doubleConstant;
+
+        LegacyDecoder(ConstantPool cp) {
+            this.cp = cp;
+        }
+
+        private String getStringFromIndex(int i) {
+            return ((ConstantUtf8) cp.getConstant(i)).getBytes();
+        }
+
+        List<String> decode(Code obj) throws IOException {
+            byte[] codeBytes = obj.getCode();
+            DataInputStream byteStream = new DataInputStream(new ByteArrayInputStream(codeBytes));
+            transcript.clear();
+            prevOpcode = -1;
+            try {
+                for (int i = 0; i < codeBytes.length;) {
+                    i = decodeInstruction(byteStream, i);
+                }
+            } catch (EOFException e) {
+                // truncated instruction: the instructions before it have
+                // been visited
+            }
+            return new ArrayList<String>(transcript);
+        }
+
+        private int decodeInstruction(DataInputStream byteStream, int pc) throws IOException {
+            InstructionState s = new InstructionState();
+            int switchLow = 1000000;
+            int switchHigh = -1000000;
+            int i = pc;
+            s.pc = pc;
+            int opcode = byteStream.readUnsignedByte();
+            i++;
+            int byteStreamArgCount = NO_OF_OPERANDS[opcode];
+            if (byteStreamArgCount == UNPREDICTABLE) {
+                if (opcode == LOOKUPSWITCH || opcode == TABLESWITCH) {
+                    int pad = 4 - (i & 3);
+                    if (pad == 4) {
+                        pad = 0;
+                    }
+                    byteStream.readFully(new byte[pad]);
+                    i += pad;
+                    s.defaultSwitchOffset = byteStream.readInt();
+                    s.branchOffset = s.defaultSwitchOffset;
+                    s.branchTarget = s.branchOffset + pc;
+                    i += 4;
+                    int npairs;
+                    if (opcode == LOOKUPSWITCH) {
+                        npairs = byteStream.readInt();
+                        i += 4;
+                    } else {
+                        switchLow = byteStream.readInt();
+                        i += 4;
+                        switchHigh = byteStream.readInt();
+                        i += 4;
+                        npairs = switchHigh - switchLow + 1;
+                    }
+                    s.switchOffsets = new int[npairs];
+                    s.switchLabels = new int[npairs];
+                    for (int o = 0; o < npairs; o++) {
+                        if (opcode == LOOKUPSWITCH) {
+                            s.switchLabels[o] = byteStream.readInt();
+                            i += 4;
+                        } else {
+                            s.switchLabels[o] = o + switchLow;
+                        }
+                        s.switchOffsets[o] = byteStream.readInt();
+                        i += 4;
+                    }
+                    sortByOffset(s.switchOffsets, s.switchLabels);
+                } else if (opcode == WIDE) {
+                    s.wide = true;
+                    opcode = byteStream.readUnsignedByte();
+                    i++;
+                    s.register = byteStream.readUnsignedShort();
+                    i += 2;
+                    if (opcode == IINC) {
+                        intConstant = byteStream.readShort();
+                        i += 2;
+                    }
+                } else {
+                    throw new IllegalStateException("bad unpredicatable bytecode " + opcode);
+                }
+            } else {
+                for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
+                    int v;
+                    int t = TYPE_OF_OPERANDS[opcode][k];
+                    int m = DismantleBytecode.MEANING_OF_OPERANDS[opcode][k];
+                    boolean unsigned = (m == DismantleBytecode.M_CP || m == DismantleBytecode.M_R || m == DismantleBytecode.M_UINT);
+                    switch (t) {
+                    case T_BYTE:
+                        v = unsigned ? byteStream.readUnsignedByte() : byteStream.readByte();
+                        i++;
+                        break;
+                    case T_SHORT:
+                        v = unsigned ? byteStream.readUnsignedShort() : byteStream.readShort();
+                        i += 2;
+                        break;
+                    case T_INT:
+                        v = byteStream.readInt();
+                        i += 4;
+                        break;
+                    default:
+                        throw new IllegalStateException();
+                    }
+                    switch (m) {
+                    case DismantleBytecode.M_BR:
+                        s.branchOffset = v;
+                        s.branchTarget = v + pc;
+                        s.branchFallThrough = i;
+                        break;
+                    case DismantleBytecode.M_CP:
+                        resolve(s, v);
+                        break;
+                    case DismantleBytecode.M_R:
+                        s.register = v;
+                        break;
+                    case DismantleBytecode.M_UINT:
+                    case DismantleBytecode.M_INT:
+                        intConstant = v;
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+            if (opcode == IINC) {
+                s.registerLoad = true;
+                s.registerStore = true;
+            } else if (opcode >= ILOAD_0 && opcode <= ALOAD_3) {
+                s.register = (opcode - ILOAD_0) & 3;
+                s.registerLoad = true;
+            } else if (opcode >= ISTORE_0 && opcode <= ASTORE_3) {
+                s.register = (opcode - ISTORE_0) & 3;
+                s.registerStore = true;
+            } else if (opcode >= ILOAD && opcode <= ALOAD) {
+                s.registerLoad = true;
+            } else if (opcode >= ISTORE && opcode <= ASTORE) {
+                s.registerStore = true;
+            }
+            s.refFieldIsStatic = opcode == GETSTATIC || opcode == PUTSTATIC;
+            s.opcode = opcode;
+            s.prevOpcode = prevOpcode;
+            prevOpcode = opcode;
+            s.nextPC = i;
+            s.intConstant = intConstant;
+            s.longConstant = longConstant;
+            transcript.add(s.toString());
+
+            if (opcode == TABLESWITCH) {
+                transcript.add("int " + switchLow);
+                transcript.add("int " + switchHigh);
+                for (int o = 0; o <= switchHigh - switchLow; o++) {
+                    transcript.add("branchTo " + (s.switchOffsets[o] + pc));
+                }
+                transcript.add("branchTo " + (s.defaultSwitchOffset + pc));
+            } else if (opcode == LOOKUPSWITCH) {
+                transcript.add("int " + s.switchOffsets.length);
+                for (int o = 0; o < s.switchOffsets.length; o++) {
+                    transcript.add("branchTo " + (s.switchOffsets[o] + pc));
+                    transcript.add("int " + s.switchLabels[o]);
+                }
+                transcript.add("branchTo " + (s.defaultSwitchOffset + pc));
+            } else {
+                for (int k = 0; k < TYPE_OF_OPERANDS[opcode].length; k++) {
+                    switch (DismantleBytecode.MEANING_OF_OPERANDS[opcode][k]) {
+                    case DismantleBytecode.M_BR:
+                        transcript.add("branchTo " + (s.branchOffset + pc));
+                        break;
+                    case DismantleBytecode.M_CP:
+                        Constant c = s.constant;
+                        if (c instanceof ConstantInteger) {
+                            transcript.add("int " + intConstant);
+                        } else if (c instanceof ConstantLong) {
+                            transcript.add("long " + longConstant);
+                        } else if (c instanceof ConstantFloat) {
+                            transcript.add("float " + floatConstant);
+                        } else if (c instanceof ConstantDouble) {
+                            transcript.add("double " + doubleConstant);
+                        } else if (c instanceof ConstantString) {
+                            transcript.add("string " + s.stringOperand);
+                        } else if (c instanceof ConstantFieldref) {
+                            transcript.add("field");
+                        } else if (c instanceof ConstantMethodref) {
+                            transcript.add("method");
+                        } else if (c instanceof ConstantInterfaceMethodref) {
+                            transcript.add("imethod");
+                        } else if (c instanceof ConstantClass) {
+                            transcript.add("class");
+                        }
+                        break;
+                    case DismantleBytecode.M_R:
+                        transcript.add("register " + s.register);
+                        break;
+                    case DismantleBytecode.M_INT:
+                        transcript.add("int " + intConstant);
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            }
+            return i;
+        }
+
+        private void resolve(InstructionState s, int index) {
+            Constant c = cp.getConstant(index);
+            s.constant = c;
+            if (c instanceof ConstantClass) {
+                s.classOperand = getStringFromIndex(((ConstantClass) c).getNameIndex());
+            } else if (c instanceof ConstantInteger) {
+                intConstant = ((ConstantInteger) c).getBytes();
+            } else if (c instanceof ConstantLong) {
+                longConstant = ((ConstantLong) c).getBytes();
+            } else if (c instanceof ConstantFloat) {
+                floatConstant = ((ConstantFloat) c).getBytes();
+            } else if (c instanceof ConstantDouble) {
+                doubleConstant = ((ConstantDouble) c).getBytes();
+            } else if (c instanceof ConstantString) {
+                s.stringOperand = getStringFromIndex(((ConstantString) c).getStringIndex());
+            } else if (c instanceof ConstantInvokeDynamic) {
+                ConstantNameAndType sig = (ConstantNameAndType) cp.getConstant(((ConstantInvokeDynamic) c).getNameAndTypeIndex());
+                s.nameOperand = getStringFromIndex(sig.getNameIndex());
+                s.sigOperand = getStringFromIndex(sig.getSignatureIndex());
+            } else if (c instanceof ConstantCP) {
+                ConstantCP ref = (ConstantCP) c;
+                s.classOperand = getStringFromIndex(((ConstantClass) cp.getConstant(ref.getClassIndex())).getNameIndex());
+                ConstantNameAndType sig = (ConstantNameAndType) cp.getConstant(ref.getNameAndTypeIndex());
+                s.nameOperand = getStringFromIndex(sig.getNameIndex());
+                s.sigOperand = getStringFromIndex(sig.getSignatureIndex());
+            }
+        }
+
+        private static void sortByOffset(int[] switchOffsets, int[] switchLabels) {
+            int npairs = switchOffsets.length;
+            for (int j = 0; j < npairs; j++) {
+                int min = j;
+                for (int k = j + 1; k < npairs; k++) {
+                    if (switchOffsets[min] > switchOffsets[k]) {
+                        min = k;
+                    }
+                }
+                if (min > j) {
+                    int tmp = switchOffsets[min];
+                    switchOffsets[min] = switchOffsets[j];
+                    switchOffsets[j] = tmp;
+                    tmp = switchLabels[min];
+                    switchLabels[min] = switchLabels[j];
+                    switchLabels[j] = tmp;
+                }
+            }
+        }
+    }
+
+    /**
+     * The methods of the fixture cover the instructions whose decoding is not
+     * straightforward: both switches at every padding, WIDE, all forms of
+     * LDC, and the invoke instructions with extra operand bytes.
+     */
+    public void testFixtureSameAsLegacyDecoder() throws Exception {
+        final File tmpdir = createTempDir();
+        File classFile = new File(tmpdir, FIXTURE + ".class");
+        writeFixture(classFile);
+        try {
+            executeFindBugsTest(new RunnableWithExceptions() {
+                @Override
+                public void run() throws Throwable {
+                    ClassDescriptor fixture = DescriptorFactory.createClassDescriptor(FIXTURE);
+                    Map<String, List<String>> transcripts = compareWithLegacyDecoder(Collections.singletonList(fixture));
+
+                    Set<String> seen = new HashSet<String>();
+                    for (List<String> transcript : transcripts.values()) {
+                        for (String line : transcript) {
+                            String[] words = line.split(" ");
+                            if (words.length < 3) {
+                                continue;
+                            }
+                            int pc = Integer.parseInt(words[0]);
+                            String opcodeName = words[1];
+                            seen.add(opcodeName);
+                            if ("tableswitch".equals(opcodeName) || "lookupswitch".equals(opcodeName)) {
+                                seen.add(opcodeName + " padding " + (3 - pc % 4));
+                            }
+                            if (line.contains(" wide=true ")) {
+                                seen.add("wide " + opcodeName);
+                            }
+                        }
+                    }
+                    for (int pad = 0; pad < 4; pad++) {
+                        assertTrue(seen.contains("tableswitch padding " + pad));
+                        assertTrue(seen.contains("lookupswitch padding " + pad));
+                    }
+                    for (String expected : new String[] { "wide iload", "wide istore", "wide lstore", "wide lload", "wide aload",
+                            "wide iinc", "wide ret", "ldc", "ldc_w", "ldc2_w", "invokedynamic", "invokeinterface",
+                            "multianewarray", "bipush", "sipush", "goto" }) {
+                        assertTrue(expected, seen.contains(expected));
+                    }
+                }
+            }, tmpdir.getPath());
+        } finally {
+            classFile.delete();
+            tmpdir.delete();
+        }
+    }
+
+    /**
+     * All methods of the FindBugs classes must be visited as before.
+     */
+    public void testFindBugsClassesSameAsLegacyDecoder() throws Exception {
+        final File codeBase = new File(DismantleBytecode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        executeFindBugsTest(new RunnableWithExceptions() {
+            @Override
+            public void run() throws Throwable {
+                List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>();
+                listClasses(new File(codeBase, "edu/umd/cs/findbugs"), "edu/umd/cs/findbugs/", classes);
+                assertTrue(classes.size() > 1000);
+                compareWithLegacyDecoder(classes);
+            }
+        }, codeBase.getPath());
+    }
+
+    /**
+     * A method whose bytecode ends in the middle of an instruction is visited
+     * up to that instruction.
+     */
+    public void testTruncatedCode() throws Exception {
+        final File tmpdir = createTempDir();
+        File classFile = new File(tmpdir, FIXTURE + ".class");
+        writeFixture(classFile);
+        try {
+            executeFindBugsTest(new RunnableWithExceptions() {
+                @Override
+                public void run() throws Throwable {
+                    JavaClass jclass = Global.getAnalysisCache().getClassAnalysis(JavaClass.class,
+                            DescriptorFactory.createClassDescriptor(FIXTURE));
+                    Code code = getCode(jclass, "tableswitch1");
+                    DecodedCode decoded = DecodedCode.decode(code, jclass.getConstantPool());
+                    int k = 0;
+                    while (decoded.getOpcode(k) != TABLESWITCH) {
+                        k++;
+                    }
+                    int switchPC = decoded.getPC(k);
+                    Code truncated = truncate(code, jclass.getConstantPool(), switchPC + 6);
+
+                    DecodedCode truncatedDecoded = DecodedCode.decode(truncated, jclass.getConstantPool());
+                    assertEquals(k, truncatedDecoded.getNumInstructions());
+                    assertEquals(switchPC, truncatedDecoded.getNextPC(k - 1));
+
+                    Recorder recorder = new Recorder();
+                    recorder.setupVisitorForClass(jclass);
+                    recorder.current = new ArrayList<String>();
+                    recorder.visit(truncated);
+                    List<String> expected = new LegacyDecoder(jclass.getConstantPool()).decode(truncated);
+                    assertEquals(k, countInstructions(recorder.current));
+                    assertEquals(expected, recorder.current);
+                }
+            }, tmpdir.getPath());
+        } finally {
+            classFile.delete();
+            tmpdir.delete();
+        }
+    }
+
+    /**
+     * Truncated bytecode is logged as an error, not thrown.
+     */
+    public void testTruncatedCodeIsLogged() throws Exception {
+        File tmpdir = createTempDir();
+        File classFile = new File(tmpdir, FIXTURE + ".class");
+        writeFixture(classFile);
+        try {
+            JavaClass jclass = new ClassParser(classFile.getPath()).parse();
+            // iload_0, then the first two bytes of wide istore 300
+            Code truncated = truncate(getCode(jclass, "wide"), jclass.getConstantPool(), 3);
+            PrintStream err = System.err;
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            System.setErr(new PrintStream(log, true));
+            DecodedCode decoded;
+            try {
+                // without an analysis context, errors are printed
+                decoded = DecodedCode.decode(truncated, jclass.getConstantPool());
+            } finally {
+                System.setErr(err);
+            }
+            assertEquals(1, decoded.getNumInstructions());
+            assertEquals(ILOAD_0, decoded.getOpcode(0));
+            assertEquals(1, decoded.getNextPC(0));
+            assertTrue(log.toString(), log.toString().contains("ArrayIndexOutOfBoundsException"));
+        } finally {
+            classFile.delete();
+            tmpdir.delete();
+        }
+    }
+
+    /**
+     * Visit the given classes with a Recorder, and check that the
+     * LegacyDecoder produces the same transcript for each method.
+     *
+     * @return the transcripts
+     */
+    private static Map<String, List<String>> compareWithLegacyDecoder(List<ClassDescriptor> classes) throws Exception {
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        for (ClassDescriptor classDescriptor : classes) {
+            ClassContext classContext = Global.getAnalysisCache().getClassAnalysis(ClassContext.class, classDescriptor);
+            Recorder recorder = new Recorder();
+            recorder.visitClassContext(classContext);
+            JavaClass jclass = classContext.getJavaClass();
+            LegacyDecoder legacyDecoder = new LegacyDecoder(jclass.getConstantPool());
+            for (Method method : jclass.getMethods()) {
+                Code code = method.getCode();
+                if (code == null) {
+                    continue;
+                }
+                String name = method.getName() + method.getSignature();
+                List<String> expected = legacyDecoder.decode(code);
+                List<String> actual = recorder.transcripts.get(name);
+                assertEquals(classDescriptor + "." + name, expected, actual);
+                result.put(classDescriptor + "." + name, actual);
+            }
+        }
+        return result;
+    }
+
+    private static int countInstructions(List<String> transcript) {
+        int count = 0;
+        for (String line : transcript) {
+            if (line.contains(" next=")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Code getCode(JavaClass jclass, String methodName) {
+        for (Method method : jclass.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return method.getCode();
+            }
+        }
+        throw new IllegalArgumentException(methodName);
+    }
+
+    private static Code truncate(Code code, ConstantPool cp, int length) {
+        Code truncated = (Code) code.copy(cp);
+        truncated.setCode(Arrays.copyOf(code.getCode(), length));
+        return truncated;
+    }
+
+    private static void listClasses(File dir, String prefix, List<ClassDescriptor> classes) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listClasses(file, prefix + file.getName() + "/", classes);
+            } else if (file.getName().endsWith(".class")) {
+                classes.add(DescriptorFactory.createClassDescriptorFromResourceName(prefix + file.getName()));
+            }
+        }
+    }
+
+    private static File createTempDir() throws IOException {
+        File tmpdir = File.createTempFile("fbtest", null);
+        if (!tmpdir.delete() || !tmpdir.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+        return tmpdir;
+    }
+
+    private static void writeFixture(File file) throws IOException {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, FIXTURE, null, "java/lang/Object", null);
+        for (int pad = 0; pad < 4; pad++) {
+            writeTableSwitch(cw, pad);
+            writeLookupSwitch(cw, pad);
+        }
+        writeWide(cw);
+        writeConstants(cw);
+        writeInvokes(cw);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "lambda$0", "()V", null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(cw.toByteArray());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeNops(MethodVisitor mv, int count) {
+        for (int i = 0; i < count; i++) {
+            mv.visitInsn(Opcodes.NOP);
+        }
+    }
+
+    /**
+     * The cases are placed in the reverse order of their keys, so that the
+     * offsets have to be sorted.
+     */
+    private static void writeCases(MethodVisitor mv, Label[] labels, Label dflt) {
+        for (int i = labels.length - 1; i >= 0; i--) {
+            mv.visitLabel(labels[i]);
+            mv.visitIntInsn(Opcodes.BIPUSH, i);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+        mv.visitLabel(dflt);
+        mv.visitInsn(Opcodes.ICONST_M1);
+        mv.visitInsn(Opcodes.IRETURN);
+    }
+
+    private static Label[] newLabels(int count) {
+        Label[] labels = new Label[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = new Label();
+        }
+        return labels;
+    }
+
+    private static void writeTableSwitch(ClassWriter cw, int pad) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "tableswitch" + pad, "(I)I", null, null);
+        mv.visitCode();
+        // the switch opcode is at pc pad + 1
+        writeNops(mv, pad);
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        Label[] labels = newLabels(5);
+        Label dflt = new Label();
+        mv.visitTableSwitchInsn(-2, 2, dflt, labels);
+        writeCases(mv, labels, dflt);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeLookupSwitch(ClassWriter cw, int pad) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "lookupswitch" + pad, "(I)I", null, null);
+        mv.visitCode();
+        writeNops(mv, pad);
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        Label[] labels = newLabels(5);
+        Label dflt = new Label();
+        mv.visitLookupSwitchInsn(dflt, new int[] { -100000, -1, 7, 5000, 1 << 20 }, labels);
+        writeCases(mv, labels, dflt);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeWide(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "wide", "(I)I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitVarInsn(Opcodes.ISTORE, 300);
+        mv.visitInsn(Opcodes.LCONST_1);
+        mv.visitVarInsn(Opcodes.LSTORE, 400);
+        mv.visitVarInsn(Opcodes.LLOAD, 400);
+        mv.visitInsn(Opcodes.POP2);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitVarInsn(Opcodes.ASTORE, 256);
+        mv.visitVarInsn(Opcodes.ALOAD, 256);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitIincInsn(300, -1000);
+        mv.visitIincInsn(300, 5);
+        mv.visitIincInsn(0, 200);
+        mv.visitIincInsn(0, -3);
+        mv.visitVarInsn(Opcodes.ILOAD, 300);
+        mv.visitInsn(Opcodes.IRETURN);
+        // unreachable, only decoded
+        mv.visitVarInsn(Opcodes.RET, 300);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeConstants(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "constants", "()V", null, null);
+        mv.visitCode();
+        writeLdcs(mv, "first");
+        for (int i = 0; i < NUM_FILLER_STRINGS; i++) {
+            mv.visitLdcInsn("filler" + i);
+            mv.visitInsn(Opcodes.POP);
+        }
+        // these constants are added to the constant pool after the filler
+        // strings, so they need LDC_W
+        writeLdcs(mv, "last");
+        mv.visitLdcInsn(Long.valueOf(1234567890123L));
+        mv.visitInsn(Opcodes.POP2);
+        mv.visitLdcInsn(Double.valueOf(2.75));
+        mv.visitInsn(Opcodes.POP2);
+        mv.visitIntInsn(Opcodes.BIPUSH, -5);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitIntInsn(Opcodes.SIPUSH, -3000);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitIntInsn(Opcodes.SIPUSH, 32000);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeLdcs(MethodVisitor mv, String tag) {
+        mv.visitLdcInsn(Integer.valueOf(tag.hashCode()));
+        mv.visitInsn(Opcodes.POP);
+        mv.visitLdcInsn(Float.valueOf(tag.length() + 0.5f));
+        mv.visitInsn(Opcodes.POP);
+        mv.visitLdcInsn(tag);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitLdcInsn(Type.getObjectType("java/util/" + tag));
+        mv.visitInsn(Opcodes.POP);
+    }
+
+    private static void writeInvokes(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "invokes", "(Ljava/util/List;)V", null,
+                null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/List", "size", "()I", true);
+        mv.visitInsn(Opcodes.POP);
+        Handle metafactory = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                        + "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)"
+                        + "Ljava/lang/invoke/CallSite;", false);
+        mv.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;", metafactory, Type.getType("()V"), new Handle(
+                Opcodes.H_INVOKESTATIC, FIXTURE, "lambda$0", "()V", false), Type.getType("()V"));
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/lang/Runnable", "run", "()V", true);
+        mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/Object;)V", false);
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/StringBuilder");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.ICONST_2);
+        mv.visitInsn(Opcodes.ICONST_3);
+        mv.visitMultiANewArrayInsn("[[I", 2);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, "java/util/ArrayList");
+        mv.visitTypeInsn(Opcodes.INSTANCEOF, "java/util/RandomAccess");
+        mv.visitInsn(Opcodes.POP);
+        // for (int i = 0; i < 10; i++) {}
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitVarInsn(Opcodes.ISTORE, 1);
+        Label test = new Label();
+        Label body = new Label();
+        mv.visitJumpInsn(Opcodes.GOTO, test);
+        mv.visitLabel(body);
+        mv.visitIincInsn(1, 1);
+        mv.visitLabel(test);
+        mv.visitVarInsn(Opcodes.ILOAD, 1);
+        mv.visitIntInsn(Opcodes.BIPUSH, 10);
+        mv.visitJumpInsn(Opcodes.IF_ICMPLT, body);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
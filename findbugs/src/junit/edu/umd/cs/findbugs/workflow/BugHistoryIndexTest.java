@@ -0,0 +1,229 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.workflow.BugHistoryIndex.Column;
+
+/**
+ * Checks the counts of BugHistoryIndex against the per-bug loops it
+ * replaced.
+ */
+public class BugHistoryIndexTest extends TestCase {
+
+    private static final int SEQUENCE_NUMBER = 6;
+
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "DLS_DEAD_LOCAL_STORE", "SE_BAD_FIELD",
+        "UNKNOWN_TEST_PATTERN" };
+
+    private SortedBugCollection bugCollection;
+
+    private List<BugInstance> bugs;
+
+    /**
+     * A bug last seen before its first version. The setters of BugInstance
+     * reject such a history, but the index must cope with whatever
+     * getLastVersion() returns.
+     */
+    static class DeadBeforeFirstBug extends BugInstance {
+        private static final long serialVersionUID = 1L;
+
+        private final long last;
+
+        DeadBeforeFirstBug(String type, long first, long last) {
+            super(type, Priorities.NORMAL_PRIORITY);
+            setFirstVersion(first);
+            this.last = last;
+        }
+
+        @Override
+        public long getLastVersion() {
+            return last;
+        }
+
+        @Override
+        public boolean isDead() {
+            return true;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        bugCollection = new SortedBugCollection();
+        bugCollection.setSequenceNumber(SEQUENCE_NUMBER);
+        bugs = new ArrayList<BugInstance>();
+
+        // alive, from the first, a middle and the current version
+        add(bug(TYPES[0], "com.example.A", 0, -1));
+        add(bug(TYPES[0], "com.example.A", 3, -1));
+        add(bug(TYPES[1], "com.example.B", SEQUENCE_NUMBER, -1));
+        // dead, in a single version and over a range
+        add(bug(TYPES[1], "com.example.B", 2, 2));
+        add(bug(TYPES[2], "com.example.other.C", 0, 4));
+        add(bug(TYPES[2], "com.example.other.C", 5, SEQUENCE_NUMBER));
+        // dead before its first version
+        add(new DeadBeforeFirstBug(TYPES[0], 4, 1).addClass("com.example.D"));
+        add(new DeadBeforeFirstBug(TYPES[3], SEQUENCE_NUMBER, 0).addClass("D"));
+
+        Random random = new Random(37);
+        for (int i = 0; i < 200; i++) {
+            int first = random.nextInt(SEQUENCE_NUMBER + 1);
+            int last = random.nextInt(3) == 0 ? -1 : first + random.nextInt(SEQUENCE_NUMBER + 1 - first);
+            BugInstance bug = bug(TYPES[random.nextInt(TYPES.length)], "com.example.p" + random.nextInt(4) + ".C" + i,
+                    first, last);
+            bug.setPriority(1 + random.nextInt(3));
+            add(bug);
+        }
+    }
+
+    private void add(BugInstance bug) {
+        assertTrue(bugCollection.add(bug, false));
+        bugs.add(bug);
+    }
+
+    private static BugInstance bug(String type, String className, long first, long last) {
+        BugInstance bug = new BugInstance(type, Priorities.NORMAL_PRIORITY).addClass(className);
+        bug.setFirstVersion(first);
+        bug.setLastVersion(last);
+        return bug;
+    }
+
+    private static boolean isActive(BugInstance bug, int version) {
+        return bug.getFirstVersion() <= version && (!bug.isDead() || bug.getLastVersion() >= version);
+    }
+
+    private static String getValue(BugInstance bug, Column column) {
+        switch (column) {
+        case PATTERN:
+            return bug.getType();
+        case CATEGORY:
+            return bug.getCategoryAbbrev();
+        case PACKAGE:
+            return bug.getPrimaryClass().getPackageName();
+        case CLASS:
+            return bug.getPrimaryClass().getClassName();
+        case PRIORITY:
+            return Integer.toString(bug.getPriority());
+        case RANK:
+            return Integer.toString(BugRanker.findRank(bug));
+        default:
+            throw new AssertionError(column);
+        }
+    }
+
+    private static String getGroup(BugHistoryIndex index, Column column, int group) {
+        BugHistoryIndex.Dictionary dictionary = index.getDictionary(column);
+        return dictionary != null ? dictionary.get(group) : Integer.toString(group);
+    }
+
+    public void testColumns() {
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        assertEquals(bugs.size(), index.size());
+        assertEquals(SEQUENCE_NUMBER + 1, index.getNumVersions());
+        for (int b = 0; b < index.size(); b++) {
+            BugInstance bug = index.getBug(b);
+            assertEquals(bug.getFirstVersion(), index.getFirstVersion(b));
+            assertEquals(bug.getLastVersion(), index.getLastVersion(b));
+            assertEquals(bug.isDead(), index.isDead(b));
+            for (Column column : Column.values()) {
+                assertEquals(getValue(bug, column), getGroup(index, column, index.getColumn(column)[b]));
+            }
+        }
+    }
+
+    public void testCount() {
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        for (Column column : Column.values()) {
+            Map<String, Integer> expected = new HashMap<String, Integer>();
+            for (BugInstance bug : bugs) {
+                String value = getValue(bug, column);
+                Integer count = expected.get(value);
+                expected.put(value, count == null ? 1 : count + 1);
+            }
+
+            Map<String, Integer> actual = new HashMap<String, Integer>();
+            int[] counts = index.count(column);
+            for (int g = 0; g < counts.length; g++) {
+                if (counts[g] > 0) {
+                    actual.put(getGroup(index, column, g), counts[g]);
+                }
+            }
+            assertEquals(column.toString(), expected, actual);
+        }
+    }
+
+    public void testCountActiveByVersion() {
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        int[] counts = index.countActiveByVersion();
+        assertEquals(SEQUENCE_NUMBER + 1, counts.length);
+        for (int v = 0; v <= SEQUENCE_NUMBER; v++) {
+            int expected = 0;
+            for (BugInstance bug : bugs) {
+                if (isActive(bug, v)) {
+                    expected++;
+                }
+            }
+            assertEquals("version " + v, expected, counts[v]);
+        }
+    }
+
+    public void testCountActiveByVersionAndGroup() {
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        for (Column column : Column.values()) {
+            int[][] counts = index.countActiveByVersion(column);
+            assertEquals(index.getNumGroups(column), counts.length);
+            for (int g = 0; g < counts.length; g++) {
+                String group = getGroup(index, column, g);
+                for (int v = 0; v <= SEQUENCE_NUMBER; v++) {
+                    int expected = 0;
+                    for (BugInstance bug : bugs) {
+                        if (isActive(bug, v) && group.equals(getValue(bug, column))) {
+                            expected++;
+                        }
+                    }
+                    assertEquals(column + " " + group + " version " + v, expected, counts[g][v]);
+                }
+            }
+        }
+    }
+
+    public void testDeadBeforeFirst() {
+        BugHistoryIndex index = new BugHistoryIndex(bugCollection);
+        int deadBeforeFirst = 0;
+        for (int b = 0; b < index.size(); b++) {
+            if (index.getBug(b) instanceof DeadBeforeFirstBug) {
+                deadBeforeFirst++;
+                assertTrue(index.isDead(b));
+                assertTrue(index.getLastVersion(b) < index.getFirstVersion(b));
+            }
+        }
+        assertEquals(2, deadBeforeFirst);
+    }
+}
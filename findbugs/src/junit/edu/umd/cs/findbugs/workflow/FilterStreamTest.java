@@ -0,0 +1,185 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.AppVersion;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.IntAnnotation;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+/**
+ * Checks that filterBugs -stream writes what filterBugs writes when it reads
+ * the whole collection.
+ */
+public class FilterStreamTest extends TestCase {
+
+    private File dir;
+
+    private File input;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("filterStream", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        input = new File(dir, "input.xml");
+
+        SortedBugCollection bugs = new SortedBugCollection();
+        bugs.setTimestamp(4000);
+        bugs.setAnalysisTimestamp(4000);
+        bugs.setReleaseName("v4");
+        for (int i = 0; i < 3; i++) {
+            bugs.addAppVersion(new AppVersion(i, new Date(1000 * (i + 1)), "v" + (i + 1)));
+        }
+        bugs.setSequenceNumber(3);
+
+        // Only differ in their history; the last two become equal when
+        // trimmed to version 1
+        bugs.add(bug("com.example.A", 1, 0, -1), false);
+        bugs.add(bug("com.example.A", 1, 0, 1), false);
+        bugs.add(bug("com.example.A", 1, 0, 2), false);
+        // Swap places when trimmed to version 1
+        bugs.add(bug("com.example.B", 2, 0, 0), false);
+        bugs.add(bug("com.example.B", 2, 0, 2), false);
+        // Dropped when trimmed to version 1
+        bugs.add(bug("com.example.C", 3, 2, -1), false);
+        // Dead in version 1
+        bugs.add(bug("com.example.D", 4, 1, 1), false);
+        bugs.add(bug("com.example.E", 5, 1, -1), false);
+        bugs.add(bug("com.example.F", 6, 0, -1), false);
+        bugs.writeXML(input);
+
+        // SortedBugCollection never writes equal bugs; duplicate one, and
+        // make a second copy which differs in its priority only
+        String xml = read(input);
+        int start = xml.lastIndexOf("<BugInstance", xml.indexOf("com.example.E"));
+        int end = xml.indexOf("</BugInstance>", start) + "</BugInstance>".length();
+        String e = xml.substring(start, end);
+        String e2 = e.replaceFirst("priority=\"\\d\"", "priority=\"3\"");
+        assertFalse(e.equals(e2));
+        xml = xml.substring(0, end) + e + e2 + xml.substring(end);
+        write(input, xml);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static BugInstance bug(String className, int value, long first, long last) {
+        BugInstance bug = new BugInstance("NP_NULL_ON_SOME_PATH", Priorities.NORMAL_PRIORITY).addClass(className).addInt(
+                value);
+        bug.setFirstVersion(first);
+        bug.setLastVersion(last);
+        return bug;
+    }
+
+    private String filter(String name, String... options) throws Exception {
+        File output = new File(dir, name);
+        String[] args = new String[options.length + 2];
+        System.arraycopy(options, 0, args, 0, options.length);
+        args[options.length] = input.getPath();
+        args[options.length + 1] = output.getPath();
+        Filter.main(args);
+        // Drop the measurements of the filter run itself
+        return read(output).replaceAll(" (cpu_seconds|clock_seconds|peak_mbytes|alloc_mbytes|gc_seconds)=\"[^\"]*\"", "")
+                .replaceAll("(?s)<FindBugsProfile>.*</FindBugsProfile>", "");
+    }
+
+    private void checkSame(String... options) throws Exception {
+        String expected = filter("expected.xml", options);
+        String[] streamOptions = new String[options.length + 1];
+        streamOptions[0] = "-stream";
+        System.arraycopy(options, 0, streamOptions, 1, options.length);
+        assertEquals(expected, filter("stream.xml", streamOptions));
+    }
+
+    public void testDuplicates() throws Exception {
+        String expected = filter("expected.xml");
+        // the copy with another priority is a different warning
+        assertEquals(2, count(expected, "value=\"5\""));
+        checkSame();
+    }
+
+    public void testTrimToVersion() throws Exception {
+        String expected = filter("expected.xml", "-trimToVersion", "1");
+        assertEquals(0, count(expected, "value=\"3\""));
+        checkSame("-trimToVersion", "1");
+    }
+
+    public void testPurgeHistory() throws Exception {
+        checkSame("-trimToVersion", "1", "-purgeHistory");
+    }
+
+    public void testActive() throws Exception {
+        checkSame("-active", "-priority", "2");
+    }
+
+    public void testDead() throws Exception {
+        checkSame("-active:false");
+    }
+
+    public void testUnsorted() throws Exception {
+        String xml = read(input);
+        int a = xml.indexOf("<BugInstance");
+        int aEnd = xml.indexOf("</BugInstance>", a) + "</BugInstance>".length();
+        int f = xml.lastIndexOf("<BugInstance", xml.indexOf("com.example.F"));
+        int fEnd = xml.indexOf("</BugInstance>", f) + "</BugInstance>".length();
+        write(input, xml.substring(0, a) + xml.substring(f, fEnd) + xml.substring(aEnd, f) + xml.substring(a, aEnd)
+                + xml.substring(fEnd));
+        try {
+            filter("stream.xml", "-stream");
+            fail("unsorted input accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not sorted"));
+        }
+    }
+
+    private static int count(String s, String part) {
+        int n = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+/**
+ * Checks that building the BugInstances of a bug collection on several
+ * threads reads the same bugs as building them on the reading thread.
+ */
+public class ParallelParseTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("bugCollection", ".xml");
+        // several batches per worker
+        ParseBugCollectionBenchmark.createBugCollection(5000).writeXML(file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testSameBugs() throws Exception {
+        SortedBugCollection sequential = ParseBugCollectionBenchmark.read(file, 1);
+        assertEquals(5000, sequential.getCollection().size());
+        for (int threads : new int[] { 2, 4 }) {
+            ParseBugCollectionBenchmark.checkSame(sequential, ParseBugCollectionBenchmark.read(file, threads));
+        }
+    }
+}